@@ -0,0 +1,137 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.ScheduledExecutor;
+import com.dilatush.util.feed.InFeed;
+import com.dilatush.util.ip.IPv4Address;
+import com.dilatush.util.networkingengine.interfaces.OnAcceptHandler;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Static methods shared by the networking engine benchmarks: making engines, listeners, and connected pipes on the loopback interface, and the server-side handlers (echo and
+ * sink) that the benchmarks measure against.  Every failure is fatal to the benchmark, so failures are thrown as {@link IllegalStateException}s.
+ */
+/* package-private */ final class BenchmarkSupport {
+
+    private BenchmarkSupport() {}
+
+
+    /**
+     * Returns a new engine with the given number of I/O loops, in normal or inline I/O mode, using a new {@link ScheduledExecutor} with the given number of daemon threads.
+     *
+     * @param _threads The number of threads in the engine's executor.
+     * @param _ioLoops The number of I/O loops in the engine.
+     * @param _inlineIO If {@code true}, reads and writes are done in the I/O loop threads (see {@link NetworkingEngine.Config#inlineIO}).
+     * @return The new engine.
+     */
+    /* package-private */ static NetworkingEngine engine( final int _threads, final int _ioLoops, final boolean _inlineIO ) {
+
+        var config = new NetworkingEngine.Config();
+        config.name     = "Benchmark";
+        config.ioLoops  = _ioLoops;
+        config.inlineIO = _inlineIO;
+        var engineOutcome = NetworkingEngine.getInstance( config, new ScheduledExecutor( _threads, true ) );
+        if( !engineOutcome.ok() ) throw new IllegalStateException( "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        return engineOutcome.info();
+    }
+
+
+    /**
+     * Returns a new listener on the given loopback port, whose accepted connections are handled by the given handler.
+     *
+     * @param _engine The engine for the listener.
+     * @param _port The loopback port to listen on.
+     * @param _handler The handler for accepted connections.
+     * @return The new listener.
+     */
+    /* package-private */ static TCPListener listener( final NetworkingEngine _engine, final int _port, final OnAcceptHandler _handler ) {
+
+        var listenerOutcome = TCPListener.getNewInstance( _engine, IPv4Address.LOOPBACK, _port, _handler );
+        if( !listenerOutcome.ok() ) throw new IllegalStateException( "Problem creating TCPListener: " + listenerOutcome.msg() );
+        return listenerOutcome.info();
+    }
+
+
+    /**
+     * Returns a new outbound pipe, connected to the given loopback port.
+     *
+     * @param _engine The engine for the pipe.
+     * @param _port The loopback port to connect to.
+     * @return The new, connected pipe.
+     */
+    /* package-private */ static TCPOutboundPipe connect( final NetworkingEngine _engine, final int _port ) {
+
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( _engine, IPv4Address.LOOPBACK );
+        if( !pipeOutcome.ok() ) throw new IllegalStateException( "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, _port );
+        if( !connectOutcome.ok() ) throw new IllegalStateException( "Problem connecting: " + connectOutcome.msg() );
+        return pipe;
+    }
+
+
+    /**
+     * Echoes everything read from the given pipe back to it, asynchronously, until a read or write fails (at which point the pipe is closed).
+     *
+     * @param _pipe The pipe to echo.
+     */
+    /* package-private */ static void echo( final TCPPipe _pipe ) {
+
+        _pipe.read( 1, InFeed.MAX_READ_BYTES, (readOutcome) -> {
+            if( !readOutcome.ok() ) {
+                _pipe.close();
+                return;
+            }
+            var buffer = readOutcome.info();
+            _pipe.write( buffer, (writeOutcome) -> {
+                _pipe.release( buffer );
+                if( writeOutcome.ok() ) echo( _pipe ); else _pipe.close();
+            } );
+        } );
+    }
+
+
+    /**
+     * Reads and discards everything read from the given pipe, until the stream ends (at which point the pipe is closed).
+     *
+     * @param _pipe The pipe to drain.
+     */
+    /* package-private */ static void sink( final TCPPipe _pipe ) {
+
+        _pipe.stream( InFeed.MAX_READ_BYTES, (readOutcome) -> {
+            if( readOutcome.ok() ) _pipe.release( readOutcome.info() ); else _pipe.close();
+        } );
+    }
+
+
+    /**
+     * Reads exactly the given number of bytes from the given pipe, blocking until they've all arrived, and releasing the buffers they arrived in.
+     *
+     * @param _pipe The pipe to read from.
+     * @param _bytes The number of bytes to read.
+     */
+    /* package-private */ static void readFully( final TCPPipe _pipe, final int _bytes ) {
+
+        var remaining = _bytes;
+        while( remaining > 0 ) {
+            var readOutcome = _pipe.read( 1, Math.min( remaining, InFeed.MAX_READ_BYTES ) );
+            if( !readOutcome.ok() ) throw new IllegalStateException( "Problem reading: " + readOutcome.msg() );
+            remaining -= readOutcome.info().remaining();
+            _pipe.release( readOutcome.info() );
+        }
+    }
+
+
+    /**
+     * Returns a new buffer with the given number of bytes of data, ready to write.
+     *
+     * @param _bytes The number of bytes of data in the buffer.
+     * @return The new buffer.
+     */
+    /* package-private */ static ByteBuffer message( final int _bytes ) {
+
+        var buffer = ByteBuffer.allocate( _bytes );
+        for( int i = 0; i < _bytes; i++ ) buffer.put( (byte) i );
+        return buffer.flip();
+    }
+}
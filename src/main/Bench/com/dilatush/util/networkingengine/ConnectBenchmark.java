@@ -0,0 +1,57 @@
+package com.dilatush.util.networkingengine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.dilatush.util.networkingengine.BenchmarkSupport.*;
+
+/**
+ * Benchmark of the rate at which connections can be made (and closed) through a {@link TCPListener} over the loopback interface, parameterized by the number of threads in the
+ * engine's executor, the number of I/O loops, and whether I/O is done inline in the I/O loops.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ConnectBenchmark {
+
+    private static final int PORT = 5603;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    @Param( { "1", "2" } )
+    public int ioLoops;
+
+    @Param( { "false", "true" } )
+    public boolean inlineIO;
+
+    private NetworkingEngine engine;
+    private TCPListener      listener;
+
+
+    @Setup( Level.Trial )
+    public void setup() {
+        engine   = engine( threads, ioLoops, inlineIO );
+        listener = listener( engine, PORT, TCPPipe::close );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void teardown() {
+        listener.close();
+        engine.shutdown();
+    }
+
+
+    /**
+     * Connects to the listener, then closes the connection.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public void connect() {
+        BenchmarkSupport.connect( engine, PORT ).close();
+    }
+}
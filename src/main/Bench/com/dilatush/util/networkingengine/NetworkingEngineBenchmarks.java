@@ -0,0 +1,33 @@
+package com.dilatush.util.networkingengine;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Runs the JMH benchmarks of the networking engine: {@link TCPBenchmark} (echo round-trip latency and bulk write throughput), {@link ConnectBenchmark} (connections per
+ * second through a {@link TCPListener}), {@link UDPBenchmark} (datagram round trips per second), and {@link TLSBenchmark} (the same measurements as TCPBenchmark, through a
+ * {@link TLSPipe}).  All of them run over the loopback interface, on ports 5601 through 5606, and are parameterized by the number of threads in the engine's executor, the
+ * number of I/O loops ({@code ioLoops}), whether I/O is done inline in the I/O loops ({@code inlineIO}), and (except for connections) the message size.</p>
+ * <p>The benchmarks live in the {@code src/main/Bench} source folder, which needs JMH (jmh-core and jmh-generator-annprocess) on its classpath, with annotation processing
+ * enabled.  Run this class's {@code main()} with an optional regular expression argument to select particular benchmarks (for instance, {@code TCPBenchmark.roundTrip}); the
+ * default runs them all.  Any further arguments of the form {@code name=value[,value...]} restrict a parameter to the given values (for instance, {@code inlineIO=true} or
+ * {@code ioLoops=1,4}).  Numbers taken before and after an engine change are only comparable when run on the same machine, with nothing else busy.</p>
+ */
+public final class NetworkingEngineBenchmarks {
+
+    private NetworkingEngineBenchmarks() {}
+
+
+    public static void main( final String[] _args ) throws RunnerException {
+
+        var include = (_args.length > 0) ? _args[0] : NetworkingEngineBenchmarks.class.getPackageName() + ".*Benchmark";
+        var options = new OptionsBuilder().include( include );
+        for( int i = 1; i < _args.length; i++ ) {
+            var param = _args[i].split( "=", 2 );
+            if( param.length != 2 ) throw new IllegalArgumentException( "Expected name=value[,value...]: " + _args[i] );
+            options.param( param[0], param[1].split( "," ) );
+        }
+        new Runner( options.build() ).run();
+    }
+}
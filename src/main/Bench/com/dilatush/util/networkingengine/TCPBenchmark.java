@@ -0,0 +1,90 @@
+package com.dilatush.util.networkingengine;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static com.dilatush.util.networkingengine.BenchmarkSupport.*;
+
+/**
+ * Benchmarks of TCP over the loopback interface: the round-trip latency of a message echoed by the server, and the throughput of messages written to a server that discards
+ * them.  Both are parameterized by the number of threads in the engine's executor, the number of I/O loops, whether I/O is done inline in the I/O loops, and the message
+ * size.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class TCPBenchmark {
+
+    private static final int ECHO_PORT = 5601;
+    private static final int SINK_PORT = 5602;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    @Param( { "1", "2" } )
+    public int ioLoops;
+
+    @Param( { "false", "true" } )
+    public boolean inlineIO;
+
+    @Param( { "64", "1024", "16384" } )
+    public int messageSize;
+
+    private NetworkingEngine engine;
+    private TCPListener      echoListener;
+    private TCPListener      sinkListener;
+    private TCPOutboundPipe  echoPipe;
+    private TCPOutboundPipe  sinkPipe;
+    private ByteBuffer       message;
+
+
+    @Setup( Level.Trial )
+    public void setup() {
+        engine       = engine( threads, ioLoops, inlineIO );
+        echoListener = listener( engine, ECHO_PORT, BenchmarkSupport::echo );
+        sinkListener = listener( engine, SINK_PORT, BenchmarkSupport::sink );
+        echoPipe     = connect( engine, ECHO_PORT );
+        sinkPipe     = connect( engine, SINK_PORT );
+        message      = message( messageSize );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void teardown() {
+        echoPipe.close();
+        sinkPipe.close();
+        echoListener.close();
+        sinkListener.close();
+        engine.shutdown();
+    }
+
+
+    /**
+     * Writes a message and reads back its echo.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.SampleTime )
+    @OutputTimeUnit( TimeUnit.MICROSECONDS )
+    public void roundTrip() {
+        message.rewind();
+        var writeOutcome = echoPipe.write( message );
+        if( !writeOutcome.ok() ) throw new IllegalStateException( "Problem writing: " + writeOutcome.msg() );
+        readFully( echoPipe, messageSize );
+    }
+
+
+    /**
+     * Writes a message to a server that discards it; multiply the operations per second by the message size for bytes per second.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public void bulkWrite() {
+        message.rewind();
+        var writeOutcome = sinkPipe.write( message );
+        if( !writeOutcome.ok() ) throw new IllegalStateException( "Problem writing: " + writeOutcome.msg() );
+    }
+}
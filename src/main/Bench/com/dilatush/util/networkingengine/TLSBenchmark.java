@@ -0,0 +1,209 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.feed.InFeed;
+import org.openjdk.jmh.annotations.*;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.dilatush.util.networkingengine.BenchmarkSupport.*;
+
+/**
+ * Benchmarks of TLS (through {@link TLSPipe}) over the loopback interface: the round-trip latency of a message echoed by the server, and the throughput of messages written to a
+ * server that discards them.  These are the same measurements as {@link TCPBenchmark} makes, so the two together show what the encryption costs.  The server's certificate is
+ * a self-signed one for {@code localhost}, made with the JDK's {@code keytool} when the trial is set up, and the client checks the server's host name against it.  Both are
+ * parameterized by the number of threads in the engine's executor, the number of I/O loops, whether I/O is done inline in the I/O loops, and the message size.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class TLSBenchmark {
+
+    private static final int    ECHO_PORT = 5605;
+    private static final int    SINK_PORT = 5606;
+    private static final String HOST_NAME = "localhost";
+    private static final char[] PASSWORD  = "benchmark".toCharArray();
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    @Param( { "1", "2" } )
+    public int ioLoops;
+
+    @Param( { "false", "true" } )
+    public boolean inlineIO;
+
+    @Param( { "64", "1024", "16384" } )
+    public int messageSize;
+
+    private NetworkingEngine engine;
+    private TCPListener      echoListener;
+    private TCPListener      sinkListener;
+    private TLSPipe          echoPipe;
+    private TLSPipe          sinkPipe;
+    private ByteBuffer       message;
+
+
+    @Setup( Level.Trial )
+    public void setup() throws Exception {
+
+        // make the key material for both sides...
+        var keystore      = selfSigned();
+        var serverContext = context( keystore, true );
+        var clientContext = context( keystore, false );
+        Files.delete( keystore );
+
+        engine       = engine( threads, ioLoops, inlineIO );
+        echoListener = listener( engine, ECHO_PORT, (pipe) -> accept( pipe, serverContext, TLSBenchmark::echo ) );
+        sinkListener = listener( engine, SINK_PORT, (pipe) -> accept( pipe, serverContext, TLSBenchmark::sink ) );
+        echoPipe     = connect( engine, ECHO_PORT, clientContext );
+        sinkPipe     = connect( engine, SINK_PORT, clientContext );
+        message      = message( messageSize );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void teardown() {
+        echoPipe.close();
+        sinkPipe.close();
+        echoListener.close();
+        sinkListener.close();
+        engine.shutdown();
+    }
+
+
+    /**
+     * Writes a message and reads back its echo.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.SampleTime )
+    @OutputTimeUnit( TimeUnit.MICROSECONDS )
+    public void roundTrip() {
+        message.rewind();
+        var writeOutcome = echoPipe.write( message );
+        if( !writeOutcome.ok() ) throw new IllegalStateException( "Problem writing: " + writeOutcome.msg() );
+        var remaining = messageSize;
+        while( remaining > 0 ) {
+            var readOutcome = echoPipe.read( 1, Math.min( remaining, InFeed.MAX_READ_BYTES ) );
+            if( !readOutcome.ok() ) throw new IllegalStateException( "Problem reading: " + readOutcome.msg() );
+            remaining -= readOutcome.info().remaining();
+            echoPipe.release( readOutcome.info() );
+        }
+    }
+
+
+    /**
+     * Writes a message to a server that discards it; multiply the operations per second by the message size for bytes per second.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public void bulkWrite() {
+        message.rewind();
+        var writeOutcome = sinkPipe.write( message );
+        if( !writeOutcome.ok() ) throw new IllegalStateException( "Problem writing: " + writeOutcome.msg() );
+    }
+
+
+    // starts TLS on an accepted pipe, then hands it to the given server once the handshake is done...
+    private static void accept( final TCPPipe _pipe, final SSLContext _context, final Consumer<TLSPipe> _server ) {
+
+        var tlsOutcome = TLSPipe.getNewInstance( noDelay( _pipe ), _context, false );
+        if( !tlsOutcome.ok() ) {
+            _pipe.close();
+            return;
+        }
+        var tls = tlsOutcome.info();
+        tls.handshake( (handshakeOutcome) -> { if( handshakeOutcome.ok() ) _server.accept( tls ); else tls.close(); } );
+    }
+
+
+    // returns a TLS pipe, connected to the given loopback port and handshaken...
+    private static TLSPipe connect( final NetworkingEngine _engine, final int _port, final SSLContext _context ) {
+
+        var tlsOutcome = TLSPipe.getNewClientInstance( noDelay( BenchmarkSupport.connect( _engine, _port ) ), _context, HOST_NAME );
+        if( !tlsOutcome.ok() ) throw new IllegalStateException( "Problem creating TLSPipe: " + tlsOutcome.msg() );
+        var tls = tlsOutcome.info();
+        var handshakeOutcome = tls.handshake();
+        if( !handshakeOutcome.ok() ) throw new IllegalStateException( "Problem with handshake: " + handshakeOutcome.msg() );
+        return tls;
+    }
+
+
+    // turns off Nagle's algorithm on the given pipe; otherwise a message sent as more than one record waits for the peer's delayed ACK (about 40ms) before its last record...
+    private static <T extends TCPPipe> T noDelay( final T _pipe ) {
+        var optionOutcome = _pipe.setOption( StandardSocketOptions.TCP_NODELAY, true );
+        if( !optionOutcome.ok() ) throw new IllegalStateException( "Problem setting TCP_NODELAY: " + optionOutcome.msg() );
+        return _pipe;
+    }
+
+
+    // echoes everything read from the given TLS pipe back to it, until a read or write fails...
+    private static void echo( final TLSPipe _tls ) {
+
+        _tls.read( 1, InFeed.MAX_READ_BYTES, (readOutcome) -> {
+            if( !readOutcome.ok() ) {
+                _tls.close();
+                return;
+            }
+            var buffer = readOutcome.info();
+            _tls.write( buffer, (writeOutcome) -> {
+                _tls.release( buffer );
+                if( writeOutcome.ok() ) echo( _tls ); else _tls.close();
+            } );
+        } );
+    }
+
+
+    // reads and discards everything read from the given TLS pipe, until the stream ends...
+    private static void sink( final TLSPipe _tls ) {
+
+        _tls.stream( InFeed.MAX_READ_BYTES, (readOutcome) -> {
+            if( readOutcome.ok() ) _tls.release( readOutcome.info() ); else _tls.close();
+        } );
+    }
+
+
+    // makes a keystore with a self-signed certificate for our host name, using the JDK's keytool...
+    private static Path selfSigned() throws Exception {
+
+        var keystore = Files.createTempFile( "tls", ".p12" );
+        Files.delete( keystore );
+        var keytool = Path.of( System.getProperty( "java.home" ), "bin", "keytool" ).toString();
+        var process = new ProcessBuilder( keytool, "-genkeypair", "-alias", "benchmark", "-keyalg", "EC", "-dname", "CN=" + HOST_NAME, "-ext", "SAN=dns:" + HOST_NAME,
+                "-validity", "1", "-storetype", "PKCS12", "-keystore", keystore.toString(), "-storepass", new String( PASSWORD ) ).inheritIO().start();
+        if( process.waitFor() != 0 ) throw new IllegalStateException( "keytool failed" );
+        return keystore;
+    }
+
+
+    // returns a context for the server (with the key) or the client (trusting the certificate) side...
+    private static SSLContext context( final Path _keystore, final boolean _server ) throws Exception {
+
+        var store = KeyStore.getInstance( "PKCS12" );
+        try( var in = Files.newInputStream( _keystore ) ) {
+            store.load( in, PASSWORD );
+        }
+        var context = SSLContext.getInstance( "TLS" );
+        if( _server ) {
+            var kmf = KeyManagerFactory.getInstance( KeyManagerFactory.getDefaultAlgorithm() );
+            kmf.init( store, PASSWORD );
+            context.init( kmf.getKeyManagers(), null, null );
+        }
+        else {
+            var tmf = TrustManagerFactory.getInstance( TrustManagerFactory.getDefaultAlgorithm() );
+            tmf.init( store );
+            context.init( null, tmf.getTrustManagers(), null );
+        }
+        return context;
+    }
+}
@@ -0,0 +1,92 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.ip.IPv4Address;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static com.dilatush.util.networkingengine.BenchmarkSupport.*;
+
+/**
+ * Benchmark of the rate of datagram round trips between a {@link UDPClient} and an echoing {@link UDPServer} over the loopback interface, parameterized by the number of threads
+ * in the engine's executor, the number of I/O loops, whether I/O is done inline in the I/O loops, and the datagram size.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class UDPBenchmark {
+
+    private static final int PORT               = 5604;
+    private static final int MAX_DATAGRAM_BYTES = 2048;
+
+    @Param( { "1", "4" } )
+    public int threads;
+
+    @Param( { "1", "2" } )
+    public int ioLoops;
+
+    @Param( { "false", "true" } )
+    public boolean inlineIO;
+
+    @Param( { "64", "1024" } )
+    public int messageSize;
+
+    private NetworkingEngine engine;
+    private UDPServer        server;
+    private UDPClient        client;
+    private ByteBuffer       message;
+
+
+    @Setup( Level.Trial )
+    public void setup() {
+
+        engine = engine( threads, ioLoops, inlineIO );
+
+        var serverOutcome = UDPServer.getNewInstance( engine, IPv4Address.LOOPBACK, PORT, this::onDatagram, MAX_DATAGRAM_BYTES, null, null );
+        if( !serverOutcome.ok() ) throw new IllegalStateException( "Problem creating UDPServer: " + serverOutcome.msg() );
+        server = serverOutcome.info();
+
+        var clientOutcome = UDPClient.getNewInstance( engine, IPv4Address.LOOPBACK, PORT, MAX_DATAGRAM_BYTES );
+        if( !clientOutcome.ok() ) throw new IllegalStateException( "Problem creating UDPClient: " + clientOutcome.msg() );
+        client = clientOutcome.info();
+
+        message = message( messageSize );
+    }
+
+
+    @TearDown( Level.Trial )
+    public void teardown() {
+        client.close();
+        server.close();
+        engine.shutdown();
+    }
+
+
+    /**
+     * Echoes a received datagram back to its sender.
+     *
+     * @param _datagram The received datagram.
+     */
+    private void onDatagram( final InboundDatagram _datagram ) {
+        server.send( new OutboundDatagram( _datagram.getData(), _datagram ), (outcome) -> {} );
+    }
+
+
+    /**
+     * Sends a datagram and receives its echo.  A lost datagram fails the benchmark (after one second) rather than hanging it.
+     */
+    @Benchmark
+    @BenchmarkMode( Mode.Throughput )
+    @OutputTimeUnit( TimeUnit.SECONDS )
+    public void roundTrip() {
+        message.rewind();
+        var sendOutcome = client.send( new OutboundDatagram( message, IPv4Address.LOOPBACK, PORT ) );
+        if( !sendOutcome.ok() ) throw new IllegalStateException( "Problem sending: " + sendOutcome.msg() );
+        var receiveOutcome = client.receive( Duration.ofSeconds( 1 ) );
+        if( !receiveOutcome.ok() ) throw new IllegalStateException( "Problem receiving: " + receiveOutcome.msg() );
+        receiveOutcome.info().release();
+    }
+}
@@ -1,15 +1,25 @@
 package com.dilatush.util;
 
 import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -26,6 +36,25 @@ import java.util.logging.Logger;
  * thread.</p>
  * <p>If listeners throw a unhandled exception, the dispatcher within Haps will catch the exception, log a SEVERE error (with stack trace), and then
  * resume working.</p>
+ * <p>By default, not-yet-dispatched Haps are held in an {@link ArrayBlockingQueue}, which takes a lock for every post and every dispatch, and posting to a full queue
+ * throws an {@link IllegalStateException}.  Alternatively (see {@link #Haps(int,ScheduledExecutor,MPSCRing.WaitStrategy,OverflowPolicy,Enum)}), they can be held in a
+ * lock-free {@link MPSCRing}, which greatly reduces contention when many threads post Haps, with a choice of how the dispatcher waits for Haps and of what a post does
+ * when the ring is full (see {@link OverflowPolicy}).  Subscribing and unsubscribing are never dropped; they wait for room if the ring is full.</p>
+ * <p>Optionally (see {@link #Haps(int,ScheduledExecutor,MPSCRing.WaitStrategy,OverflowPolicy,ToIntFunction,Enum)}), Haps may be partitioned into dispatch lanes: each
+ * Hap enum is assigned to a lane, and each lane has its own queue and its own dispatcher thread.  Within a lane everything above still holds (in particular, Haps are
+ * dispatched in the order they were posted), but a slow listener delays only the Haps in its own lane.  Haps in different lanes are dispatched concurrently, so a listener
+ * subscribed to Haps in more than one lane must be thread-safe.</p>
+ * <p>For high-rate Haps, {@link #postAll(Enum,Collection)} posts a whole batch of Haps of one type at once, taking a single slot in the queue, and
+ * {@link #subscribeBatch(Enum,Consumer)} subscribes a listener that receives, in one call, the data of all the consecutive Haps of its type that the dispatcher finds
+ * already queued (including whole batches).  Other listeners still receive those Haps one at a time, in order.</p>
+ * <p>Instrumentation is off by default, and costs nothing but a volatile read per post and per dispatch while off.  When enabled (see
+ * {@link #enableInstrumentation(Duration)}), it measures how long Haps wait in the queue, how long each listener takes, post rates, and the queue high-water mark (see
+ * {@link HapsMetrics}), and logs a warning for any listener call that takes longer than the slow-listener threshold.  The cost while enabled is a {@link System#nanoTime()}
+ * call at each post and at each dispatch, one more after each listener call, and the loss of the reuse of no-data Haps (as each post must be timestamped).</p>
+ * <p>Each Hap enum may have a delivery policy (see {@link #setDeliveryPolicy(Enum,DeliveryPolicy)}) for Haps where only the latest data matters, such as readings or
+ * states posted at a high rate: {@link DeliveryPolicy#coalesce()} keeps only the newest not-yet-dispatched data, {@link DeliveryPolicy#throttle(int)} also limits
+ * deliveries to a maximum rate, and {@link DeliveryPolicy#debounce(Duration)} delivers the newest data only once posts have stopped for a while.  A Hap enum with a
+ * delivery policy never has more than one entry in its queue, however fast it is posted, and its latest data is never dropped by the overflow policy.</p>
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
@@ -35,11 +64,26 @@ public final class Haps<E extends Enum<E>> {
     // our logger...
     final static private Logger LOGGER = Logger.getLogger( new Object(){}.getClass().getEnclosingClass().getCanonicalName() );
 
+    // the most Haps the dispatcher gathers into one run for batch listeners...
+    private static final int MAX_RUN = 1024;
+
     // the dispatch table with lists of subscribers, indexed by enum ordinal...
     private final List<List<HapsData<E>>>      dispatch;
 
-    // the queue of not-yet-dispatched Haps...
-    private final ArrayBlockingQueue<Hap<E>>   queue;
+    // the queues of not-yet-dispatched Haps, one per dispatch lane...
+    private final List<HapQueue<E>>            lanes;
+
+    // the dispatch lane of each Hap, indexed by enum ordinal...
+    private final int[]                        laneOf;
+
+    // the number of Haps dropped because the queue was full...
+    private final LongAdder                    dropped;
+
+    // our instrumentation, or null if it is disabled...
+    private volatile HapsMetrics<E>            metrics;
+
+    // the delivery of each Hap with a delivery policy (otherwise null), indexed by enum ordinal...
+    private final AtomicReferenceArray<Delivery<E>> deliveries;
 
     // our cache of reusable Haps (those with no data)...
     private final List<Hap<E>>                 hapCache;
@@ -63,32 +107,90 @@ public final class Haps<E extends Enum<E>> {
      * @param _sample The sample Hap enum.
      */
     public Haps( final int _maxQueue, final ScheduledExecutor _scheduler, final E _sample ) {
+        this( _maxQueue, _scheduler, null, null, _sample );
+    }
+
+
+    /**
+     * Create a new instance of this class exactly as {@link #Haps(int,ScheduledExecutor,Enum)} does, except that if the given wait strategy is not {@code null}, the
+     * not-yet-dispatched Haps are held in a lock-free {@link MPSCRing} (with a capacity of the given maximum queue size, rounded up to a power of two) instead of an
+     * {@link ArrayBlockingQueue}.  The dispatcher waits for Haps according to the given wait strategy, and a post to a full ring does what the given overflow policy says.
+     *
+     * @param _maxQueue The maximum size for the queue of not-yet-dispatched Haps.
+     * @param _scheduler The {@link ScheduledExecutor} instance to use for scheduling Haps.
+     * @param _waitStrategy The wait strategy for the ring, or {@code null} to use an {@link ArrayBlockingQueue} instead.
+     * @param _overflowPolicy What a post to a full ring does; required if the wait strategy is not {@code null}.
+     * @param _sample The sample Hap enum.
+     */
+    public Haps( final int _maxQueue, final ScheduledExecutor _scheduler, final MPSCRing.WaitStrategy _waitStrategy, final OverflowPolicy _overflowPolicy,
+                 final E _sample ) {
+        this( _maxQueue, _scheduler, _waitStrategy, _overflowPolicy, null, _sample );
+    }
+
+
+    /**
+     * Create a new instance of this class exactly as {@link #Haps(int,ScheduledExecutor,MPSCRing.WaitStrategy,OverflowPolicy,Enum)} does, except that if the given lane
+     * function is not {@code null}, Haps are partitioned into dispatch lanes, each with its own queue (of the given maximum size) and dispatcher thread.  The lane function
+     * returns the lane (from zero) for each Hap enum; the number of lanes is one more than the largest lane it returns.  For instance, to dispatch one slow Hap in a lane of
+     * its own: {@code (hap) -> (hap == MyHaps.SLOW) ? 1 : 0}.
+     *
+     * @param _maxQueue The maximum size for each queue of not-yet-dispatched Haps.
+     * @param _scheduler The {@link ScheduledExecutor} instance to use for scheduling Haps.
+     * @param _waitStrategy The wait strategy for the rings, or {@code null} to use {@link ArrayBlockingQueue}s instead.
+     * @param _overflowPolicy What a post to a full ring does; required if the wait strategy is not {@code null}.
+     * @param _lanes The function returning the dispatch lane for each Hap enum, or {@code null} for a single lane.
+     * @param _sample The sample Hap enum.
+     */
+    public Haps( final int _maxQueue, final ScheduledExecutor _scheduler, final MPSCRing.WaitStrategy _waitStrategy, final OverflowPolicy _overflowPolicy,
+                 final ToIntFunction<E> _lanes, final E _sample ) {
 
         // fail fast if we're missing important stuff...
         if( _maxQueue < 10 )
             throw new IllegalArgumentException( "Invalid maximum queue size; must be at least 10" );
         if( _sample == null )
             throw new IllegalArgumentException( "Missing sample Hap enum" );
+        if( (_waitStrategy != null) && (_overflowPolicy == null) )
+            throw new IllegalArgumentException( "Missing overflow policy" );
 
-        // initialize our dispatch lists...
+        // initialize our dispatch lists (copy-on-write, as with the caller-runs overflow policy, posting threads may dispatch)...
         haps = getHapEnums( _sample );
         dispatch = new ArrayList<>( haps.size() );
         haps.forEach( (hapEnum) -> {
-            dispatch.add( new ArrayList<>( 25 ) );  // add an array pre-sized for 10 subscribers (almost always plenty, but will resize if needed)...
+            dispatch.add( new CopyOnWriteArrayList<>() );
         } );
 
         // build our cache of no-data Haps...
         hapCache = new ArrayList<>( haps.size() );
         haps.forEach( ( hapEnum) -> hapCache.add( new Hap<>( hapEnum, null ) ) );
+        deliveries = new AtomicReferenceArray<>( haps.size() );
+
+        // assign each Hap to its dispatch lane...
+        laneOf = new int[haps.size()];
+        int laneCount = 1;
+        if( _lanes != null ) {
+            for( E hapEnum : haps ) {
+                int lane = _lanes.applyAsInt( hapEnum );
+                if( lane < 0 )
+                    throw new IllegalArgumentException( "Invalid dispatch lane for " + hapEnum + ": " + lane );
+                laneOf[hapEnum.ordinal()] = lane;
+                laneCount = java.lang.Math.max( laneCount, lane + 1 );
+            }
+        }
 
-        // set up our Hap queue...
-        queue = new ArrayBlockingQueue<>( _maxQueue );
+        // set up our Hap queues, one per lane...
+        dropped = new LongAdder();
+        lanes = new ArrayList<>( laneCount );
+        for( int i = 0; i < laneCount; i++ )
+            lanes.add( (_waitStrategy == null)
+                    ? new BlockingHapQueue<>( _maxQueue )
+                    : new RingHapQueue( new MPSCRing<>( _maxQueue, _waitStrategy ), _overflowPolicy ) );
 
         // set up our scheduler...
         scheduler = _scheduler;
 
-        // start up our executor and get our dispatcher going...
-        new ExecutorService( 1 ).submit( this::dispatcher );
+        // start up our executor and get a dispatcher going for each lane...
+        var executor = new ExecutorService( laneCount );
+        lanes.forEach( (lane) -> executor.submit( () -> dispatcher( lane ) ) );
     }
 
 
@@ -131,7 +233,145 @@ public final class Haps<E extends Enum<E>> {
      * @param _data The optional data associated with the Hap ({@code null} if none).
      */
     public void post( final E _hapEnum, final Object _data ) {
-        queue.add( getHap( _hapEnum, _data ) );
+        var queue = queueFor( _hapEnum );
+        if( !delivered( _hapEnum, _data, 1 ) )
+            queue.add( getHap( _hapEnum, _data ) );
+    }
+
+
+    /**
+     * Post a batch of Haps of the given type, one for each of the given data (any of which may be {@code null}), which will be dispatched to all listeners subscribed
+     * to this Hap, in the order of the collection.  The batch is enqueued atomically, as a single entry in the queue of not-yet-dispatched Haps: no other Hap is
+     * dispatched in the middle of it, and if the queue is full, the whole batch is handled according to the overflow policy.  Posting an empty collection does
+     * nothing.  If the Hap has a delivery policy, only the last of the data is posted.
+     *
+     * @param _hapEnum The enum for the Haps to be posted.
+     * @param _data The data associated with each of the Haps.
+     */
+    public void postAll( final E _hapEnum, final Collection<?> _data ) {
+
+        if( _data == null )
+            throw new IllegalArgumentException( "Missing data" );
+
+        var queue = queueFor( _hapEnum );
+        if( _data.isEmpty() )
+            return;
+
+        var data = _data.toArray();
+        if( delivered( _hapEnum, data[data.length - 1], data.length ) )
+            return;
+
+        var metrics = this.metrics;
+        if( metrics != null )
+            metrics.recordPost( _hapEnum, _data.size() );
+        queue.add( new Hap<>( _hapEnum, null, data, (metrics == null) ? 0 : System.nanoTime() ) );
+    }
+
+
+    /**
+     * Sets the delivery policy for the given Hap, replacing any it already had; {@code null} removes the delivery policy, so that each post is dispatched.  Data posted
+     * under a replaced delivery policy but not yet delivered is still delivered as that policy would have.
+     *
+     * @param _hapEnum The Hap to set the delivery policy for.
+     * @param _policy The delivery policy, or {@code null} for none.
+     * @throws IllegalStateException if the delivery policy needs scheduling, and scheduling is not enabled
+     */
+    public void setDeliveryPolicy( final E _hapEnum, final DeliveryPolicy _policy ) {
+
+        var queue = queueFor( _hapEnum );
+        if( (_policy != null) && (_policy.kind != DeliveryPolicy.Kind.COALESCE) && (scheduler == null) )
+            throw new IllegalStateException( "Scheduling Haps is disabled" );
+
+        deliveries.set( _hapEnum.ordinal(), (_policy == null) ? null : new Delivery<>( _hapEnum, _policy, queue, scheduler ) );
+    }
+
+
+    /**
+     * If the given Hap has a delivery policy, post the given data according to it.
+     *
+     * @param _hapEnum The enum for the Hap to be posted.
+     * @param _data The optional data associated with the Hap ({@code null} if none).
+     * @param _count The number of Haps being posted (for instrumentation).
+     * @return {@code true} if the Hap has a delivery policy (and so has been posted), or {@code false} if it must be posted normally.
+     */
+    private boolean delivered( final E _hapEnum, final Object _data, final int _count ) {
+
+        var delivery = deliveries.get( _hapEnum.ordinal() );
+        if( delivery == null )
+            return false;
+
+        var metrics = this.metrics;
+        if( metrics != null )
+            metrics.recordPost( _hapEnum, _count );
+        delivery.post( _data );
+        return true;
+    }
+
+
+    /**
+     * Enable instrumentation, discarding any already recorded, with the given slow-listener threshold: any listener call that takes at least that long is logged as a
+     * warning (and counted).  Haps posted before instrumentation was enabled aren't included in the queue wait times.
+     *
+     * @param _slowListenerThreshold The slow-listener threshold, or {@code null} to warn of no slow listeners.
+     */
+    public void enableInstrumentation( final Duration _slowListenerThreshold ) {
+
+        if( (_slowListenerThreshold != null) && (_slowListenerThreshold.isNegative() || _slowListenerThreshold.isZero()) )
+            throw new IllegalArgumentException( "Slow listener threshold is invalid: " + _slowListenerThreshold );
+
+        dispatch.forEach( (subscribers) -> subscribers.forEach( (data) -> data.times.reset() ) );
+        metrics = new HapsMetrics<>( haps, _slowListenerThreshold, this::getListenerTimings );
+    }
+
+
+    /**
+     * Disable instrumentation.
+     */
+    public void disableInstrumentation() {
+        metrics = null;
+    }
+
+
+    /**
+     * Returns the instrumentation recorded since it was enabled, or {@code null} if it is disabled.
+     *
+     * @return The instrumentation, or {@code null} if it is disabled.
+     */
+    public HapsMetrics<E> getMetrics() {
+        return metrics;
+    }
+
+
+    /**
+     * Returns the timing of each current listener.
+     *
+     * @return The timing of each current listener.
+     */
+    private List<HapsMetrics.ListenerTiming<E>> getListenerTimings() {
+        List<HapsMetrics.ListenerTiming<E>> result = new ArrayList<>();
+        dispatch.forEach( (subscribers) -> subscribers.forEach( (data) ->
+                result.add( new HapsMetrics.ListenerTiming<>( data.hapEnum, data.listener, data.times ) ) ) );
+        return result;
+    }
+
+
+    /**
+     * Returns the number of dispatch lanes (one unless partitioned dispatch was configured).
+     *
+     * @return The number of dispatch lanes.
+     */
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+
+    /**
+     * Returns the number of Haps dropped (by the {@link OverflowPolicy#DROP_OLDEST} or {@link OverflowPolicy#DROP_NEWEST} overflow policies) because the queue was full.
+     *
+     * @return The number of Haps dropped.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
     }
 
 
@@ -141,7 +381,9 @@ public final class Haps<E extends Enum<E>> {
      * @param _hapEnum The enum for the Hap to be posted.
      */
     public void post( final E _hapEnum ) {
-        queue.add( getHap( _hapEnum ) );
+        var queue = queueFor( _hapEnum );
+        if( !delivered( _hapEnum, null, 1 ) )
+            queue.add( getHap( _hapEnum ) );
     }
 
 
@@ -172,6 +414,21 @@ public final class Haps<E extends Enum<E>> {
     }
 
 
+    /**
+     * Subscribe to the given Hap with a listener that receives the associated data of a run of Haps in one call: all the consecutive Haps of this type (to a
+     * limit of about a thousand) that the dispatcher finds already queued, including whole batches posted with {@link #postAll(Enum,Collection)}.  The listener is called once
+     * per run, after the run's Haps have been dispatched to the other listeners.  The list it receives is read-only, and valid only during the call; copy it to keep
+     * it.  This kind of subscription is most useful for high-rate Haps, where the overhead of handling each Hap individually matters.
+     *
+     * @param _hapEnum The Hap to subscribe to.
+     * @param _listener The {@code Consumer<List<Object>>} that listens for runs of the given Hap.
+     * @return an opaque object (a handle) that must be used if unsubscribing from this subscription
+     */
+    public Object subscribeBatch( final E _hapEnum, final Consumer<List<Object>> _listener ) {
+        return subscribeImpl( SubscriptionType.BATCH, _hapEnum, _listener );
+    }
+
+
     /**
      * Subscribe to the given Hap with a listener that receives just the Hap (and not its associated data), for any number of different Hap enums.  If
      * no Hap enums are specified, then <i>all</i> Hap enums are subscribed to.  Note that the Hap enum argument is the <i>last</i> argument, not the
@@ -245,7 +502,7 @@ public final class Haps<E extends Enum<E>> {
         HapsData<E> data = new HapsData<>( HapsAction.SUBSCRIBE, _subscriptionType, _hapEnum, _listener );
 
         // post our system event...
-        queue.add( getSystemHap( data ) );
+        queueFor( _hapEnum ).addSystem( getSystemHap( data ) );
 
         // return the subscribe data to the user as an opaque handle to use when unsubscribing...
         return data;
@@ -267,7 +524,7 @@ public final class Haps<E extends Enum<E>> {
         HapsData<E> data = cast( _handle );
 
         // post our system event...
-        queue.add( getSystemHap( data.toUnsubscribe() ) );
+        queueFor( data.hapEnum ).addSystem( getSystemHap( data.toUnsubscribe() ) );
     }
 
 
@@ -467,28 +724,55 @@ public final class Haps<E extends Enum<E>> {
     }
 
 
-        /**
-         * The {@link Runnable} functional implementation that runs in this class' {@link ExecutorService}.  It blocks until a {@link Hap} is available
-         * in the queue, then removes that Hap and handles it.  System Haps are detected by their null Hap enum value; they are handled separately.  All
-         * other Haps are dispatched to all their listeners.
-         */
-    private void dispatcher() {
+    /**
+     * The {@link Runnable} functional implementation that runs in this class' {@link ExecutorService}, once for each dispatch lane.  It blocks until a {@link Hap}
+     * is available in the given lane's queue, then removes that Hap and handles it.  System Haps are detected by their null Hap enum value; they are handled
+     * separately.  All other Haps are gathered into a run with any consecutive Haps of the same type already in the queue, and the run is dispatched to all their
+     * listeners.
+     *
+     * @param _queue The queue of the dispatch lane to dispatch.
+     */
+    private void dispatcher( final HapQueue<E> _queue ) {
+
+        List<Object> run = new ArrayList<>();
+        Hap<E> next = null;
 
         try {
 
             // hopefully we stay in this loop forever...
             while( !Thread.currentThread().isInterrupted() ) {
 
-                // wait for something to show up on our queue...
-                Hap<E> hap = queue.take();
+                // wait for something to show up on our queue, unless we already took the next Hap while gathering the last run...
+                Hap<E> hap = (next != null) ? next : _queue.take();
+                next = null;
 
                 // if it's a system Hap, handle it...
                 if( hap.hap == null )
                     handleSystemHap( hap );
 
-                // otherwise, dispatch it...
-                else
-                    handleNormalHap( hap );
+                // otherwise, gather the run of Haps of this type that are already queued, and dispatch it...
+                else {
+                    var metrics = this.metrics;
+                    long start = 0;
+                    if( metrics != null ) {
+                        start = System.nanoTime();
+                        metrics.recordDepth( _queue.size() + 1 );
+                    }
+                    run.clear();
+                    while( true ) {
+                        hap.addTo( run );
+                        if( (metrics != null) && (hap.posted != 0) )
+                            metrics.recordQueueWait( start - hap.posted );
+                        if( run.size() >= MAX_RUN )
+                            break;
+                        next = _queue.poll();
+                        if( (next == null) || (next.hap != hap.hap) )
+                            break;
+                        hap = next;
+                        next = null;
+                    }
+                    dispatchRun( hap.hap, run, metrics, start );
+                }
             }
         }
         catch( InterruptedException _e ) {
@@ -498,40 +782,107 @@ public final class Haps<E extends Enum<E>> {
 
 
     /**
-     * <p>Handles the dispatching of a normal Hap to its listeners.  This method looks up the list of {@link HapsData} records for the given Hap in the
-     * dispatch table; each of those records describes a subscriber (including the listener).  Each listener on that list is called.  The kind of
-     * listener depends on the type of subscription, which is described by the subscription type field in the HapsData record.  This method does
-     * an unchecked cast of the listener to the correct type, based on that subscription type.  Any changes to this logic must be done with great
-     * care to ensure the integrity of this little "trick".</p>
+     * Handles the dispatching of a normal Hap (or batch of Haps) to its listeners, outside of the dispatcher.
+     *
+     * @param _hap The normal Hap to handle.
+     */
+    private void handleNormalHap( final Hap<E> _hap ) {
+        List<Object> run = new ArrayList<>( _hap.size() );
+        _hap.addTo( run );
+        var metrics = this.metrics;
+        dispatchRun( _hap.hap, run, metrics, (metrics == null) ? 0 : System.nanoTime() );
+    }
+
+
+    /**
+     * <p>Handles the dispatching of a run of normal Haps of the same type to their listeners.  This method looks up the list of {@link HapsData} records for the
+     * given Hap in the dispatch table; each of those records describes a subscriber (including the listener).  For each Hap in the run, in order, each listener on
+     * that list is called, except for batch listeners; then each batch listener is called once with the data of the whole run.  The kind of listener depends on the
+     * type of subscription, which is described by the subscription type field in the HapsData record.  This method does an unchecked cast of the listener to the
+     * correct type, based on that subscription type.  Any changes to this logic must be done with great care to ensure the integrity of this little "trick".</p>
      * <p>Any unhandled exceptions thrown by listeners are caught, logged, and otherwise ignored.</p>
+     * <p>If instrumentation is enabled, each listener call is timed, from the end of the one before it (or the start of the run).</p>
      *
-     * @param hap The normal Hap to handle.
+     * @param _hapEnum The type of the Haps in the run.
+     * @param _run The associated data of each Hap in the run.
+     * @param _metrics The instrumentation, or {@code null} if it is disabled.
+     * @param _start When the dispatch of the run started, from {@link System#nanoTime()}, if instrumentation is enabled.
      */
     @SuppressWarnings( "unchecked" )
-    private void handleNormalHap( final Hap<E> hap ) {
-
-        try {
-            // for each of our subscribers...
-            dispatch.get( hap.hap.ordinal() ).forEach( (data) -> {
-
-                // be very, very careful if modifying this - we're making unchecked casts based on the value of the enum we stored in the
-                // subscribe method - if this gets messed up, things will go south in a hurry...
-                switch( data.subscriptionType ) {
-                    case ACTION:  ((Runnable)              data.listener).run();                       break;
-                    case HAP:     ((Consumer<E>)           data.listener).accept( hap.hap );           break;
-                    case DATA:    ((Consumer<Object>)      data.listener).accept( hap.data );          break;
-                    case HAPDATA: ((BiConsumer<E, Object>) data.listener).accept( hap.hap, hap.data ); break;
+    private void dispatchRun( final E _hapEnum, final List<Object> _run, final HapsMetrics<E> _metrics, final long _start ) {
+
+        List<HapsData<E>> subscribers = dispatch.get( _hapEnum.ordinal() );
+        boolean hasBatch = false;
+        long time = _start;
+
+        for( Object hapData : _run ) {
+
+            try {
+                // for each of our subscribers...
+                for( HapsData<E> data : subscribers ) {
+
+                    // be very, very careful if modifying this - we're making unchecked casts based on the value of the enum we stored in the
+                    // subscribe method - if this gets messed up, things will go south in a hurry...
+                    switch( data.subscriptionType ) {
+                        case ACTION:  ((Runnable)              data.listener).run();                       break;
+                        case HAP:     ((Consumer<E>)           data.listener).accept( _hapEnum );          break;
+                        case DATA:    ((Consumer<Object>)      data.listener).accept( hapData );           break;
+                        case HAPDATA: ((BiConsumer<E, Object>) data.listener).accept( _hapEnum, hapData ); break;
+                        case BATCH:   hasBatch = true;                                                      continue;
+                    }
+                    if( _metrics != null )
+                        time = timeListener( _metrics, data, time );
                 }
-            } );
+            }
+
+            // we catch every exception here, log it, and then keep on going...
+            catch( Exception _exception ) {
+                LOGGER.log( Level.SEVERE, "Unhandled exception in Hap listener", _exception );
+                if( _metrics != null )
+                    time = System.nanoTime();
+            }
         }
 
-        // we catch every exception here, log it, and then keep on going...
-        catch( Exception _exception ) {
-            LOGGER.log( Level.SEVERE, "Unhandled exception in Hap listener", _exception );
+        // if we have any batch listeners, give them the whole run...
+        if( !hasBatch )
+            return;
+        List<Object> run = Collections.unmodifiableList( _run );
+        for( HapsData<E> data : subscribers ) {
+            if( data.subscriptionType != SubscriptionType.BATCH )
+                continue;
+            try {
+                ((Consumer<List<Object>>) data.listener).accept( run );
+                if( _metrics != null )
+                    time = timeListener( _metrics, data, time );
+            }
+            catch( Exception _exception ) {
+                LOGGER.log( Level.SEVERE, "Unhandled exception in Hap listener", _exception );
+                if( _metrics != null )
+                    time = System.nanoTime();
+            }
         }
     }
 
 
+    /**
+     * Records the execution time of a listener call that started at the given time and just ended, warning if it was slow.
+     *
+     * @param _metrics The instrumentation.
+     * @param _data The subscription of the listener.
+     * @param _start When the listener call started, from {@link System#nanoTime()}.
+     * @return When the listener call ended, from {@link System#nanoTime()}.
+     */
+    private long timeListener( final HapsMetrics<E> _metrics, final HapsData<E> _data, final long _start ) {
+
+        long now = System.nanoTime();
+        long nanos = now - _start;
+        _data.times.record( nanos );
+        if( _metrics.isSlow( nanos ) )
+            LOGGER.warning( "Slow listener for Hap " + _data.hapEnum + ": " + (nanos / 1000) + " microseconds (" + _data.listener + ")" );
+        return now;
+    }
+
+
     /**
      * Handle a system Hap, for subscribing or unsubscribing.
      *
@@ -572,6 +923,457 @@ public final class Haps<E extends Enum<E>> {
     }
 
 
+    /**
+     * Returns the queue of the dispatch lane of the given Hap enum.
+     *
+     * @param _hapEnum The Hap enum.
+     * @return The queue of the Hap's dispatch lane.
+     */
+    private HapQueue<E> queueFor( final E _hapEnum ) {
+        if( _hapEnum == null )
+            throw new IllegalArgumentException( "Missing Hap enum" );
+        return lanes.get( laneOf[_hapEnum.ordinal()] );
+    }
+
+
+    /**
+     * What a post does when the ring holding not-yet-dispatched Haps is full.
+     */
+    public enum OverflowPolicy {
+
+        /** Wait (according to the ring's wait strategy) until there is room. */
+        BLOCK,
+
+        /** Discard the oldest not-yet-dispatched Hap to make room. */
+        DROP_OLDEST,
+
+        /** Discard the Hap being posted. */
+        DROP_NEWEST,
+
+        /** Dispatch the Hap being posted immediately, in the posting thread.  Such Haps are dispatched out of order, and concurrently with the dispatcher, so listeners
+         *  must be thread-safe. */
+        CALLER_RUNS
+    }
+
+
+    /**
+     * How the Haps of one type are delivered, when only their latest data matters.  Instances are created by the static factory methods.
+     */
+    public static final class DeliveryPolicy {
+
+        private enum Kind { COALESCE, THROTTLE, DEBOUNCE }
+
+        private final Kind kind;
+        private final long nanos;  // the minimum interval between deliveries (throttle), or the quiet period (debounce)...
+
+
+        private DeliveryPolicy( final Kind _kind, final long _nanos ) {
+            kind  = _kind;
+            nanos = _nanos;
+        }
+
+
+        /**
+         * Returns a policy that keeps only the newest not-yet-dispatched data: however many times the Hap is posted before the dispatcher gets to it, its listeners
+         * are called just once, with the data from the latest post.
+         *
+         * @return The coalescing delivery policy.
+         */
+        public static DeliveryPolicy coalesce() {
+            return new DeliveryPolicy( Kind.COALESCE, 0 );
+        }
+
+
+        /**
+         * Returns a policy that coalesces (see {@link #coalesce()}) and also delivers no more than the given number of times per second, evenly spaced.  Posts
+         * arriving faster are held, and the newest of them delivered when the next delivery is due, so the latest data is always delivered eventually.  Requires
+         * scheduling to be enabled.
+         *
+         * @param _perSecond The maximum number of deliveries per second.
+         * @return The throttling delivery policy.
+         */
+        public static DeliveryPolicy throttle( final int _perSecond ) {
+
+            if( _perSecond < 1 )
+                throw new IllegalArgumentException( "Invalid deliveries per second: " + _perSecond );
+            return new DeliveryPolicy( Kind.THROTTLE, 1_000_000_000L / _perSecond );
+        }
+
+
+        /**
+         * Returns a policy that delivers the newest data only once there have been no posts for the given quiet period.  A burst of posts is delivered once, after
+         * the burst; a steady stream of posts closer together than the quiet period is not delivered until it stops.  Requires scheduling to be enabled.
+         *
+         * @param _quiet The quiet period.
+         * @return The debouncing delivery policy.
+         */
+        public static DeliveryPolicy debounce( final Duration _quiet ) {
+
+            if( (_quiet == null) || _quiet.isNegative() || _quiet.isZero() )
+                throw new IllegalArgumentException( "Quiet period is null or invalid" );
+            return new DeliveryPolicy( Kind.DEBOUNCE, _quiet.toNanos() );
+        }
+
+
+        @Override
+        public String toString() {
+            return (kind == Kind.COALESCE) ? "coalesce" : kind.name().toLowerCase() + " (" + nanos + "ns)";
+        }
+    }
+
+
+    /**
+     * The delivery of the Haps of one type under a delivery policy.  The newest data not yet dispatched is held as pending, and a single marker entry in the queue
+     * stands for it: the marker is added when data becomes pending, and the dispatcher takes the pending data when it gets to the marker, so there is never more than
+     * one entry in the queue, however fast the Hap is posted.  Throttling and debouncing hold data back (in a timer, on the scheduler) before it becomes pending.
+     */
+    private static final class Delivery<E extends Enum<E>> {
+
+        private static final Object NONE = new Object();  // marks that there is no data, as data may be null...
+
+        private final DeliveryPolicy          policy;
+        private final HapQueue<E>             queue;
+        private final ScheduledExecutor       scheduler;
+        private final Hap<E>                  marker;          // the queue entry standing for the pending data...
+        private final AtomicReference<Object> pending;         // the newest data not yet dispatched, or NONE...
+
+        private Object                        held;            // the newest data held back by a throttle or debounce, or NONE; guarded by this...
+        private long                          lastNanos;       // when data was last delivered (throttle) or posted (debounce); guarded by this...
+        private boolean                       timerScheduled;  // true if a timer will release the held data; guarded by this...
+
+
+        private Delivery( final E _hapEnum, final DeliveryPolicy _policy, final HapQueue<E> _queue, final ScheduledExecutor _scheduler ) {
+            policy    = _policy;
+            queue     = _queue;
+            scheduler = _scheduler;
+            marker    = new Hap<>( _hapEnum, this );
+            pending   = new AtomicReference<>( NONE );
+            held      = NONE;
+            lastNanos = System.nanoTime() - _policy.nanos;
+        }
+
+
+        /**
+         * Posts the given data according to our delivery policy.
+         *
+         * @param _data The data posted.
+         */
+        private void post( final Object _data ) {
+            switch( policy.kind ) {
+                case COALESCE -> release( _data );
+                case THROTTLE -> throttle( _data );
+                case DEBOUNCE -> debounce( _data );
+            }
+        }
+
+
+        /**
+         * Makes the given data pending, adding our marker to the queue if there wasn't already pending data (and so a marker in the queue).
+         *
+         * @param _data The data to make pending.
+         */
+        private void release( final Object _data ) {
+            if( pending.getAndSet( _data ) == NONE )
+                queue.addSystem( marker );
+        }
+
+
+        /**
+         * Takes the pending data, when the dispatcher gets to our marker.
+         *
+         * @return The pending data.
+         */
+        private Object take() {
+            return pending.getAndSet( NONE );
+        }
+
+
+        private void throttle( final Object _data ) {
+
+            long delay;
+            synchronized( this ) {
+
+                // if a delivery is already scheduled, it will deliver this data...
+                if( timerScheduled ) {
+                    held = _data;
+                    return;
+                }
+
+                // if it's too soon to deliver, schedule a delivery for when it's due...
+                long now = System.nanoTime();
+                delay = lastNanos + policy.nanos - now;
+                if( delay > 0 ) {
+                    held = _data;
+                    timerScheduled = true;
+                }
+                else
+                    lastNanos = now;
+            }
+
+            if( delay > 0 )
+                scheduler.schedule( this::releaseHeld, delay, TimeUnit.NANOSECONDS );
+            else
+                release( _data );
+        }
+
+
+        private void releaseHeld() {
+
+            Object data;
+            synchronized( this ) {
+                data = held;
+                held = NONE;
+                timerScheduled = false;
+                lastNanos = System.nanoTime();
+            }
+            release( data );
+        }
+
+
+        private void debounce( final Object _data ) {
+
+            synchronized( this ) {
+                held = _data;
+                lastNanos = System.nanoTime();
+                if( timerScheduled )
+                    return;
+                timerScheduled = true;
+            }
+            scheduler.schedule( this::settle, policy.nanos, TimeUnit.NANOSECONDS );
+        }
+
+
+        private void settle() {
+
+            // if there were posts during the quiet period, wait until it's been quiet since the latest...
+            Object data = NONE;
+            long delay;
+            synchronized( this ) {
+                delay = lastNanos + policy.nanos - System.nanoTime();
+                if( delay <= 0 ) {
+                    data = held;
+                    held = NONE;
+                    timerScheduled = false;
+                }
+            }
+
+            if( delay > 0 )
+                scheduler.schedule( this::settle, delay, TimeUnit.NANOSECONDS );
+            else
+                release( data );
+        }
+    }
+
+
+    /**
+     * Implemented by the queues that hold not-yet-dispatched Haps.
+     */
+    private interface HapQueue<E extends Enum<E>> {
+
+        /**
+         * Add the given normal Hap to the queue.
+         *
+         * @param _hap The Hap to add.
+         */
+        void add( final Hap<E> _hap );
+
+        /**
+         * Add the given system Hap (subscribe or unsubscribe) to the queue; these must never be dropped.
+         *
+         * @param _hap The system Hap to add.
+         */
+        void addSystem( final Hap<E> _hap );
+
+        /**
+         * Remove and return the oldest Hap in the queue, waiting for one if necessary.
+         *
+         * @return The oldest Hap in the queue.
+         * @throws InterruptedException if interrupted while waiting.
+         */
+        Hap<E> take() throws InterruptedException;
+
+        /**
+         * Remove and return the oldest Hap in the queue, if there is one.
+         *
+         * @return The oldest Hap in the queue, or {@code null} if the queue is empty.
+         */
+        Hap<E> poll();
+
+        /**
+         * Returns the (approximate) number of entries in the queue.
+         *
+         * @return The number of entries in the queue.
+         */
+        int size();
+    }
+
+
+    /**
+     * A queue of not-yet-dispatched Haps backed by an {@link ArrayBlockingQueue}; adding to a full queue throws an {@link IllegalStateException}.
+     */
+    private static class BlockingHapQueue<E extends Enum<E>> implements HapQueue<E> {
+
+        private final ArrayBlockingQueue<Hap<E>> queue;
+
+        private BlockingHapQueue( final int _maxQueue ) {
+            queue = new ArrayBlockingQueue<>( _maxQueue );
+        }
+
+        @Override
+        public void add( final Hap<E> _hap ) {
+            queue.add( _hap );
+        }
+
+        @Override
+        public void addSystem( final Hap<E> _hap ) {
+            queue.add( _hap );
+        }
+
+        @Override
+        public Hap<E> take() throws InterruptedException {
+            return queue.take();
+        }
+
+        @Override
+        public Hap<E> poll() {
+            return queue.poll();
+        }
+
+        @Override
+        public int size() {
+            return queue.size();
+        }
+    }
+
+
+    /**
+     * A queue of not-yet-dispatched Haps backed by an {@link MPSCRing}, with an overflow policy for normal Haps.
+     */
+    private final class RingHapQueue implements HapQueue<E> {
+
+        private final MPSCRing<Hap<E>>              ring;
+        private final OverflowPolicy                overflowPolicy;
+        private final ConcurrentLinkedQueue<Hap<E>> evicted;         // system Haps evicted from the ring by DROP_OLDEST, to be dispatched next...
+        private final Object                        evicting;        // held while evicting a Hap, from polling it until it's in evicted (if it's kept)...
+        private final ArrayDeque<Hap<E>>            reordered;       // Haps the dispatcher has put back in order, to be dispatched next; dispatcher only...
+
+        private RingHapQueue( final MPSCRing<Hap<E>> _ring, final OverflowPolicy _overflowPolicy ) {
+            ring           = _ring;
+            overflowPolicy = _overflowPolicy;
+            evicted        = new ConcurrentLinkedQueue<>();
+            evicting       = new Object();
+            reordered      = new ArrayDeque<>();
+        }
+
+        @Override
+        public void add( final Hap<E> _hap ) {
+
+            // in the usual case, there's room...
+            if( ring.offer( _hap ) )
+                return;
+
+            switch( overflowPolicy ) {
+                case BLOCK       -> putUninterruptibly( _hap );
+                case DROP_NEWEST -> dropped.add( _hap.size() );
+                case CALLER_RUNS -> handleNormalHap( _hap );
+                case DROP_OLDEST -> {
+
+                    // evict until we have room; system Haps and delivery entries can't be dropped, so they're set aside to be dispatched next...
+                    do {
+                        synchronized( evicting ) {
+                            var oldest = ring.poll();
+                            if( oldest != null ) {
+                                if( !oldest.isDroppable() )
+                                    evicted.add( oldest );
+                                else
+                                    dropped.add( oldest.size() );
+                            }
+                        }
+                    } while( !ring.offer( _hap ) );
+                }
+            }
+        }
+
+        @Override
+        public void addSystem( final Hap<E> _hap ) {
+            if( !ring.offer( _hap ) )
+                putUninterruptibly( _hap );
+        }
+
+        @Override
+        public Hap<E> take() throws InterruptedException {
+            var hap = next();
+            return (hap != null) ? hap : inOrder( ring.take() );
+        }
+
+        @Override
+        public Hap<E> poll() {
+            var hap = next();
+            return (hap != null) ? hap : inOrder( ring.poll() );
+        }
+
+        @Override
+        public int size() {
+            return ring.size() + reordered.size() + (evicted.isEmpty() ? 0 : evicted.size());
+        }
+
+        /**
+         * Returns the next Hap that is already out of the ring (either put back in order, or evicted), or {@code null} if there is none.  Evicted Haps were posted before
+         * everything still in the ring.
+         *
+         * @return The next Hap already out of the ring, or {@code null} if there is none.
+         */
+        private Hap<E> next() {
+            var hap = reordered.poll();
+            return (hap != null) ? hap : evicted.poll();
+        }
+
+        /**
+         * Returns the next Hap to dispatch, given the Hap just taken from the ring.  A producer may have evicted a Hap posted before that one, and not yet set it aside
+         * in evicted; so (when we're dropping the oldest) we wait for any eviction in progress to finish, and if anything was evicted, dispatch it first.
+         *
+         * @param _hap The Hap just taken from the ring, or {@code null} if there was none.
+         * @return The next Hap to dispatch, or {@code null} if there is none.
+         */
+        private Hap<E> inOrder( final Hap<E> _hap ) {
+
+            if( overflowPolicy != OverflowPolicy.DROP_OLDEST )
+                return _hap;
+
+            synchronized( evicting ) {
+                Hap<E> hap;
+                while( (hap = evicted.poll()) != null )
+                    reordered.add( hap );
+            }
+            if( reordered.isEmpty() )
+                return _hap;
+            if( _hap != null )
+                reordered.add( _hap );
+            return reordered.poll();
+        }
+
+        /**
+         * Adds the given Hap to the ring, waiting for room, and preserving (but not acting on) any interrupt while waiting.
+         *
+         * @param _hap The Hap to add.
+         */
+        private void putUninterruptibly( final Hap<E> _hap ) {
+            boolean interrupted = false;
+            while( true ) {
+                try {
+                    ring.put( _hap );
+                    break;
+                }
+                catch( InterruptedException _e ) {
+                    interrupted = true;
+                }
+            }
+            if( interrupted )
+                Thread.currentThread().interrupt();
+        }
+    }
+
+
     /**
      * The kinds of actions that can be described in a {@link HapsData} instance.
      */
@@ -581,7 +1383,7 @@ public final class Haps<E extends Enum<E>> {
     /**
      * The kinds of subscriptions that can be described in a {@link HapsData} instance.
      */
-    private enum SubscriptionType { DATA, HAP, HAPDATA, ACTION }
+    private enum SubscriptionType { DATA, HAP, HAPDATA, ACTION, BATCH }
 
 
     /**
@@ -594,7 +1396,8 @@ public final class Haps<E extends Enum<E>> {
         private final HapsAction       action;              // subscribe or unsubscribe...
         private final SubscriptionType subscriptionType;    // the type of subscription, set by the subscribe() methods...
         private final E                hapEnum;             // the enum defining the type of Hap...
-        private final Object           listener;            // one of four types; is cast to the right one in handleNormalHap()...
+        private final Object           listener;            // one of five types; is cast to the right one in dispatchRun()...
+        private final LatencyHistogram times;               // the listener's execution times, when instrumentation is enabled...
 
 
         /**
@@ -603,13 +1406,14 @@ public final class Haps<E extends Enum<E>> {
          * @param _action The action to take (subscribe or unsubscribe).
          * @param _subscriptionType The type of subscription (to the Hap enum, the associated data, neither, or both).
          * @param _hapEnum The enum defining the type of Hap.
-         * @param _listener The listener, which may be any of four types depending on the subscription type.
+         * @param _listener The listener, which may be any of five types depending on the subscription type.
          */
         private HapsData( final HapsAction _action, final SubscriptionType _subscriptionType, final E _hapEnum, final Object _listener ) {
             action           = _action;
             subscriptionType = _subscriptionType;
             hapEnum          = _hapEnum;
             listener         = _listener;
+            times            = new LatencyHistogram();
         }
 
 
@@ -680,7 +1484,8 @@ public final class Haps<E extends Enum<E>> {
     /**
      * Return an instance of a {@link Hap} with the given Hap enum defining the type of Hap, and the optional associated data (which may be
      * {@code null}).  If the associated data is not {@code null}, then a new Hap instance is created.  If the associated data <i>is</i> {@code null},
-     * then a cached (and reusable) Hap instance is returned.  The cache of reusable Haps is created in {@link Haps()}.
+     * then a cached (and reusable) Hap instance is returned.  The cache of reusable Haps is created in {@link Haps()}.  If instrumentation is enabled, then a new
+     * (timestamped) Hap instance is always created, and the post is counted.
      *
      * @param _hapEnum The enum defining what type of Hap is needed.
      * @param _data The optional data associated with this Hap.
@@ -691,30 +1496,40 @@ public final class Haps<E extends Enum<E>> {
         if( _hapEnum == null )
             throw new IllegalArgumentException( "Missing Hap enum" );
 
+        // if we're instrumented, every Hap is new, so that it can be timestamped...
+        var metrics = this.metrics;
+        if( metrics != null ) {
+            metrics.recordPost( _hapEnum, 1 );
+            return new Hap<>( _hapEnum, _data, null, System.nanoTime() );
+        }
+
         return (_data == null) ? hapCache.get( _hapEnum.ordinal() ) : new Hap<>( _hapEnum, _data );
     }
 
 
     /**
-     * Return a cached (and reusable) Hap instance is returned.  The cache of reusable Haps is created in {@link Haps()}.
+     * Return a cached (and reusable) Hap instance is returned.  The cache of reusable Haps is created in {@link Haps()}.  If instrumentation is enabled, a new
+     * (timestamped) instance is returned instead.
      *
      * @param _hapEnum The enum defining what type of Hap is needed.
      * @return the instance of Hap
      */
     private Hap<E> getHap( final E _hapEnum ) {
-        return hapCache.get( _hapEnum.ordinal() );
+        return (metrics == null) ? hapCache.get( _hapEnum.ordinal() ) : getHap( _hapEnum, null );
     }
 
 
     /**
-     * Instances of this class define a Hap that can be queued and dispatched.
+     * Instances of this class define a Hap (or a batch of Haps of the same type) that can be queued and dispatched.
      *
      * @author Tom Dilatush  tom@dilatush.com
      */
     private static class Hap<E extends Enum<E>> {
 
-        private final E hap;       // the enum defining what type of Hap this is (null for system Hap)...
-        private final Object data; // the optional data associated with this Hap...
+        private final E        hap;    // the enum defining what type of Hap this is (null for system Hap)...
+        private final Object   data;   // the optional data associated with this Hap...
+        private final Object[] batch;  // the data associated with each Hap in a batch, or null if this is a single Hap...
+        private final long     posted; // when this Hap was posted, from System.nanoTime(), or zero if not recorded...
 
 
         /**
@@ -724,8 +1539,58 @@ public final class Haps<E extends Enum<E>> {
          * @param _data The optional data associated with this Hap.
          */
         private Hap( final E _hap, final Object _data ) {
+            this( _hap, _data, null, 0 );
+        }
+
+
+        /**
+         * Create a new instance of Hap with the given values.
+         *
+         * @param _hap The enum defining what type of Hap this is (null for system Hap).
+         * @param _data The optional data associated with this Hap.
+         * @param _batch The data associated with each Hap in a batch, or {@code null} if this is a single Hap.
+         * @param _posted When this Hap was posted, from {@link System#nanoTime()}, or zero if not recorded.
+         */
+        private Hap( final E _hap, final Object _data, final Object[] _batch, final long _posted ) {
             hap = _hap;
             data = _data;
+            batch = _batch;
+            posted = _posted;
+        }
+
+
+        /**
+         * Returns the number of Haps this instance stands for.
+         *
+         * @return The number of Haps this instance stands for.
+         */
+        private int size() {
+            return (batch == null) ? 1 : batch.length;
+        }
+
+
+        /**
+         * Returns {@code true} if this Hap may be dropped when the queue is full: it is neither a system Hap nor the entry standing for a delivery's pending data.
+         *
+         * @return {@code true} if this Hap may be dropped.
+         */
+        private boolean isDroppable() {
+            return (hap != null) && !(data instanceof Delivery<?>);
+        }
+
+
+        /**
+         * Adds the associated data of the Hap (or of each Hap in the batch, or the pending data of a delivery) to the given run.
+         *
+         * @param _run The run to add to.
+         */
+        private void addTo( final List<Object> _run ) {
+            if( batch != null )
+                Collections.addAll( _run, batch );
+            else if( data instanceof Delivery<?> delivery )
+                _run.add( delivery.take() );
+            else
+                _run.add( data );
         }
     }
 }
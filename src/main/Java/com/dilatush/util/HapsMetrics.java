@@ -0,0 +1,199 @@
+package com.dilatush.util;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>Instances of this class accumulate the instrumentation of a {@link Haps} instance, from when its instrumentation was enabled (see
+ * {@link Haps#enableInstrumentation(Duration)}): how long Haps waited in the queue between being posted and being dispatched, how long each listener took to run, how
+ * many Haps of each type were posted (and at what rate), the most Haps ever waiting in a dispatch lane's queue, and how many listener calls took longer than the
+ * slow-listener threshold.</p>
+ * <p>All the counters are {@link LongAdder}s (or {@link LongAccumulator}s), so recording is allocation-free and nearly contention-free.  Queue waits are measured from
+ * the post to the start of the dispatch of the run the Hap was gathered into, so a Hap posted while its run was being gathered may show a wait of zero.  A batch
+ * posted with {@link Haps#postAll(Enum,java.util.Collection)} counts as one entry in its queue, and its Haps share a single post time.</p>
+ *
+ * @param <E> The Hap enum type.
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+@SuppressWarnings( "unused" )
+public final class HapsMetrics<E extends Enum<E>> {
+
+    private final List<E>                              haps;              // all the Hap enums, in ordinal order...
+    private final long                                 startNanos;        // when instrumentation was enabled, from System.nanoTime()...
+    private final long                                 slowNanos;         // the slow-listener threshold, or zero for none...
+    private final LongAdder[]                          posts;             // the number of Haps posted, indexed by enum ordinal...
+    private final LatencyHistogram                     queueWait;
+    private final LongAccumulator                      highWaterMark;
+    private final LongAdder                            slowListenerCalls;
+    private final Supplier<List<ListenerTiming<E>>>    listenerTimings;   // gets the current listeners' timings from the Haps instance...
+
+
+    /**
+     * Creates a new instance of this class.
+     *
+     * @param _haps All the Hap enums, in ordinal order.
+     * @param _slowListenerThreshold The slow-listener threshold, or {@code null} for none.
+     * @param _listenerTimings Supplies the timings of the current listeners.
+     */
+    /* package-private */ HapsMetrics( final List<E> _haps, final Duration _slowListenerThreshold, final Supplier<List<ListenerTiming<E>>> _listenerTimings ) {
+
+        haps              = _haps;
+        startNanos        = System.nanoTime();
+        slowNanos         = (_slowListenerThreshold == null) ? 0 : _slowListenerThreshold.toNanos();
+        posts             = new LongAdder[_haps.size()];
+        for( int i = 0; i < posts.length; i++ ) posts[i] = new LongAdder();
+        queueWait         = new LatencyHistogram();
+        highWaterMark     = new LongAccumulator( Long::max, 0 );
+        slowListenerCalls = new LongAdder();
+        listenerTimings   = _listenerTimings;
+    }
+
+
+    /**
+     * Records the posting of the given number of Haps of the given type.
+     *
+     * @param _hapEnum The type of the Haps posted.
+     * @param _count The number of Haps posted.
+     */
+    /* package-private */ void recordPost( final E _hapEnum, final int _count ) {
+        posts[_hapEnum.ordinal()].add( _count );
+    }
+
+
+    /**
+     * Records the time a Hap waited in the queue.
+     *
+     * @param _nanos The time the Hap waited, in nanoseconds.
+     */
+    /* package-private */ void recordQueueWait( final long _nanos ) {
+        queueWait.record( _nanos );
+    }
+
+
+    /**
+     * Records the number of entries in a dispatch lane's queue.
+     *
+     * @param _depth The number of entries in the queue.
+     */
+    /* package-private */ void recordDepth( final long _depth ) {
+        highWaterMark.accumulate( _depth );
+    }
+
+
+    /**
+     * Returns {@code true} if a listener call that took the given time is slow, counting it if it is.
+     *
+     * @param _nanos The time the listener call took, in nanoseconds.
+     * @return {@code true} if the listener call was slow.
+     */
+    /* package-private */ boolean isSlow( final long _nanos ) {
+
+        if( (slowNanos == 0) || (_nanos < slowNanos) ) return false;
+        slowListenerCalls.increment();
+        return true;
+    }
+
+
+    /**
+     * Returns the slow-listener threshold, or {@code null} if there is none.
+     *
+     * @return The slow-listener threshold.
+     */
+    public Duration getSlowListenerThreshold() {
+        return (slowNanos == 0) ? null : Duration.ofNanos( slowNanos );
+    }
+
+
+    /**
+     * Returns the histogram of the time Haps waited in the queue, from being posted to being dispatched.
+     *
+     * @return The histogram of queue waits.
+     */
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+
+    /**
+     * Returns the number of Haps of the given type posted.
+     *
+     * @param _hapEnum The Hap type.
+     * @return The number of Haps of the given type posted.
+     */
+    public long getPosts( final E _hapEnum ) {
+        return posts[_hapEnum.ordinal()].sum();
+    }
+
+
+    /**
+     * Returns the number of Haps posted of each type, in enum order.
+     *
+     * @return The number of Haps posted of each type.
+     */
+    public Map<E, Long> getPostCounts() {
+
+        var result = new LinkedHashMap<E, Long>();
+        haps.forEach( (hap) -> result.put( hap, getPosts( hap ) ) );
+        return result;
+    }
+
+
+    /**
+     * Returns the mean rate at which Haps of each type were posted, in Haps per second, in enum order.
+     *
+     * @return The mean rate at which Haps of each type were posted.
+     */
+    public Map<E, Double> getPostRates() {
+
+        var seconds = java.lang.Math.max( 1, System.nanoTime() - startNanos ) / 1e9;
+        var result = new LinkedHashMap<E, Double>();
+        haps.forEach( (hap) -> result.put( hap, getPosts( hap ) / seconds ) );
+        return result;
+    }
+
+
+    /**
+     * Returns the most entries ever waiting in a dispatch lane's queue (as seen by its dispatcher); a batch counts as one entry.
+     *
+     * @return The queue high-water mark.
+     */
+    public long getHighWaterMark() {
+        return highWaterMark.get();
+    }
+
+
+    /**
+     * Returns the number of listener calls that took at least the slow-listener threshold.
+     *
+     * @return The number of slow listener calls.
+     */
+    public long getSlowListenerCalls() {
+        return slowListenerCalls.sum();
+    }
+
+
+    /**
+     * Returns the timing of each current listener, since instrumentation was enabled (or the listener subscribed, if later).
+     *
+     * @return The timing of each current listener.
+     */
+    public List<ListenerTiming<E>> getListenerTimings() {
+        return listenerTimings.get();
+    }
+
+
+    /**
+     * The execution times of one listener (one subscription) of a Hap.
+     *
+     * @param hap The Hap the listener subscribed to.
+     * @param listener The listener.
+     * @param times The histogram of the listener's execution times.
+     * @param <E> The Hap enum type.
+     */
+    public record ListenerTiming<E extends Enum<E>>( E hap, Object listener, LatencyHistogram times ) {}
+}
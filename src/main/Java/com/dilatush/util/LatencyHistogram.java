@@ -0,0 +1,145 @@
+package com.dilatush.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Instances of this class accumulate a histogram of latencies, in nanoseconds, with one bucket per power of two: bucket {@code n} counts the latencies in the range
+ * [2<sup>n</sup>..2<sup>n+1</sup>) nanoseconds (bucket 0 also counts latencies of zero), and the last bucket counts everything from about 9 minutes up.  The resolution is
+ * therefore coarse (percentiles are reported as the upper bound of their bucket), but recording a latency is just a couple of {@link LongAdder} increments, with no allocation
+ * and very little contention, so a histogram may be left on in production.</p>
+ * <p>Instances of this class are threadsafe.  The snapshot methods are not atomic with respect to concurrent recording, so values read while latencies are being recorded may be
+ * very slightly inconsistent with each other.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class LatencyHistogram {
+
+    /**
+     * The number of buckets in each histogram.
+     */
+    public static final int BUCKETS = 40;
+
+    private final LongAdder[] counts;      // the number of latencies recorded in each bucket...
+    private final LongAdder   totalNanos;  // the sum of all latencies recorded...
+
+
+    /**
+     * Creates a new, empty instance of this class.
+     */
+    public LatencyHistogram() {
+
+        counts = new LongAdder[BUCKETS];
+        for( int i = 0; i < BUCKETS; i++ ) counts[i] = new LongAdder();
+        totalNanos = new LongAdder();
+    }
+
+
+    /**
+     * Records the given latency.  Negative latencies are recorded as zero.
+     *
+     * @param _nanos The latency to record, in nanoseconds.
+     */
+    public void record( final long _nanos ) {
+
+        var nanos = java.lang.Math.max( 0, _nanos );
+        var bucket = java.lang.Math.min( BUCKETS - 1, 63 - Long.numberOfLeadingZeros( nanos | 1 ) );
+        counts[bucket].increment();
+        totalNanos.add( nanos );
+    }
+
+
+    /**
+     * Records the latency from the given start time (as returned by {@link System#nanoTime()}) until now.
+     *
+     * @param _startNanos The start time, from {@link System#nanoTime()}.
+     */
+    public void recordSince( final long _startNanos ) {
+        record( System.nanoTime() - _startNanos );
+    }
+
+
+    /**
+     * Returns the number of latencies recorded.
+     *
+     * @return The number of latencies recorded.
+     */
+    public long getCount() {
+
+        long count = 0;
+        for( LongAdder adder : counts ) count += adder.sum();
+        return count;
+    }
+
+
+    /**
+     * Returns the mean of the latencies recorded, in nanoseconds, or zero if none have been recorded.
+     *
+     * @return The mean of the latencies recorded, in nanoseconds.
+     */
+    public long getMeanNanos() {
+
+        var count = getCount();
+        return (count == 0) ? 0 : totalNanos.sum() / count;
+    }
+
+
+    /**
+     * Returns an upper bound for the given percentile of the latencies recorded, in nanoseconds: the upper bound of the bucket that the percentile falls in.  If no latencies
+     * have been recorded, returns zero.
+     *
+     * @param _percentile The percentile, in the range [0..100].
+     * @return The upper bound of the given percentile, in nanoseconds.
+     * @throws IllegalArgumentException if the percentile is out of range.
+     */
+    public long getPercentileNanos( final double _percentile ) {
+
+        // sanity check...
+        if( (_percentile < 0) || (_percentile > 100) ) throw new IllegalArgumentException( "_percentile is out of range [0..100]: " + _percentile );
+
+        // find the bucket containing the percentile...
+        var snapshot = getBucketCounts();
+        long count = 0;
+        for( long bucketCount : snapshot ) count += bucketCount;
+        if( count == 0 ) return 0;
+        var threshold = (long) java.lang.Math.ceil( count * _percentile / 100.0 );
+        long seen = 0;
+        for( int i = 0; i < BUCKETS; i++ ) {
+            seen += snapshot[i];
+            if( (seen >= threshold) && (seen > 0) ) return (i == BUCKETS - 1) ? Long.MAX_VALUE : (1L << (i + 1)) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+
+    /**
+     * Returns a snapshot of the count in each bucket.
+     *
+     * @return A snapshot of the count in each bucket, indexed by bucket number.
+     */
+    public long[] getBucketCounts() {
+
+        var result = new long[BUCKETS];
+        for( int i = 0; i < BUCKETS; i++ ) result[i] = counts[i].sum();
+        return result;
+    }
+
+
+    /**
+     * Resets this histogram to empty.  Latencies recorded concurrently with the reset may or may not be retained.
+     */
+    public void reset() {
+
+        for( LongAdder adder : counts ) adder.reset();
+        totalNanos.reset();
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     *
+     * @return a string representing this instance.
+     */
+    @Override
+    public String toString() {
+        return "count: " + getCount() + ", mean: " + getMeanNanos() + "ns, p50: " + getPercentileNanos( 50 ) + "ns, p99: " + getPercentileNanos( 99 ) + "ns";
+    }
+}
@@ -0,0 +1,243 @@
+package com.dilatush.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * <p>Instances of this class are bounded, lock-free queues backed by a pre-allocated ring, built for many producer threads and a single consumer thread.  Each slot in the
+ * ring has a sequence number that says whether it is ready to be written (for which lap around the ring) or ready to be read; producers claim a slot with a single
+ * compare-and-set of the enqueue position, so that producers never block each other (or the consumer) on a lock, and neither adding nor removing an element allocates
+ * anything.</p>
+ * <p>Removal also claims its slot with a compare-and-set, so although there should be only one consumer calling {@link #take()}, any thread may safely call
+ * {@link #poll()} &mdash; for instance, a producer evicting the oldest element to make room for a new one.</p>
+ * <p>When the consumer finds the ring empty (or a producer finds it full, in {@link #put(Object)}), it waits according to the ring's {@link WaitStrategy}.</p>
+ *
+ * @param <T> The type of the elements in the ring.
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+@SuppressWarnings( "unused" )
+public final class MPSCRing<T> {
+
+    private static final int  SPINS          = 100;                                 // spins before yielding or parking...
+    private static final long FULL_PARK_NS   = TimeUnit.MICROSECONDS.toNanos( 50 );  // how long a producer parks while waiting for room...
+
+    private final Object[]        ring;         // the elements, at their sequence number modulo the capacity...
+    private final AtomicLongArray sequences;    // for each slot, its position if ready to write, or its position + 1 if ready to read...
+    private final int             mask;         // the capacity minus one...
+    private final AtomicLong      enqueuePos;   // the position of the next element to be added...
+    private final AtomicLong      dequeuePos;   // the position of the next element to be removed...
+    private final WaitStrategy    waitStrategy;
+
+    private volatile Thread       parked;       // the consumer, if it is parked (or about to park) waiting for an element...
+
+
+    /**
+     * How a thread waits for an element (or, for producers, for room) in the ring.
+     */
+    public enum WaitStrategy {
+
+        /** Spin continuously; the lowest latency, but keeps a core busy while waiting. */
+        SPIN,
+
+        /** Spin briefly, then yield the processor between checks; low latency, with less (but still some) processor use while idle. */
+        YIELD,
+
+        /** Spin briefly, then park until a producer adds an element; no processor use while idle, at the cost of an unpark for each element added while parked. */
+        PARK
+    }
+
+
+    /**
+     * Creates a new instance of this class with at least the given capacity (rounded up to a power of two) and the given wait strategy.
+     *
+     * @param _capacity The minimum capacity of the ring.
+     * @param _waitStrategy The wait strategy.
+     */
+    public MPSCRing( final int _capacity, final WaitStrategy _waitStrategy ) {
+
+        if( (_capacity < 2) || (_capacity > (1 << 30)) )
+            throw new IllegalArgumentException( "Invalid capacity: " + _capacity );
+        if( _waitStrategy == null )
+            throw new IllegalArgumentException( "Missing wait strategy" );
+
+        int capacity = Integer.highestOneBit( _capacity - 1 ) << 1;
+        ring         = new Object[capacity];
+        sequences    = new AtomicLongArray( capacity );
+        for( int i = 0; i < capacity; i++ )
+            sequences.set( i, i );
+        mask         = capacity - 1;
+        enqueuePos   = new AtomicLong( 0 );
+        dequeuePos   = new AtomicLong( 0 );
+        waitStrategy = _waitStrategy;
+    }
+
+
+    /**
+     * Adds the given element to the ring, if there is room.
+     *
+     * @param _element The element to add (not {@code null}).
+     * @return {@code true} if the element was added, or {@code false} if the ring was full.
+     */
+    public boolean offer( final T _element ) {
+
+        if( _element == null )
+            throw new IllegalArgumentException( "Missing element" );
+
+        long pos = enqueuePos.get();
+        while( true ) {
+            int slot = (int) (pos & mask);
+            long dif = sequences.get( slot ) - pos;
+
+            // the slot is ready to write at this position, so try to claim it...
+            if( dif == 0 ) {
+                if( enqueuePos.compareAndSet( pos, pos + 1 ) ) {
+                    ring[slot] = _element;
+                    sequences.set( slot, pos + 1 );  // publishes the element...
+                    wakeConsumer();
+                    return true;
+                }
+                pos = enqueuePos.get();
+            }
+
+            // the slot still holds the element from the previous lap, so we're full...
+            else if( dif < 0 )
+                return false;
+
+            // another producer claimed this position; try the latest...
+            else
+                pos = enqueuePos.get();
+        }
+    }
+
+
+    /**
+     * Adds the given element to the ring, waiting (according to the wait strategy) for room if the ring is full.
+     *
+     * @param _element The element to add (not {@code null}).
+     * @throws InterruptedException if interrupted while waiting for room.
+     */
+    public void put( final T _element ) throws InterruptedException {
+
+        int spins = 0;
+        while( !offer( _element ) ) {
+            if( Thread.interrupted() )
+                throw new InterruptedException();
+            if( (waitStrategy == WaitStrategy.SPIN) || (spins++ < SPINS) )
+                Thread.onSpinWait();
+            else if( waitStrategy == WaitStrategy.YIELD )
+                Thread.yield();
+            else
+                LockSupport.parkNanos( this, FULL_PARK_NS );
+        }
+    }
+
+
+    /**
+     * Removes and returns the oldest element in the ring, if there is one.
+     *
+     * @return The oldest element, or {@code null} if the ring was empty.
+     */
+    @SuppressWarnings( "unchecked" )
+    public T poll() {
+
+        long pos = dequeuePos.get();
+        while( true ) {
+            int slot = (int) (pos & mask);
+            long dif = sequences.get( slot ) - (pos + 1);
+
+            // the slot has been published at this position, so try to claim it...
+            if( dif == 0 ) {
+                if( dequeuePos.compareAndSet( pos, pos + 1 ) ) {
+                    var element = (T) ring[slot];
+                    ring[slot] = null;
+                    sequences.set( slot, pos + mask + 1 );  // ready to write on the next lap...
+                    return element;
+                }
+                pos = dequeuePos.get();
+            }
+
+            // nothing has been published here yet, so we're empty...
+            else if( dif < 0 )
+                return null;
+
+            // another thread removed this position; try the latest...
+            else
+                pos = dequeuePos.get();
+        }
+    }
+
+
+    /**
+     * Removes and returns the oldest element in the ring, waiting (according to the wait strategy) for one if the ring is empty.  Only one thread (the consumer) may call
+     * this method.
+     *
+     * @return The oldest element.
+     * @throws InterruptedException if interrupted while waiting for an element.
+     */
+    public T take() throws InterruptedException {
+
+        int spins = 0;
+        while( true ) {
+            var element = poll();
+            if( element != null )
+                return element;
+            if( Thread.interrupted() )
+                throw new InterruptedException();
+
+            if( (waitStrategy == WaitStrategy.SPIN) || (spins++ < SPINS) )
+                Thread.onSpinWait();
+            else if( waitStrategy == WaitStrategy.YIELD )
+                Thread.yield();
+            else {
+
+                // announce that we're parking, then check again (so a producer that added an element before seeing our announcement isn't missed)...
+                parked = Thread.currentThread();
+                element = poll();
+                if( element != null ) {
+                    parked = null;
+                    return element;
+                }
+                LockSupport.park( this );
+                parked = null;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the approximate number of elements in the ring.
+     *
+     * @return The approximate number of elements in the ring.
+     */
+    public int size() {
+        long size = enqueuePos.get() - dequeuePos.get();
+        return (int) java.lang.Math.max( 0, java.lang.Math.min( size, ring.length ) );
+    }
+
+
+    /**
+     * Returns the capacity of the ring.
+     *
+     * @return The capacity of the ring.
+     */
+    public int capacity() {
+        return ring.length;
+    }
+
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+
+    /**
+     * If the consumer is parked waiting for an element, unpark it.
+     */
+    private void wakeConsumer() {
+        var consumer = parked;
+        if( consumer != null )
+            LockSupport.unpark( consumer );
+    }
+}
@@ -0,0 +1,372 @@
+package com.dilatush.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.Strings.isEmpty;
+import static java.util.logging.Level.FINE;
+
+/**
+ * <p>Instances of this class ping many targets repeatedly, each at its own interval, and aggregate the results of each target's most recent pings: the loss, and the minimum,
+ * mean, and maximum round trip times.  The actual pinging is done by a {@link Probe}; three kinds are provided:</p>
+ * <ul>
+ *     <li>{@link #reachabilityProbe(ScheduledExecutor,Duration)}, which uses {@link InetAddress#isReachable(int)} on a bounded pool of threads.  This is an ICMP echo if the JVM has the
+ *     privileges for it, and otherwise a TCP connection attempt to the echo port (where a refusal counts as reachable).</li>
+ *     <li>{@link #tcpProbe(TCPPinger,int,int)}, which attempts a TCP connection to a given port.  With a {@link TCPPinger} created on a
+ *     {@link com.dilatush.util.networkingengine.NetworkingEngine}, no thread waits on any ping, so this is the cheapest way to monitor thousands of hosts.</li>
+ *     <li>{@link #processProbe(Pinger)}, which runs the operating system's ping command in a process for each ping, exactly as {@link Pinger} does.</li>
+ * </ul>
+ * <p>Each target's first ping is at a random time within its first interval, and each later ping is at its interval plus or minus a random jitter (10% by default), so that
+ * targets added together, or with the same interval, don't ping in bursts.  If a target's previous ping is still in progress when its next ping is due, the next ping is
+ * skipped (and counted as such) rather than piling up.</p>
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+@SuppressWarnings( "unused" )
+public class PingScheduler {
+
+    final static private Logger LOGGER = Logger.getLogger( new Object(){}.getClass().getEnclosingClass().getCanonicalName() );
+
+    private static final double DEFAULT_JITTER = 0.1;
+
+    private final ScheduledExecutor    scheduler;    // schedules the pings...
+    private final Probe                probe;        // does the actual pinging...
+    private final int                  windowSize;   // the number of each target's most recent pings that are aggregated...
+    private final Map<String,Target>   targets;      // the targets being pinged, by address...
+    private volatile double            jitter;       // the fraction of each interval that pings are randomly moved by...
+
+
+    /**
+     * Implemented by the things that actually ping a target.
+     */
+    @FunctionalInterface
+    public interface Probe {
+
+        /**
+         * Pings the given address, calling the given callback with the outcome (in any thread).  The outcome is just as described for {@link Pinger#ping(String,Consumer)}.
+         *
+         * @param _address The address to ping.
+         * @param _callback The callback to call with the outcome.
+         */
+        void probe( final InetAddress _address, final Consumer<Outcome<Pinger.PingResult>> _callback );
+    }
+
+
+    /**
+     * Returns a {@link Probe} that uses {@link InetAddress#isReachable(int)} with the given timeout, on the threads of the given {@link ScheduledExecutor} (which the caller
+     * owns, and must shut down when it's done with the probe).  Each ping occupies a thread for up to the timeout, so the executor's pool bounds the number of pings in
+     * progress at once; pings beyond that wait for a thread, and their round trip times are measured from when they actually start.  A pool of {@code n} threads can sustain
+     * at least {@code n} pings per timeout, even if no target responds.  The executor should be dedicated to the probe, so that slow pings don't hold up anything else.
+     *
+     * @param _executor The {@link ScheduledExecutor} whose threads do the pinging.
+     * @param _timeout The maximum time to wait for each ping's response.
+     * @return The new {@link Probe}.
+     */
+    public static Probe reachabilityProbe( final ScheduledExecutor _executor, final Duration _timeout ) {
+
+        if( (_executor == null) || (_timeout == null) ) throw new IllegalArgumentException( "Executor or timeout not supplied" );
+        var timeoutMS = (int) _timeout.toMillis();
+
+        return ( address, callback ) -> _executor.execute( () -> {
+            try {
+                var start = System.nanoTime();
+                var reachable = address.isReachable( timeoutMS );
+                var seconds = (System.nanoTime() - start) / 1e9;
+                callback.accept( new Outcome<>( true, null, null, new Pinger.PingResult( reachable, reachable ? seconds : 0 ) ) );
+            }
+            catch( IOException _e ) {
+                callback.accept( new Outcome<>( false, "Problem checking reachability", _e, null ) );
+            }
+        } );
+    }
+
+
+    /**
+     * Returns a {@link Probe} that pings by attempting a TCP connection to the given port, using the given {@link TCPPinger}.
+     *
+     * @param _pinger The {@link TCPPinger} to ping with.
+     * @param _port The TCP port to attempt connections to.
+     * @param _timeoutMS The maximum time to wait for each ping's response, in milliseconds.
+     * @return The new {@link Probe}.
+     */
+    public static Probe tcpProbe( final TCPPinger _pinger, final int _port, final int _timeoutMS ) {
+
+        return ( address, callback ) -> _pinger.ping( address.getHostAddress(), _port, _timeoutMS, ( outcome ) -> callback.accept(
+                outcome.ok()
+                ? new Outcome<>( true, null, null, new Pinger.PingResult( outcome.info().success(), outcome.info().responseSeconds() ) )
+                : new Outcome<>( false, outcome.msg(), outcome.cause(), null )
+        ) );
+    }
+
+
+    /**
+     * Returns a {@link Probe} that pings by running the operating system's ping command, using the given {@link Pinger}.
+     *
+     * @param _pinger The {@link Pinger} to ping with.
+     * @return The new {@link Probe}.
+     */
+    public static Probe processProbe( final Pinger _pinger ) {
+        return ( address, callback ) -> _pinger.ping( address.getHostAddress(), callback );
+    }
+
+
+    /**
+     * Creates a new instance of this class that schedules pings with the given {@link ScheduledExecutor}, pings with the given {@link Probe}, and aggregates the results of each
+     * target's most recent pings, up to the given window size.
+     *
+     * @param _scheduler The {@link ScheduledExecutor} to schedule pings with.
+     * @param _probe The {@link Probe} to ping with.
+     * @param _windowSize The number of each target's most recent pings to aggregate.
+     */
+    public PingScheduler( final ScheduledExecutor _scheduler, final Probe _probe, final int _windowSize ) {
+
+        if( (_scheduler == null) || (_probe == null) )
+            throw new IllegalArgumentException( "Scheduler or probe not supplied" );
+        if( _windowSize < 1 )
+            throw new IllegalArgumentException( "Invalid window size: " + _windowSize );
+
+        scheduler  = _scheduler;
+        probe      = _probe;
+        windowSize = _windowSize;
+        targets    = new ConcurrentHashMap<>();
+        jitter     = DEFAULT_JITTER;
+    }
+
+
+    /**
+     * Sets the jitter, the fraction of each interval by which each ping is randomly moved earlier or later.  The default is 0.1 (10%).
+     *
+     * @param _jitter The jitter, in the range [0..0.5].
+     */
+    public void setJitter( final double _jitter ) {
+
+        if( (_jitter < 0) || (_jitter > 0.5) )
+            throw new IllegalArgumentException( "Invalid jitter: " + _jitter );
+        jitter = _jitter;
+    }
+
+
+    /**
+     * Starts pinging the given address at the given interval.  If the address is already being pinged, it is first removed (discarding its results).
+     *
+     * @param _address The IPv4 or IPv6 address (or hostname) to ping.  A hostname is resolved once, when it's added.
+     * @param _interval The interval between pings.
+     * @return The outcome of the attempt.  If not ok, there is an explanatory message (for instance, if the address couldn't be resolved).
+     */
+    public Outcome<?> add( final String _address, final Duration _interval ) {
+
+        // sanity checks...
+        if( isEmpty( _address ) || (_interval == null) || _interval.isZero() || _interval.isNegative() )
+            return new Outcome<>( false, "Address not supplied, or invalid interval", null, null );
+        InetAddress address;
+        try {
+            address = InetAddress.getByName( _address );
+        }
+        catch( UnknownHostException _e ) {
+            return new Outcome<>( false, "Could not resolve address: " + _address, _e, null );
+        }
+
+        // make our target, and schedule its first ping for a random time within its first interval...
+        var target = new Target( _address, address, _interval.toNanos() );
+        var previous = targets.put( _address, target );
+        if( previous != null ) previous.cancel();
+        target.schedule( ThreadLocalRandom.current().nextLong( target.intervalNanos ) );
+
+        LOGGER.log( FINE, "Added ping target " + _address + " every " + _interval );
+        return new Outcome<>( true, null, null, null );
+    }
+
+
+    /**
+     * Stops pinging the given address, and discards its results.
+     *
+     * @param _address The address to stop pinging, exactly as it was added.
+     * @return {@code true} if the address was being pinged.
+     */
+    public boolean remove( final String _address ) {
+
+        var target = targets.remove( _address );
+        if( target == null ) return false;
+        target.cancel();
+        return true;
+    }
+
+
+    /**
+     * Stops pinging all targets.
+     */
+    public void close() {
+        new ArrayList<>( targets.keySet() ).forEach( this::remove );
+    }
+
+
+    /**
+     * Returns the aggregated results for the given address, or {@code null} if the address isn't being pinged.
+     *
+     * @param _address The address, exactly as it was added.
+     * @return The aggregated results, or {@code null}.
+     */
+    public Stats getStats( final String _address ) {
+        var target = targets.get( _address );
+        return (target == null) ? null : target.stats();
+    }
+
+
+    /**
+     * Returns the aggregated results for all the targets being pinged.
+     *
+     * @return The aggregated results for all the targets.
+     */
+    public List<Stats> getAllStats() {
+        return targets.values().stream().map( Target::stats ).toList();
+    }
+
+
+    /**
+     * The aggregated results of a target's most recent pings.
+     *
+     * @param address The target's address, as it was added.
+     * @param sent The number of pings in the window (at most the window size).
+     * @param received The number of those pings that got a response.
+     * @param loss The fraction of those pings that got no response, or zero if none have been sent.
+     * @param minSeconds The minimum round trip time of the pings that got a response, or zero if none did.
+     * @param meanSeconds The mean round trip time of the pings that got a response, or zero if none did.
+     * @param maxSeconds The maximum round trip time of the pings that got a response, or zero if none did.
+     * @param errors The total number of pings that failed (not ok outcomes); these are not in the window.
+     * @param skipped The total number of pings skipped because the previous ping was still in progress.
+     * @param lastPing When the most recent ping completed, or {@code null} if none has.
+     */
+    public record Stats( String address, int sent, int received, double loss, double minSeconds, double meanSeconds, double maxSeconds, long errors, long skipped,
+                         Instant lastPing ) {}
+
+
+    /**
+     * A target being pinged, with the results of its most recent pings.
+     */
+    private class Target {
+
+        private final String          name;            // the address as it was added...
+        private final InetAddress     address;         // the resolved address...
+        private final long            intervalNanos;   // the interval between pings...
+        private final AtomicBoolean   inProgress;      // true while a ping is in progress...
+        private final LongAdder       errors;
+        private final LongAdder       skipped;
+        private final double[]        window;          // round trip times of the most recent pings, with NaN for no response; guarded by this instance...
+        private int                   count;           // the number of results in the window; guarded by this instance...
+        private int                   next;            // the index for the next result in the window; guarded by this instance...
+        private Instant               lastPing;        // guarded by this instance...
+        private volatile ScheduledFuture<?> future;    // the next scheduled ping...
+        private volatile boolean      canceled;
+
+
+        private Target( final String _name, final InetAddress _address, final long _intervalNanos ) {
+            name          = _name;
+            address       = _address;
+            intervalNanos = _intervalNanos;
+            inProgress    = new AtomicBoolean( false );
+            errors        = new LongAdder();
+            skipped       = new LongAdder();
+            window        = new double[windowSize];
+        }
+
+
+        /**
+         * Schedules this target's next ping after the given delay.
+         *
+         * @param _delayNanos The delay until the next ping, in nanoseconds.
+         */
+        private void schedule( final long _delayNanos ) {
+            if( !canceled ) future = scheduler.schedule( this::ping, _delayNanos, TimeUnit.NANOSECONDS );
+        }
+
+
+        /**
+         * Schedules the next ping (with jitter), then pings, unless the previous ping is still in progress.
+         */
+        private void ping() {
+
+            if( canceled ) return;
+            var offset = (long) (intervalNanos * jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1));
+            schedule( intervalNanos + offset );
+
+            if( inProgress.getAndSet( true ) ) {
+                skipped.increment();
+                return;
+            }
+            try {
+                probe.probe( address, this::onResult );
+            }
+            catch( RuntimeException _e ) {
+                onResult( new Outcome<>( false, "Problem starting ping", _e, null ) );
+            }
+        }
+
+
+        /**
+         * Records the outcome of a ping.
+         *
+         * @param _outcome The outcome of the ping.
+         */
+        private void onResult( final Outcome<Pinger.PingResult> _outcome ) {
+
+            inProgress.set( false );
+            if( !_outcome.ok() ) {
+                errors.increment();
+                LOGGER.log( FINE, "Ping of " + name + " failed: " + _outcome.msg(), _outcome.cause() );
+                return;
+            }
+            synchronized( this ) {
+                window[next] = _outcome.info().success() ? _outcome.info().roundTripSeconds() : Double.NaN;
+                next = (next + 1) % windowSize;
+                count = java.lang.Math.min( count + 1, windowSize );
+                lastPing = Instant.now();
+            }
+        }
+
+
+        /**
+         * Returns the aggregated results in this target's window.
+         *
+         * @return The aggregated results.
+         */
+        private synchronized Stats stats() {
+
+            int received = 0;
+            double min = Double.MAX_VALUE, max = 0, sum = 0;
+            for( int i = 0; i < count; i++ ) {
+                var rtt = window[i];
+                if( Double.isNaN( rtt ) ) continue;
+                received++;
+                sum += rtt;
+                min = java.lang.Math.min( min, rtt );
+                max = java.lang.Math.max( max, rtt );
+            }
+            return new Stats( name, count, received, (count == 0) ? 0 : (count - received) / (double) count,
+                    (received == 0) ? 0 : min, (received == 0) ? 0 : sum / received, max, errors.sum(), skipped.sum(), lastPing );
+        }
+
+
+        /**
+         * Stops pinging this target.
+         */
+        private void cancel() {
+            canceled = true;
+            var f = future;
+            if( f != null ) f.cancel( false );
+        }
+    }
+}
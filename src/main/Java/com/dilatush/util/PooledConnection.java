@@ -1,15 +1,25 @@
 package com.dilatush.util;
 
 import java.sql.*;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 /**
  * Implements {@link java.sql.Connection}, but intercepts the {@link Connection#close()} method to return a connection to the
  * {@link SimpleConnectionPool} instead of actually closing it.  There are also some additional methods and state used to manage the pool.  Instances
  * of this class are mutable and <i>not</i> threadsafe.
+ * <p>If the pool has a statement cache size greater than zero, each connection keeps a least-recently-used cache of up to that many idle prepared statements, keyed
+ * by their SQL and options.  The {@code prepareStatement} methods return a {@link PooledPreparedStatement} that wraps a cached statement (if there is one) or a newly
+ * prepared one; closing it returns the statement to the cache, with its parameters, batch, and warnings cleared.  Statement settings (such as the fetch size or query
+ * timeout) are <i>not</i> reset, so callers that change them should change them back before closing the statement.  When the cache is full, the least recently used
+ * statement is closed; all cached statements are closed when the connection is really closed.</p>
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
@@ -21,12 +31,39 @@ public class PooledConnection implements Connection {
     final private Connection connection;
     final private SimpleConnectionPool pool;
 
+    /* package-private */ static final int IDLE    = 0;
+    /* package-private */ static final int IN_USE  = 1;
+    /* package-private */ static final int REMOVED = 2;
+
+    /* package-private */ final AtomicInteger state = new AtomicInteger( IN_USE );  // the pool's state for this connection; new connections are in use...
+
     private long obtained;  // time that this connection was last obtained for use...
 
+    /* package-private */ final long   created        = System.currentTimeMillis();  // time that this connection was created...
+    /* package-private */ final double lifetimeJitter = ThreadLocalRandom.current().nextDouble( 0.025 );  // the fraction of the maximum lifetime this connection forgoes...
+
+    final private int                                   statementCacheSize;  // the maximum number of idle prepared statements cached; zero for none...
+    final private LinkedHashMap<StatementKey,PreparedStatement> statements;  // idle prepared statements, least recently used first; guarded by itself...
+
 
     public PooledConnection( final SimpleConnectionPool _pool, final Connection _connection ) {
-        pool       = _pool;
-        connection = _connection;
+        this( _pool, _connection, 0 );
+    }
+
+
+    /* package-private */ PooledConnection( final SimpleConnectionPool _pool, final Connection _connection, final int _statementCacheSize ) {
+        pool               = _pool;
+        connection         = _connection;
+        statementCacheSize = _statementCacheSize;
+        statements         = new LinkedHashMap<>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<StatementKey, PreparedStatement> _eldest ) {
+                if( size() <= statementCacheSize )
+                    return false;
+                closeQuietly( _eldest.getValue() );
+                return true;
+            }
+        };
     }
 
 
@@ -84,10 +121,144 @@ public class PooledConnection implements Connection {
      * @exception SQLException SQLException if a database access error occurs
      */
     public void reallyClose() throws SQLException {
+        synchronized( statements ) {
+            statements.values().forEach( PooledConnection::closeQuietly );
+            statements.clear();
+        }
         connection.close();
     }
 
 
+    /**
+     * Returns the number of idle prepared statements in this connection's cache.
+     *
+     * @return The number of idle prepared statements cached.
+     */
+    public int getCachedStatementCount() {
+        synchronized( statements ) {
+            return statements.size();
+        }
+    }
+
+
+    /**
+     * Returns a prepared statement for the given key, from the cache if there is one there, or otherwise newly prepared with the given preparer.  If the cache is disabled,
+     * the newly prepared statement is returned directly, without wrapping.
+     *
+     * @param _key The key (SQL and options) of the statement.
+     * @param _preparer Prepares a new statement, if needed.
+     * @return The prepared statement.
+     * @throws SQLException on any problem preparing a new statement.
+     */
+    private PreparedStatement prepare( final StatementKey _key, final Preparer _preparer ) throws SQLException {
+
+        // if we're not caching, just prepare it...
+        if( statementCacheSize <= 0 )
+            return _preparer.prepare();
+
+        // if we have one cached, take it out of the cache (so nobody else can use it); otherwise prepare a new one...
+        PreparedStatement statement;
+        synchronized( statements ) {
+            statement = statements.remove( _key );
+        }
+        if( statement != null )
+            pool.statementHits.increment();
+        else {
+            pool.statementMisses.increment();
+            statement = _preparer.prepare();
+        }
+        return new PooledPreparedStatement( this, _key, statement );
+    }
+
+
+    /**
+     * Returns the given prepared statement (just closed by a client) to the cache, after clearing its parameters, batch, and warnings and closing any open result set.  If
+     * the statement can't be reused (for instance, it's closed, or set to close on completion), or if the cache already has an idle statement for the same key, or if this
+     * connection has been discarded, the statement is closed instead.
+     *
+     * @param _key The key (SQL and options) of the statement.
+     * @param _statement The statement to return.
+     */
+    /* package-private */ void returnStatement( final StatementKey _key, final PreparedStatement _statement ) {
+
+        try {
+            if( _statement.isClosed() || _statement.isCloseOnCompletion() || (state.get() == REMOVED) || connection.isClosed() ) {
+                closeQuietly( _statement );
+                return;
+            }
+            var resultSet = _statement.getResultSet();
+            if( resultSet != null )
+                resultSet.close();
+            _statement.clearParameters();
+            _statement.clearWarnings();
+        }
+        catch( SQLException _e ) {
+            LOGGER.finer( "Closing prepared statement that failed to reset: " + _e.getMessage() );
+            closeQuietly( _statement );
+            return;
+        }
+
+        // some drivers don't support batches...
+        try {
+            _statement.clearBatch();
+        }
+        catch( SQLException _e ) {
+            // naught to do here...
+        }
+
+        synchronized( statements ) {
+            if( !statements.containsKey( _key ) ) {
+                statements.put( _key, _statement );
+                return;
+            }
+        }
+        closeQuietly( _statement );
+    }
+
+
+    /**
+     * Close the given statement, ignoring any problems.
+     *
+     * @param _statement The statement to close.
+     */
+    private static void closeQuietly( final Statement _statement ) {
+        try {
+            _statement.close();
+        }
+        catch( SQLException _e ) {
+            // naught to do here...
+        }
+    }
+
+
+    /**
+     * The key for a cached prepared statement: its SQL and all the options it was prepared with (with -1 for options not given).
+     *
+     * @param sql The SQL of the statement.
+     * @param resultSetType The result set type, or -1.
+     * @param resultSetConcurrency The result set concurrency, or -1.
+     * @param resultSetHoldability The result set holdability, or -1.
+     * @param autoGeneratedKeys The auto-generated keys flag, or -1.
+     * @param columns The column indexes or names of the auto-generated keys, or {@code null}.
+     */
+    /* package-private */ record StatementKey( String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability, int autoGeneratedKeys,
+                                               List<Object> columns ) {
+
+        private StatementKey( final String _sql ) {
+            this( _sql, -1, -1, -1, -1, null );
+        }
+    }
+
+
+    /**
+     * Implemented by things that prepare a new statement.
+     */
+    @FunctionalInterface
+    private interface Preparer {
+        PreparedStatement prepare() throws SQLException;
+    }
+
+
     /**
      * Creates a <code>Statement</code> object for sending
      * SQL statements to the database.
@@ -146,7 +317,7 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql ) throws SQLException {
-        return connection.prepareStatement( sql );
+        return prepare( new StatementKey( sql ), () -> connection.prepareStatement( sql ) );
     }
 
 
@@ -574,7 +745,8 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql, final int resultSetType, final int resultSetConcurrency ) throws SQLException {
-        return connection.prepareStatement( sql, resultSetType, resultSetConcurrency );
+        return prepare( new StatementKey( sql, resultSetType, resultSetConcurrency, -1, -1, null ),
+                () -> connection.prepareStatement( sql, resultSetType, resultSetConcurrency ) );
     }
 
 
@@ -897,7 +1069,8 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql, final int resultSetType, final int resultSetConcurrency, final int resultSetHoldability ) throws SQLException {
-        return connection.prepareStatement( sql, resultSetType, resultSetConcurrency, resultSetHoldability );
+        return prepare( new StatementKey( sql, resultSetType, resultSetConcurrency, resultSetHoldability, -1, null ),
+                () -> connection.prepareStatement( sql, resultSetType, resultSetConcurrency, resultSetHoldability ) );
     }
 
 
@@ -987,7 +1160,7 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql, final int autoGeneratedKeys ) throws SQLException {
-        return connection.prepareStatement( sql, autoGeneratedKeys );
+        return prepare( new StatementKey( sql, -1, -1, -1, autoGeneratedKeys, null ), () -> connection.prepareStatement( sql, autoGeneratedKeys ) );
     }
 
 
@@ -1038,7 +1211,12 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql, final int[] columnIndexes ) throws SQLException {
-        return connection.prepareStatement( sql, columnIndexes );
+
+        // if we're not caching, or there's no array to key on, the driver gets the call untouched...
+        if( (statementCacheSize <= 0) || (columnIndexes == null) )
+            return connection.prepareStatement( sql, columnIndexes );
+        return prepare( new StatementKey( sql, -1, -1, -1, -1, Arrays.stream( columnIndexes ).boxed().map( Object.class::cast ).toList() ),
+                () -> connection.prepareStatement( sql, columnIndexes ) );
     }
 
 
@@ -1089,7 +1267,11 @@ public class PooledConnection implements Connection {
      */
     @Override
     public PreparedStatement prepareStatement( final String sql, final String[] columnNames ) throws SQLException {
-        return connection.prepareStatement( sql, columnNames );
+
+        // if we're not caching, or there's no array to key on, the driver gets the call untouched (the names may include nulls, so we copy them as they are)...
+        if( (statementCacheSize <= 0) || (columnNames == null) )
+            return connection.prepareStatement( sql, columnNames );
+        return prepare( new StatementKey( sql, -1, -1, -1, -1, Arrays.asList( (Object[]) columnNames.clone() ) ), () -> connection.prepareStatement( sql, columnNames ) );
     }
 
 
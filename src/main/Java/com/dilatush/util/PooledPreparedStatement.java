@@ -0,0 +1,753 @@
+package com.dilatush.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.*;
+import java.sql.Time;
+import java.util.Calendar;
+
+/**
+ * Implements {@link java.sql.PreparedStatement}, but intercepts the {@link PreparedStatement#close()} method to return the prepared statement to its
+ * {@link PooledConnection}'s statement cache instead of actually closing it.  Each time a statement is taken from the cache, it is wrapped in a new instance of this class,
+ * and once an instance has been closed, every method (other than {@link #close()} and {@link #isClosed()}) throws an {@link SQLException} &mdash; so a stale reference
+ * can never disturb a statement that has since been handed to another caller.  All other methods are simply forwarded to the real statement.  Instances of this class are
+ * mutable and <i>not</i> threadsafe.
+ *
+ * @author Tom Dilatush  tom@dilatush.com
+ */
+public class PooledPreparedStatement implements PreparedStatement {
+
+    final private PooledConnection              connection;
+    final private PooledConnection.StatementKey key;
+
+    private PreparedStatement statement;  // the real statement, or null if this instance has been closed...
+
+
+    /* package-private */ PooledPreparedStatement( final PooledConnection _connection, final PooledConnection.StatementKey _key, final PreparedStatement _statement ) {
+        connection = _connection;
+        key        = _key;
+        statement  = _statement;
+    }
+
+
+    /**
+     * Returns the real statement, if this instance hasn't been closed.
+     *
+     * @return The real statement.
+     * @throws SQLException if this instance has been closed.
+     */
+    private PreparedStatement open() throws SQLException {
+        if( statement == null )
+            throw new SQLException( "Statement is closed" );
+        return statement;
+    }
+
+
+    /**
+     * Returns the real statement to the connection's statement cache, instead of closing it.  Calling this method on a statement that is already closed is a no-op.
+     *
+     * @throws SQLException on any problem.
+     */
+    @Override
+    public void close() throws SQLException {
+        if( statement == null )
+            return;
+        var real = statement;
+        statement = null;
+        connection.returnStatement( key, real );
+    }
+
+
+    /**
+     * Returns {@code true} if this statement has been closed (that is, returned to the cache), or if the real statement is closed.
+     *
+     * @return {@code true} if this statement is closed.
+     * @throws SQLException on any problem.
+     */
+    @Override
+    public boolean isClosed() throws SQLException {
+        return (statement == null) || statement.isClosed();
+    }
+
+
+    /**
+     * Returns the {@link PooledConnection} that produced this statement (not the real connection), so that closing it releases it to the pool.
+     *
+     * @return The {@link PooledConnection} that produced this statement.
+     * @throws SQLException if this statement has been closed.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        open();
+        return connection;
+    }
+
+
+    @Override
+    public <T> T unwrap( final Class<T> iface ) throws SQLException {
+        return iface.isInstance( this ) ? iface.cast( this ) : open().unwrap( iface );
+    }
+
+
+    @Override
+    public boolean isWrapperFor( final Class<?> iface ) throws SQLException {
+        return iface.isInstance( this ) || open().isWrapperFor( iface );
+    }
+
+
+    @Override
+    public ResultSet executeQuery( final String sql ) throws SQLException {
+        return open().executeQuery( sql );
+    }
+
+
+    @Override
+    public int executeUpdate( final String sql ) throws SQLException {
+        return open().executeUpdate( sql );
+    }
+
+
+    @Override
+    public int getMaxFieldSize() throws SQLException {
+        return open().getMaxFieldSize();
+    }
+
+
+    @Override
+    public void setMaxFieldSize( final int max ) throws SQLException {
+        open().setMaxFieldSize( max );
+    }
+
+
+    @Override
+    public int getMaxRows() throws SQLException {
+        return open().getMaxRows();
+    }
+
+
+    @Override
+    public void setMaxRows( final int max ) throws SQLException {
+        open().setMaxRows( max );
+    }
+
+
+    @Override
+    public void setEscapeProcessing( final boolean enable ) throws SQLException {
+        open().setEscapeProcessing( enable );
+    }
+
+
+    @Override
+    public int getQueryTimeout() throws SQLException {
+        return open().getQueryTimeout();
+    }
+
+
+    @Override
+    public void setQueryTimeout( final int seconds ) throws SQLException {
+        open().setQueryTimeout( seconds );
+    }
+
+
+    @Override
+    public void cancel() throws SQLException {
+        open().cancel();
+    }
+
+
+    @Override
+    public SQLWarning getWarnings() throws SQLException {
+        return open().getWarnings();
+    }
+
+
+    @Override
+    public void clearWarnings() throws SQLException {
+        open().clearWarnings();
+    }
+
+
+    @Override
+    public void setCursorName( final String name ) throws SQLException {
+        open().setCursorName( name );
+    }
+
+
+    @Override
+    public boolean execute( final String sql ) throws SQLException {
+        return open().execute( sql );
+    }
+
+
+    @Override
+    public ResultSet getResultSet() throws SQLException {
+        return open().getResultSet();
+    }
+
+
+    @Override
+    public int getUpdateCount() throws SQLException {
+        return open().getUpdateCount();
+    }
+
+
+    @Override
+    public boolean getMoreResults() throws SQLException {
+        return open().getMoreResults();
+    }
+
+
+    @Override
+    public void setFetchDirection( final int direction ) throws SQLException {
+        open().setFetchDirection( direction );
+    }
+
+
+    @Override
+    public int getFetchDirection() throws SQLException {
+        return open().getFetchDirection();
+    }
+
+
+    @Override
+    public void setFetchSize( final int rows ) throws SQLException {
+        open().setFetchSize( rows );
+    }
+
+
+    @Override
+    public int getFetchSize() throws SQLException {
+        return open().getFetchSize();
+    }
+
+
+    @Override
+    public int getResultSetConcurrency() throws SQLException {
+        return open().getResultSetConcurrency();
+    }
+
+
+    @Override
+    public int getResultSetType() throws SQLException {
+        return open().getResultSetType();
+    }
+
+
+    @Override
+    public void addBatch( final String sql ) throws SQLException {
+        open().addBatch( sql );
+    }
+
+
+    @Override
+    public void clearBatch() throws SQLException {
+        open().clearBatch();
+    }
+
+
+    @Override
+    public int[] executeBatch() throws SQLException {
+        return open().executeBatch();
+    }
+
+
+    @Override
+    public boolean getMoreResults( final int current ) throws SQLException {
+        return open().getMoreResults( current );
+    }
+
+
+    @Override
+    public ResultSet getGeneratedKeys() throws SQLException {
+        return open().getGeneratedKeys();
+    }
+
+
+    @Override
+    public int executeUpdate( final String sql, final int[] columnIndexes ) throws SQLException {
+        return open().executeUpdate( sql, columnIndexes );
+    }
+
+
+    @Override
+    public int executeUpdate( final String sql, final int autoGeneratedKeys ) throws SQLException {
+        return open().executeUpdate( sql, autoGeneratedKeys );
+    }
+
+
+    @Override
+    public int executeUpdate( final String sql, final String[] columnNames ) throws SQLException {
+        return open().executeUpdate( sql, columnNames );
+    }
+
+
+    @Override
+    public boolean execute( final String sql, final int[] columnIndexes ) throws SQLException {
+        return open().execute( sql, columnIndexes );
+    }
+
+
+    @Override
+    public boolean execute( final String sql, final int autoGeneratedKeys ) throws SQLException {
+        return open().execute( sql, autoGeneratedKeys );
+    }
+
+
+    @Override
+    public boolean execute( final String sql, final String[] columnNames ) throws SQLException {
+        return open().execute( sql, columnNames );
+    }
+
+
+    @Override
+    public int getResultSetHoldability() throws SQLException {
+        return open().getResultSetHoldability();
+    }
+
+
+    @Override
+    public void setPoolable( final boolean poolable ) throws SQLException {
+        open().setPoolable( poolable );
+    }
+
+
+    @Override
+    public boolean isPoolable() throws SQLException {
+        return open().isPoolable();
+    }
+
+
+    @Override
+    public void closeOnCompletion() throws SQLException {
+        open().closeOnCompletion();
+    }
+
+
+    @Override
+    public boolean isCloseOnCompletion() throws SQLException {
+        return open().isCloseOnCompletion();
+    }
+
+
+    @Override
+    public long getLargeUpdateCount() throws SQLException {
+        return open().getLargeUpdateCount();
+    }
+
+
+    @Override
+    public void setLargeMaxRows( final long max ) throws SQLException {
+        open().setLargeMaxRows( max );
+    }
+
+
+    @Override
+    public long getLargeMaxRows() throws SQLException {
+        return open().getLargeMaxRows();
+    }
+
+
+    @Override
+    public long[] executeLargeBatch() throws SQLException {
+        return open().executeLargeBatch();
+    }
+
+
+    @Override
+    public long executeLargeUpdate( final String sql ) throws SQLException {
+        return open().executeLargeUpdate( sql );
+    }
+
+
+    @Override
+    public long executeLargeUpdate( final String sql, final int[] columnIndexes ) throws SQLException {
+        return open().executeLargeUpdate( sql, columnIndexes );
+    }
+
+
+    @Override
+    public long executeLargeUpdate( final String sql, final int autoGeneratedKeys ) throws SQLException {
+        return open().executeLargeUpdate( sql, autoGeneratedKeys );
+    }
+
+
+    @Override
+    public long executeLargeUpdate( final String sql, final String[] columnNames ) throws SQLException {
+        return open().executeLargeUpdate( sql, columnNames );
+    }
+
+
+    @Override
+    public String enquoteLiteral( final String val ) throws SQLException {
+        return open().enquoteLiteral( val );
+    }
+
+
+    @Override
+    public String enquoteIdentifier( final String identifier, final boolean alwaysQuote ) throws SQLException {
+        return open().enquoteIdentifier( identifier, alwaysQuote );
+    }
+
+
+    @Override
+    public boolean isSimpleIdentifier( final String identifier ) throws SQLException {
+        return open().isSimpleIdentifier( identifier );
+    }
+
+
+    @Override
+    public String enquoteNCharLiteral( final String val ) throws SQLException {
+        return open().enquoteNCharLiteral( val );
+    }
+
+
+    @Override
+    public ResultSet executeQuery() throws SQLException {
+        return open().executeQuery();
+    }
+
+
+    @Override
+    public int executeUpdate() throws SQLException {
+        return open().executeUpdate();
+    }
+
+
+    @Override
+    public void setNull( final int parameterIndex, final int sqlType ) throws SQLException {
+        open().setNull( parameterIndex, sqlType );
+    }
+
+
+    @Override
+    public void setBoolean( final int parameterIndex, final boolean x ) throws SQLException {
+        open().setBoolean( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setByte( final int parameterIndex, final byte x ) throws SQLException {
+        open().setByte( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setShort( final int parameterIndex, final short x ) throws SQLException {
+        open().setShort( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setInt( final int parameterIndex, final int x ) throws SQLException {
+        open().setInt( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setLong( final int parameterIndex, final long x ) throws SQLException {
+        open().setLong( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setFloat( final int parameterIndex, final float x ) throws SQLException {
+        open().setFloat( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setDouble( final int parameterIndex, final double x ) throws SQLException {
+        open().setDouble( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setBigDecimal( final int parameterIndex, final BigDecimal x ) throws SQLException {
+        open().setBigDecimal( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setString( final int parameterIndex, final String x ) throws SQLException {
+        open().setString( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setBytes( final int parameterIndex, final byte[] x ) throws SQLException {
+        open().setBytes( parameterIndex, x );
+    }
+
+
+    @Override
+    public void clearParameters() throws SQLException {
+        open().clearParameters();
+    }
+
+
+    @Override
+    public void setObject( final int parameterIndex, final Object x, final int targetSqlType ) throws SQLException {
+        open().setObject( parameterIndex, x, targetSqlType );
+    }
+
+
+    @Override
+    public void setObject( final int parameterIndex, final Object x ) throws SQLException {
+        open().setObject( parameterIndex, x );
+    }
+
+
+    @Override
+    public boolean execute() throws SQLException {
+        return open().execute();
+    }
+
+
+    @Override
+    public void addBatch() throws SQLException {
+        open().addBatch();
+    }
+
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        return open().getMetaData();
+    }
+
+
+    @Override
+    public ParameterMetaData getParameterMetaData() throws SQLException {
+        return open().getParameterMetaData();
+    }
+
+
+    @Override
+    public void setRowId( final int parameterIndex, final RowId x ) throws SQLException {
+        open().setRowId( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setNString( final int parameterIndex, final String value ) throws SQLException {
+        open().setNString( parameterIndex, value );
+    }
+
+
+    @Override
+    public void setNCharacterStream( final int parameterIndex, final Reader value, final long length ) throws SQLException {
+        open().setNCharacterStream( parameterIndex, value, length );
+    }
+
+
+    @Override
+    public void setNClob( final int parameterIndex, final NClob value ) throws SQLException {
+        open().setNClob( parameterIndex, value );
+    }
+
+
+    @Override
+    public void setClob( final int parameterIndex, final Reader reader, final long length ) throws SQLException {
+        open().setClob( parameterIndex, reader, length );
+    }
+
+
+    @Override
+    public void setBlob( final int parameterIndex, final InputStream inputStream, final long length ) throws SQLException {
+        open().setBlob( parameterIndex, inputStream, length );
+    }
+
+
+    @Override
+    public void setNClob( final int parameterIndex, final Reader reader, final long length ) throws SQLException {
+        open().setNClob( parameterIndex, reader, length );
+    }
+
+
+    @Override
+    public void setSQLXML( final int parameterIndex, final SQLXML xmlObject ) throws SQLException {
+        open().setSQLXML( parameterIndex, xmlObject );
+    }
+
+
+    @Override
+    public void setObject( final int parameterIndex, final Object x, final int targetSqlType, final int scaleOrLength ) throws SQLException {
+        open().setObject( parameterIndex, x, targetSqlType, scaleOrLength );
+    }
+
+
+    @Override
+    public void setNCharacterStream( final int parameterIndex, final Reader value ) throws SQLException {
+        open().setNCharacterStream( parameterIndex, value );
+    }
+
+
+    @Override
+    public void setClob( final int parameterIndex, final Reader reader ) throws SQLException {
+        open().setClob( parameterIndex, reader );
+    }
+
+
+    @Override
+    public void setBlob( final int parameterIndex, final InputStream inputStream ) throws SQLException {
+        open().setBlob( parameterIndex, inputStream );
+    }
+
+
+    @Override
+    public void setNClob( final int parameterIndex, final Reader reader ) throws SQLException {
+        open().setNClob( parameterIndex, reader );
+    }
+
+
+    @Override
+    public void setObject( final int parameterIndex, final Object x, final SQLType targetSqlType, final int scaleOrLength ) throws SQLException {
+        open().setObject( parameterIndex, x, targetSqlType, scaleOrLength );
+    }
+
+
+    @Override
+    public void setObject( final int parameterIndex, final Object x, final SQLType targetSqlType ) throws SQLException {
+        open().setObject( parameterIndex, x, targetSqlType );
+    }
+
+
+    @Override
+    public long executeLargeUpdate() throws SQLException {
+        return open().executeLargeUpdate();
+    }
+
+
+    @Override
+    public void setURL( final int parameterIndex, final URL x ) throws SQLException {
+        open().setURL( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setArray( final int parameterIndex, final Array x ) throws SQLException {
+        open().setArray( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setNull( final int parameterIndex, final int sqlType, final String typeName ) throws SQLException {
+        open().setNull( parameterIndex, sqlType, typeName );
+    }
+
+
+    @Override
+    public void setDate( final int parameterIndex, final Date x, final Calendar cal ) throws SQLException {
+        open().setDate( parameterIndex, x, cal );
+    }
+
+
+    @Override
+    public void setDate( final int parameterIndex, final Date x ) throws SQLException {
+        open().setDate( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setTime( final int parameterIndex, final Time x ) throws SQLException {
+        open().setTime( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setTime( final int parameterIndex, final Time x, final Calendar cal ) throws SQLException {
+        open().setTime( parameterIndex, x, cal );
+    }
+
+
+    @Override
+    public void setTimestamp( final int parameterIndex, final Timestamp x, final Calendar cal ) throws SQLException {
+        open().setTimestamp( parameterIndex, x, cal );
+    }
+
+
+    @Override
+    public void setTimestamp( final int parameterIndex, final Timestamp x ) throws SQLException {
+        open().setTimestamp( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setAsciiStream( final int parameterIndex, final InputStream x, final int length ) throws SQLException {
+        open().setAsciiStream( parameterIndex, x, length );
+    }
+
+
+    @Override
+    public void setAsciiStream( final int parameterIndex, final InputStream x ) throws SQLException {
+        open().setAsciiStream( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setAsciiStream( final int parameterIndex, final InputStream x, final long length ) throws SQLException {
+        open().setAsciiStream( parameterIndex, x, length );
+    }
+
+
+    @Deprecated
+    @Override
+    public void setUnicodeStream( final int parameterIndex, final InputStream x, final int length ) throws SQLException {
+        open().setUnicodeStream( parameterIndex, x, length );
+    }
+
+
+    @Override
+    public void setBinaryStream( final int parameterIndex, final InputStream x, final int length ) throws SQLException {
+        open().setBinaryStream( parameterIndex, x, length );
+    }
+
+
+    @Override
+    public void setBinaryStream( final int parameterIndex, final InputStream x ) throws SQLException {
+        open().setBinaryStream( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setBinaryStream( final int parameterIndex, final InputStream x, final long length ) throws SQLException {
+        open().setBinaryStream( parameterIndex, x, length );
+    }
+
+
+    @Override
+    public void setCharacterStream( final int parameterIndex, final Reader reader ) throws SQLException {
+        open().setCharacterStream( parameterIndex, reader );
+    }
+
+
+    @Override
+    public void setCharacterStream( final int parameterIndex, final Reader reader, final long length ) throws SQLException {
+        open().setCharacterStream( parameterIndex, reader, length );
+    }
+
+
+    @Override
+    public void setCharacterStream( final int parameterIndex, final Reader reader, final int length ) throws SQLException {
+        open().setCharacterStream( parameterIndex, reader, length );
+    }
+
+
+    @Override
+    public void setRef( final int parameterIndex, final Ref x ) throws SQLException {
+        open().setRef( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setBlob( final int parameterIndex, final Blob x ) throws SQLException {
+        open().setBlob( parameterIndex, x );
+    }
+
+
+    @Override
+    public void setClob( final int parameterIndex, final Clob x ) throws SQLException {
+        open().setClob( parameterIndex, x );
+    }
+}
@@ -517,4 +517,24 @@ public class ScheduledExecutor implements ScheduledExecutorService {
     public void execute( final Runnable command ) {
         service.execute( command );
     }
+
+
+    /**
+     * Returns the number of tasks waiting in this executor's queue, including scheduled tasks that are not yet due.  This is intended for monitoring, not for synchronization.
+     *
+     * @return The number of tasks waiting in this executor's queue.
+     */
+    public int getQueueSize() {
+        return ((ScheduledThreadPoolExecutor) service).getQueue().size();
+    }
+
+
+    /**
+     * Returns the approximate number of this executor's threads that are actively executing tasks.  This is intended for monitoring, not for synchronization.
+     *
+     * @return The approximate number of this executor's threads that are actively executing tasks.
+     */
+    public int getActiveCount() {
+        return ((ScheduledThreadPoolExecutor) service).getActiveCount();
+    }
 }
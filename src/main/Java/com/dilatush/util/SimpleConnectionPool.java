@@ -3,24 +3,43 @@ package com.dilatush.util;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import static com.dilatush.util.PooledConnection.*;
+
 /**
- * Implements a very simple connection pool for MySQL connections (JDBC).  The pool has a configurable size (that is, maximum number of connections
- * cached), and a configurable limit on how many connections may be extant at any moment.  Connections are created as they are needed, and when
- * released (closed) by the client, they are returned to the cache for reuse by another client (or the same client later).  Cached connections are
- * stored in a FIFO queue, with the oldest cached connection being the next one used.  If the maximum number of cached connections would be exceeded
- * by a newly released connection being cached, then the oldest cached connection is closed.  If the maximum number of extant connections would be
- * exceeded by a request for a connection when the cache is empty, the call for a new connection will be blocked until another client releases a
- * connection, and a warning is logged.  This behavior limits the memory consumption caused by leaking connections, and also helps identify leaking
- * (i.e., unclosed) connections.
+ * Implements a very simple connection pool for JDBC connections (by default, to MySQL).  The pool has a configurable size (that is, maximum number of connections
+ * cached), and a configurable limit on how many connections may be extant at any moment.  Connections are created as they are needed, and when released (closed) by the
+ * client, they are returned to the cache for reuse by another client (or the same client later).  If the maximum number of cached connections would be exceeded by a newly
+ * released connection being cached, then the released connection is closed instead.  If the maximum number of extant connections would be exceeded by a request for a
+ * connection when the cache is empty, the call for a new connection will be blocked until another client releases a connection (or until the optional timeout).  This
+ * behavior limits the memory consumption caused by leaking connections, and also helps identify leaking (i.e., unclosed) connections.
+ * <p>The pool is built to be borrowed from and released to by many threads at once, without locks and (in the common cases) without allocating:</p>
+ * <ul>
+ *     <li>Each thread remembers the last few connections it released, and tries to reuse one of them first.  Most threads borrow and release connections in a steady
+ *     pattern, so usually the connection a thread released last is still idle, and the thread gets it back without touching anything another thread touches.</li>
+ *     <li>Otherwise, the thread scans all the connections for an idle one, starting at an index that depends on the thread, so that concurrent scans mostly look at
+ *     different connections.  A connection is claimed with a single compare-and-set of its state.</li>
+ *     <li>A thread that must wait registers as a waiter; a thread releasing (or discarding) a connection while there are waiters wakes one of them to claim it (or to
+ *     create a new one).</li>
+ * </ul>
+ * <p>In the background, the pool periodically (every 10 seconds by default) validates all its idle connections in parallel, discarding any that are invalid, that have
+ * not been used for ten minutes, or that have outlived the optional maximum lifetime.  It keeps at least the configured minimum number of idle connections ready (none by
+ * default), creating them at startup and whenever connections are discarded, so that the first requests after startup (or after the database fails over) don't have to
+ * wait for connections to be created.  If creating a connection fails, the pool assumes the database is down: for a backoff period (growing from a quarter second up to
+ * 30 seconds while failures continue), attempts to create connections fail immediately instead of each waiting for the connection attempt to time out.  After the backoff,
+ * one attempt is let through; if it succeeds, the pool returns to normal.  The background work is done on the pool's own maintenance threads, which {@link #close()}
+ * shuts down.</p>
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
@@ -29,113 +48,378 @@ public class SimpleConnectionPool {
 
     final static private Logger LOGGER = Logger.getLogger( new Object(){}.getClass().getEnclosingClass().getCanonicalName() );
 
-    final static private long TICKLER_PERIOD = 10 * 1000;
+    final static private Duration DEFAULT_VALIDATION_INTERVAL = Duration.ofSeconds( 10 );
+    final static private long DISUSE_LIMIT_MS       = 10 * 60 * 1000;  // idle connections unused for this long are discarded (down to the minimum idle)...
+    final static private int  VALIDATION_TIMEOUT    = 1;               // seconds...
+    final static private int  MAINTENANCE_THREADS  = 4;               // so that validations are done in parallel...
+    final static private long CIRCUIT_MIN_BACKOFF_NS = TimeUnit.MILLISECONDS.toNanos( 250 );
+    final static private long CIRCUIT_MAX_BACKOFF_NS = TimeUnit.SECONDS.toNanos( 30 );
+    final static private int  AFFINITY_SLOTS  = 4;   // the number of released connections each thread remembers...
 
     final private String        host;
+    final private String        url;
+    final private String        driverClassName;
     final private String        password;
     final private String        userName;
     final private int           maxCached;
     final private int           maxExtant;
-    final private AtomicInteger created;  // count of connections created...
-    final private Timer         timer;
-
-    final private LinkedBlockingDeque<PooledConnection> cache;  // cache of unused, available connections...
-    final private Set<PooledConnection> extant;                 // set of all created connections...
+    final private ScheduledExecutor maintenance;  // validates idle connections, and creates them for the minimum idle...
+    final private Shutdown      shutdown;     // our shutdown hook, removed when we're closed...
+
+    final private AtomicInteger                       extant;      // count of connections created and not yet discarded...
+    final private AtomicInteger                       idle;        // count of connections in the idle state...
+    final private AtomicInteger                       waiters;     // count of threads waiting for a released connection...
+    final private Object                              signal;      // waiters wait on this for a connection to be released or discarded...
+    private long                                      signals;     // count of releases and discards while there were waiters; guarded by signal...
+    final private ThreadLocal<Affinity>               affinity;    // the connections each thread released most recently...
+    final private Object                              lock;        // guards changes (not reads) of connections...
+    private volatile PooledConnection[]               connections; // all extant connections, replaced (never modified) when one is added or removed...
+    private volatile int                              statementCacheSize;  // the size of the prepared statement cache for new connections...
+    private volatile int                              minIdle;     // the minimum number of idle connections to keep ready...
+    private volatile long                             maxLifetimeMS;  // connections older than this are discarded when idle; zero for no limit...
+    private ScheduledFuture<?>                        validation;  // the periodic validation; guarded by this instance...
+    final private AtomicInteger                       validating;  // count of idle connections claimed for validation...
+    final private AtomicBoolean                       filling;     // true while creating connections for the minimum idle...
+    final private AtomicInteger                       failures;    // count of consecutive failures to create a connection...
+    final private AtomicLong                          circuitUntil;  // System.nanoTime() until which creating connections fails fast, or zero if it doesn't...
+    final private AtomicBoolean                       closed;      // true once this pool has been closed...
+
+    // statistics...
+    final private LongAdder         borrows;
+    final private LongAdder         affinityHits;
+    final private LongAdder         creates;
+    final private LongAdder         discards;
+    final private LongAdder         waits;
+    final private LongAdder         timeouts;
+    final private LongAdder         borrowNanos;
+    final private LongAccumulator   maxBorrowNanos;
+    final private LongAdder         validations;
+    final private LongAdder         validationFailures;
+    final private LongAdder         expirations;
+    final private LongAdder         fastFails;
+    /* package-private */ final LongAdder statementHits;    // updated by our connections...
+    /* package-private */ final LongAdder statementMisses;  // updated by our connections...
 
 
+    /**
+     * Creates a new instance of this class that connects to the MySQL server at the given host.
+     *
+     * @param _host The MySQL server's host (and optionally, port and database).
+     * @param _password The password to connect with.
+     * @param _userName The user name to connect with.
+     * @param _maxCached The maximum number of idle connections to cache.
+     * @param _maxExtant The maximum number of connections that may exist at once.
+     */
     public SimpleConnectionPool( final String _host, final String _password, final String _userName, final int _maxCached, final int _maxExtant ) {
+        this( _host, "jdbc:mysql://" + _host + "?useSSL=false", "com.mysql.cj.jdbc.Driver", _password, _userName, _maxCached, _maxExtant );
+    }
 
-        host      = _host;
-        password  = _password;
-        userName  = _userName;
-        maxCached = _maxCached;
-        maxExtant = _maxExtant;
-        timer     = new Timer( "Tickler", true );
 
-        created   = new AtomicInteger( 0 );
+    /**
+     * Creates a new instance of this class that connects to the given JDBC URL, with the driver of the given class.  If the driver class name is {@code null}, then the
+     * driver must already be registered with {@link DriverManager} (or be loadable by its service loader).
+     *
+     * @param _url The JDBC URL to connect to.
+     * @param _driverClassName The fully qualified class name of the JDBC driver, or {@code null}.
+     * @param _password The password to connect with.
+     * @param _userName The user name to connect with.
+     * @param _maxCached The maximum number of idle connections to cache.
+     * @param _maxExtant The maximum number of connections that may exist at once.
+     */
+    public SimpleConnectionPool( final String _url, final String _driverClassName, final String _password, final String _userName,
+                                 final int _maxCached, final int _maxExtant ) {
+        this( null, _url, _driverClassName, _password, _userName, _maxCached, _maxExtant );
+    }
 
-        cache     = new LinkedBlockingDeque<>();
-        extant    = new HashSet<>();
 
-        // schedule our 10 second "tickler"...
-        timer.scheduleAtFixedRate( new Tickler(), TICKLER_PERIOD, TICKLER_PERIOD );
+    private SimpleConnectionPool( final String _host, final String _url, final String _driverClassName, final String _password, final String _userName,
+                                  final int _maxCached, final int _maxExtant ) {
+
+        if( Strings.isEmpty( _url ) )
+            throw new IllegalArgumentException( "JDBC URL not supplied" );
+        if( (_maxCached < 0) || (_maxExtant < 1) )
+            throw new IllegalArgumentException( "Invalid maximum cached or extant connections: " + _maxCached + ", " + _maxExtant );
+
+        host            = _host;
+        url             = _url;
+        driverClassName = _driverClassName;
+        password        = _password;
+        userName        = _userName;
+        maxCached       = _maxCached;
+        maxExtant       = _maxExtant;
+        maintenance     = new ScheduledExecutor( MAINTENANCE_THREADS, true, new ThreadPoolExecutor.DiscardPolicy() );  // once closed, background work is dropped...
+        shutdown        = new Shutdown();
+
+        extant          = new AtomicInteger( 0 );
+        idle            = new AtomicInteger( 0 );
+        waiters         = new AtomicInteger( 0 );
+        signal          = new Object();
+        affinity        = ThreadLocal.withInitial( Affinity::new );
+        lock            = new Object();
+        connections     = new PooledConnection[0];
+        validating      = new AtomicInteger( 0 );
+        filling         = new AtomicBoolean( false );
+        failures        = new AtomicInteger( 0 );
+        circuitUntil    = new AtomicLong( 0 );
+        closed          = new AtomicBoolean( false );
+
+        borrows         = new LongAdder();
+        affinityHits    = new LongAdder();
+        creates         = new LongAdder();
+        discards        = new LongAdder();
+        waits           = new LongAdder();
+        timeouts        = new LongAdder();
+        borrowNanos     = new LongAdder();
+        maxBorrowNanos  = new LongAccumulator( Long::max, 0 );
+        validations     = new LongAdder();
+        validationFailures = new LongAdder();
+        expirations     = new LongAdder();
+        fastFails       = new LongAdder();
+        statementHits   = new LongAdder();
+        statementMisses = new LongAdder();
+
+        // schedule our validation of idle connections...
+        setValidationInterval( DEFAULT_VALIDATION_INTERVAL );
 
         // add our shutdown hook...
-        Runtime.getRuntime().addShutdownHook( new Shutdown() );
+        Runtime.getRuntime().addShutdownHook( shutdown );
     }
 
 
     /**
-     * Returns a MySQL {@link Connection} instance, which is actually a {@link PooledConnection} instance.  This connection may be freshly created,
-     * or it may be an already-existing, but no longer used connection that has been cached.  If the limit of connections created has been reached,
-     * this method can block for an arbitrary length of time, waiting for another thread to release a connection for reuse.
+     * Returns a JDBC {@link Connection} instance, which is actually a {@link PooledConnection} instance.  This connection may be freshly created, or it may be an
+     * already-existing, but no longer used connection that has been cached.  If the limit of connections created has been reached, this method can block for an arbitrary
+     * length of time, waiting for another thread to release a connection for reuse.
      *
      * @return the connection
      * @throws SQLException on any SQL problem
      * @throws InterruptedException if interrupted while waiting for a connection to be released.
      */
     public Connection getConnection() throws SQLException, InterruptedException {
+        return borrow( Long.MAX_VALUE );
+    }
 
-        // if we can we get a connection from the cache, return it...
-        PooledConnection connection = cache.pollLast();
-        if( connection != null ) {
-            LOGGER.finer( "Reusing cached connection" + toString() );
-            connection.obtained();
-            return connection;
-        }
 
-        // create a new connection, if we still allowed to create more of them?
-        if( created.accumulateAndGet(1, (a, b) ->  (a >= maxExtant) ? a : a + b ) <= maxExtant ) {
-            connection = createConnection();
-            synchronized( extant ) { extant.add( connection ); }
-            LOGGER.finer( "Creating new connection" + toString() );
-            connection.obtained();
-            return connection;
-        }
+    /**
+     * Returns a JDBC {@link Connection} instance, which is actually a {@link PooledConnection} instance, just as {@link #getConnection()} does, except that this method
+     * waits no longer than the given timeout for another thread to release a connection.
+     *
+     * @param _timeout The maximum time to wait for a connection.
+     * @return The outcome of the attempt.  If ok, the info contains the connection.  If not ok, there is an explanatory message (for instance, if the timeout elapsed) and
+     *         possibly the exception that caused the problem.
+     * @throws InterruptedException if interrupted while waiting for a connection to be released.
+     */
+    public Outcome<Connection> getConnection( final Duration _timeout ) throws InterruptedException {
 
-        // no connections cached, can't create a new one -- so we wait until another thread releases a connection...
-        long startWait = System.currentTimeMillis();
-        LOGGER.finer( "Waiting for released connection" + toString() );
-        connection = cache.takeLast();  // this blocks until a cached connection is available...
-        long waitTime = System.currentTimeMillis() - startWait;
-        LOGGER.finer( "Got released connection after " + waitTime + "ms" + toString() );
-        connection.obtained();
-        return connection;
+        if( (_timeout == null) || _timeout.isNegative() )
+            return new Outcome<>( false, "Invalid timeout: " + _timeout, null, null );
+        try {
+            var connection = borrow( _timeout.toNanos() );
+            return (connection != null)
+                    ? new Outcome<>( true, null, null, connection )
+                    : new Outcome<>( false, "Timed out waiting for a connection after " + _timeout.toMillis() + "ms" + this, null, null );
+        }
+        catch( SQLException _e ) {
+            return new Outcome<>( false, "Failed to create JDBC connection: " + _e.getMessage(), _e, null );
+        }
     }
 
 
     /**
-     * Release the given connection back to the pool for reuse.  The caller is responsible for finishing (committing or rolling back) any
-     * transactions made while it was using the connection.
+     * Release the given connection back to the pool for reuse.  The caller is responsible for finishing (committing or rolling back) any transactions made while it was
+     * using the connection.  Releasing a connection that isn't in use (for instance, closing it twice) does nothing.
      *
      * @param _connection the connection to release.
      */
     public void release( final PooledConnection _connection ) {
 
-        // if we've reached the limit for number of cached connections, toss the last one away...
-        if( cache.size() >= maxCached ) {
-            LOGGER.finer( "Discarding cached connection, too many" + toString() );
-            PooledConnection connection = cache.pollLast();
-            discardConnection( connection );
+        // if the connection isn't in use, there's nothing to release...
+        if( (_connection == null) || (_connection.state.get() != IN_USE) )
+            return;
+
+        // if we've been closed, the connection goes too...
+        if( closed.get() ) {
+            discardConnection( _connection );
+            return;
         }
 
-        // poke the connection into the cache...
-        cache.addFirst( _connection );
-        LOGGER.finer( "Cached released connection" + toString() );
+        // if the connection has outlived its maximum lifetime, replace it...
+        if( expired( _connection, System.currentTimeMillis() ) ) {
+            LOGGER.finer( "Discarding released connection, past its maximum lifetime" + this );
+            expirations.increment();
+            discardConnection( _connection );
+            fillLater();
+            return;
+        }
+
+        // if nobody is waiting and we already have as many idle connections as we cache, toss this one away...
+        if( (waiters.get() == 0) && (idle.get() >= maxCached) ) {
+            LOGGER.finer( "Discarding released connection, too many cached" + this );
+            discardConnection( _connection );
+            return;
+        }
+
+        // make it idle, and remember that this thread released it...
+        affinity.get().remember( _connection );
+        makeIdle( _connection );
+        LOGGER.finer( "Cached released connection" + this );
+    }
+
+
+    /**
+     * Closes this pool: cancels the background validation and creation of connections, shuts down the maintenance threads, and closes all the idle connections.
+     * Connections in use are closed when they're released.  Once closed, attempts to borrow a connection (including those waiting when the pool is closed) fail with an
+     * {@link SQLException}.  Closing a closed pool does nothing.
+     */
+    public void close() {
+
+        if( !closed.compareAndSet( false, true ) )
+            return;
+        LOGGER.fine( "Closing connection pool" + this );
+
+        synchronized( this ) {
+            if( validation != null )
+                validation.cancel( false );
+        }
+        maintenance.shutdownNow();
+
+        for( PooledConnection connection : connections )
+            if( claim( connection ) )
+                discardConnection( connection );
+
+        // wake all the waiters, so they find out...
+        synchronized( signal ) {
+            signals++;
+            signal.notifyAll();
+        }
+
+        try {
+            Runtime.getRuntime().removeShutdownHook( shutdown );
+        }
+        catch( IllegalStateException _e ) {
+            // the JVM is already shutting down, so our hook will close the connections anyway...
+        }
+    }
+
+
+    public boolean isClosed() {
+        return closed.get();
+    }
+
+
+    /**
+     * Sets the minimum number of idle connections the pool keeps ready, and starts creating connections (in the background) if there are fewer than that now.  The default
+     * is zero.
+     *
+     * @param _minIdle The minimum number of idle connections, no more than either the maximum cached or the maximum extant connections.
+     */
+    public void setMinIdle( final int _minIdle ) {
+        if( (_minIdle < 0) || (_minIdle > maxCached) || (_minIdle > maxExtant) )
+            throw new IllegalArgumentException( "Invalid minimum idle connections: " + _minIdle );
+        minIdle = _minIdle;
+        fillLater();
+    }
+
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+
+    /**
+     * Sets the maximum lifetime of connections.  Connections older than this (less a random 0-2.5%, so that connections created together aren't all replaced together)
+     * are discarded when they're released or validated, and replaced as needed.  The default is zero, meaning no limit.
+     *
+     * @param _maxLifetime The maximum lifetime of connections, or zero for no limit.
+     */
+    public void setMaxLifetime( final Duration _maxLifetime ) {
+        if( (_maxLifetime == null) || _maxLifetime.isNegative() )
+            throw new IllegalArgumentException( "Invalid maximum lifetime: " + _maxLifetime );
+        maxLifetimeMS = _maxLifetime.toMillis();
+    }
+
+
+    public Duration getMaxLifetime() {
+        return Duration.ofMillis( maxLifetimeMS );
+    }
+
+
+    /**
+     * Sets the interval between validations of all idle connections.  The default is 10 seconds.
+     *
+     * @param _interval The interval between validations.
+     */
+    public synchronized void setValidationInterval( final Duration _interval ) {
+        if( (_interval == null) || _interval.isNegative() || _interval.isZero() )
+            throw new IllegalArgumentException( "Invalid validation interval: " + _interval );
+        if( validation != null )
+            validation.cancel( false );
+        validation = maintenance.scheduleAtFixedRate( this::validate, _interval, _interval );
+    }
+
+
+    /**
+     * Returns {@code true} if the pool currently believes the database is down, so that attempts to create connections fail immediately.
+     *
+     * @return {@code true} if attempts to create connections fail immediately.
+     */
+    public boolean isCircuitOpen() {
+        return circuitUntil.get() != 0;
+    }
+
+
+    /**
+     * Sets the maximum number of idle prepared statements each connection caches (see {@link PooledConnection}).  The default is zero, which disables caching.  The new
+     * size applies only to connections created after this call.
+     *
+     * @param _statementCacheSize The maximum number of idle prepared statements each connection caches.
+     */
+    public void setStatementCacheSize( final int _statementCacheSize ) {
+        if( _statementCacheSize < 0 )
+            throw new IllegalArgumentException( "Invalid statement cache size: " + _statementCacheSize );
+        statementCacheSize = _statementCacheSize;
+    }
+
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+
+    /**
+     * Returns a snapshot of this pool's statistics.
+     *
+     * @return The statistics.
+     */
+    public Stats getStats() {
+        var n = borrows.sum();
+        return new Stats( n, affinityHits.sum(), creates.sum(), discards.sum(), waits.sum(), timeouts.sum(), (n == 0) ? 0 : borrowNanos.sum() / n,
+                maxBorrowNanos.get(), extant.get(), idle.get(), waiters.get(), statementHits.sum(), statementMisses.sum(), validations.sum(),
+                validationFailures.sum(), expirations.sum(), fastFails.sum(), isCircuitOpen() );
     }
 
 
     @Override
     public String toString() {
-        return " (created: " + created.get() + ", cached: " + cache.size() + ")";
+        return " (extant: " + extant.get() + ", cached: " + idle.get() + ")";
     }
 
 
+    /**
+     * Returns the MySQL server host given to {@link #SimpleConnectionPool(String,String,String,int,int)}, or {@code null} if this pool was created with a JDBC URL.
+     *
+     * @return The MySQL server host, or {@code null}.
+     */
     public String getHost() {
         return host;
     }
 
 
+    public String getUrl() {
+        return url;
+    }
+
+
     public String getPassword() {
         return password;
     }
@@ -146,20 +430,424 @@ public class SimpleConnectionPool {
     }
 
 
+    /**
+     * Borrows a connection, waiting for up to the given time for one to be released if necessary.
+     *
+     * @param _timeoutNanos The maximum time to wait, in nanoseconds.
+     * @return The connection, or {@code null} if the timeout elapsed.
+     * @throws SQLException on any problem creating a connection.
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    private PooledConnection borrow( final long _timeoutNanos ) throws SQLException, InterruptedException {
+
+        long start = System.nanoTime();
+        checkOpen();
+
+        // if we can get an idle connection, or create a new one, we're done...
+        PooledConnection connection = claimIdle();
+        if( connection == null )
+            connection = createIfAllowed();
+        if( connection != null )
+            return borrowed( connection, start );
+
+        // no connections cached, can't create a new one -- so we wait until another thread releases a connection...
+        LOGGER.finer( "Waiting for released connection" + this );
+        waits.increment();
+        waiters.incrementAndGet();
+        try {
+            long deadline = start + _timeoutNanos;
+            while( true ) {
+
+                // now that we're a waiter, any release or discard signals us -- but one may have happened just before, so we look before we wait...
+                long seen;
+                synchronized( signal ) {
+                    seen = signals;
+                }
+                checkOpen();
+                connection = claimIdle();
+                if( connection == null )
+                    connection = createIfAllowed();
+                if( connection != null )
+                    return borrowed( connection, start );
+
+                long remaining = (_timeoutNanos == Long.MAX_VALUE) ? Long.MAX_VALUE : deadline - System.nanoTime();
+                if( remaining <= 0 ) {
+                    timeouts.increment();
+                    LOGGER.finer( "Timed out waiting for released connection" + this );
+                    return null;
+                }
+
+                // wait for a release or discard since we looked; then we look again, as another thread may beat us to the connection...
+                synchronized( signal ) {
+                    if( signals == seen ) {
+                        if( remaining == Long.MAX_VALUE )
+                            signal.wait();
+                        else
+                            TimeUnit.NANOSECONDS.timedWait( signal, remaining );
+                    }
+                }
+            }
+        }
+        finally {
+            waiters.decrementAndGet();
+        }
+    }
+
+
+    /**
+     * Throws an {@link SQLException} if this pool has been closed.
+     *
+     * @throws SQLException if this pool has been closed.
+     */
+    private void checkOpen() throws SQLException {
+        if( closed.get() )
+            throw new SQLException( "Connection pool is closed" );
+    }
+
+
+    /**
+     * Finishes borrowing the given connection, and updates the statistics.
+     *
+     * @param _connection The connection being borrowed.
+     * @param _start The {@link System#nanoTime()} when the borrow started.
+     * @return The connection.
+     */
+    private PooledConnection borrowed( final PooledConnection _connection, final long _start ) {
+        long nanos = System.nanoTime() - _start;
+        borrows.increment();
+        borrowNanos.add( nanos );
+        maxBorrowNanos.accumulate( nanos );
+        _connection.obtained();
+        return _connection;
+    }
+
+
+    /**
+     * Attempts to claim an idle connection, first from those this thread released recently, and then from all the connections.
+     *
+     * @return The claimed connection, or {@code null} if there were no idle connections.
+     */
+    private PooledConnection claimIdle() {
+
+        // first try the connections this thread released recently, most recent first...
+        var recent = affinity.get();
+        for( int i = 0; i < AFFINITY_SLOTS; i++ ) {
+            var connection = recent.get( i );
+            if( (connection != null) && claim( connection ) ) {
+                affinityHits.increment();
+                LOGGER.finer( "Reusing this thread's cached connection" + this );
+                return connection;
+            }
+        }
+
+        // then scan all the connections, starting at a place that depends on this thread...
+        if( idle.get() == 0 )
+            return null;
+        var all = connections;
+        int n = all.length;
+        if( n == 0 )
+            return null;
+        int first = (int) (Thread.currentThread().getId() % n);
+        for( int i = 0; i < n; i++ ) {
+            var connection = all[(first + i) % n];
+            if( claim( connection ) ) {
+                LOGGER.finer( "Reusing cached connection" + this );
+                return connection;
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Attempts to claim the given connection, if it's idle.
+     *
+     * @param _connection The connection to claim.
+     * @return {@code true} if the connection was claimed.
+     */
+    private boolean claim( final PooledConnection _connection ) {
+        if( (_connection.state.get() != IDLE) || !_connection.state.compareAndSet( IDLE, IN_USE ) )
+            return false;
+        idle.decrementAndGet();
+        return true;
+    }
+
+
+    /**
+     * Makes the given in-use connection idle, and if any threads are waiting for a connection, signals one of them.  If this pool has been closed, the connection is
+     * discarded instead.
+     *
+     * @param _connection The connection to make idle.
+     */
+    private void makeIdle( final PooledConnection _connection ) {
+
+        if( !_connection.state.compareAndSet( IN_USE, IDLE ) )
+            return;
+        idle.incrementAndGet();
+
+        // if we were closed meanwhile, close() may not have seen this connection idle...
+        if( closed.get() && claim( _connection ) ) {
+            discardConnection( _connection );
+            return;
+        }
+        signalWaiter();
+    }
+
+
+    /**
+     * If any threads are waiting for a connection, wakes one of them to look for an idle connection (or to create one).  A waiter counts itself before it looks, and reads
+     * the signal count before it looks, so a connection made idle (or discarded) after it looked always changes the signal count before the waiter would wait on it; no
+     * wakeup is lost.
+     */
+    private void signalWaiter() {
+
+        if( waiters.get() == 0 )
+            return;
+        synchronized( signal ) {
+            signals++;
+            signal.notify();
+        }
+    }
+
+
+    /**
+     * Returns {@code true} if the given connection has outlived the maximum lifetime (if there is one).
+     *
+     * @param _connection The connection to check.
+     * @param _now The current time, in milliseconds.
+     * @return {@code true} if the connection has outlived the maximum lifetime.
+     */
+    private boolean expired( final PooledConnection _connection, final long _now ) {
+        long max = maxLifetimeMS;
+        return (max > 0) && ((_now - _connection.created) > (max * (1 - _connection.lifetimeJitter)));
+    }
+
+
+    /**
+     * Creates a new connection, if the limit on extant connections allows it.
+     *
+     * @return The new connection, or {@code null} if the limit has been reached.
+     * @throws SQLException on any problem creating the connection, or if the database is believed to be down.
+     */
+    private PooledConnection createIfAllowed() throws SQLException {
+
+        // reserve a place for the new connection, if there's room...
+        int count;
+        do {
+            count = extant.get();
+            if( count >= maxExtant )
+                return null;
+        } while( !extant.compareAndSet( count, count + 1 ) );
+
+        // if the database is believed to be down, fail fast...
+        if( !circuitPermits() ) {
+            extant.decrementAndGet();
+            signalWaiter();
+            fastFails.increment();
+            throw new SQLException( "Database believed down; not attempting to connect for another "
+                    + java.lang.Math.max( 0, (circuitUntil.get() - System.nanoTime()) / 1000000 ) + "ms" );
+        }
+
+        try {
+            PooledConnection connection;
+            try {
+                connection = createConnection();
+            }
+            catch( SQLException _e ) {
+                tripCircuit();
+                throw _e;
+            }
+            resetCircuit();
+            synchronized( lock ) {
+                var all = connections;
+                var more = new PooledConnection[all.length + 1];
+                System.arraycopy( all, 0, more, 0, all.length );
+                more[all.length] = connection;
+                connections = more;
+            }
+            creates.increment();
+            LOGGER.finer( "Creating new connection" + this );
+            return connection;
+        }
+        catch( SQLException | RuntimeException _e ) {
+            extant.decrementAndGet();
+            signalWaiter();
+            throw _e;
+        }
+    }
+
+
     private PooledConnection createConnection() throws SQLException {
         try {
-            Class<?> klass = Class.forName( "com.mysql.cj.jdbc.Driver" );
-            klass.getDeclaredConstructor().newInstance();
-            String sqlURL = "jdbc:mysql://" + host + "?useSSL=false";
-            return new PooledConnection( this, DriverManager.getConnection( sqlURL, userName, password ) );
+            if( driverClassName != null )
+                Class.forName( driverClassName );
+            return new PooledConnection( this, DriverManager.getConnection( url, userName, password ), statementCacheSize );
         }
         catch( Exception _e ) {
-            LOGGER.log( Level.SEVERE, "Failed to create JDBC connection to MySQL", _e );
-            throw new SQLException( "Failed to create JDBC connection" );
+            LOGGER.log( Level.SEVERE, "Failed to create JDBC connection to " + url, _e );
+            throw new SQLException( "Failed to create JDBC connection", _e );
+        }
+    }
+
+
+    /**
+     * Returns {@code true} if creating a connection may be attempted: either the database isn't believed to be down, or the backoff period has elapsed and this is the one
+     * attempt let through to find out if it's back.
+     *
+     * @return {@code true} if creating a connection may be attempted.
+     */
+    private boolean circuitPermits() {
+
+        long until = circuitUntil.get();
+        if( until == 0 )
+            return true;
+        long now = System.nanoTime();
+        if( (now - until) < 0 )
+            return false;
+
+        // the backoff has elapsed; let exactly one attempt through, keeping the circuit open for everybody else meanwhile...
+        return circuitUntil.compareAndSet( until, now + backoffNanos( failures.get() ) );
+    }
+
+
+    /**
+     * Records a failure to create a connection, opening the circuit (so that attempts fail fast) for a backoff period that grows with consecutive failures, and schedules an
+     * attempt to create the minimum idle connections once it has elapsed.
+     */
+    private void tripCircuit() {
+        int n = failures.incrementAndGet();
+        long backoff = backoffNanos( n );
+        circuitUntil.set( System.nanoTime() + backoff );
+        if( n == 1 )
+            LOGGER.warning( "Failed to connect to " + url + "; failing fast while the database is down" );
+        if( minIdle > 0 )
+            maintenance.schedule( this::fill, backoff, TimeUnit.NANOSECONDS );
+    }
+
+
+    /**
+     * Records a successful creation of a connection, closing the circuit if it was open.
+     */
+    private void resetCircuit() {
+        if( failures.getAndSet( 0 ) > 0 ) {
+            circuitUntil.set( 0 );
+            LOGGER.info( "Connected to " + url + " again" );
+        }
+    }
+
+
+    private static long backoffNanos( final int _failures ) {
+        return java.lang.Math.min( CIRCUIT_MAX_BACKOFF_NS, CIRCUIT_MIN_BACKOFF_NS << java.lang.Math.min( java.lang.Math.max( _failures - 1, 0 ), 10 ) );
+    }
+
+
+    /**
+     * Validates all idle connections.  Each one is claimed (so nobody borrows it meanwhile), and discarded if it has outlived the maximum lifetime or hasn't been used for
+     * ten minutes (unless that would leave fewer than the minimum idle connections); otherwise it is checked for validity, in parallel on the maintenance threads, and then
+     * either made idle again or discarded.
+     */
+    private void validate() {
+
+        try {
+            LOGGER.finer( "Validating idle connections" + this );
+            long now = System.currentTimeMillis();
+            for( PooledConnection connection : connections ) {
+
+                if( !claim( connection ) )
+                    continue;
+
+                if( expired( connection, now ) ) {
+                    expirations.increment();
+                    discardConnection( connection );
+                    LOGGER.finer( "Discarded connection past its maximum lifetime" + this );
+                    continue;
+                }
+
+                if( ((now - java.lang.Math.max( connection.getObtained(), connection.created )) > DISUSE_LIMIT_MS) && (extant.get() > minIdle) ) {
+                    discardConnection( connection );
+                    LOGGER.finer( "Discarded connection disused for over ten minutes" + this );
+                    continue;
+                }
+
+                validating.incrementAndGet();
+                maintenance.execute( () -> check( connection ) );
+            }
+            fill();
+        }
+
+        // if we let an exception out, we'd never validate again...
+        catch( RuntimeException _e ) {
+            LOGGER.log( Level.SEVERE, "Problem validating connections", _e );
+        }
+    }
+
+
+    /**
+     * Checks the validity of the given (claimed) connection, and either makes it idle again or discards it.
+     *
+     * @param _connection The connection to check.
+     */
+    private void check( final PooledConnection _connection ) {
+
+        try {
+            validations.increment();
+            if( _connection.isClosed() || !_connection.isValid( VALIDATION_TIMEOUT ) ) {
+                validationFailures.increment();
+                discardConnection( _connection );
+                LOGGER.finer( "Discarded closed or invalid connection" + this );
+            }
+            else
+                makeIdle( _connection );
+        }
+        catch( SQLException _e ) {
+            validationFailures.increment();
+            discardConnection( _connection );
+            LOGGER.finer( "Discarded connection that errored on checking" + this );
+        }
+        finally {
+            validating.decrementAndGet();
+        }
+        fill();
+    }
+
+
+    /**
+     * Creates connections until there are at least the minimum idle connections (counting those being validated), or the extant limit is reached, or creating a connection
+     * fails.  Only one thread at a time does this.
+     */
+    private void fill() {
+
+        if( (minIdle == 0) || closed.get() || !filling.compareAndSet( false, true ) )
+            return;
+        try {
+            while( (idle.get() + validating.get()) < minIdle ) {
+                var connection = createIfAllowed();
+                if( connection == null )
+                    return;
+                makeIdle( connection );
+                LOGGER.finer( "Created connection for minimum idle" + this );
+            }
+        }
+
+        // the circuit is open now, and will schedule another try...
+        catch( SQLException _e ) {
+            LOGGER.finer( "Could not create connection for minimum idle: " + _e.getMessage() );
+        }
+        finally {
+            filling.set( false );
         }
     }
 
 
+    /**
+     * Creates connections for the minimum idle in the background.
+     */
+    private void fillLater() {
+        if( minIdle > 0 )
+            maintenance.execute( this::fill );
+    }
+
+
     /**
      * Make sure the given connection is actually closed, but without propagating any exceptions (as there may actually be something wrong
      * with the connection).
@@ -168,70 +856,103 @@ public class SimpleConnectionPool {
      */
     private void discardConnection( final PooledConnection _connection ) {
 
-        // ignore any nulls that might accidentally be thrown our way...
+        // ignore any nulls that might accidentally be thrown our way, and connections already discarded...
         if( _connection == null )
             return;
+        int previous = _connection.state.getAndSet( REMOVED );
+        if( previous == REMOVED )
+            return;
+        if( previous == IDLE )
+            idle.decrementAndGet();
+
+        // remove it from our extant connections...
+        synchronized( lock ) {
+            var all = connections;
+            for( int i = 0; i < all.length; i++ ) {
+                if( all[i] == _connection ) {
+                    var fewer = new PooledConnection[all.length - 1];
+                    System.arraycopy( all, 0, fewer, 0, i );
+                    System.arraycopy( all, i + 1, fewer, i, all.length - i - 1 );
+                    connections = fewer;
+                    break;
+                }
+            }
+        }
+        extant.decrementAndGet();
+        discards.increment();
+        signalWaiter();
 
         try {
 
             // it's not closed, so we need to do it ourselves...
             if( ! _connection.isClosed() )
                 _connection.reallyClose();
-
-            // remove it from our set of extant connections...
-            synchronized( extant ) { extant.remove( _connection ); }
         }
 
         // if we get ANY error while closing, we just leave...
         catch( SQLException _e ) {
             // naught to do here...
         }
-
-        // update our count of created connections...
-        created.decrementAndGet();
     }
 
 
-    private class Tickler extends TimerTask {
+    /**
+     * A snapshot of a pool's statistics.
+     *
+     * @param borrows The number of connections borrowed.
+     * @param affinityHits The number of borrows satisfied by a connection the borrowing thread had released.
+     * @param creates The number of connections created.
+     * @param discards The number of connections discarded.
+     * @param waits The number of borrows that had to wait for a connection to be released.
+     * @param timeouts The number of borrows that timed out while waiting.
+     * @param meanBorrowNanos The mean time taken by successful borrows, in nanoseconds, including any waiting or connection creation.
+     * @param maxBorrowNanos The maximum time taken by a successful borrow, in nanoseconds.
+     * @param extant The number of connections that exist now.
+     * @param idle The number of connections cached (idle) now.
+     * @param waiting The number of threads waiting for a connection now.
+     * @param statementHits The number of prepared statements taken from a connection's statement cache.
+     * @param statementMisses The number of prepared statements newly prepared because none was cached (only counted when caching is enabled).
+     * @param validations The number of background validations of idle connections.
+     * @param validationFailures The number of those validations that found the connection invalid.
+     * @param expirations The number of connections discarded for outliving the maximum lifetime.
+     * @param fastFails The number of attempts to create a connection that failed fast because the database was believed down.
+     * @param circuitOpen {@code true} if the database is believed down now.
+     */
+    public record Stats( long borrows, long affinityHits, long creates, long discards, long waits, long timeouts, long meanBorrowNanos, long maxBorrowNanos,
+                         int extant, int idle, int waiting, long statementHits, long statementMisses, long validations, long validationFailures,
+                         long expirations, long fastFails, boolean circuitOpen ) {}
 
-        /**
-         * Runs every 10 seconds.  Get the last connection in the cache, if there is one, and check it for validity.  Discard invalid connections,
-         * and re-insert valid ones. Also, if a connection hasn't been used in ten minutes, close it.
-         */
-        @Override
-        public void run() {
 
-            LOGGER.finer( "Tickler running" + SimpleConnectionPool.this.toString() );
+    /**
+     * The connections a thread released most recently, in a small ring.  Entries may be stale (in use by another thread, or discarded); they're only hints.
+     */
+    private static class Affinity {
 
-            // if we can't even get a cached connection, just leave...
-            PooledConnection connection = cache.pollLast();
-            if( connection == null )
-                return;
+        private final PooledConnection[] recent = new PooledConnection[AFFINITY_SLOTS];
+        private int next;
 
-            // if the connection hasn't been used for ten minutes, then discard it...
-            if( (System.currentTimeMillis() - connection.getObtained()) > 10 * 60 * 1000 ) {
-                discardConnection( connection );
-                LOGGER.finer( "Discarded connection disused for over ten minutes" + SimpleConnectionPool.this.toString() );
-                return;
-            }
 
-            // if the connection is closed for some reason, or if it isn't valid, or if testing it causes an exception, then discard it...
-            try {
-                if( connection.isClosed() || !connection.isValid( 1 ) ) {
-                    discardConnection( connection );
-                    LOGGER.finer( "Discarded closed or invalid connection" + SimpleConnectionPool.this.toString() );
-                    return;
-                }
-            }
-            catch( SQLException _e ) {
-                discardConnection( connection );
-                LOGGER.finer( "Discarded connection that errored on checking" + SimpleConnectionPool.this.toString() );
-                return;
-            }
+        /**
+         * Remembers the given connection, unless it's already remembered.
+         *
+         * @param _connection The connection to remember.
+         */
+        private void remember( final PooledConnection _connection ) {
+            for( PooledConnection connection : recent )
+                if( connection == _connection ) return;
+            recent[next] = _connection;
+            next = (next + 1) % AFFINITY_SLOTS;
+        }
 
-            // otherwise, getting here means we have a good connection, so toss it back into the cache...
-            cache.addFirst( connection );
-            LOGGER.finer( "Re-cached validated, tickled connection" + SimpleConnectionPool.this.toString() );
+
+        /**
+         * Returns the remembered connection with the given recency (0 is the most recently remembered), or {@code null} if there is none.
+         *
+         * @param _recency The recency of the connection to get.
+         * @return The connection, or {@code null}.
+         */
+        private PooledConnection get( final int _recency ) {
+            return recent[(next - 1 - _recency + 2 * AFFINITY_SLOTS) % AFFINITY_SLOTS];
         }
     }
 
@@ -244,17 +965,17 @@ public class SimpleConnectionPool {
         @Override
         public void run() {
 
-            LOGGER.fine( "Shutdown hook: closing all MySQL connections" );
+            LOGGER.fine( "Shutdown hook: closing all JDBC connections" );
 
             // close all the extant connections, ignoring any exceptions...
-            extant.forEach( connection -> {
+            for( PooledConnection connection : connections ) {
                 try {
                     connection.reallyClose();
                 }
                 catch( SQLException _e ) {
                     // do nothing; we're just gonna ignore problems during shutdown...
                 }
-            } );
+            }
         }
     }
 }
@@ -1,5 +1,9 @@
 package com.dilatush.util;
 
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.networkingengine.NetworkingEngine;
+import com.dilatush.util.networkingengine.TCPProber;
+
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.InetAddress;
@@ -24,6 +28,10 @@ import static java.util.logging.Level.FINE;
  * TCP connection, rather than blocking until it is finished.  These checks are performed every millisecond up to 10 milliseconds, then every 10
  * milliseconds up to 500 milliseconds, then every 50 milliseconds.  This provides higher resolutions for faster responses, but still
  * keeps the worst-case number of checks to a reasonable number.</p>
+ * <p>Alternatively, a TCPPinger may be created on a {@link NetworkingEngine} ({@link #TCPPinger(NetworkingEngine,int)}), in which case it uses a
+ * {@link TCPProber}: the connects are watched by the engine's selectors rather than polled, the response times are accurate to well under a
+ * millisecond, and the number of pings in progress at once is bounded.  This is the mode to use for pinging thousands of endpoints per second.  The
+ * outcomes are exactly the same in either mode.</p>
  *
  * @author Tom Dilatush  tom@dilatush.com
  */
@@ -36,9 +44,12 @@ public class TCPPinger {
     // null unless the no-args constructor is ever called, in which case it will refer to a scheduler with a single daemon thread...
     private static volatile ScheduledExecutor defaultScheduler;
 
-    // the scheduler to use with this instance (either one supplied when instantiated, or the default scheduler)...
+    // the scheduler to use with this instance (either one supplied when instantiated, or the default scheduler), or null if we have a prober...
     private final ScheduledExecutor scheduler;
 
+    // the prober to use with this instance, or null if we poll with the scheduler...
+    private final TCPProber prober;
+
 
     /**
      * Creates a new instance of this class using the default scheduler, which has a single daemon thread shared by all instances of
@@ -64,6 +75,7 @@ public class TCPPinger {
 
         // now we have a default scheduler for sure, so use it...
         scheduler = defaultScheduler;
+        prober    = null;
     }
 
 
@@ -74,6 +86,25 @@ public class TCPPinger {
      */
     public TCPPinger( final ScheduledExecutor _scheduler ) {
         scheduler = _scheduler;
+        prober    = null;
+    }
+
+
+    /**
+     * Creates a new instance of this class that pings with a {@link TCPProber} on the given {@link NetworkingEngine}, with at most the given
+     * number of pings in progress at once (any more wait their turn, and their timeouts start when their turn comes).
+     *
+     * @param _engine The {@link NetworkingEngine} whose selectors will watch the connects.
+     * @param _maxConcurrent The maximum number of pings in progress at once; must be at least one.
+     * @throws IllegalArgumentException if the engine is {@code null} or the maximum is less than one.
+     */
+    public TCPPinger( final NetworkingEngine _engine, final int _maxConcurrent ) {
+
+        var proberOutcome = TCPProber.getNewInstance( _engine, _maxConcurrent );
+        if( proberOutcome.notOk() )
+            throw new IllegalArgumentException( proberOutcome.msg() );
+        scheduler = null;
+        prober    = proberOutcome.info();
     }
 
 
@@ -112,6 +143,16 @@ public class TCPPinger {
             throw new IllegalArgumentException( "Invalid IP address supplied for TCP ping: " + _address );
         }
 
+        // if we have a prober, let it do the work...
+        if( prober != null ) {
+            prober.probe( IPAddress.fromInetAddress( address ), _port, Duration.ofMillis( _timeoutMS ), ( outcome ) -> _callback.accept(
+                    outcome.ok()
+                    ? new Outcome<>( true, null, null, new PingResult( outcome.info().responded(), outcome.info().rttNanos() / 1e9 ) )
+                    : new Outcome<>( false, outcome.msg(), outcome.cause(), null )
+            ) );
+            return;
+        }
+
         // attempt to connect and wait for the result...
         new Runner( new InetSocketAddress( address, _port ), _timeoutMS, _callback ).run();
     }
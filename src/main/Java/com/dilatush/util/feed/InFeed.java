@@ -89,6 +89,35 @@ public interface InFeed extends Closeable {
     }
 
 
+    /**
+     * <p>Starts a streaming read on this feed: successive buffers of between 1 and the given {@code _maxBytes} bytes read from this feed are delivered to the given
+     * {@code _handler}, in order, until the returned {@link ReadStream} is canceled or a read fails.  The stream may be paused and resumed through the returned
+     * {@link ReadStream}.  No other read operation may be initiated on this feed while the stream is active.</p>
+     * <p>This method has a default implementation, which simply initiates a new read each time the previous one completes.  Implementations (such as those reading from a
+     * network connection) may override it with a more efficient implementation, but <i>must</i> retain the default behavior.</p>
+     * <p>Whether the handler is called in the same thread this method was called in, or in a separate thread (or even either, depending on conditions), is
+     * implementation-dependent and should be documented for each implementation.</p>
+     *
+     * @param _maxBytes The maximum number of bytes in each buffer delivered to the handler.  The value must be in the range [1..65536].
+     * @param _handler This handler is called with the outcome of each read.  If the outcome is ok, the info contains a buffer with the bytes read from this feed.  If not ok,
+     *                 then the stream has ended, and there is an explanatory message and possibly the exception that caused the problem.
+     * @return The {@link ReadStream} representing the streaming read, which may be used to pause, resume, or cancel it.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}, or {@code _maxBytes} is out of range.
+     * @throws IllegalStateException if a read operation is already in progress.
+     */
+    default ReadStream stream( final int _maxBytes, final OnReadComplete _handler ) {
+
+        // sanity checks...
+        if( _handler == null ) throw new IllegalArgumentException( "_handler is null" );
+        if( (_maxBytes < 1) || (_maxBytes > MAX_READ_BYTES) ) throw new IllegalArgumentException( "_maxBytes is out of range [1..65536]: " + _maxBytes );
+        if( isReading() ) throw new IllegalStateException( "Read operation already in progress" );
+
+        var stream = new InFeedReadStream( this, _maxBytes, _handler );
+        stream.start();
+        return stream;
+    }
+
+
     /**
      * Return {@code true} if a read operation is already in progress.  The default implementation always returns {@code false}.
      *
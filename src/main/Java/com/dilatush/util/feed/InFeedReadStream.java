@@ -0,0 +1,110 @@
+package com.dilatush.util.feed;
+
+import com.dilatush.util.Outcome;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The default implementation of {@link ReadStream}, used by {@link InFeed#stream(int,OnReadComplete)} for feeds that don't provide their own implementation.  It simply
+ * initiates a new read on the feed each time the previous read completes.
+ */
+/* package-private */ final class InFeedReadStream implements ReadStream {
+
+    private static final Outcome.Forge<ByteBuffer> forgeByteBuffer = new Outcome.Forge<>();
+
+    private final InFeed         feed;       // the feed we're streaming from...
+    private final int            maxBytes;   // the maximum number of bytes in each read...
+    private final OnReadComplete handler;    // the handler for each buffer read...
+    private final AtomicBoolean  active;     // true until the stream has ended...
+    private final AtomicBoolean  paused;     // true while the stream is paused...
+    private final AtomicBoolean  reading;    // true while a read on the feed is in progress...
+
+
+    /**
+     * Creates a new instance of this class, streaming from the given feed, reading up to the given number of bytes at a time, and delivering the results to the given handler.
+     * The stream does not start until {@link #start()} is called.
+     *
+     * @param _feed The {@link InFeed} to stream from.
+     * @param _maxBytes The maximum number of bytes to read at a time, in the range [1..65536].
+     * @param _handler The handler to deliver each buffer read to.
+     */
+    /* package-private */ InFeedReadStream( final InFeed _feed, final int _maxBytes, final OnReadComplete _handler ) {
+
+        feed     = _feed;
+        maxBytes = _maxBytes;
+        handler  = _handler;
+        active   = new AtomicBoolean( true );
+        paused   = new AtomicBoolean( false );
+        reading  = new AtomicBoolean( false );
+    }
+
+
+    /**
+     * Starts this stream by initiating the first read.
+     */
+    /* package-private */ void start() {
+        issueRead();
+    }
+
+
+    /**
+     * If this stream is active, not paused, and doesn't already have a read in progress, initiate a read on the feed.
+     */
+    private void issueRead() {
+
+        if( !active.get() || paused.get() ) return;
+        if( reading.getAndSet( true ) ) return;
+        feed.read( 1, maxBytes, this::onRead );
+    }
+
+
+    /**
+     * Called when a read on the feed completes; delivers the outcome and initiates the next read.
+     *
+     * @param _outcome The outcome of the read.
+     */
+    private void onRead( final Outcome<ByteBuffer> _outcome ) {
+
+        reading.set( false );
+
+        // if the stream was canceled while this read was in progress, we just drop the outcome...
+        if( !active.get() ) return;
+
+        // a not ok outcome ends the stream...
+        if( _outcome.notOk() ) active.set( false );
+
+        handler.handle( _outcome );
+        issueRead();
+    }
+
+
+    @Override
+    public void pause() {
+        paused.set( true );
+    }
+
+
+    @Override
+    public void resume() {
+        if( paused.getAndSet( false ) ) issueRead();
+    }
+
+
+    @Override
+    public void cancel() {
+        if( active.getAndSet( false ) ) handler.handle( forgeByteBuffer.notOk( "Read stream canceled" ) );
+    }
+
+
+    @Override
+    public boolean isPaused() {
+        return paused.get();
+    }
+
+
+    @Override
+    public boolean isActive() {
+        return active.get();
+    }
+}
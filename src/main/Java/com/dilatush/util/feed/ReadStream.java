@@ -0,0 +1,46 @@
+package com.dilatush.util.feed;
+
+/**
+ * <p>Implemented by streaming read subscriptions on an {@link InFeed} (see {@link InFeed#stream(int,OnReadComplete)}).  While a read stream is active, successive buffers of
+ * bytes read from the feed are delivered to the stream's {@link OnReadComplete} handler, in order, without the caller having to initiate each read.  The stream ends when the
+ * handler is called with a not ok outcome (for an error, the end of the feed's data, or cancellation); no further calls are made to the handler after that.</p>
+ * <p>Flow control is provided by {@link #pause()} and {@link #resume()}.  While a stream is paused, no further bytes are read from the feed, though buffers that had already been
+ * read may still be delivered.</p>
+ */
+public interface ReadStream {
+
+    /**
+     * Pauses this stream.  No further bytes will be read from the feed until {@link #resume()} is called.  Buffers that had already been read may still be delivered.  Pausing a
+     * stream that is already paused, or that has ended, has no effect.
+     */
+    void pause();
+
+
+    /**
+     * Resumes this stream after a {@link #pause()}.  Resuming a stream that isn't paused, or that has ended, has no effect.
+     */
+    void resume();
+
+
+    /**
+     * Cancels this stream.  If the stream is active, the stream's handler is called (after any buffers already read have been delivered) with a not ok outcome, and the stream
+     * ends.  Canceling a stream that has already ended has no effect.
+     */
+    void cancel();
+
+
+    /**
+     * Returns {@code true} if this stream is paused.
+     *
+     * @return {@code true} if this stream is paused.
+     */
+    boolean isPaused();
+
+
+    /**
+     * Returns {@code true} if this stream is active (that is, it has not ended).
+     *
+     * @return {@code true} if this stream is active.
+     */
+    boolean isActive();
+}
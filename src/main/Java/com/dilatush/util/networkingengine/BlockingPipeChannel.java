@@ -0,0 +1,222 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.feed.InFeed;
+import com.dilatush.util.feed.OnReadComplete;
+import com.dilatush.util.feed.OnWriteComplete;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.ClosedChannelException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class are blocking {@link ByteChannel} views of a {@link TCPPipe}, obtained from {@link TCPPipe#blockingChannel()}, for code that prefers to dedicate a
+ * thread to each connection.  Each read or write initiates the pipe's asynchronous operation, then parks the calling thread until the operation's completion handler unparks it.
+ * Unlike the blocking defaults in {@link InFeed} and {@link com.dilatush.util.feed.OutFeed}, no {@link com.dilatush.util.Waiter} (and its semaphore) is allocated per operation,
+ * and the waiting thread holds no monitor; the reads and writes are serialized with {@link ReentrantLock}s, which also park.  This is exactly the kind of waiting that
+ * lightweight (virtual) threads can do cheaply, so the one engine can serve a great many thread-per-connection clients.</p>
+ * <p>Reads and writes may proceed concurrently (in different threads), but reads are serialized amongst themselves, as are writes.  A read returns whatever bytes the pipe
+ * delivers (at least one, and at most what fits in the destination buffer), or -1 at the end of the stream.  A write returns only when all the bytes remaining in the source
+ * buffer have been written.  If the thread waiting for a read or write is interrupted, the operation is canceled and an {@link InterruptedIOException} is thrown (with the
+ * thread's interrupt status still set).</p>
+ */
+@SuppressWarnings( "unused" )
+public final class BlockingPipeChannel implements ByteChannel {
+
+    private final TCPPipe          pipe;           // the pipe this channel is a view of...
+    private final ReentrantLock    readLock;       // serializes reads...
+    private final ReentrantLock    writeLock;      // serializes writes...
+    private final OnReadComplete   onRead;         // the (reused) read completion handler...
+    private final OnWriteComplete  onWrite;        // the (reused) write completion handler...
+
+    private volatile Thread               reader;        // the thread waiting for the read in progress...
+    private volatile Thread               writer;        // the thread waiting for the write in progress...
+    private volatile Outcome<ByteBuffer>  readOutcome;   // the outcome of the read in progress, or null until it completes...
+    private volatile Outcome<?>           writeOutcome;  // the outcome of the write in progress, or null until it completes...
+
+
+    /**
+     * Creates a new instance of this class that is a view of the given pipe.
+     *
+     * @param _pipe The {@link TCPPipe} to view as a blocking channel.
+     */
+    /* package-private */ BlockingPipeChannel( final TCPPipe _pipe ) {
+
+        pipe      = _pipe;
+        readLock  = new ReentrantLock();
+        writeLock = new ReentrantLock();
+        onRead    = this::onReadComplete;
+        onWrite   = this::onWriteComplete;
+    }
+
+
+    /**
+     * Reads a sequence of bytes from the pipe into the given buffer, blocking until at least one byte is available (or the end of the stream is reached).
+     *
+     * @param _dst The buffer into which bytes are to be transferred.
+     * @return The number of bytes read, possibly zero (only if the buffer has no room), or -1 if the remote side has closed the connection.
+     * @throws ClosedChannelException if this channel is closed.
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting.
+     * @throws IOException if the read fails for any other reason.
+     */
+    @Override
+    public int read( final ByteBuffer _dst ) throws IOException {
+
+        // sanity checks...
+        if( isNull( _dst ) ) throw new IllegalArgumentException( "_dst is null" );
+        if( !isOpen() ) throw new ClosedChannelException();
+        if( !_dst.hasRemaining() ) return 0;
+
+        readLock.lock();
+        try {
+            // start the read, and wait for it to complete...
+            reader = Thread.currentThread();
+            readOutcome = null;
+            pipe.read( 1, Math.min( _dst.remaining(), InFeed.MAX_READ_BYTES ), onRead );
+            var interrupted = false;
+            Outcome<ByteBuffer> outcome;
+            while( (outcome = readOutcome) == null ) {
+                LockSupport.park( this );
+                if( Thread.interrupted() && !interrupted ) {
+                    interrupted = true;
+                    pipe.cancelRead();   // this guarantees our completion...
+                }
+            }
+            reader = null;
+
+            // if we got some bytes, we deliver them even if we were interrupted...
+            if( outcome.ok() ) {
+                var buffer = outcome.info();
+                var bytesRead = buffer.remaining();
+                _dst.put( buffer );
+                pipe.release( buffer );
+                if( interrupted ) Thread.currentThread().interrupt();
+                return bytesRead;
+            }
+
+            // otherwise, figure out what went wrong...
+            if( interrupted ) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException( "Read interrupted" );
+            }
+            if( TCPPipe.END_OF_STREAM.equals( outcome.msg() ) ) return -1;
+            throw new IOException( outcome.msg(), outcome.cause() );
+        }
+        finally {
+            readLock.unlock();
+        }
+    }
+
+
+    /**
+     * Writes all the bytes remaining in the given buffer to the pipe, blocking until they have all been written.  Upon return, the buffer's position is at its limit.  If the
+     * write fails, the buffer's position is where it was when this method was called.
+     *
+     * @param _src The buffer from which bytes are to be written.
+     * @return The number of bytes written.
+     * @throws ClosedChannelException if this channel is closed.
+     * @throws InterruptedIOException if the calling thread is interrupted while waiting.
+     * @throws IOException if the write fails for any other reason.
+     */
+    @Override
+    public int write( final ByteBuffer _src ) throws IOException {
+
+        // sanity checks...
+        if( isNull( _src ) ) throw new IllegalArgumentException( "_src is null" );
+        if( !isOpen() ) throw new ClosedChannelException();
+        if( !_src.hasRemaining() ) return 0;
+
+        writeLock.lock();
+        try {
+            // start the write, and wait for it to complete...
+            var limit = _src.limit();
+            var bytesToWrite = _src.remaining();
+            writer = Thread.currentThread();
+            writeOutcome = null;
+            pipe.write( _src, onWrite );
+            var interrupted = false;
+            Outcome<?> outcome;
+            while( (outcome = writeOutcome) == null ) {
+                LockSupport.park( this );
+                if( Thread.interrupted() && !interrupted ) {
+                    interrupted = true;
+                    pipe.cancelWrite();   // this guarantees our completion...
+                }
+            }
+            writer = null;
+
+            // the pipe clears the buffer on success (and resets it on failure), so we restore the caller's limit...
+            _src.limit( limit );
+            if( interrupted ) Thread.currentThread().interrupt();
+            if( outcome.ok() ) {
+                _src.position( limit );
+                return bytesToWrite;
+            }
+            if( interrupted ) throw new InterruptedIOException( "Write interrupted" );
+            throw new IOException( outcome.msg(), outcome.cause() );
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns {@code true} if this channel (and the pipe it is a view of) is open.
+     *
+     * @return {@code true} if this channel is open.
+     */
+    @Override
+    public boolean isOpen() {
+        return pipe.isOpen();
+    }
+
+
+    /**
+     * Closes this channel, and the pipe it is a view of.  Any thread blocked in a read or write will get an {@link IOException}.
+     */
+    @Override
+    public void close() {
+        pipe.close();
+        pipe.cancelRead();
+        pipe.cancelWrite();
+    }
+
+
+    /**
+     * Returns the pipe this channel is a view of.
+     *
+     * @return The pipe this channel is a view of.
+     */
+    public TCPPipe getPipe() {
+        return pipe;
+    }
+
+
+    /**
+     * Called (in one of the engine's executor threads) when a read completes; records the outcome and unparks the waiting reader.
+     *
+     * @param _outcome The outcome of the read.
+     */
+    private void onReadComplete( final Outcome<ByteBuffer> _outcome ) {
+        readOutcome = _outcome;
+        LockSupport.unpark( reader );
+    }
+
+
+    /**
+     * Called (in one of the engine's executor threads) when a write completes; records the outcome and unparks the waiting writer.
+     *
+     * @param _outcome The outcome of the write.
+     */
+    private void onWriteComplete( final Outcome<?> _outcome ) {
+        writeOutcome = _outcome;
+        LockSupport.unpark( writer );
+    }
+}
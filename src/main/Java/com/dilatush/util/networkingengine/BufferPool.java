@@ -0,0 +1,71 @@
+package com.dilatush.util.networkingengine;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Implemented by pools of {@link ByteBuffer}s that the {@link NetworkingEngine} uses for all inbound data: the buffers delivered by {@link TCPPipe} reads, and the buffers in
+ * the {@link InboundDatagram}s received by {@link UDPServer} and {@link UDPClient}.</p>
+ * <p>The release contract is simple: a buffer obtained from {@link #acquire(int)} <i>may</i> be returned to the pool by calling {@link #release(ByteBuffer)} exactly once, after
+ * which the caller must not touch the buffer again.  A buffer that is never released is simply garbage collected; this is always safe, but defeats the purpose of the pool.</p>
+ */
+public interface BufferPool {
+
+    /**
+     * A pool that doesn't pool at all: every acquisition allocates a new heap buffer of exactly the requested capacity, and releases are ignored.  This is the default pool for
+     * a {@link NetworkingEngine}, and matches the engine's behavior before buffer pools existed.
+     */
+    BufferPool UNPOOLED = new BufferPool() {
+
+        @Override
+        public ByteBuffer acquire( final int _capacity ) {
+            return ByteBuffer.allocate( _capacity );
+        }
+
+        @Override
+        public void release( final ByteBuffer _buffer ) {
+            // naught to do...
+        }
+
+        @Override
+        public Stats getStats() {
+            return new Stats( 0, 0, 0, 0 );
+        }
+    };
+
+
+    /**
+     * Returns a cleared buffer with its limit set to the given capacity.  The buffer's actual capacity may be larger than the requested capacity.
+     *
+     * @param _capacity The number of bytes required in the buffer, which must be at least one.
+     * @return The buffer, with the position at zero and the limit at {@code _capacity}.
+     */
+    ByteBuffer acquire( final int _capacity );
+
+
+    /**
+     * Returns the given buffer to this pool.  The buffer must have been obtained from {@link #acquire(int)} on this pool, and must not be used by the caller after this call.
+     * Releasing {@code null} has no effect.
+     *
+     * @param _buffer The buffer to return to this pool.
+     */
+    void release( final ByteBuffer _buffer );
+
+
+    /**
+     * Returns a snapshot of this pool's statistics.
+     *
+     * @return A snapshot of this pool's statistics.
+     */
+    Stats getStats();
+
+
+    /**
+     * A snapshot of the statistics for a {@link BufferPool}, intended for sizing the pool.
+     *
+     * @param hits The number of acquisitions that were satisfied by a pooled buffer.
+     * @param misses The number of acquisitions that required allocating a new buffer.
+     * @param outstanding The number of acquired buffers that have not (yet) been released.
+     * @param discarded The number of released buffers that were discarded because the pool was full, or because they weren't pooled buffers.
+     */
+    record Stats( long hits, long misses, long outstanding, long discarded ) {}
+}
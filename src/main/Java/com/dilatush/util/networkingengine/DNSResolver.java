@@ -0,0 +1,725 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.Waiter;
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.ip.IPHost;
+import com.dilatush.util.ip.IPv4Address;
+import com.dilatush.util.ip.IPv6Address;
+import com.dilatush.util.networkingengine.interfaces.OnResolveHandler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class resolve hostnames to IP addresses asynchronously, by sending DNS queries (over UDP) to a single recursive DNS server, using a {@link UDPClient} on
+ * a {@link NetworkingEngine}.  No thread is ever blocked waiting for an answer: each resolution sends an {@code A} and an {@code AAAA} query, and the handler is called (in one
+ * of the engine's executor threads) with an {@link IPHost} containing all the IPv4 addresses, then all the IPv6 addresses, that were found.  Queries that are not answered
+ * within the query timeout are retried, up to the maximum number of attempts.</p>
+ * <p>Answers are kept in a cache that is bounded in size (the least recently used entries are evicted first), and whose entries expire when the smallest TTL of the records
+ * they came from has elapsed.  Negative answers (no such host, or no addresses) are cached for a fixed time (30 seconds, unless changed with {@link #setNegativeTTL(Duration)}),
+ * rather than for the time in the authority section's SOA record.  Concurrent resolutions of the same hostname share a single pair of queries.</p>
+ * <p>This is deliberately a stub resolver: it relies on its DNS server to do the recursion and follow CNAME chains, it does not use EDNS (so answers are limited to 512 bytes),
+ * and it does not retry truncated answers over TCP; it just uses whatever addresses arrived in the truncated answer.  Hostnames that are literal IP addresses are never queried:
+ * IPv4 literals resolve to themselves, and IPv6 literals (which are not valid {@link IPHost} hostnames) fail at once.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class DNSResolver {
+
+    private static final Logger LOGGER = getLogger();
+
+    private static final Outcome.Forge<IPHost>      forgeIPHost      = new Outcome.Forge<>();
+    private static final Outcome.Forge<DNSResolver> forgeDNSResolver = new Outcome.Forge<>();
+
+    /** The standard DNS server port. */
+    public static final int DNS_PORT = 53;
+
+    /** The default maximum number of hostnames in the cache. */
+    public static final int DEFAULT_MAX_CACHE_ENTRIES = 10000;
+
+    private static final Duration DEFAULT_QUERY_TIMEOUT  = Duration.ofSeconds( 2 );
+    private static final int      DEFAULT_MAX_ATTEMPTS   = 3;
+    private static final Duration DEFAULT_NEGATIVE_TTL   = Duration.ofSeconds( 30 );   // how long negative answers are cached...
+    private static final long     MAX_TTL_SECONDS        = 86400;   // the longest we'll cache anything, whatever its TTL says...
+    private static final int      MAX_MESSAGE_BYTES      = 512;     // the maximum size of a DNS message over UDP, without EDNS...
+
+    private static final int TYPE_A        = 1;
+    private static final int TYPE_AAAA     = 28;
+    private static final int CLASS_IN      = 1;
+    private static final int FLAG_RESPONSE = 0x8000;
+    private static final int FLAG_RD       = 0x0100;   // recursion desired...
+    private static final int RCODE_MASK    = 0x000F;
+    private static final int RCODE_NXDOMAIN = 3;
+
+    private final NetworkingEngine                  engine;        // the engine our UDP client runs on...
+    private final IPAddress                         serverIP;      // the IP address of our DNS server...
+    private final int                               serverPort;    // the UDP port of our DNS server...
+    private final UDPClient                         client;        // the UDP client that talks to our DNS server...
+    private final int                               maxCacheEntries;
+    private final LinkedHashMap<String,CacheEntry>  cache;         // the cache, in least recently used order; guarded by itself...
+    private final Map<String,Resolution>            inFlight;      // resolutions awaiting answers, by hostname; guarded by the cache...
+    private final ConcurrentHashMap<Integer,Query>  pending;       // queries awaiting answers, by query ID...
+    private final SecureRandom                      random;        // source of unpredictable query IDs; guarded by itself...
+
+    private volatile Duration                       queryTimeout;
+    private volatile int                            maxAttempts;
+    private volatile Duration                       negativeTTL;   // how long negative answers (and answers that are partly failures) are cached...
+    private volatile boolean                        closed;
+
+    private final LongAdder                         hits;          // resolutions answered from the cache...
+    private final LongAdder                         misses;        // resolutions that needed queries...
+    private final LongAdder                         queries;       // queries sent, including retries...
+    private final LongAdder                         retries;       // queries resent because they weren't answered in time...
+    private final LongAdder                         timeouts;      // queries abandoned after the last attempt...
+    private final LongAdder                         failures;      // resolutions that completed not ok...
+
+
+    /**
+     * Attempts to create a new instance of this class that sends its queries to the DNS server at the given IP address and UDP port, using the given networking engine, with a
+     * cache holding at most the given number of hostnames.
+     *
+     * @param _engine The {@link NetworkingEngine} to send queries with.
+     * @param _serverIP The IP address of the (recursive) DNS server to query.
+     * @param _serverPort The UDP port of the DNS server, normally {@link #DNS_PORT}.
+     * @param _maxCacheEntries The maximum number of hostnames to cache; must be at least one.
+     * @return The outcome of the attempt.  If ok, the info contains the new {@link DNSResolver}.  If not ok, there is an explanatory message and possibly the exception that
+     * caused the problem.
+     */
+    public static Outcome<DNSResolver> getNewInstance( final NetworkingEngine _engine, final IPAddress _serverIP, final int _serverPort, final int _maxCacheEntries ) {
+
+        try {
+            // sanity checks...
+            if( isNull( _engine, _serverIP ) ) return forgeDNSResolver.notOk( "_engine or _serverIP is null" );
+            if( _maxCacheEntries < 1 ) return forgeDNSResolver.notOk( "_maxCacheEntries must be at least one: " + _maxCacheEntries );
+
+            // get a client for our server...
+            var bindTo = (_serverIP instanceof IPv4Address) ? IPv4Address.WILDCARD : IPv6Address.WILDCARD;
+            var clientOutcome = UDPClient.getNewInstance( _engine, bindTo, 0, _serverIP, _serverPort, MAX_MESSAGE_BYTES, null );
+            if( clientOutcome.notOk() ) return forgeDNSResolver.notOk( "Problem creating UDP client: " + clientOutcome.msg(), clientOutcome.cause() );
+
+            return forgeDNSResolver.ok( new DNSResolver( _engine, _serverIP, _serverPort, clientOutcome.info(), _maxCacheEntries ) );
+        }
+        catch( Exception _e ) {
+            return forgeDNSResolver.notOk( "Problem instantiating DNSResolver: " + _e.getMessage(), _e );
+        }
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class that sends its queries to the DNS server at the given IP address (on the standard port), using the given networking
+     * engine, with a cache holding at most {@link #DEFAULT_MAX_CACHE_ENTRIES} hostnames.
+     *
+     * @param _engine The {@link NetworkingEngine} to send queries with.
+     * @param _serverIP The IP address of the (recursive) DNS server to query.
+     * @return The outcome of the attempt.  If ok, the info contains the new {@link DNSResolver}.  If not ok, there is an explanatory message and possibly the exception that
+     * caused the problem.
+     */
+    public static Outcome<DNSResolver> getNewInstance( final NetworkingEngine _engine, final IPAddress _serverIP ) {
+        return getNewInstance( _engine, _serverIP, DNS_PORT, DEFAULT_MAX_CACHE_ENTRIES );
+    }
+
+
+    /**
+     * Creates a new instance of this class, and starts it receiving answers.
+     *
+     * @param _engine The {@link NetworkingEngine} to send queries with.
+     * @param _serverIP The IP address of the DNS server.
+     * @param _serverPort The UDP port of the DNS server.
+     * @param _client The {@link UDPClient} connected to the DNS server.
+     * @param _maxCacheEntries The maximum number of hostnames to cache.
+     */
+    private DNSResolver( final NetworkingEngine _engine, final IPAddress _serverIP, final int _serverPort, final UDPClient _client, final int _maxCacheEntries ) {
+
+        engine          = _engine;
+        serverIP        = _serverIP;
+        serverPort      = _serverPort;
+        client          = _client;
+        maxCacheEntries = _maxCacheEntries;
+        cache           = new LinkedHashMap<>( 16, 0.75f, true ) {
+            @Override
+            protected boolean removeEldestEntry( final Map.Entry<String, CacheEntry> _eldest ) {
+                return size() > maxCacheEntries;
+            }
+        };
+        inFlight        = new HashMap<>();
+        pending         = new ConcurrentHashMap<>();
+        random          = new SecureRandom();
+        queryTimeout    = DEFAULT_QUERY_TIMEOUT;
+        maxAttempts     = DEFAULT_MAX_ATTEMPTS;
+        negativeTTL     = DEFAULT_NEGATIVE_TTL;
+        hits            = new LongAdder();
+        misses          = new LongAdder();
+        queries         = new LongAdder();
+        retries         = new LongAdder();
+        timeouts        = new LongAdder();
+        failures        = new LongAdder();
+
+        // start listening for answers...
+        client.receive( this::onReceive );
+    }
+
+
+    /**
+     * Resolves the given hostname asynchronously, from the cache if possible and otherwise by querying the DNS server.  The handler is always called in one of the networking
+     * engine's executor threads, never in the thread that calls this method.  If ok, the outcome's info is an {@link IPHost} with the (normalized, lower case) hostname and at
+     * least one IP address.  If not ok, the message explains why: an invalid hostname, no such host, no addresses for the host, a DNS server error, or no answer from the server
+     * after the maximum number of attempts.
+     *
+     * @param _hostname The hostname to resolve.
+     * @param _handler The handler to call with the outcome.
+     * @throws IllegalArgumentException if the handler is {@code null}.
+     */
+    public void resolve( final String _hostname, final OnResolveHandler _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( isNull( _hostname ) || _hostname.isEmpty() ) {
+            post( _handler, forgeIPHost.notOk( "_hostname is null or empty" ) );
+            return;
+        }
+
+        // a literal IP address needs no resolving (and an IPv6 literal can't be the hostname of an IPHost)...
+        var literal = IPAddress.fromString( _hostname );
+        if( literal.ok() ) {
+            post( _handler, (literal.info() instanceof IPv6Address)
+                    ? forgeIPHost.notOk( "IPv6 address literals cannot be resolved to an IPHost: " + _hostname )
+                    : IPHost.create( _hostname, literal.info() ) );
+            return;
+        }
+
+        // make sure we've got a valid hostname, and normalize it...
+        var validated = IPHost.create( _hostname.toLowerCase( Locale.ROOT ) );
+        if( validated.notOk() ) {
+            post( _handler, validated );
+            return;
+        }
+        var hostname = validated.info().hostname;
+        if( closed ) {
+            post( _handler, forgeIPHost.notOk( "DNSResolver is closed" ) );
+            return;
+        }
+
+        // answer from the cache if we can; otherwise join the resolution in flight, or start a new one...
+        Resolution resolution;
+        synchronized( cache ) {
+
+            var entry = cache.get( hostname );
+            if( entry != null ) {
+                if( System.nanoTime() - entry.expiresNanos < 0 ) {
+                    hits.increment();
+                    post( _handler, entry.outcome );
+                    return;
+                }
+                cache.remove( hostname );
+            }
+            misses.increment();
+
+            resolution = inFlight.get( hostname );
+            if( resolution != null ) {
+                resolution.handlers.add( _handler );
+                return;
+            }
+            resolution = new Resolution( hostname, _handler );
+            inFlight.put( hostname, resolution );
+        }
+
+        // send our queries...
+        issue( new Query( resolution, TYPE_A ) );
+        issue( new Query( resolution, TYPE_AAAA ) );
+    }
+
+
+    /**
+     * Resolves the given hostname synchronously (blocking), exactly as {@link #resolve(String,OnResolveHandler)} does.
+     *
+     * @param _hostname The hostname to resolve.
+     * @return The outcome of the resolution.  If ok, the info contains the {@link IPHost}.  If not ok, there is an explanatory message and possibly the exception that caused
+     * the problem.
+     */
+    public Outcome<IPHost> resolve( final String _hostname ) {
+        var waiter = new Waiter<Outcome<IPHost>>();
+        resolve( _hostname, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
+    /**
+     * Sets the time to wait for the answer to a query before resending it (or giving up, on the last attempt).  The default is two seconds.
+     *
+     * @param _queryTimeout The query timeout.
+     * @throws IllegalArgumentException if the timeout is {@code null}, zero, or negative.
+     */
+    public void setQueryTimeout( final Duration _queryTimeout ) {
+
+        if( isNull( _queryTimeout ) || _queryTimeout.isZero() || _queryTimeout.isNegative() )
+            throw new IllegalArgumentException( "_queryTimeout must be positive: " + _queryTimeout );
+        queryTimeout = _queryTimeout;
+    }
+
+
+    /**
+     * Sets the maximum number of times each query is sent before giving up on it.  The default is three.
+     *
+     * @param _maxAttempts The maximum number of attempts.
+     * @throws IllegalArgumentException if the maximum is less than one.
+     */
+    public void setMaxAttempts( final int _maxAttempts ) {
+
+        if( _maxAttempts < 1 ) throw new IllegalArgumentException( "_maxAttempts must be at least one: " + _maxAttempts );
+        maxAttempts = _maxAttempts;
+    }
+
+
+    /**
+     * Sets how long negative answers (no such host, or no addresses) are cached.  This also limits how long an answer is cached when one of its two queries failed.  The default
+     * is 30 seconds.
+     *
+     * @param _negativeTTL The time to cache negative answers.
+     * @throws IllegalArgumentException if the time is {@code null}, zero, or negative.
+     */
+    public void setNegativeTTL( final Duration _negativeTTL ) {
+
+        if( isNull( _negativeTTL ) || _negativeTTL.isZero() || _negativeTTL.isNegative() )
+            throw new IllegalArgumentException( "_negativeTTL must be positive: " + _negativeTTL );
+        negativeTTL = _negativeTTL;
+    }
+
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public void clearCache() {
+        synchronized( cache ) {
+            cache.clear();
+        }
+    }
+
+
+    /**
+     * Returns a snapshot of this resolver's statistics.
+     *
+     * @return A snapshot of this resolver's statistics.
+     */
+    public Stats getStats() {
+
+        int cacheSize;
+        synchronized( cache ) {
+            cacheSize = cache.size();
+        }
+        return new Stats( hits.sum(), misses.sum(), queries.sum(), retries.sum(), timeouts.sum(), failures.sum(), cacheSize );
+    }
+
+
+    /**
+     * A snapshot of the statistics for a {@link DNSResolver}.
+     *
+     * @param hits The number of resolutions answered from the cache.
+     * @param misses The number of resolutions that were not in the cache (including those that joined a resolution already in flight).
+     * @param queries The number of queries sent, including retries.
+     * @param retries The number of queries resent because they weren't answered in time.
+     * @param timeouts The number of queries abandoned after their last attempt.
+     * @param failures The number of resolutions (not counting cache hits) that completed not ok.
+     * @param cacheSize The number of hostnames in the cache, including any that have expired but have not yet been removed.
+     */
+    public record Stats( long hits, long misses, long queries, long retries, long timeouts, long failures, int cacheSize ) {}
+
+
+    /**
+     * Closes this resolver.  Any resolutions awaiting answers complete not ok, as will any later resolutions that aren't answered from the cache.
+     */
+    public void close() {
+
+        closed = true;
+        client.close();
+
+        // fail whatever is still pending...
+        for( var query : pending.values() ) {
+            if( pending.remove( query.id, query ) ) {
+                query.cancelTimeout();
+                query.resolution.complete( query, Answer.failed( "DNSResolver is closed" ) );
+            }
+        }
+    }
+
+
+    /**
+     * Assigns the given query an unused query ID, records it as pending, and sends it.
+     *
+     * @param _query The query to issue.
+     */
+    private void issue( final Query _query ) {
+
+        // find an ID that isn't in use...
+        while( true ) {
+            int id;
+            synchronized( random ) {
+                id = random.nextInt( 0x10000 );
+            }
+            if( pending.putIfAbsent( id, _query ) == null ) {
+                _query.id = id;
+                break;
+            }
+        }
+
+        _query.message = encodeQuery( _query.id, _query.resolution.hostname, _query.type );
+        send( _query );
+    }
+
+
+    /**
+     * Sends (or resends) the given query, and starts its timeout.
+     *
+     * @param _query The query to send.
+     */
+    private void send( final Query _query ) {
+
+        var attempt = ++_query.attempts;
+        queries.increment();
+        _query.timeout = engine.scheduleTimeout( queryTimeout, () -> onTimeout( _query, attempt ) );
+        client.send( new OutboundDatagram( ByteBuffer.wrap( _query.message ), serverIP, serverPort ), ( outcome ) -> {
+            if( outcome.notOk() ) LOGGER.log( Level.FINE, "Problem sending DNS query (it will be retried): " + outcome.msg(), outcome.cause() );
+        } );
+    }
+
+
+    /**
+     * Called (in the timing wheel's thread) when a query's timeout expires.  If the query is still pending and this is its latest attempt, we either resend it or give up on it,
+     * in one of the engine's executor threads.
+     *
+     * @param _query The query whose timeout expired.
+     * @param _attempt The attempt that the timeout was for.
+     */
+    private void onTimeout( final Query _query, final int _attempt ) {
+
+        // if the query was answered, or this is the timeout of an earlier attempt, there's nothing to do...
+        if( (pending.get( _query.id ) != _query) || (_query.attempts != _attempt) ) return;
+
+        // try again if we can...
+        if( (_attempt < maxAttempts) && !closed ) {
+            retries.increment();
+            engine.execute( () -> send( _query ) );
+            return;
+        }
+
+        // otherwise, give up...
+        if( !pending.remove( _query.id, _query ) ) return;
+        timeouts.increment();
+        engine.execute( () -> _query.resolution.complete( _query, Answer.failed( "No answer from DNS server " + serverIP ) ) );
+    }
+
+
+    /**
+     * Called (in one of the engine's executor threads) when a datagram is received from the DNS server, or the receive fails.  Handles the datagram, then receives the next.
+     *
+     * @param _outcome The outcome of the receive.
+     */
+    private void onReceive( final Outcome<InboundDatagram> _outcome ) {
+
+        if( _outcome.ok() ) {
+            var datagram = _outcome.info();
+            try {
+                if( !closed ) onResponse( datagram.getData() );
+            }
+            finally {
+                datagram.release();
+            }
+        }
+        else if( !closed )
+            LOGGER.log( Level.FINE, "Problem receiving DNS response: " + _outcome.msg(), _outcome.cause() );
+
+        // on to the next one...
+        if( !closed ) client.receive( this::onReceive );
+    }
+
+
+    /**
+     * Handles a response from the DNS server: matches it to its pending query (ignoring it if there is none), decodes the answer, and completes the query.
+     *
+     * @param _response The buffer containing the response.
+     */
+    private void onResponse( final ByteBuffer _response ) {
+
+        // make sure it's a response, and that we're waiting for it...
+        if( _response.remaining() < 12 ) return;
+        var id    = _response.getShort( 0 ) & 0xFFFF;
+        var flags = _response.getShort( 2 ) & 0xFFFF;
+        if( (flags & FLAG_RESPONSE) == 0 ) return;
+        var query = pending.get( id );
+        if( query == null ) return;
+
+        // make sure the question matches ours, so a stray or forged response can't answer it...
+        var message = query.message;
+        if( _response.remaining() < message.length ) return;
+        for( int i = 12; i < message.length; i++ )
+            if( _response.get( i ) != message[i] ) return;
+
+        // it's ours, so claim it...
+        if( !pending.remove( id, query ) ) return;
+        query.cancelTimeout();
+
+        // decode it, and complete the query...
+        Answer answer;
+        try {
+            answer = decodeAnswer( _response, flags, message.length, query.type );
+        }
+        catch( Exception _e ) {
+            answer = Answer.failed( "Malformed DNS response for " + query.resolution.hostname );
+        }
+        query.resolution.complete( query, answer );
+    }
+
+
+    /**
+     * Decodes the answer section of the given response.
+     *
+     * @param _response The buffer containing the response.
+     * @param _flags The flags from the response header.
+     * @param _questionEnd The index of the first byte after the question section.
+     * @param _type The type of record we asked for.
+     * @return The decoded answer.
+     */
+    private Answer decodeAnswer( final ByteBuffer _response, final int _flags, final int _questionEnd, final int _type ) {
+
+        // handle the error responses...
+        var rcode = _flags & RCODE_MASK;
+        if( rcode == RCODE_NXDOMAIN ) return Answer.NO_SUCH_HOST;
+        if( rcode != 0 ) return Answer.failed( "DNS server error (RCODE " + rcode + ")" );
+
+        // collect the addresses of the type we asked for, and the smallest TTL amongst them...
+        var answerCount = _response.getShort( 6 ) & 0xFFFF;
+        var addresses = new ArrayList<IPAddress>();
+        var ttl = MAX_TTL_SECONDS;
+        var pos = _questionEnd;
+        for( int i = 0; i < answerCount; i++ ) {
+
+            pos = skipName( _response, pos );
+            var type   = _response.getShort( pos ) & 0xFFFF;
+            var clazz  = _response.getShort( pos + 2 ) & 0xFFFF;
+            var ttlRR  = _response.getInt( pos + 4 ) & 0xFFFFFFFFL;
+            var length = _response.getShort( pos + 8 ) & 0xFFFF;
+            pos += 10;
+
+            if( (type == _type) && (clazz == CLASS_IN) && (length == ((_type == TYPE_A) ? 4 : 16)) ) {
+                var bytes = new byte[length];
+                _response.get( pos, bytes );
+                addresses.add( (_type == TYPE_A) ? IPv4Address.fromBytes( bytes ).info() : IPv6Address.fromBytes( bytes ).info() );
+                ttl = Math.min( ttl, ttlRR );
+            }
+            pos += length;
+        }
+
+        return addresses.isEmpty() ? Answer.NO_ADDRESSES : new Answer( addresses, ttl, null );
+    }
+
+
+    /**
+     * Returns the index of the first byte after the (possibly compressed) domain name at the given index in the given buffer.
+     *
+     * @param _buffer The buffer containing the name.
+     * @param _pos The index of the first byte of the name.
+     * @return The index of the first byte after the name.
+     */
+    private static int skipName( final ByteBuffer _buffer, final int _pos ) {
+
+        var pos = _pos;
+        while( true ) {
+            var length = _buffer.get( pos ) & 0xFF;
+            if( length == 0 ) return pos + 1;
+            if( (length & 0xC0) == 0xC0 ) return pos + 2;   // a compression pointer ends the name...
+            pos += 1 + length;
+        }
+    }
+
+
+    /**
+     * Encodes a recursive query for records of the given type for the given hostname.
+     *
+     * @param _id The query ID.
+     * @param _hostname The (validated) hostname to query.
+     * @param _type The type of record to query.
+     * @return The encoded query.
+     */
+    private static byte[] encodeQuery( final int _id, final String _hostname, final int _type ) {
+
+        var buffer = ByteBuffer.allocate( 12 + _hostname.length() + 2 + 4 );
+
+        // the header: our ID, recursion desired, and one question...
+        buffer.putShort( (short) _id );
+        buffer.putShort( (short) FLAG_RD );
+        buffer.putShort( (short) 1 );
+        buffer.putShort( (short) 0 );
+        buffer.putShort( (short) 0 );
+        buffer.putShort( (short) 0 );
+
+        // the question...
+        for( var label : _hostname.split( "\\." ) ) {
+            var bytes = label.getBytes( StandardCharsets.US_ASCII );
+            buffer.put( (byte) bytes.length );
+            buffer.put( bytes );
+        }
+        buffer.put( (byte) 0 );
+        buffer.putShort( (short) _type );
+        buffer.putShort( (short) CLASS_IN );
+
+        return Arrays.copyOf( buffer.array(), buffer.position() );
+    }
+
+
+    /**
+     * Posts the given outcome to the given handler, in one of the engine's executor threads.
+     *
+     * @param _handler The handler to post to.
+     * @param _outcome The outcome to post.
+     */
+    private void post( final OnResolveHandler _handler, final Outcome<IPHost> _outcome ) {
+        engine.execute( () -> _handler.handle( _outcome ) );
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     * @return a string representing this instance.
+     */
+    public String toString() {
+        return "DNSResolver (" + serverIP + ", port " + serverPort + ")";
+    }
+
+
+    /**
+     * The answer to a single query: either some addresses and their TTL, or a failure message (with a flag for the negative answers that may be cached).
+     *
+     * @param addresses The addresses found (empty if none).
+     * @param ttlSeconds The smallest TTL of the records the addresses came from (unused for failures, including negative answers).
+     * @param failure The explanation if the query failed, or {@code null} if it succeeded.
+     */
+    private record Answer( List<IPAddress> addresses, long ttlSeconds, String failure ) {
+
+        private static final Answer NO_SUCH_HOST = new Answer( List.of(), 0, "No such host" );
+        private static final Answer NO_ADDRESSES = new Answer( List.of(), 0, "No addresses for host" );
+
+        private static Answer failed( final String _failure ) {
+            return new Answer( List.of(), 0, _failure );
+        }
+
+        private boolean isNegative() {
+            return (this == NO_SUCH_HOST) || (this == NO_ADDRESSES);
+        }
+    }
+
+
+    /**
+     * An entry in the cache: the outcome of a resolution, and when it expires.
+     *
+     * @param outcome The outcome to answer with.
+     * @param expiresNanos The {@link System#nanoTime()} at which this entry expires.
+     */
+    private record CacheEntry( Outcome<IPHost> outcome, long expiresNanos ) {}
+
+
+    /**
+     * A single query (for either {@code A} or {@code AAAA} records) sent on behalf of a resolution.
+     */
+    private static final class Query {
+
+        private final Resolution               resolution;   // the resolution this query is for...
+        private final int                      type;         // the type of record we're asking for...
+        private int                            id;           // the query ID; set before the query is sent...
+        private byte[]                         message;      // the encoded query; set before the query is sent...
+        private volatile int                   attempts;     // the number of times this query has been sent...
+        private volatile TimingWheel.Timeout   timeout;      // the timeout for the latest attempt...
+
+        private Query( final Resolution _resolution, final int _type ) {
+            resolution = _resolution;
+            type       = _type;
+        }
+
+        private void cancelTimeout() {
+            var t = timeout;
+            if( t != null ) t.cancel();
+        }
+    }
+
+
+    /**
+     * The resolution of a single hostname, which completes when the answers to both its queries are in.
+     */
+    private final class Resolution {
+
+        private final String                 hostname;   // the (normalized) hostname being resolved...
+        private final List<OnResolveHandler> handlers;   // the handlers waiting for this resolution; guarded by the cache...
+        private Answer                       ipv4;       // the answer to the A query, or null until it arrives; guarded by this instance...
+        private Answer                       ipv6;       // the answer to the AAAA query, or null until it arrives; guarded by this instance...
+
+        private Resolution( final String _hostname, final OnResolveHandler _handler ) {
+            hostname = _hostname;
+            handlers = new ArrayList<>();
+            handlers.add( _handler );
+        }
+
+
+        /**
+         * Records the answer to one of this resolution's queries.  When both answers are in, combines them, caches the result (if appropriate), and posts it to the handlers.
+         *
+         * @param _query The query that was answered.
+         * @param _answer The answer.
+         */
+        private void complete( final Query _query, final Answer _answer ) {
+
+            // record the answer, and if we're still waiting for the other one, we're done for now...
+            synchronized( this ) {
+                if( _query.type == TYPE_A ) ipv4 = _answer; else ipv6 = _answer;
+                if( (ipv4 == null) || (ipv6 == null) ) return;
+            }
+
+            // combine our answers; any address makes it ok...
+            Outcome<IPHost> outcome;
+            long ttlNanos;
+            if( !ipv4.addresses.isEmpty() || !ipv6.addresses.isEmpty() ) {
+                var addresses = new ArrayList<IPAddress>( ipv4.addresses );
+                addresses.addAll( ipv6.addresses );
+                outcome = IPHost.create( hostname, addresses );
+                var ttl = Math.min( ipv4.addresses.isEmpty() ? MAX_TTL_SECONDS : ipv4.ttlSeconds, ipv6.addresses.isEmpty() ? MAX_TTL_SECONDS : ipv6.ttlSeconds );
+                ttlNanos = TimeUnit.SECONDS.toNanos( ttl );
+                if( (ipv4.failure != null && !ipv4.isNegative()) || (ipv6.failure != null && !ipv6.isNegative()) )
+                    ttlNanos = Math.min( ttlNanos, negativeTTL.toNanos() );   // one query failed, so we don't trust this answer for long...
+            }
+
+            // otherwise, a hard failure takes precedence (and isn't cached), then no such host, then no addresses...
+            else {
+                var failed = (ipv4.failure != null && !ipv4.isNegative()) ? ipv4 : (ipv6.failure != null && !ipv6.isNegative()) ? ipv6 : null;
+                if( failed != null ) {
+                    outcome = forgeIPHost.notOk( failed.failure + ": " + hostname );
+                    ttlNanos = 0;
+                }
+                else {
+                    var negative = ((ipv4 == Answer.NO_SUCH_HOST) || (ipv6 == Answer.NO_SUCH_HOST)) ? Answer.NO_SUCH_HOST : Answer.NO_ADDRESSES;
+                    outcome = forgeIPHost.notOk( negative.failure + ": " + hostname );
+                    ttlNanos = negativeTTL.toNanos();
+                }
+                failures.increment();
+            }
+
+            // cache it (if we should), and get our handlers...
+            List<OnResolveHandler> waiting;
+            synchronized( cache ) {
+                inFlight.remove( hostname );
+                if( ttlNanos > 0 ) cache.put( hostname, new CacheEntry( outcome, System.nanoTime() + ttlNanos ) );
+                waiting = handlers;
+            }
+
+            // and tell everyone about it...
+            for( var handler : waiting ) post( handler, outcome );
+        }
+    }
+}
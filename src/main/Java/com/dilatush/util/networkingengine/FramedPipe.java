@@ -0,0 +1,297 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.ScheduledExecutor;
+import com.dilatush.util.VarInt;
+import com.dilatush.util.Waiter;
+import com.dilatush.util.feed.InFeed;
+import com.dilatush.util.feed.OnReadComplete;
+import com.dilatush.util.feed.OnWriteComplete;
+import com.dilatush.util.feed.ReadStream;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class provide a message framing layer over a {@link TCPPipe}: each message (frame) sent is preceded on the wire by its length, encoded as a
+ * {@link VarInt}, and each frame received is delivered whole to a handler, no matter how the bytes were split up by TCP.  Frames may be any length from zero bytes up to the
+ * configured maximum, which may be much larger than {@link InFeed#MAX_READ_BYTES}.</p>
+ * <p>Receiving uses a streaming read on the pipe (see {@link TCPPipe#stream(int,OnReadComplete)}).  A frame that arrives entirely within one read buffer is delivered as a slice of
+ * that buffer, without copying; a frame that spans read buffers is assembled into a buffer of its own.  Sending uses the pipe's write queue (see
+ * {@link TCPPipe#queueWrite(ByteBuffer[],OnWriteComplete)}): the length prefix and the frame are queued as a unit and written with a gathering write, so the frame's bytes are
+ * never copied either.</p>
+ * <p>While an instance of this class is in use, the underlying pipe must not be read from or written to directly.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class FramedPipe {
+
+    private static final Logger                    LOGGER          = getLogger();
+
+    private static final Outcome.Forge<ByteBuffer> forgeByteBuffer = new Outcome.Forge<>();
+    private static final Outcome.Forge<?>          forge           = new Outcome.Forge<>();
+
+    /**
+     * The default maximum number of bytes in a frame (16 MiB).
+     */
+    public static final int DEFAULT_MAX_FRAME_BYTES = 16 * 1024 * 1024;
+
+    private static final int MAX_PREFIX_BYTES = 8;   // the maximum number of bytes in a VarInt...
+
+    private final TCPPipe        pipe;              // the pipe we're framing...
+    private final int            maxFrameBytes;     // the maximum number of bytes in a frame we'll send or receive...
+
+    // the decoding state, which is only touched by the stream handler (which is never called concurrently with itself)...
+    private final byte[]         prefix;            // the bytes of the length prefix received so far...
+    private int                  prefixCount;       // the number of bytes of the length prefix received so far...
+    private int                  prefixLength;      // the total number of bytes in the length prefix being received...
+    private ByteBuffer           frame;             // the frame being assembled, or null if none is...
+    private boolean              failed;            // true if the receiver has failed, and no more frames will be delivered...
+
+    private OnReadComplete       onFrameHandler;    // the handler for received frames...
+    private volatile ReadStream  readStream;        // the streaming read on the pipe, or null if we're not receiving...
+
+
+    /**
+     * Creates a new instance of this class that frames messages on the given {@link TCPPipe}, with frames up to the given maximum number of bytes.
+     *
+     * @param _pipe The {@link TCPPipe} to frame messages on.
+     * @param _maxFrameBytes The maximum number of bytes in a frame, which must be at least one.  Frames sent must not be larger than this, and receiving a larger frame fails.
+     * @throws IllegalArgumentException if the pipe is {@code null} or the maximum frame size is less than one.
+     */
+    public FramedPipe( final TCPPipe _pipe, final int _maxFrameBytes ) {
+
+        // sanity checks...
+        if( isNull( _pipe ) ) throw new IllegalArgumentException( "_pipe is null" );
+        if( _maxFrameBytes < 1 ) throw new IllegalArgumentException( "_maxFrameBytes must be at least one: " + _maxFrameBytes );
+
+        pipe          = _pipe;
+        maxFrameBytes = _maxFrameBytes;
+        prefix        = new byte[MAX_PREFIX_BYTES];
+    }
+
+
+    /**
+     * Creates a new instance of this class that frames messages on the given {@link TCPPipe}, with frames up to the default maximum of 16 MiB.
+     *
+     * @param _pipe The {@link TCPPipe} to frame messages on.
+     * @throws IllegalArgumentException if the pipe is {@code null}.
+     */
+    public FramedPipe( final TCPPipe _pipe ) {
+        this( _pipe, DEFAULT_MAX_FRAME_BYTES );
+    }
+
+
+    /**
+     * <p>Starts receiving frames, delivering each complete frame to the given handler, in the order received.  Frames continue to be delivered until the returned
+     * {@link ReadStream} is canceled, the connection is closed, or an error occurs; in each of those cases the handler is called one last time with a not ok outcome.  Receiving
+     * a frame larger than the maximum frame size is an error.</p>
+     * <p>The {@code _handler} is always called in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}, never concurrently with itself.  The frame
+     * buffer's position is at the first byte of the frame, and its limit is just past the last byte.  The frame buffer belongs to the handler, but it may be a slice of a
+     * larger buffer, so it should not be returned to a {@link BufferPool}.</p>
+     *
+     * @param _handler The handler to call with each received frame.
+     * @return The {@link ReadStream} for the frames, which may be used to pause, resume, or cancel receiving.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}.
+     * @throws IllegalStateException if frames are already being received, or if a read operation is in progress on the pipe.
+     */
+    public synchronized ReadStream receive( final OnReadComplete _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( (readStream != null) && readStream.isActive() ) throw new IllegalStateException( "Already receiving frames" );
+
+        // reset our decoding state, then start streaming...
+        onFrameHandler = _handler;
+        prefixCount    = 0;
+        frame          = null;
+        failed         = false;
+        readStream     = pipe.stream( InFeed.MAX_READ_BYTES, this::onRead );
+        return readStream;
+    }
+
+
+    /**
+     * <p>Initiates sending the given frame, returning immediately with the outcome of queueing it.  If the outcome is ok, the {@code _onWriteCompleteHandler} will be called
+     * (in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}) when the frame has been completely written, or when the write fails.  If the
+     * outcome is not ok, the frame was not queued and the handler will never be called; in particular, a full write queue on the pipe is reported this way, as backpressure.
+     * Frames are sent in the order they were queued, and frames from concurrent callers are never interleaved.</p>
+     *
+     * @param _frame The frame to send: the bytes between the buffer's position and its limit.  Until the handler is called, the buffer must not be manipulated.
+     * @param _onWriteCompleteHandler The handler to call when the frame has been sent, or the send has failed.
+     * @return The outcome of queueing the frame.  If ok, the frame was queued.  If not ok, there is an explanatory message.
+     * @throws IllegalArgumentException if no on write complete handler is specified.
+     */
+    public Outcome<?> send( final ByteBuffer _frame, final OnWriteComplete _onWriteCompleteHandler ) {
+
+        // sanity checks...
+        if( isNull( _onWriteCompleteHandler ) ) throw new IllegalArgumentException( "_onWriteCompleteHandler is null" );
+        if( isNull( _frame ) ) return forge.notOk( "_frame is null" );
+        if( _frame.remaining() > maxFrameBytes ) return forge.notOk( "Frame is larger than the maximum of " + maxFrameBytes + " bytes: " + _frame.remaining() );
+
+        // queue the length prefix and the frame (if it has any bytes) together...
+        var prefixBuffer = ByteBuffer.wrap( new VarInt( _frame.remaining() ).encodedValue() );
+        var buffers = _frame.hasRemaining() ? new ByteBuffer[] { prefixBuffer, _frame } : new ByteBuffer[] { prefixBuffer };
+        return pipe.queueWrite( buffers, _onWriteCompleteHandler );
+    }
+
+
+    /**
+     * Sends the given frame synchronously (blocking until it has been written, or the write fails).
+     *
+     * @param _frame The frame to send: the bytes between the buffer's position and its limit.
+     * @return The outcome of the send.  If ok, the frame was sent.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     */
+    public Outcome<?> send( final ByteBuffer _frame ) {
+
+        Waiter<Outcome<?>> waiter = new Waiter<>();
+        var queued = send( _frame, waiter::complete );
+        return queued.ok() ? waiter.waitForCompletion() : queued;
+    }
+
+
+    /**
+     * Returns the {@link TCPPipe} this instance frames messages on.
+     *
+     * @return The {@link TCPPipe} this instance frames messages on.
+     */
+    public TCPPipe getPipe() {
+        return pipe;
+    }
+
+
+    /**
+     * Returns the maximum number of bytes in a frame.
+     *
+     * @return The maximum number of bytes in a frame.
+     */
+    public int getMaxFrameBytes() {
+        return maxFrameBytes;
+    }
+
+
+    /**
+     * Closes the underlying {@link TCPPipe}.
+     */
+    public void close() {
+        pipe.close();
+    }
+
+
+    /**
+     * The handler for the streaming read on our pipe.  Decodes as many frames as the given buffer completes, delivering each to the frame handler.
+     *
+     * @param _outcome The outcome of a read from the pipe.
+     */
+    private void onRead( final Outcome<ByteBuffer> _outcome ) {
+
+        // if we've already failed, there's nothing more to do...
+        if( failed ) return;
+
+        // if the stream has ended, so have we...
+        if( _outcome.notOk() ) {
+            var midFrame = (frame != null) || (prefixCount > 0);
+            fail( midFrame ? forgeByteBuffer.notOk( "Stream ended in the middle of a frame: " + _outcome.msg(), _outcome.cause() ) : forgeByteBuffer.notOk( _outcome ) );
+            return;
+        }
+
+        var buffer = _outcome.info();
+        var sliced = false;   // true if any frame was delivered as a slice of this buffer, in which case we can't release it...
+        while( buffer.hasRemaining() ) {
+
+            // if we're not in the middle of a frame, then we're reading a length prefix...
+            if( frame == null ) {
+
+                // accumulate the prefix, which itself may span buffers...
+                if( prefixCount == 0 ) prefixLength = VarInt.numberOfEncodedBytes( buffer.get( buffer.position() ) );
+                while( (prefixCount < prefixLength) && buffer.hasRemaining() ) prefix[prefixCount++] = buffer.get();
+                if( prefixCount < prefixLength ) break;
+
+                // decode it, and make sure the frame isn't too big...
+                var length = new VarInt( Arrays.copyOf( prefix, prefixLength ) ).decodedValueAsLong();
+                prefixCount = 0;
+                if( length > maxFrameBytes ) {
+                    fail( forgeByteBuffer.notOk( "Received frame is larger than the maximum of " + maxFrameBytes + " bytes: " + length ) );
+                    var stream = readStream;
+                    if( stream != null ) stream.cancel();
+                    return;
+                }
+
+                // if the whole frame is in this buffer, deliver a slice of it with no copying...
+                var frameLength = (int) length;
+                if( buffer.remaining() >= frameLength ) {
+                    deliver( buffer.slice( buffer.position(), frameLength ) );
+                    buffer.position( buffer.position() + frameLength );
+                    sliced = true;
+                    continue;
+                }
+
+                // otherwise, we'll have to assemble it...
+                frame = ByteBuffer.allocate( frameLength );
+            }
+
+            // copy what we can of the frame being assembled...
+            var count = Math.min( frame.remaining(), buffer.remaining() );
+            frame.put( buffer.slice( buffer.position(), count ) );
+            buffer.position( buffer.position() + count );
+
+            // if we've got the whole frame, deliver it...
+            if( !frame.hasRemaining() ) {
+                deliver( frame.flip() );
+                frame = null;
+            }
+        }
+
+        // if no frame refers to this buffer, the pool can have it back...
+        if( !sliced ) pipe.release( buffer );
+    }
+
+
+    /**
+     * Delivers the given frame to the frame handler, making sure that a misbehaving handler can't corrupt our decoding state.
+     *
+     * @param _frame The frame to deliver.
+     */
+    private void deliver( final ByteBuffer _frame ) {
+
+        try {
+            onFrameHandler.handle( forgeByteBuffer.ok( _frame ) );
+        }
+        catch( Exception _e ) {
+            LOGGER.log( Level.WARNING, "Unhandled exception in frame handler", _e );
+        }
+    }
+
+
+    /**
+     * Marks the receiver as failed, and delivers the given not ok outcome to the frame handler as its last call.
+     *
+     * @param _outcome The not ok outcome to deliver.
+     */
+    private void fail( final Outcome<ByteBuffer> _outcome ) {
+
+        failed = true;
+        frame  = null;
+        try {
+            onFrameHandler.handle( _outcome );
+        }
+        catch( Exception _e ) {
+            LOGGER.log( Level.WARNING, "Unhandled exception in frame handler", _e );
+        }
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     *
+     * @return a string representing this instance.
+     */
+    @Override
+    public String toString() {
+        return "FramedPipe on " + pipe;
+    }
+}
@@ -0,0 +1,334 @@
+package com.dilatush.util.networkingengine;
+
+import java.io.IOException;
+import java.nio.channels.*;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static java.util.logging.Level.FINEST;
+import static java.util.logging.Level.SEVERE;
+
+
+/**
+ * Instances of this class implement a single I/O loop for a {@link NetworkingEngine}: a {@link Selector}, the thread that runs the select loop, and the lock that serializes
+ * registrations with that selector.  A {@link NetworkingEngine} has one or more instances of this class, and each channel registered with the engine is registered with exactly
+ * one of them.
+ */
+/* package-private */ final class IOLoop {
+
+    private static final Logger       LOGGER                    = getLogger();
+
+    private static final int ALL_INTERESTS          = SelectionKey.OP_READ | SelectionKey.OP_ACCEPT | SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT;
+    private static final int NO_READ_INTEREST       = ALL_INTERESTS ^ SelectionKey.OP_READ;
+    private static final int NO_WRITE_INTEREST      = ALL_INTERESTS ^ SelectionKey.OP_WRITE;
+    private static final int NO_ACCEPTABLE_INTEREST = ALL_INTERESTS ^ SelectionKey.OP_ACCEPT;
+    private static final int NO_CONNECT_INTEREST    = ALL_INTERESTS ^ SelectionKey.OP_CONNECT;
+
+    private final NetworkingEngine     engine;            // the engine this I/O loop belongs to...
+    private final Thread               thread;            // the thread that runs the I/O loop, which is carefully kept only to trivial activities...
+    private final Selector             selector;          // the selector for this I/O loop...
+    private final ReentrantLock        registrationLock;  // a lock to prevent multiple threads registering with this loop's selector simultaneously...
+    private final AtomicInteger        load;              // the approximate number of keys registered with this loop's selector...
+    private final boolean              inlineIO;          // true if reads and writes are performed in this loop's thread, rather than in the engine's executor...
+    private final LongAdder            iterations;        // the number of passes through the select loop...
+    private final LongAdder            keysSelected;      // the total number of keys selected over all passes through the select loop...
+
+
+    /**
+     * Creates a new instance of this class, belonging to the given {@link NetworkingEngine}, with a thread having the given name.  The thread is not started.
+     *
+     * @param _engine The {@link NetworkingEngine} that this I/O loop belongs to.
+     * @param _threadName The name for this I/O loop's thread.
+     * @param _inlineIO If {@code true}, the non-blocking reads and writes for readable and writable keys are performed directly in this loop's thread; otherwise they are
+     *                  performed in a thread from the engine's executor.
+     * @throws IOException if the selector cannot be opened.
+     */
+    /* package-private */ IOLoop( final NetworkingEngine _engine, final String _threadName, final boolean _inlineIO ) throws IOException {
+
+        engine           = _engine;
+        inlineIO         = _inlineIO;
+        selector         = Selector.open();
+        registrationLock = new ReentrantLock();
+        load             = new AtomicInteger( 0 );
+        iterations       = new LongAdder();
+        keysSelected     = new LongAdder();
+
+        // get our I/O loop thread...
+        thread = new Thread( this::loop, _threadName );
+        thread.setDaemon( true );
+    }
+
+
+    /**
+     * Starts this I/O loop's thread.
+     */
+    /* package-private */ void start() {
+        thread.start();
+    }
+
+
+    /**
+     * Shuts down this I/O loop by interrupting its thread and closing its selector.
+     */
+    /* package-private */ void shutdown() {
+
+        thread.interrupt();
+        try {
+            selector.close();
+        }
+        catch( IOException _e ) {
+            // ignore...
+        }
+    }
+
+
+    /**
+     * Register a new selection key for the given channel with this loop's selector, with the given initial operations interest set and the given (optional) attachment.  This
+     * method both registers the new selection key and wakes up the selector to ensure the key takes immediate effect.  Registrations are serialized only amongst other
+     * registrations with this same I/O loop.
+     *
+     * @param _channel The channel to register a new selection key for.
+     * @param _ops The initial operations interest set for the new key.
+     * @param _attachment The optional attachment on the new key (the attachment may be null).
+     * @return The new {@link SelectionKey}.
+     * @throws ClosedChannelException if this method is called when a key for the given channel has already been registered, but was cancelled.
+     */
+    /* package-private */ SelectionKey register( final SelectableChannel _channel, final int _ops, final Object _attachment ) throws ClosedChannelException {
+
+        try {
+            // lock out concurrent registrations from other threads...
+            registrationLock.lock();
+
+            // the actual registration...
+            var key = _channel.register( selector, _ops, _attachment );
+            load.incrementAndGet();
+
+            // make certain the new key has immediate effect...
+            selector.wakeup();
+
+            // and we're done...
+            return key;
+        }
+        finally {
+            // release the lock...
+            registrationLock.unlock();
+        }
+    }
+
+
+    /**
+     * Wakes up this loop's selector, so that any changes to interest sets take immediate effect.  If called from this loop's own thread, this method does nothing, as any
+     * changes to interest sets will take effect on the next select anyway.
+     */
+    /* package-private */ void wakeup() {
+        if( Thread.currentThread() != thread ) selector.wakeup();
+    }
+
+
+    /**
+     * Returns the approximate number of keys registered with this loop's selector.  The value is incremented on each registration, and corrected to the actual number of keys
+     * (which excludes cancelled keys) on each pass through the loop.
+     *
+     * @return The approximate number of keys registered with this loop's selector.
+     */
+    /* package-private */ int getLoad() {
+        return load.get();
+    }
+
+
+    /**
+     * Returns the number of passes through this loop's select loop.
+     *
+     * @return The number of passes through this loop's select loop.
+     */
+    /* package-private */ long getIterations() {
+        return iterations.sum();
+    }
+
+
+    /**
+     * Returns the total number of keys selected over all passes through this loop's select loop.
+     *
+     * @return The total number of keys selected.
+     */
+    /* package-private */ long getKeysSelected() {
+        return keysSelected.sum();
+    }
+
+
+    /**
+     * Returns the selector for this loop.
+     *
+     * @return The selector for this loop.
+     */
+    /* package-private */ Selector getSelector() {
+        return selector;
+    }
+
+
+    /**
+     * The I/O loop itself.  In normal operation the {@code while()} loop will run forever.  Note that all code executed in this loop is trivially simple.  This is intentional,
+     * to guarantee the performance within the I/O loop.  Do not make changes that upset this apple cart!  The sole exception is inline I/O mode, where the non-blocking reads
+     * and writes themselves are done in this loop - but never the user's completion handlers.
+     */
+    @SuppressWarnings( "ConstantConditions" )
+    private void loop() {
+
+        LOGGER.finest( "I/O Loop starting..." );
+
+        try {
+
+            // we're going to loop here basically forever, unless something goes horribly wrong...
+            while( !thread.isInterrupted() ) {
+
+                LOGGER.finest( "Selecting..." );
+
+                // select and get any keys...
+                long selectedNanos;
+                try {
+                    selector.select();
+                    if( !selector.isOpen() ) break;
+                    selectedNanos = System.nanoTime();   // when the selected keys became ready (near enough), for timing connects...
+                }
+                catch( IOException _e ) {
+                    LOGGER.log( SEVERE, "I/O error when selecting", _e );
+                    throw new IllegalStateException( "Selector I/O errors doom the NetworkingEngine" );
+                }
+
+                // correct our load to the number of keys actually registered (cancelled keys were removed by the select)...
+                load.set( selector.keys().size() );
+
+                // iterate over any selected keys, and handle them...
+                Set<SelectionKey> keys = selector.selectedKeys();
+                iterations.increment();
+                keysSelected.add( keys.size() );
+                if( LOGGER.isLoggable( FINEST ) ) LOGGER.finest( "Selected keys: " + keys.size() );
+                Iterator<SelectionKey> keyIterator = keys.iterator();
+                while( keyIterator.hasNext() ) {
+
+                    // get the next key, and get rid of it in the selected set (we're handling it now)...
+                    SelectionKey key = keyIterator.next();
+                    keyIterator.remove();
+                    try {
+
+                        // handle accepting connection (TCP listeners only)...
+                        if( key.isValid() && key.isAcceptable() ) {
+
+                            if( key.attachment() instanceof TCPListener listener ) {
+                                key.interestOpsAnd( NO_ACCEPTABLE_INTEREST );
+                                if( LOGGER.isLoggable( FINEST ) ) LOGGER.finest( "Acceptable with TCPListener: " + listener );
+                                engine.execute( listener::onAcceptable );
+                            }
+                            else {
+                                LOGGER.warning( "Acceptable interest with unknown attachment type: " + key.attachment().getClass().getName() );
+                            }
+                        }
+
+                        // handle connecting (TCP probes only)...
+                        if( key.isValid() && key.isConnectable() ) {
+                            LOGGER.finest( "Connectable" );
+                            if( key.attachment() instanceof TCPProber.Probe probe ) {
+                                key.interestOpsAnd( NO_CONNECT_INTEREST );
+                                engine.execute( () -> probe.onConnectable( selectedNanos ) );
+                                continue;  // the probe may close its channel (cancelling this key) at any moment, and it has no other interest...
+                            }
+                            else {
+                                LOGGER.warning( "Connectable interest with unknown attachment type: " + key.attachment().getClass().getName() );
+                            }
+                        }
+
+                        // handle writing to the network...
+                        if( key.isValid() && key.isWritable() ) {
+                            LOGGER.finest( "Writable" );
+                            if( key.attachment() instanceof TCPPipe pipe ) {
+                                key.interestOpsAnd( NO_WRITE_INTEREST );
+                                if( inlineIO ) runInline( pipe::onWriteable ); else engine.execute( pipe::onWriteable );
+                            }
+                            else if( key.attachment() instanceof UDPBase udpBase ) {
+                                key.interestOpsAnd( NO_WRITE_INTEREST );
+                                if( inlineIO ) runInline( udpBase::onWriteable ); else engine.execute( udpBase::onWriteable );
+                            }
+                            else {
+                                LOGGER.warning( "Writeable interest with unknown attachment type: " + key.attachment().getClass().getName() );
+                            }
+                        }
+
+                        // handle reading from the network...
+                        if( key.isValid() && key.isReadable() ) {
+                            LOGGER.finest( "Readable" );
+                            if( key.attachment() instanceof TCPPipe pipe ) {
+                                if( inlineIO ) {
+                                    if( !pipe.isStreaming() ) key.interestOpsAnd( NO_READ_INTEREST );  // streaming pipes keep read interest armed in inline mode...
+                                    runInline( pipe::onReadable );
+                                }
+                                else {
+                                    key.interestOpsAnd( NO_READ_INTEREST );
+                                    engine.execute( pipe::onReadable );
+                                }
+                            }
+                            else if( key.attachment() instanceof UDPBase udpBase ) {
+                                key.interestOpsAnd( NO_READ_INTEREST );
+                                if( inlineIO ) runInline( udpBase::onReadable ); else engine.execute( udpBase::onReadable );
+                            }
+                            else {
+                                LOGGER.warning( "Readable interest with unknown attachment type: " + key.attachment().getClass().getName() );
+                            }
+                        }
+                    }
+
+                    // the key's channel was closed (in another thread) while we were handling it; that's not a problem for the rest of the keys...
+                    catch( CancelledKeyException _e ) {
+                        if( LOGGER.isLoggable( FINEST ) ) LOGGER.finest( "Key cancelled while handling it" );
+                    }
+                }
+            }
+        }
+        catch( ClosedSelectorException _e ) {
+            LOGGER.log( SEVERE, "Selector closed", _e );
+        }
+
+        // getting here means something seriously wrong happened; log and let the loop die...
+        catch( Exception _e ) {
+            LOGGER.log( SEVERE, "Unhandled exception in NIO selector loop", _e );
+        }
+        finally {
+            if( engine.isShutdown() )
+                LOGGER.finest( "I/O loop " + thread.getName() + " shut down" );
+            else
+                LOGGER.severe( "Fatal NetworkingEngine error; exiting I/O loop " + thread.getName() );
+
+            // all hope is lost; terminate this thread...
+            thread.interrupt();
+        }
+    }
+
+
+    /**
+     * Runs the given I/O task directly in this loop's thread.  The I/O tasks handle their own exceptions, but we make certain here that nothing unexpected can kill the loop.
+     *
+     * @param _task The I/O task to run.
+     */
+    private void runInline( final Runnable _task ) {
+
+        try {
+            _task.run();
+        }
+        catch( Exception _e ) {
+            LOGGER.log( SEVERE, "Unhandled exception in inline I/O task", _e );
+        }
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     * @return a string representing this instance.
+     */
+    public String toString() {
+        return "IOLoop " + thread.getName();
+    }
+}
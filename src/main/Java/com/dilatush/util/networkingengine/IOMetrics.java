@@ -0,0 +1,179 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Instances of this class accumulate I/O metrics for a {@link TCPPipe}, a {@link UDPServer} or {@link UDPClient}, or (as totals) for a whole {@link NetworkingEngine}: bytes
+ * read and written, read and write operations completed, and histograms of the latency of those operations, from initiation to completion.  For {@link TCPPipe}s an operation is
+ * a read or write (a streaming read counts each buffer delivered, with no latency); for UDP an operation is a single datagram received or sent.</p>
+ * <p>All the counters are {@link LongAdder}s, so recording is allocation-free and nearly contention-free, and the metrics are always on.  An instance may have a parent, normally
+ * the engine's totals, to which everything recorded is also recorded.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class IOMetrics {
+
+    private final IOMetrics        parent;          // the metrics that everything recorded here is also recorded in, or null if there are none...
+
+    private final LongAdder        bytesRead;
+    private final LongAdder        reads;
+    private final LongAdder        bytesWritten;
+    private final LongAdder        writes;
+    private final LatencyHistogram readLatency;
+    private final LatencyHistogram writeLatency;
+
+
+    /**
+     * Creates a new instance of this class, with the given (optional) parent.
+     *
+     * @param _parent The metrics that everything recorded in the new instance is also recorded in, or {@code null} for none.
+     */
+    /* package-private */ IOMetrics( final IOMetrics _parent ) {
+
+        parent       = _parent;
+        bytesRead    = new LongAdder();
+        reads        = new LongAdder();
+        bytesWritten = new LongAdder();
+        writes       = new LongAdder();
+        readLatency  = new LatencyHistogram();
+        writeLatency = new LatencyHistogram();
+    }
+
+
+    /**
+     * Records the given number of bytes read from a channel.
+     *
+     * @param _bytes The number of bytes read.
+     */
+    /* package-private */ void recordBytesRead( final long _bytes ) {
+        bytesRead.add( _bytes );
+        if( parent != null ) parent.recordBytesRead( _bytes );
+    }
+
+
+    /**
+     * Records the completion of a read operation, with no latency.
+     */
+    /* package-private */ void recordRead() {
+        reads.increment();
+        if( parent != null ) parent.recordRead();
+    }
+
+
+    /**
+     * Records the completion of a read operation that was initiated at the given time.
+     *
+     * @param _startNanos When the read operation was initiated, from {@link System#nanoTime()}.
+     */
+    /* package-private */ void recordRead( final long _startNanos ) {
+        recordReadNanos( System.nanoTime() - _startNanos );
+    }
+
+
+    /**
+     * Records the given number of bytes written to a channel.
+     *
+     * @param _bytes The number of bytes written.
+     */
+    /* package-private */ void recordBytesWritten( final long _bytes ) {
+        bytesWritten.add( _bytes );
+        if( parent != null ) parent.recordBytesWritten( _bytes );
+    }
+
+
+    /**
+     * Records the completion of a write operation that was initiated at the given time.
+     *
+     * @param _startNanos When the write operation was initiated, from {@link System#nanoTime()}.
+     */
+    /* package-private */ void recordWrite( final long _startNanos ) {
+        recordWriteNanos( System.nanoTime() - _startNanos );
+    }
+
+
+    private void recordReadNanos( final long _nanos ) {
+        reads.increment();
+        readLatency.record( _nanos );
+        if( parent != null ) parent.recordReadNanos( _nanos );
+    }
+
+
+    private void recordWriteNanos( final long _nanos ) {
+        writes.increment();
+        writeLatency.record( _nanos );
+        if( parent != null ) parent.recordWriteNanos( _nanos );
+    }
+
+
+    /**
+     * Returns the total number of bytes read.
+     *
+     * @return The total number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+
+    /**
+     * Returns the number of read operations completed.
+     *
+     * @return The number of read operations completed.
+     */
+    public long getReads() {
+        return reads.sum();
+    }
+
+
+    /**
+     * Returns the total number of bytes written.
+     *
+     * @return The total number of bytes written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+
+    /**
+     * Returns the number of write operations completed.
+     *
+     * @return The number of write operations completed.
+     */
+    public long getWrites() {
+        return writes.sum();
+    }
+
+
+    /**
+     * Returns the histogram of read operation latencies, from initiation to completion.
+     *
+     * @return The histogram of read operation latencies.
+     */
+    public LatencyHistogram getReadLatency() {
+        return readLatency;
+    }
+
+
+    /**
+     * Returns the histogram of write operation latencies, from initiation to completion.
+     *
+     * @return The histogram of write operation latencies.
+     */
+    public LatencyHistogram getWriteLatency() {
+        return writeLatency;
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     *
+     * @return a string representing this instance.
+     */
+    @Override
+    public String toString() {
+        return "read: " + getBytesRead() + " bytes in " + getReads() + " ops (" + readLatency + "); written: " + getBytesWritten() + " bytes in " + getWrites()
+                + " ops (" + writeLatency + ")";
+    }
+}
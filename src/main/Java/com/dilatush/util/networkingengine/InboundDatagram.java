@@ -22,6 +22,7 @@ public class InboundDatagram {
     private final int        port;          // the UDP port of the datagram's source...
     private final boolean    truncated;     // flag that is true if the datagram has been truncated...
     private final Instant    whenReceived;  // when the datagram was received...
+    private final BufferPool pool;          // the pool that the data buffer came from, or null if none...
 
 
     /**
@@ -33,6 +34,20 @@ public class InboundDatagram {
      * @param _truncated A flag that is {@code true} if the data in this datagram has been truncated.
      */
     public InboundDatagram( ByteBuffer _data, InetSocketAddress _remoteAddress, boolean _truncated ) {
+        this( _data, _remoteAddress, _truncated, null );
+    }
+
+
+    /**
+     * Creates a new instance of this class, with the given datagram data (acquired from the given {@link BufferPool}), the given remote address, and the given truncation flag.
+     * The time received is generated in the constructor.
+     *
+     * @param _data The data contained in this datagram.  The {@link ByteBuffer}'s position must be at the first byte of the data, and the limit must be one beyond the last byte.
+     * @param _remoteAddress The socket address of the source of this datagram.
+     * @param _truncated A flag that is {@code true} if the data in this datagram has been truncated.
+     * @param _pool The {@link BufferPool} that the data buffer was acquired from, or {@code null} if it didn't come from a pool.
+     */
+    /* package-private */ InboundDatagram( ByteBuffer _data, InetSocketAddress _remoteAddress, boolean _truncated, BufferPool _pool ) {
 
         // sanity checks...
         if( isNull( _data, _remoteAddress ) )
@@ -48,6 +63,16 @@ public class InboundDatagram {
         ipAddress    = IPAddress.fromInetAddress( _remoteAddress.getAddress() );
         truncated    = _truncated;
         whenReceived = Instant.now();
+        pool         = _pool;
+    }
+
+
+    /**
+     * Returns this datagram's data buffer to the {@link BufferPool} it was acquired from (if any).  Once this method has been called, neither the data buffer nor
+     * {@link #getData()} may be used again.  Calling this method is optional; a datagram that is never released is simply garbage collected.
+     */
+    public void release() {
+        if( pool != null ) pool.release( data );
     }
 
 
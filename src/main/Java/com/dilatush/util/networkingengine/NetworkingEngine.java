@@ -2,22 +2,22 @@ package com.dilatush.util.networkingengine;
 
 import com.dilatush.util.Outcome;
 import com.dilatush.util.ScheduledExecutor;
+import com.dilatush.util.config.AConfig;
 
 import java.io.IOException;
 import java.nio.channels.*;
 import java.time.Duration;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
 import static com.dilatush.util.General.getLogger;
 import static com.dilatush.util.General.isNull;
 import static com.dilatush.util.Strings.isEmpty;
-import static java.util.logging.Level.SEVERE;
 
 
 /**
@@ -30,6 +30,15 @@ import static java.util.logging.Level.SEVERE;
  * timeouts.  The {@link ScheduledExecutor} uses a thread pool with a fixed number of threads, and an unbounded queue, so it is important to make sure that the tasks it
  * executes are not blocking or compute intensive, and that there are sufficient threads to handle the number of concurrent tasks it might be asked to process.  If a
  * {@link ScheduledExecutor} is not provided at instantiation, a default {@link ScheduledExecutor} with 3 threads will be used.</p>
+ * <p>An engine may have more than one I/O loop (each with its own selector and thread), configured through {@link Config}.  Each listener, pipe, and UDP socket registered with
+ * such an engine is assigned to one of the I/O loops (see {@link LoopAssignment}), and is serviced only by that I/O loop for its lifetime.  In particular, the connections
+ * accepted by a {@link TCPListener} are spread across all the I/O loops, so that the work of servicing many connections is spread across multiple threads.</p>
+ * <p>An engine may also be configured (see {@link Config#inlineIO}) to perform the actual non-blocking reads and writes directly in its I/O loop threads, dispatching only the
+ * completion handlers to the {@link ScheduledExecutor}.</p>
+ * <p>Metrics are always on: each pipe and UDP server or client accumulates {@link IOMetrics}, which are also totaled for the engine ({@link #getIOMetrics()}), and the engine's
+ * select loops and executor are summarized by {@link #getStats()}.</p>
+ * <p>Read and write deadlines and idle timeouts (see {@link TCPPipe} and {@link UDPClient}) are managed by a single {@link TimingWheel} per engine, ticked by the
+ * {@link ScheduledExecutor}, so that they cost no more than an enqueue to set and a compare-and-set to cancel.</p>
  */
 @SuppressWarnings( "unused" )
 public final class NetworkingEngine {
@@ -37,23 +46,21 @@ public final class NetworkingEngine {
     private static final Logger       LOGGER                    = getLogger();
     private static final int          DEFAULT_NUMBER_OF_THREADS = 3;   // number of threads in the default ScheduledExecutor...
 
-    private static final int ALL_INTERESTS          = SelectionKey.OP_READ | SelectionKey.OP_ACCEPT | SelectionKey.OP_WRITE | SelectionKey.OP_CONNECT;
-    private static final int NO_READ_INTEREST       = ALL_INTERESTS ^ SelectionKey.OP_READ;
-    private static final int NO_WRITE_INTEREST      = ALL_INTERESTS ^ SelectionKey.OP_WRITE;
-    private static final int NO_ACCEPTABLE_INTEREST = ALL_INTERESTS ^ SelectionKey.OP_ACCEPT;
-
     private static final Outcome.Forge<NetworkingEngine> forgeNetworkingEngine = new Outcome.Forge<>();
 
-    private final Thread               ioLoopThread;      // the thread that runs the I/O loop, which is carefully kept only to trivial activities...
-    private final Selector             selector;          // the one and only selector for this engine...
+    private final IOLoop[]             ioLoops;           // the I/O loops (each with its own selector and thread) for this engine...
+    private final LoopAssignment       loopAssignment;    // how new registrations are assigned to I/O loops...
+    private final AtomicInteger        nextLoop;          // the index of the next I/O loop for round-robin assignments...
     private final String               name;              // the name of this engine; the only intent is for human readability...
-    private final ReentrantLock        selectorLock;      // a lock to prevent multiple threads changing the selector simultaneously...
     private final ScheduledExecutor    scheduledExecutor; // offloads tasks from the I/O loop, and is the basis for timeouts...
+    private final BufferPool           bufferPool;        // the pool that all inbound buffers come from...
+    private final IOMetrics            ioMetrics;         // the I/O metrics totals for all the pipes and UDP servers and clients on this engine...
+    private final TimingWheel          timingWheel;       // the timing wheel for read and write deadlines and idle timeouts...
     private final AtomicBoolean        isShutdown;          // set true if this engine has been shutdown...
 
 
     /**
-     * Attempts to create a new instance of this class with the given name and {@link ScheduledExecutor}, and returns the outcome.
+     * Attempts to create a new instance of this class with the given name and {@link ScheduledExecutor}, and returns the outcome.  The new instance has a single I/O loop.
      *
      * @param _name The human-readable name of this instance, which must be a string of non-zero length.  While there is no requirement for the name being unique amongst
      *              concurrent instances of this class, uniqueness is recommended.
@@ -63,14 +70,54 @@ public final class NetworkingEngine {
      */
     public static Outcome<NetworkingEngine> getInstance( final String _name, final ScheduledExecutor _scheduledExecutor ) {
 
+        var config = new Config();
+        config.name    = _name;
+        config.ioLoops = 1;
+        return getInstance( config, _scheduledExecutor );
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class with the given name and a new {@link ScheduledExecutor} with the default number of daemon worker threads (3), and returns
+     * the outcome.  The new instance has a single I/O loop.
+     *
+     * @param _name The human-readable name of this instance, which must be a string of non-zero length.  While there is no requirement for the name being unique amongst
+     *              concurrent instances of this class, uniqueness is recommended.
+     * @return The outcome of the attempt to create a new instance of this class.  If ok, the info is the newly created instance.  If not ok, there is an explanatory message
+     * and possibly an exception that caused a problem.
+     */
+    public static Outcome<NetworkingEngine> getInstance( final String _name ) {
+
+        try {
+            var scheduleExecutor = new ScheduledExecutor( DEFAULT_NUMBER_OF_THREADS );
+            return getInstance( _name, scheduleExecutor );
+        }
+        catch( Exception _e ) {
+            return forgeNetworkingEngine.notOk( "Problem creating ScheduledExecutor: " + _e.getMessage(), _e );
+        }
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class with the given {@link Config} and {@link ScheduledExecutor}, and returns the outcome.
+     *
+     * @param _config The {@link Config} configuration for the new instance.
+     * @param _scheduledExecutor The {@link ScheduledExecutor} instance for this engine to use for offloading tasks from the I/O loop threads, and for scheduling timeouts.
+     * @return The outcome of the attempt to create a new instance of this class.  If ok, the info is the newly created instance.  If not ok, there is an explanatory message
+     * and possibly an exception that caused a problem.
+     */
+    public static Outcome<NetworkingEngine> getInstance( final Config _config, final ScheduledExecutor _scheduledExecutor ) {
+
         // sanity checks...
-        if( isEmpty( _name ) ) return forgeNetworkingEngine.notOk( "no name" );
+        if( isNull( _config ) ) return forgeNetworkingEngine.notOk( "_config is null" );
         if( isNull( _scheduledExecutor ) ) return forgeNetworkingEngine.notOk( "_scheduledExecutor is null" );
+        var validOutcome = _config.isValid();
+        if( validOutcome.notOk() ) return forgeNetworkingEngine.notOk( validOutcome );
 
         // get an engine and start it up...
         try {
-            var engine = new NetworkingEngine( _name, _scheduledExecutor );
-            engine.ioLoopThread.start();
+            var engine = new NetworkingEngine( _config, _scheduledExecutor );
+            for( IOLoop ioLoop : engine.ioLoops ) ioLoop.start();
             return forgeNetworkingEngine.ok( engine );
         }
         catch( IOException _e ) {
@@ -83,19 +130,19 @@ public final class NetworkingEngine {
 
 
     /**
-     * Attempts to create a new instance of this class with the given name and a new {@link ScheduledExecutor} with the default number of daemon worker threads (3), and returns
-     * the outcome.
+     * Attempts to create a new instance of this class with the given {@link Config} and a new {@link ScheduledExecutor} with daemon worker threads, and returns the outcome.  The
+     * {@link ScheduledExecutor} has one thread per I/O loop, but never fewer than the default number of threads (3).
      *
-     * @param _name The human-readable name of this instance, which must be a string of non-zero length.  While there is no requirement for the name being unique amongst
-     *              concurrent instances of this class, uniqueness is recommended.
+     * @param _config The {@link Config} configuration for the new instance.
      * @return The outcome of the attempt to create a new instance of this class.  If ok, the info is the newly created instance.  If not ok, there is an explanatory message
      * and possibly an exception that caused a problem.
      */
-    public static Outcome<NetworkingEngine> getInstance( final String _name ) {
+    public static Outcome<NetworkingEngine> getInstance( final Config _config ) {
 
         try {
-            var scheduleExecutor = new ScheduledExecutor( DEFAULT_NUMBER_OF_THREADS );
-            return getInstance( _name, scheduleExecutor );
+            if( isNull( _config ) ) return forgeNetworkingEngine.notOk( "_config is null" );
+            var scheduleExecutor = new ScheduledExecutor( Math.max( DEFAULT_NUMBER_OF_THREADS, _config.ioLoops ) );
+            return getInstance( _config, scheduleExecutor );
         }
         catch( Exception _e ) {
             return forgeNetworkingEngine.notOk( "Problem creating ScheduledExecutor: " + _e.getMessage(), _e );
@@ -106,26 +153,32 @@ public final class NetworkingEngine {
     /**
      * Private constructor that assumes the arguments have been verified.
      *
-     * @param _name The human-readable name of this instance, which must be a string of non-zero length.  While there is no requirement for the name being unique amongst
-     *              concurrent instances of this class, uniqueness is recommended.
-     * @param _scheduledExecutor The {@link ScheduledExecutor} instance for this engine to use for offloading tasks from the I/O loop thread, and for scheduling timeouts.
-     * @throws IOException if the selector cannot be opened.
+     * @param _config The {@link Config} configuration for the new instance, which has been validated.
+     * @param _scheduledExecutor The {@link ScheduledExecutor} instance for this engine to use for offloading tasks from the I/O loop threads, and for scheduling timeouts.
+     * @throws IOException if a selector cannot be opened.
      */
-    private NetworkingEngine( final String _name, final ScheduledExecutor _scheduledExecutor ) throws IOException {
+    private NetworkingEngine( final Config _config, final ScheduledExecutor _scheduledExecutor ) throws IOException {
 
-        name = _name;
+        name = _config.name;
         scheduledExecutor = _scheduledExecutor;
-
-        // get our selector...
-        selector = Selector.open();
-
-        // get our I/O loop thread...
-        ioLoopThread = new Thread( this::ioLoop, _name + "-I/O Loop" );
-        ioLoopThread.setDaemon( true );
+        loopAssignment = _config.loopAssignment;
+        bufferPool = _config.bufferPool;
+        ioMetrics = new IOMetrics( null );
+        timingWheel = new TimingWheel( scheduledExecutor, Duration.ofMillis( _config.timerTickMs ), _config.timerWheelSize );
 
         // some setup...
-        selectorLock = new ReentrantLock();
         isShutdown = new AtomicBoolean( false );
+        nextLoop = new AtomicInteger( 0 );
+
+        // get our I/O loops, each with its own selector and thread...
+        ioLoops = new IOLoop[_config.ioLoops];
+        for( int i = 0; i < ioLoops.length; i++ ) {
+            var threadName = (ioLoops.length == 1) ? name + "-I/O Loop" : name + "-I/O Loop " + i;
+            ioLoops[i] = new IOLoop( this, threadName, _config.inlineIO );
+        }
+
+        // start the timing wheel ticking...
+        timingWheel.start();
     }
 
 
@@ -135,19 +188,25 @@ public final class NetworkingEngine {
     public void shutdown() {
 
         isShutdown.set( true );
-        ioLoopThread.interrupt();
-        try {
-            selector.close();
-        }
-        catch( IOException _e ) {
-            // ignore...
-        }
+        timingWheel.stop();
+        for( IOLoop ioLoop : ioLoops ) ioLoop.shutdown();
+    }
+
+
+    /**
+     * Returns {@code true} if this engine has been shut down.
+     *
+     * @return {@code true} if this engine has been shut down.
+     */
+    public boolean isShutdown() {
+        return isShutdown.get();
     }
 
 
     /**
-     * Register a new selection key for the given channel, with the given initial operations interest set and the given (optional) attachment.  This method both registers the new
-     * selection key and wakes up the selector to ensure the key takes immediate effect.
+     * Register a new selection key for the given channel, with the given initial operations interest set and the given (optional) attachment.  The I/O loop that the channel is
+     * registered with is chosen according to this engine's {@link LoopAssignment}.  This method both registers the new selection key and wakes up the selector to ensure the key
+     * takes immediate effect.
      *
      * @param _channel The channel to register a new selection key for.
      * @param _ops The initial operations interest set for the new key.
@@ -156,139 +215,108 @@ public final class NetworkingEngine {
      * @throws ClosedChannelException if this method is called when a key for the given channel has already been registered, but was cancelled.
      */
     /* package-private */ SelectionKey register( final SelectableChannel _channel, final int _ops, final Object _attachment ) throws ClosedChannelException {
+        return nextIOLoop().register( _channel, _ops, _attachment );
+    }
 
-        try {
-            // lock out concurrent access for other threads...
-            selectorLock.lock();
 
-            // the actual registration...
-            var key = _channel.register( selector, _ops, _attachment );
+    /**
+     * Returns the I/O loop that the next registration should be made with, according to this engine's {@link LoopAssignment}.
+     *
+     * @return The I/O loop that the next registration should be made with.
+     */
+    private IOLoop nextIOLoop() {
+
+        // if we only have one I/O loop, there's no choice to make...
+        if( ioLoops.length == 1 ) return ioLoops[0];
 
-            // make certain the new key has immediate effect...
-            selector.wakeup();
+        // otherwise, choose according to our assignment policy...
+        return switch( loopAssignment ) {
 
-            // and we're done...
-            return key;
-        }
-        finally {
-            // release the lock...
-            selectorLock.unlock();
-        }
+            case ROUND_ROBIN -> ioLoops[ Math.floorMod( nextLoop.getAndIncrement(), ioLoops.length ) ];
+
+            case LEAST_LOADED -> {
+                var least = ioLoops[0];
+                for( int i = 1; i < ioLoops.length; i++ ) {
+                    if( ioLoops[i].getLoad() < least.getLoad() ) least = ioLoops[i];
+                }
+                yield least;
+            }
+        };
     }
 
 
     /**
-     * The main I/O loop for the network engine.  In normal operation the {@code while()} loop will run forever.  Note that all code executed in this loop is trivially simple.
-     * This is intentional, to guarantee the performance within the I/O loop.  Do not make changes that upset this apple cart!
+     * Wakes up the selectors of all of this engine's I/O loops.
      */
-    @SuppressWarnings( "ConstantConditions" )
-    private void ioLoop() {
+    /* package-private */ public void wakeSelector() {
+        for( IOLoop ioLoop : ioLoops ) ioLoop.wakeup();
+    }
 
-        LOGGER.finest( "I/O Loop starting..." );
 
-        try {
+    /**
+     * Wakes up the selector that the given {@link SelectionKey} is registered with, so that any change to the key's interest set takes immediate effect.
+     *
+     * @param _key The {@link SelectionKey} whose selector should be woken up.
+     */
+    /* package-private */ void wakeSelector( final SelectionKey _key ) {
+
+        // find the I/O loop whose selector this key is registered with, and wake it up (which does nothing if we're in that loop's own thread)...
+        var selector = _key.selector();
+        for( IOLoop ioLoop : ioLoops ) {
+            if( ioLoop.getSelector() == selector ) {
+                ioLoop.wakeup();
+                return;
+            }
+        }
+    }
 
-            // we're going to loop here basically forever, unless something goes horribly wrong...
-            while( !ioLoopThread.isInterrupted() ) {
 
-                LOGGER.finest( "Selecting..." );
+    /**
+     * Returns the {@link BufferPool} that this engine gets all inbound buffers from.
+     *
+     * @return The {@link BufferPool} that this engine gets all inbound buffers from.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
 
-                // select and get any keys...
-                try {
-                    selector.select();
-                    if( !selector.isOpen() ) break;
-                }
-                catch( IOException _e ) {
-                    LOGGER.log( SEVERE, "I/O error when selecting", _e );
-                    throw new IllegalStateException( "Selector I/O errors doom the NetworkingEngine" );
-                }
 
-                // iterate over any selected keys, and handle them...
-                Set<SelectionKey> keys = selector.selectedKeys();
-                LOGGER.finest( "Selected keys: " + keys.size() );
-                Iterator<SelectionKey> keyIterator = keys.iterator();
-                while( keyIterator.hasNext() ) {
-
-                    // get the next key...
-                    SelectionKey key = keyIterator.next();
-
-                    // handle accepting connection (TCP listeners only)...
-                    if( key.isValid() && key.isAcceptable() ) {
-
-                        if( key.attachment() instanceof TCPListener listener ) {
-                            key.interestOpsAnd( NO_ACCEPTABLE_INTEREST );
-                            LOGGER.finest( "Acceptable with TCPListener: " + listener );
-                            scheduledExecutor.execute( listener::onAcceptable );
-                        }
-                        else {
-                            LOGGER.warning( "Acceptable interest with unknown attachment type: " + key.attachment().getClass().getName() );
-                        }
-                    }
-
-                    // handle connecting (TCP only)...
-                    if( key.isValid() && key.isConnectable() ) {
-                        LOGGER.finest( "Connectable" );
-                    }
-
-                    // handle writing to the network...
-                    if( key.isValid() && key.isWritable() ) {
-                        LOGGER.finest( "Writable" );
-                        if( key.attachment() instanceof TCPPipe pipe ) {
-                            key.interestOpsAnd( NO_WRITE_INTEREST );
-                            scheduledExecutor.execute( pipe::onWriteable );
-                        }
-                        else if( key.attachment() instanceof UDPBase udpBase ) {
-                            key.interestOpsAnd( NO_WRITE_INTEREST );
-                            scheduledExecutor.execute( udpBase::onWriteable );
-                        }
-                        else {
-                            LOGGER.warning( "Writeable interest with unknown attachment type: " + key.attachment().getClass().getName() );
-                        }
-                    }
-
-                    // handle reading from the network...
-                    if( key.isValid() && key.isReadable() ) {
-                        LOGGER.finest( "Readable" );
-                        if( key.attachment() instanceof TCPPipe pipe ) {
-                            key.interestOpsAnd( NO_READ_INTEREST );
-                            scheduledExecutor.execute( pipe::onReadable );
-                        }
-                        else if( key.attachment() instanceof UDPBase udpBase ) {
-                            key.interestOpsAnd( NO_READ_INTEREST );
-                            scheduledExecutor.execute( udpBase::onReadable );
-                        }
-                        else {
-                            LOGGER.warning( "Readable interest with unknown attachment type: " + key.attachment().getClass().getName() );
-                        }
-                    }
-
-                    // get rid the key we just processed...
-                    keyIterator.remove();
-                }
-            }
-        }
-        catch( ClosedSelectorException _e ) {
-            LOGGER.log( SEVERE, "Selector closed", _e );
-        }
+    /**
+     * Returns the I/O metrics totals for all the {@link TCPPipe}s, {@link UDPServer}s, and {@link UDPClient}s on this engine.  The metrics for each individual pipe, server, or
+     * client are available from its own {@code getMetrics()} method.
+     *
+     * @return The I/O metrics totals for this engine.
+     */
+    public IOMetrics getIOMetrics() {
+        return ioMetrics;
+    }
 
-        // getting here means something seriously wrong happened; log and let the loop die...
-        catch( Exception _e ) {
-            LOGGER.log( SEVERE, "Unhandled exception in NIO selector loop", _e );
-        }
-        finally {
-            if( isShutdown.get() )
-                LOGGER.finest( "Network engine shut down" );
-            else
-                LOGGER.severe( "Fatal NetworkingEngine error; exiting I/O loop" );
-
-            // all hope is lost; terminate this thread...
-            ioLoopThread.interrupt();
+
+    /**
+     * Returns a snapshot of this engine's statistics: the select loop iterations and keys selected (summed over all I/O loops), and the executor's queue depth.  Unlike
+     * {@link #getIOMetrics()}, this snapshot is not free to take (it briefly locks the executor's queue), so it should be sampled periodically rather than on a hot path.
+     *
+     * @return A snapshot of this engine's statistics.
+     */
+    public Stats getStats() {
+
+        long iterations = 0;
+        long keysSelected = 0;
+        for( IOLoop ioLoop : ioLoops ) {
+            iterations += ioLoop.getIterations();
+            keysSelected += ioLoop.getKeysSelected();
         }
+        return new Stats( iterations, keysSelected, scheduledExecutor.getQueueSize(), scheduledExecutor.getActiveCount() );
     }
 
 
-    /* package-private */ public void wakeSelector() {
-        selector.wakeup();
+    /**
+     * Returns the number of I/O loops (each with its own selector and thread) in this engine.
+     *
+     * @return The number of I/O loops in this engine.
+     */
+    public int getIOLoopCount() {
+        return ioLoops.length;
     }
 
 
@@ -316,6 +344,30 @@ public final class NetworkingEngine {
     }
 
 
+    /**
+     * Schedule the given task to run once the given delay has elapsed, on this engine's {@link TimingWheel}.  Unlike {@link #schedule(Runnable,Duration)}, this is cheap enough
+     * to use for a deadline on every read or write, as almost all such timeouts are canceled long before they expire.  The task is run in the timing wheel's thread, so it must be
+     * short and must not block.
+     *
+     * @param _delay The {@link Duration} delay until the task is run, to the resolution of the timing wheel's tick.
+     * @param _task The {@link Runnable} task to run upon expiry.
+     * @return The {@link TimingWheel.Timeout}, which may be used to cancel it.
+     */
+    /* package-private */ TimingWheel.Timeout scheduleTimeout( final Duration _delay, final Runnable _task ) {
+        return timingWheel.schedule( _delay, _task );
+    }
+
+
+    /**
+     * Returns this engine's {@link TimingWheel}.
+     *
+     * @return This engine's {@link TimingWheel}.
+     */
+    /* package-private */ TimingWheel getTimingWheel() {
+        return timingWheel;
+    }
+
+
     /**
      * Execute the given task in another thread as soon as one becomes available.
      *
@@ -341,16 +393,104 @@ public final class NetworkingEngine {
         if( this == _o ) return true;
         if( _o == null || getClass() != _o.getClass() ) return false;
         NetworkingEngine that = (NetworkingEngine) _o;
-        return ioLoopThread.equals( that.ioLoopThread ) &&
-                selector.equals( that.selector ) &&
+        return Arrays.equals( ioLoops, that.ioLoops ) &&
                 name.equals( that.name ) &&
-                selectorLock.equals( that.selectorLock ) &&
                 scheduledExecutor.equals( that.scheduledExecutor );
     }
 
 
     @Override
     public int hashCode() {
-        return Objects.hash( ioLoopThread, selector, name, selectorLock, scheduledExecutor );
+        return Objects.hash( Arrays.hashCode( ioLoops ), name, scheduledExecutor );
+    }
+
+
+    /**
+     * The ways that newly registered channels may be assigned to the I/O loops of an engine with more than one I/O loop.
+     */
+    public enum LoopAssignment {
+
+        /** Each new registration goes to the next I/O loop in turn. */
+        ROUND_ROBIN,
+
+        /** Each new registration goes to the I/O loop with the fewest registered channels. */
+        LEAST_LOADED
+    }
+
+
+    /**
+     * A snapshot of the statistics for a {@link NetworkingEngine}.
+     *
+     * @param loopIterations The number of passes through the select loops of all the engine's I/O loops.
+     * @param keysSelected The total number of keys selected over all those passes; {@code keysSelected / loopIterations} is the mean number of keys per select.
+     * @param executorQueueDepth The number of tasks waiting in the engine's executor's queue (including scheduled tasks that aren't yet due).
+     * @param executorActiveThreads The approximate number of the engine's executor's threads that are actively executing tasks.
+     */
+    public record Stats( long loopIterations, long keysSelected, int executorQueueDepth, int executorActiveThreads ) {}
+
+
+    /**
+     * Configuration POJO for {@link NetworkingEngine} instances.  The defaults give an engine with one I/O loop per available processor, with channels assigned to I/O loops in
+     * round-robin order.
+     */
+    public static class Config extends AConfig {
+
+        /**
+         * The human-readable name of the engine, which must be a string of non-zero length.
+         */
+        public String         name;
+
+        /**
+         * The number of I/O loops (each with its own selector and thread) in the engine.  Each channel registered with the engine (for a {@link TCPListener}, {@link TCPPipe},
+         * {@link UDPServer}, or {@link UDPClient}) is serviced by exactly one I/O loop.  Defaults to the number of available processors.
+         */
+        public int            ioLoops        = Runtime.getRuntime().availableProcessors();
+
+        /**
+         * How newly registered channels are assigned to the I/O loops.  Defaults to {@link LoopAssignment#ROUND_ROBIN}.
+         */
+        public LoopAssignment loopAssignment = LoopAssignment.ROUND_ROBIN;
+
+        /**
+         * If {@code true}, the non-blocking reads and writes for readable and writable channels are performed directly in the I/O loop threads, and only the completion
+         * handlers (such as {@link com.dilatush.util.feed.OnReadComplete} and {@link com.dilatush.util.feed.OnWriteComplete}) are dispatched to the engine's
+         * {@link ScheduledExecutor}.  This saves a thread handoff and a selector wakeup for each readable or writable event, which benefits traffic consisting of many small
+         * messages.  If {@code false} (the default), the reads and writes are themselves performed in threads from the engine's {@link ScheduledExecutor}.
+         */
+        public boolean        inlineIO       = false;
+
+        /**
+         * The {@link BufferPool} that all inbound buffers (for {@link TCPPipe} reads and for received datagrams) are acquired from.  Defaults to
+         * {@link BufferPool#UNPOOLED}, which allocates a new heap buffer for every read or datagram.
+         */
+        public BufferPool     bufferPool     = BufferPool.UNPOOLED;
+
+        /**
+         * The duration of one tick of the engine's {@link TimingWheel}, in milliseconds, which is the resolution of read and write deadlines and idle timeouts.  Defaults to 10.
+         */
+        public int            timerTickMs    = 10;
+
+        /**
+         * The number of buckets in the engine's {@link TimingWheel}, which must be a power of two in the range [16..65536].  Defaults to 512, which (with the default tick) covers
+         * a little over five seconds per revolution of the wheel.
+         */
+        public int            timerWheelSize = 512;
+
+
+        /**
+         * Verify the validity of this object.  Each error found adds an explanatory message to the given list of messages.
+         *
+         * @param _messages The list of messages explaining the errors found.
+         */
+        @Override
+        public void verify( final List<String> _messages ) {
+            validate( () -> !isEmpty( name ), _messages, "name must be present and not empty" );
+            validate( () -> (ioLoops >= 1) && (ioLoops <= 1024), _messages, "ioLoops must be in the range [1..1024]: " + ioLoops );
+            validate( () -> loopAssignment != null, _messages, "loopAssignment must be present" );
+            validate( () -> bufferPool != null, _messages, "bufferPool must be present" );
+            validate( () -> (timerTickMs >= 1) && (timerTickMs <= 1000), _messages, "timerTickMs must be in the range [1..1000]: " + timerTickMs );
+            validate( () -> (timerWheelSize >= 16) && (timerWheelSize <= 65536) && (Integer.bitCount( timerWheelSize ) == 1), _messages,
+                    "timerWheelSize must be a power of two in the range [16..65536]: " + timerWheelSize );
+        }
     }
 }
@@ -0,0 +1,245 @@
+package com.dilatush.util.networkingengine;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Instances of this class implement a {@link BufferPool} whose buffers come in size classes that are powers of two, from 256 bytes through 65,536 bytes.  An acquisition is
+ * satisfied with a buffer from the smallest size class that is large enough.  Acquisitions larger than the largest size class are always satisfied with a newly allocated buffer,
+ * which is not pooled upon release.</p>
+ * <p>Each thread has a small cache of buffers for each size class, so that the common case of a thread acquiring and releasing buffers needs no synchronization at all.  When a
+ * thread's cache is empty (on acquisition) or full (on release), a shared cache for the size class is used.  When the shared cache is also full, released buffers are discarded.
+ * </p>
+ * <p>The buffers may be either heap buffers or direct buffers.  Direct buffers avoid a copy on each channel read, but have no backing array.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class SizeClassedBufferPool implements BufferPool {
+
+    private static final int MIN_CLASS_SHIFT  = 8;    // the smallest size class is 256 bytes...
+    private static final int MAX_CLASS_SHIFT  = 16;   // the largest size class is 65,536 bytes...
+    private static final int CLASSES          = MAX_CLASS_SHIFT - MIN_CLASS_SHIFT + 1;
+
+    private static final int DEFAULT_LOCAL_CACHE_SIZE  = 16;
+    private static final int DEFAULT_SHARED_CACHE_SIZE = 1024;
+
+    private final boolean                             direct;           // true if this pool's buffers are direct buffers...
+    private final int                                 localCacheSize;   // the maximum number of buffers per size class in each thread's cache...
+    private final int                                 sharedCacheSize;  // the maximum number of buffers per size class in the shared cache...
+    private final ConcurrentLinkedQueue<ByteBuffer>[] shared;           // the shared caches, one per size class...
+    private final AtomicInteger[]                     sharedCounts;     // the number of buffers in each shared cache...
+    private final ThreadLocal<LocalCache>             local;            // each thread's caches...
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder outstanding;
+    private final LongAdder discarded;
+
+
+    /**
+     * Creates a new instance of this class with the given buffer type and cache sizes.
+     *
+     * @param _direct If {@code true}, this pool's buffers are direct buffers; otherwise they are heap buffers.
+     * @param _localCacheSize The maximum number of buffers of each size class cached by each thread; must be non-negative.
+     * @param _sharedCacheSize The maximum number of buffers of each size class in the cache shared by all threads; must be non-negative.
+     * @throws IllegalArgumentException if either cache size is negative.
+     */
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    public SizeClassedBufferPool( final boolean _direct, final int _localCacheSize, final int _sharedCacheSize ) {
+
+        // sanity checks...
+        if( (_localCacheSize < 0) || (_sharedCacheSize < 0) )
+            throw new IllegalArgumentException( "_localCacheSize or _sharedCacheSize is negative" );
+
+        direct          = _direct;
+        localCacheSize  = _localCacheSize;
+        sharedCacheSize = _sharedCacheSize;
+
+        // set up our shared caches...
+        shared       = new ConcurrentLinkedQueue[CLASSES];
+        sharedCounts = new AtomicInteger[CLASSES];
+        for( int i = 0; i < CLASSES; i++ ) {
+            shared[i]       = new ConcurrentLinkedQueue<>();
+            sharedCounts[i] = new AtomicInteger( 0 );
+        }
+        local = ThreadLocal.withInitial( () -> new LocalCache( localCacheSize ) );
+
+        // set up our statistics...
+        hits        = new LongAdder();
+        misses      = new LongAdder();
+        outstanding = new LongAdder();
+        discarded   = new LongAdder();
+    }
+
+
+    /**
+     * Creates a new instance of this class with the given buffer type and the default cache sizes (16 buffers per size class per thread, and 1,024 buffers per size class
+     * shared).
+     *
+     * @param _direct If {@code true}, this pool's buffers are direct buffers; otherwise they are heap buffers.
+     */
+    public SizeClassedBufferPool( final boolean _direct ) {
+        this( _direct, DEFAULT_LOCAL_CACHE_SIZE, DEFAULT_SHARED_CACHE_SIZE );
+    }
+
+
+    /**
+     * Returns a cleared buffer with its limit set to the given capacity.  The buffer's actual capacity is the smallest size class that is at least the given capacity, or
+     * exactly the given capacity if that's larger than the largest size class.
+     *
+     * @param _capacity The number of bytes required in the buffer, which must be at least one.
+     * @return The buffer, with the position at zero and the limit at {@code _capacity}.
+     * @throws IllegalArgumentException if the given capacity is less than one.
+     */
+    @Override
+    public ByteBuffer acquire( final int _capacity ) {
+
+        // sanity check...
+        if( _capacity < 1 ) throw new IllegalArgumentException( "_capacity must be at least one: " + _capacity );
+
+        outstanding.increment();
+
+        // if the request is too large for our size classes, just allocate it...
+        var sizeClass = sizeClassFor( _capacity );
+        if( sizeClass < 0 ) {
+            misses.increment();
+            return allocate( _capacity );
+        }
+
+        // first try our thread's cache, then the shared cache...
+        var buffer = local.get().poll( sizeClass );
+        if( buffer == null ) {
+            buffer = shared[sizeClass].poll();
+            if( buffer != null ) sharedCounts[sizeClass].decrementAndGet();
+        }
+
+        // if we found nothing in the caches, we must allocate a new buffer...
+        if( buffer == null ) {
+            misses.increment();
+            buffer = allocate( 1 << (sizeClass + MIN_CLASS_SHIFT) );
+        }
+        else
+            hits.increment();
+
+        // set the buffer up for our caller...
+        buffer.clear().limit( _capacity );
+        return buffer;
+    }
+
+
+    /**
+     * Returns the given buffer to this pool.  The buffer must have been obtained from {@link #acquire(int)} on this pool, and must not be used by the caller after this call.
+     * Releasing {@code null} has no effect.
+     *
+     * @param _buffer The buffer to return to this pool.
+     */
+    @Override
+    public void release( final ByteBuffer _buffer ) {
+
+        if( _buffer == null ) return;
+
+        outstanding.decrement();
+
+        // if this isn't one of our buffers, then we can't pool it...
+        var sizeClass = sizeClassOf( _buffer );
+        if( sizeClass < 0 ) {
+            discarded.increment();
+            return;
+        }
+
+        // first try our thread's cache, then the shared cache, and if both are full, discard it...
+        if( local.get().offer( sizeClass, _buffer ) ) return;
+        if( sharedCounts[sizeClass].incrementAndGet() <= sharedCacheSize ) {
+            shared[sizeClass].offer( _buffer );
+            return;
+        }
+        sharedCounts[sizeClass].decrementAndGet();
+        discarded.increment();
+    }
+
+
+    /**
+     * Returns a snapshot of this pool's statistics.
+     *
+     * @return A snapshot of this pool's statistics.
+     */
+    @Override
+    public Stats getStats() {
+        return new Stats( hits.sum(), misses.sum(), outstanding.sum(), discarded.sum() );
+    }
+
+
+    /**
+     * Returns the index of the smallest size class that can hold the given capacity, or -1 if the capacity is larger than the largest size class.
+     *
+     * @param _capacity The capacity required.
+     * @return The index of the smallest size class that can hold the given capacity, or -1 if there is none.
+     */
+    private static int sizeClassFor( final int _capacity ) {
+
+        if( _capacity > (1 << MAX_CLASS_SHIFT) ) return -1;
+        var shift = 32 - Integer.numberOfLeadingZeros( _capacity - 1 );   // the smallest power of two >= _capacity...
+        return Math.max( 0, shift - MIN_CLASS_SHIFT );
+    }
+
+
+    /**
+     * Returns the index of the size class of the given buffer, or -1 if the buffer is not one of this pool's buffers.
+     *
+     * @param _buffer The buffer to check.
+     * @return The index of the size class of the given buffer, or -1 if the buffer is not one of this pool's buffers.
+     */
+    private int sizeClassOf( final ByteBuffer _buffer ) {
+
+        var capacity = _buffer.capacity();
+        if( (_buffer.isDirect() != direct) || _buffer.isReadOnly() || (Integer.bitCount( capacity ) != 1) ) return -1;
+        var shift = Integer.numberOfTrailingZeros( capacity );
+        return ((shift < MIN_CLASS_SHIFT) || (shift > MAX_CLASS_SHIFT)) ? -1 : shift - MIN_CLASS_SHIFT;
+    }
+
+
+    /**
+     * Allocate a new buffer of the given capacity, direct or heap as configured.
+     *
+     * @param _capacity The capacity of the new buffer.
+     * @return The new buffer.
+     */
+    private ByteBuffer allocate( final int _capacity ) {
+        return direct ? ByteBuffer.allocateDirect( _capacity ) : ByteBuffer.allocate( _capacity );
+    }
+
+
+    /**
+     * A single thread's cache of buffers, with a fixed-size stack for each size class.
+     */
+    private static class LocalCache {
+
+        private final ByteBuffer[][] buffers;
+        private final int[]          counts;
+
+
+        private LocalCache( final int _size ) {
+            buffers = new ByteBuffer[CLASSES][_size];
+            counts  = new int[CLASSES];
+        }
+
+
+        private ByteBuffer poll( final int _sizeClass ) {
+
+            if( counts[_sizeClass] == 0 ) return null;
+            var index = --counts[_sizeClass];
+            var buffer = buffers[_sizeClass][index];
+            buffers[_sizeClass][index] = null;
+            return buffer;
+        }
+
+
+        private boolean offer( final int _sizeClass, final ByteBuffer _buffer ) {
+
+            if( counts[_sizeClass] >= buffers[_sizeClass].length ) return false;
+            buffers[_sizeClass][counts[_sizeClass]++] = _buffer;
+            return true;
+        }
+    }
+}
@@ -10,9 +10,14 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
 import java.net.StandardSocketOptions;
+import java.nio.channels.ClosedChannelException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -21,8 +26,12 @@ import static com.dilatush.util.General.isNull;
 
 
 /**
- * Instances of this class (or its subclasses) implement servers using the TCP protocol.  In particular, they listen for inbound TCP connections to a particular IP address and TCP
- * port number.  When a listener detects an inbound TCP connection, it obtains and initializes a new instance of {@link TCPPipe} (or a subclass) to handle that connection.
+ * <p>Instances of this class (or its subclasses) implement servers using the TCP protocol.  In particular, they listen for inbound TCP connections to a particular IP address and TCP
+ * port number.  When a listener detects an inbound TCP connection, it obtains and initializes a new instance of {@link TCPPipe} (or a subclass) to handle that connection.</p>
+ * <p>Each time the listener's channel becomes acceptable, the listener accepts up to {@link #getMaxAcceptsPerEvent()} pending connections before re-arming its interest, so a
+ * storm of connections (such as clients reconnecting after a restart) is drained in batches rather than one connection (and one selector wakeup) at a time.  The listener may
+ * also be given a limit on the number of concurrently open connections it has accepted ({@link #setMaxConnections(int)}); when the limit is reached, the listener stops
+ * accepting (leaving further connections in the operating system's backlog) until one of its accepted pipes is closed.</p>
  */
 @SuppressWarnings( "unused" )
 public class TCPListener {
@@ -32,6 +41,8 @@ public class TCPListener {
     protected static final Outcome.Forge<TCPListener>  forgeTCPListener = new Outcome.Forge<>();
     protected static final Outcome.Forge<?>            forge            = new Outcome.Forge<>();
 
+    private static final int DEFAULT_MAX_ACCEPTS_PER_EVENT = 64;  // the default maximum number of connections accepted each time our channel is acceptable...
+
     protected final IPAddress            ip;                       // the IP address to bind this listener to...
     protected final int                  port;                     // the TCP port to bind this listener to...
     protected final ServerSocketChannel  channel;                  // the server socket channel that implements this listener...
@@ -41,6 +52,17 @@ public class TCPListener {
     protected final SelectionKey         key;                      // the listener's key...
     protected final SourceFilter sourceFilter;             // the source filter that decides whether to accept an incoming TCP request...
 
+    private final LongAdder              accepted;                 // the number of connections accepted and handed to the on accept handler...
+    private final LongAdder              rejected;                 // the number of connections rejected by the source filter...
+    private final LongAdder              errors;                   // the number of errors while accepting connections...
+    private final long                   startNanos;               // when this listener was created...
+    private final AtomicInteger          open;                     // the number of accepted connections whose pipes have not yet been closed...
+    private final AtomicBoolean          paused;                   // true while accepting is paused because the connection limit has been reached...
+    private final LongAdder              pauses;                   // the number of times accepting has been paused...
+
+    private volatile int                 maxAcceptsPerEvent;       // the maximum number of connections accepted each time our channel is acceptable...
+    private volatile int                 maxConnections;           // the maximum number of concurrently open accepted connections...
+
 
     /**
      * Attempts to create, configure, and register a new instance of this class.  The socket option {@code SO_REUSEADDR} is set to {@code true}, it's
@@ -171,6 +193,15 @@ public class TCPListener {
         engine                  = _engine;
         onAcceptHandler         = _onAcceptHandler;
         onErrorHandler          = (_onErrorHandler == null) ? this::defaultOnErrorHandler : _onErrorHandler;
+        accepted                = new LongAdder();
+        rejected                = new LongAdder();
+        errors                  = new LongAdder();
+        startNanos              = System.nanoTime();
+        open                    = new AtomicInteger( 0 );
+        paused                  = new AtomicBoolean( false );
+        pauses                  = new LongAdder();
+        maxAcceptsPerEvent      = DEFAULT_MAX_ACCEPTS_PER_EVENT;
+        maxConnections          = Integer.MAX_VALUE;
 
         // open and configure our server socket channel...
         channel = ServerSocketChannel.open();
@@ -187,49 +218,218 @@ public class TCPListener {
 
 
     /**
-     * Called by the associated {@link NetworkingEngine} when there is an incoming TCP connection that can be accepted.  This method calls {@link #getPipe()} to obtain a new
-     * instance of {@link TCPPipe} (or a subclass of it), then calls the {@code onAcceptHandler} for this listener with the new instance of {@link TCPPipe}.  If anything goes
-     * wrong with this process, the {@code onErrorHandler} is called (the default {@code onErrorHandler} just logs the error as a warning).
+     * Called by the associated {@link NetworkingEngine} when there are incoming TCP connections that can be accepted.  This method accepts up to
+     * {@link #getMaxAcceptsPerEvent()} pending connections (stopping early if there are no more, or if the connection limit is reached).  For each connection, the source filter
+     * is consulted, then {@link #getPipe(SocketChannel)} is called to obtain a new instance of {@link TCPPipe} (or a subclass of it), then the {@code onAcceptHandler} for this
+     * listener is called with the new instance.  If anything goes wrong with this process, the {@code onErrorHandler} is called (the default {@code onErrorHandler} just logs the
+     * error as a warning).  Finally, the interest in acceptability is re-armed, unless accepting has been paused.
      */
     /* package-private */ void onAcceptable() {
 
         try {
-            var getPipeOutcome = getPipe();
-            if( getPipeOutcome.ok() ) {
-                var pipe = getPipeOutcome.info();
-                if( !sourceFilter.accept( pipe.getRemoteIP(), pipe.getRemotePort() ) ) {
-                    LOGGER.finest( "Rejected TCP connection from " + pipe );
-                    pipe.close();
+            // accept connections until there are no more, or we've done our share for this event...
+            for( int i = 0; i < maxAcceptsPerEvent; i++ ) {
+
+                // if we're at the connection limit, pause accepting (a closing connection will resume it)...
+                if( open.get() >= maxConnections ) {
+                    pause();
                     return;
                 }
-                onAcceptHandler.handle( pipe );
-                LOGGER.finest( "Accepted TCP connection from " + pipe );
+
+                // accept a connection, if there is one...
+                var socketChannel = channel.accept();
+                if( socketChannel == null ) break;
+                onAccepted( socketChannel );
             }
-            else
-                onErrorHandler.handle( "Problem getting TCPPipe: " + getPipeOutcome.msg(), (Exception) getPipeOutcome.cause() );
+        }
+        catch( ClosedChannelException _e ) {
+            return;  // this listener has been closed; there's nothing more to do...
         }
         catch( IOException _e ) {
+            errors.increment();
             onErrorHandler.handle( "Problem accepting inbound TCP connection: " + _e.getMessage(), _e );
         }
+
+        // get ready for the next batch...
+        rearm();
     }
 
 
     /**
-     * Attempt to accept the incoming connection and create a new instance of {@link TCPPipe} (or a subclass of it), using this code:
+     * Handles a single accepted connection: filters it by source, obtains a pipe for it, arranges for it to be counted until its pipe is closed, and hands it to the
+     * {@code onAcceptHandler}.
+     *
+     * @param _socketChannel The {@link SocketChannel} for the accepted connection.
+     */
+    private void onAccepted( final SocketChannel _socketChannel ) {
+
+        try {
+            // filter on the source before we go to the trouble of making a pipe...
+            var remote = (InetSocketAddress) _socketChannel.getRemoteAddress();
+            if( !sourceFilter.accept( IPAddress.fromInetAddress( remote.getAddress() ), remote.getPort() ) ) {
+                rejected.increment();
+                LOGGER.finest( "Rejected TCP connection from " + remote );
+                _socketChannel.close();
+                return;
+            }
+
+            // get our pipe...
+            var getPipeOutcome = getPipe( _socketChannel );
+            if( getPipeOutcome.notOk() ) {
+                errors.increment();
+                _socketChannel.close();
+                onErrorHandler.handle( "Problem getting TCPPipe: " + getPipeOutcome.msg(), (Exception) getPipeOutcome.cause() );
+                return;
+            }
+
+            // count it as open until it's closed, and hand it off...
+            var pipe = getPipeOutcome.info();
+            open.incrementAndGet();
+            pipe.setCloseHook( this::onPipeClosed );
+            accepted.increment();
+            onAcceptHandler.handle( pipe );
+            LOGGER.finest( "Accepted TCP connection from " + pipe );
+        }
+        catch( Exception _e ) {
+            errors.increment();
+            try {
+                _socketChannel.close();
+            }
+            catch( IOException _f ) {
+                // ignore...
+            }
+            onErrorHandler.handle( "Problem accepting inbound TCP connection: " + _e.getMessage(), _e );
+        }
+    }
+
+
+    /**
+     * Create a new instance of {@link TCPPipe} (or a subclass of it) for the given accepted connection, using this code:
      * <pre> {@code
-     * return TCPPipe.getTCPPipe( engine, channel.accept() );}
+     * return TCPInboundPipe.getNewInstance( engine, _channel );}
      * </pre>
      * This method exists to facilitate subclassing both {@link TCPListener} and {@link TCPPipe}.  For instance, if you were building a web server, you might extend
      * {@link TCPListener} to make {@code HTTPListener}, and {@link TCPInboundPipe} to make {@code HTTPPipe}.  In {@code HTTPListener}, you would then override this method to
      * create and return a new instance of {@code HTTPPipe}.
-     * @return The outcome of the attempt to accept the incoming connection.  If ok, the info contains the new instance of {@code TCPPipe} (or a subclass of it).  If not ok
-     * there is an explanatory message and possibly the exception that caused the problem.
-     * @throws IOException if there was a problem accepting the connection.
+     *
+     * @param _channel The {@link SocketChannel} for the accepted connection.
+     * @return The outcome of the attempt to create the pipe.  If ok, the info contains the new instance of {@code TCPPipe} (or a subclass of it).  If not ok there is an
+     * explanatory message and possibly the exception that caused the problem.
+     */
+    protected Outcome<TCPInboundPipe> getPipe( final SocketChannel _channel ) {
+        return TCPInboundPipe.getNewInstance( engine, _channel );
+    }
+
+
+    /**
+     * Called (as the close hook of each pipe accepted by this listener) when an accepted pipe is closed.  Resumes accepting if it was paused and we're now below the connection
+     * limit.
      */
-    protected Outcome<TCPInboundPipe> getPipe() throws IOException {
-        var pipe = TCPInboundPipe.getNewInstance( engine, channel.accept() );
-        key.interestOpsOr( SelectionKey.OP_ACCEPT );
-        return pipe;
+    private void onPipeClosed() {
+        if( (open.decrementAndGet() < maxConnections) && paused.compareAndSet( true, false ) ) rearm();
+    }
+
+
+    /**
+     * Pauses accepting because the connection limit has been reached.  If a connection closed while we were pausing, we resume immediately.
+     */
+    private void pause() {
+
+        paused.set( true );
+        pauses.increment();
+        LOGGER.finest( "Connection limit reached; pausing " + this );
+
+        // a pipe may have closed between our check and our pause, in which case it missed its chance to resume us...
+        if( (open.get() < maxConnections) && paused.compareAndSet( true, false ) ) rearm();
+    }
+
+
+    /**
+     * Re-arms this listener's interest in acceptability, and wakes up its selector so that the change takes immediate effect.
+     */
+    private void rearm() {
+
+        if( !key.isValid() ) return;
+        try {
+            key.interestOpsOr( SelectionKey.OP_ACCEPT );
+        }
+        catch( Exception _e ) {
+            return;  // the key was canceled after we checked; this listener has been closed...
+        }
+        engine.wakeSelector( key );  // the new pipes may be on other I/O loops, so we must wake our own selector to see the key change...
+    }
+
+
+    /**
+     * Sets the maximum number of pending connections accepted each time this listener's channel is acceptable.  Larger values drain connection storms with fewer selector
+     * wakeups; smaller values keep each accepting task short, so it doesn't monopolize an executor thread.  The default is 64.
+     *
+     * @param _maxAcceptsPerEvent The maximum number of connections to accept per event.
+     * @throws IllegalArgumentException if the given maximum is less than one.
+     */
+    public void setMaxAcceptsPerEvent( final int _maxAcceptsPerEvent ) {
+
+        if( _maxAcceptsPerEvent < 1 ) throw new IllegalArgumentException( "_maxAcceptsPerEvent must be at least one: " + _maxAcceptsPerEvent );
+        maxAcceptsPerEvent = _maxAcceptsPerEvent;
+    }
+
+
+    /**
+     * Returns the maximum number of pending connections accepted each time this listener's channel is acceptable.
+     *
+     * @return The maximum number of connections accepted per event.
+     */
+    public int getMaxAcceptsPerEvent() {
+        return maxAcceptsPerEvent;
+    }
+
+
+    /**
+     * Sets the maximum number of connections accepted by this listener that may be open at once.  When the limit is reached, this listener stops accepting until one of the pipes
+     * it accepted is closed; meanwhile, new connections wait in the operating system's backlog (and may be refused by it).  A connection is counted as open until its pipe is
+     * closed, so handlers must close pipes whose connections have ended.  The default is unlimited ({@link Integer#MAX_VALUE}).  Lowering the limit below the number of
+     * connections already open closes nothing; it just prevents accepting until enough of them have closed.
+     *
+     * @param _maxConnections The maximum number of concurrently open accepted connections.
+     * @throws IllegalArgumentException if the given maximum is less than one.
+     */
+    public void setMaxConnections( final int _maxConnections ) {
+
+        if( _maxConnections < 1 ) throw new IllegalArgumentException( "_maxConnections must be at least one: " + _maxConnections );
+        maxConnections = _maxConnections;
+
+        // if raising the limit means we're no longer at it, resume accepting...
+        if( (open.get() < maxConnections) && paused.compareAndSet( true, false ) ) rearm();
+    }
+
+
+    /**
+     * Returns the maximum number of connections accepted by this listener that may be open at once.
+     *
+     * @return The maximum number of concurrently open accepted connections.
+     */
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+
+    /**
+     * Returns the number of connections accepted by this listener whose pipes have not yet been closed.
+     *
+     * @return The number of open accepted connections.
+     */
+    public int getOpenConnections() {
+        return open.get();
+    }
+
+
+    /**
+     * Returns {@code true} if this listener has paused accepting because its connection limit has been reached.
+     *
+     * @return {@code true} if accepting is paused.
+     */
+    public boolean isPaused() {
+        return paused.get();
     }
 
 
@@ -319,6 +519,33 @@ public class TCPListener {
     }
 
 
+    /**
+     * Returns a snapshot of this listener's statistics.  The accept rate is averaged over the life of the listener; for the recent rate, sample the accepted count periodically
+     * and take the difference.
+     *
+     * @return A snapshot of this listener's statistics.
+     */
+    public Stats getStats() {
+
+        var acceptedCount = accepted.sum();
+        var seconds = (System.nanoTime() - startNanos) / 1e9;
+        return new Stats( acceptedCount, rejected.sum(), errors.sum(), (seconds > 0) ? acceptedCount / seconds : 0, open.get(), pauses.sum() );
+    }
+
+
+    /**
+     * A snapshot of the statistics for a {@link TCPListener}.
+     *
+     * @param accepted The number of connections accepted and handed to the on accept handler.
+     * @param rejected The number of connections rejected by the source filter.
+     * @param errors The number of errors while accepting connections.
+     * @param acceptsPerSecond The mean number of connections accepted per second over the life of the listener.
+     * @param openConnections The number of accepted connections whose pipes have not yet been closed.
+     * @param pauses The number of times accepting has been paused because the connection limit was reached.
+     */
+    public record Stats( long accepted, long rejected, long errors, double acceptsPerSecond, int openConnections, long pauses ) {}
+
+
     /**
      * Close the channel.  This instance is not usable once it has been closed.
      */
@@ -333,7 +560,7 @@ public class TCPListener {
         }
 
         // wake up the selector to make sure the close has immediate effect...
-        engine.wakeSelector();
+        engine.wakeSelector( key );
     }
 
 
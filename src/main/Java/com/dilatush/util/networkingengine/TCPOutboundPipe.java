@@ -148,6 +148,8 @@ public class TCPOutboundPipe extends TCPPipe {
             // save our handler and our timeout, 'cause we're going to be needing them later...
             completionHandler = _completionHandler;
             finishConnectionTimeoutMs = _finishConnectionTimeoutMs;
+            remoteIP = _remoteIP;
+            remotePort = _remotePort;
 
             // initiate the connection attempt, which may complete immediately...
             if( channel.connect( new InetSocketAddress( _remoteIP.toInetAddress(), _remotePort ) ) || channel.finishConnect() ) {
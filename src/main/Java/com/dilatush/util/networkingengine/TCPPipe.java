@@ -2,19 +2,26 @@ package com.dilatush.util.networkingengine;
 
 import com.dilatush.util.Outcome;
 import com.dilatush.util.ScheduledExecutor;
+import com.dilatush.util.Waiter;
 import com.dilatush.util.feed.*;
 import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.networkingengine.interfaces.OnIdleHandler;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
-import java.util.Objects;
-import java.util.Set;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +44,18 @@ public abstract class TCPPipe implements Feed {
     protected static final int READ_INTEREST  = SelectionKey.OP_READ;
     protected static final int WRITE_INTEREST = SelectionKey.OP_WRITE;
 
+    // constants related to queued writes...
+    private static final int DEFAULT_MAX_QUEUED_WRITES = 1024;  // the default maximum number of buffers in the write queue...
+    private static final int MAX_GATHERED_WRITES       = 64;    // the maximum number of buffers written in a single gathering write...
+
+    /**
+     * The message in the not ok outcome of a read (or the final outcome of a streaming read) when the remote side has closed the connection.
+     */
+    public static final String END_OF_STREAM = "End of stream";
+
+    // constants related to streaming reads...
+    private static final int MAX_PENDING_STREAM_BUFFERS = 16;   // the maximum number of read buffers awaiting delivery before a stream stops reading...
+
     protected final SocketChannel    channel;               // the channel for the TCP connection this instance abstracts...
     protected final NetworkingEngine engine;                // the networking engine whose Selector our channel's SelectionKey is registered with...
     protected final SelectionKey     key;                   // the SelectionKey for our channel...
@@ -52,6 +71,37 @@ public abstract class TCPPipe implements Feed {
     private OnReadComplete  onReadCompleteHandler;
     private OnWriteComplete onWriteCompleteHandler;
 
+    private final ArrayDeque<QueuedWrite> writeQueue;       // the queued writes; all access is synchronized on this queue...
+    private boolean                       flushing;         // true while the write queue is being flushed (including waiting for writeability); guarded by writeQueue...
+    private int                           maxQueuedWrites;  // the maximum number of buffers that may be in the write queue...
+    private final ConcurrentLinkedQueue<Completion> completions;  // queued write completions awaiting delivery, in the order their buffers were queued...
+    private final AtomicBoolean           deliveringCompletions;  // true while a task is delivering queued write completions...
+    private final ByteBuffer[]            gathered;         // the buffers for each gathering write; used only while flushing, so by one thread at a time...
+
+    private volatile PipeReadStream       readStream;       // the active streaming read, or null if there is none...
+
+    private final IOMetrics               metrics;          // the I/O metrics for this pipe...
+    private long                          readStartNanos;   // when the read in progress was initiated...
+    private long                          writeStartNanos;  // when the write in progress was initiated...
+
+    private FileChannel                   transferFile;       // the file being transferred by the transfer in progress, or null if there is none...
+    private long                          transferPosition;   // the file position of the next byte to transfer...
+    private long                          transferRemaining;  // the number of bytes remaining to transfer...
+
+    private volatile TimingWheel.Timeout  readDeadline;     // the deadline for the read in progress, or null if it has none...
+    private volatile TimingWheel.Timeout  writeDeadline;    // the deadline for the write in progress, or null if it has none...
+    private volatile long                 readGeneration;   // incremented as each read is initiated, so a stale deadline can't expire a later read...
+    private final Object                  readLock;         // held while reading into the read buffer, so an aborted read's buffer isn't released while it's being filled...
+    private volatile long                 writeGeneration;  // incremented as each write is initiated, so a stale deadline can't expire a later write...
+
+    private volatile long                 lastActivityNanos;  // when bytes were last read from or written to the connection...
+    private Duration                      idleTimeout;        // the idle timeout, or null if there is none; guarded by this instance...
+    private OnIdleHandler                 onIdleHandler;      // the handler called when the idle timeout expires; guarded by this instance...
+    private TimingWheel.Timeout           idleTimer;          // the pending idle check, or null if there is none; guarded by this instance...
+    private int                           idleGeneration;     // incremented whenever the idle timeout is set, so a stale idle check does nothing; guarded by this instance...
+
+    private final AtomicReference<Runnable> closeHook;      // run (once) when this pipe is closed, or null if there is none...
+
 
     /**
      * Creates a new instance of this abstract base class. Socket options SO_REUSEADDR and SO_KEEPALIVE are both set to {@code true}, and the channel's selection key (with no
@@ -72,6 +122,7 @@ public abstract class TCPPipe implements Feed {
         // some initialization...
         engine  = _engine;
         channel = _channel;
+        metrics = new IOMetrics( engine.getIOMetrics() );
 
         // configure our channel...
         channel.configureBlocking( false );
@@ -90,6 +141,18 @@ public abstract class TCPPipe implements Feed {
         // create and initialize our operation in progress and cancel flags...
         reading = new AtomicBoolean( false );
         writing = new AtomicBoolean( false );
+
+        // set up our write queue...
+        writeQueue            = new ArrayDeque<>();
+        maxQueuedWrites       = DEFAULT_MAX_QUEUED_WRITES;
+        completions           = new ConcurrentLinkedQueue<>();
+        readLock              = new Object();
+        deliveringCompletions = new AtomicBoolean( false );
+        gathered              = new ByteBuffer[MAX_GATHERED_WRITES];
+
+        closeHook = new AtomicReference<>();
+
+        lastActivityNanos = System.nanoTime();
     }
 
 
@@ -98,6 +161,8 @@ public abstract class TCPPipe implements Feed {
      * TCP network connection.  The data is read into a new {@link ByteBuffer}, which is the info in the {@link Outcome} if the outcome was ok.  The {@code _handler} is called
      * when the read operation completes, whether that operation completed normally, was terminated because of an error, or was canceled.</p>
      * <p>The {@code _handler} will <i>always</i> be called from a different thread than the call to this method was made in.</p>
+     * <p>The read buffer is acquired from the engine's {@link BufferPool}.  Once the handler is finished with it, it may be returned to the pool by calling
+     * {@link #release(ByteBuffer)}; if it is never released, it is simply garbage collected.</p>
      *
      * @param _minBytes The minimum number of bytes that must be read for this read operation to be considered complete.  The value must be in the range [1..{@code _maxBytes}].
      * @param _maxBytes The maximum number of bytes that may be read in this read operation.  The value must be in the range [{@code _minBytes}..65536].
@@ -108,6 +173,25 @@ public abstract class TCPPipe implements Feed {
      * @throws IllegalStateException if a read operation is already in progress.
      */
     public void read( final int _minBytes, final int _maxBytes, final OnReadComplete _handler ) {
+        read( _minBytes, _maxBytes, null, _handler );
+    }
+
+
+    /**
+     * <p>Initiates an asynchronous (non-blocking) operation to read between the given {@code _minBytes} and {@code _maxBytes} bytes from this feed, exactly as
+     * {@link #read(int,int,OnReadComplete)} does, except that if the read has not completed when the given {@code _deadline} has elapsed, it completes with a not ok outcome
+     * (and the message "Read deadline expired").  The deadline is kept on the engine's {@link TimingWheel}, so it costs almost nothing when (as is usual) the read completes in
+     * time; its resolution is the wheel's tick.</p>
+     *
+     * @param _minBytes The minimum number of bytes that must be read for this read operation to be considered complete.  The value must be in the range [1..{@code _maxBytes}].
+     * @param _maxBytes The maximum number of bytes that may be read in this read operation.  The value must be in the range [{@code _minBytes}..65536].
+     * @param _deadline The maximum time the read operation may take, or {@code null} for no deadline.
+     * @param _handler This handler is called with the outcome of the read operation, when the read operation completes, whether normally, terminated by an error, canceled, or
+     *                 expired.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}.
+     * @throws IllegalStateException if a read operation is already in progress.
+     */
+    public void read( final int _minBytes, final int _maxBytes, final Duration _deadline, final OnReadComplete _handler ) {
 
         // if we didn't get a read complete handler, then we really don't have any choice but to throw an exception...
         if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
@@ -120,6 +204,7 @@ public abstract class TCPPipe implements Feed {
         onReadCompleteHandler = _handler;
 
         // sanity checks...
+        var generation = ++readGeneration;
         if( _minBytes < 1 )
             postReadCompletion( forgeByteBuffer.notOk( "_minBytes is " + _minBytes + ", but must be >= 1" ) );
         else if( _minBytes > _maxBytes )
@@ -131,8 +216,15 @@ public abstract class TCPPipe implements Feed {
         else {
 
             // set up for this read...
-            readBuffer = ByteBuffer.allocate( _maxBytes );
+            readBuffer = engine.getBufferPool().acquire( _maxBytes );
             minBytes = _minBytes;
+            readStartNanos = System.nanoTime();
+
+            // if we have a deadline, set it before anything can complete this read; the generation check keeps a stale deadline from expiring a later read...
+            if( _deadline != null )
+                readDeadline = engine.scheduleTimeout( _deadline, () -> {
+                    if( readGeneration == generation ) abortRead( forgeByteBuffer.notOk( "Read deadline expired" ) );
+                } );
 
             // initiate the actual read process...
             LOGGER.finest( "Initiating the actual read process" );
@@ -141,12 +233,36 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * Reads between the given {@code _minBytes} and {@code _maxBytes} bytes from this feed, blocking until the read completes or the given {@code _deadline} elapses.
+     *
+     * @param _minBytes The minimum number of bytes that must be read for this read operation to be considered complete.  The value must be in the range [1..{@code _maxBytes}].
+     * @param _maxBytes The maximum number of bytes that may be read in this read operation.  The value must be in the range [{@code _minBytes}..65536].
+     * @param _deadline The maximum time the read operation may take, or {@code null} for no deadline.
+     * @return The outcome of this operation.  If ok, the info contains the read buffer with the bytes read.  If not ok, there is an explanatory message and possibly the exception
+     * that caused the problem.
+     * @throws IllegalStateException if a read operation is already in progress.
+     */
+    public Outcome<ByteBuffer> read( final int _minBytes, final int _maxBytes, final Duration _deadline ) {
+        Waiter<Outcome<ByteBuffer>> waiter = new Waiter<>();
+        read( _minBytes, _maxBytes, _deadline, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
     /**
      * Called by the {@link NetworkingEngine} whenever read interest is indicated in the selection key, and the engine detects that the connection is readable.  Note that this
      * method is <i>always</i> called in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}.
      */
     /* package-private */ void onReadable() {
 
+        // if we have a streaming read, it handles the readable event...
+        var stream = readStream;
+        if( stream != null ) {
+            stream.onReadable();
+            return;
+        }
+
         // if there's no read in progress, we just log and ignore this call...
         if( !reading.get() ) {
             LOGGER.log( Level.WARNING, "TCPPipe::onReadable() called when no read was in progress; ignoring" );
@@ -164,6 +280,17 @@ public abstract class TCPPipe implements Feed {
      */
     private void read() {
 
+        synchronized( readLock ) {
+            readLocked();
+        }
+    }
+
+
+    /**
+     * The body of {@link #read()}, called while holding {@code readLock}.
+     */
+    private void readLocked() {
+
         try {
 
             // if there's no read in progress, just leave...
@@ -172,23 +299,37 @@ public abstract class TCPPipe implements Feed {
             // read what data we can...
             LOGGER.finest( "Reading TCP bytes" );
             var bc = channel.read( readBuffer );  // this can throw an IOException...
-            LOGGER.finest( "Read " + bc + " bytes from " + this );
+            if( bc > 0 ) {
+                metrics.recordBytesRead( bc );
+                lastActivityNanos = System.nanoTime();
+            }
+            if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Read " + bc + " bytes from " + this );
+
+            // if the remote side closed the connection, we'll never get the bytes we need...
+            if( bc < 0 ) {
+                engine.getBufferPool().release( readBuffer );
+                readBuffer = null;
+                postReadCompletion( forgeByteBuffer.notOk( END_OF_STREAM ) );
+            }
 
             // if the total bytes read is at least the minimum number of bytes, then we're done...
-            if( readBuffer.position() >= minBytes ) {
+            else if( readBuffer.position() >= minBytes ) {
 
                 LOGGER.finest( "Reading buffered TCP bytes" );
 
-                // set up the read buffer for use by our caller and post our completion...
-                readBuffer.flip();
-                postReadCompletion( forgeByteBuffer.ok( readBuffer ) );
+                // set up the read buffer for use by our caller (it's theirs now) and post our completion...
+                var buffer = readBuffer;
+                readBuffer = null;
+                buffer.flip();
+                metrics.recordRead( readStartNanos );
+                postReadCompletion( forgeByteBuffer.ok( buffer ) );
             }
 
             // otherwise, we need to express read interest...
             else {
                 LOGGER.finest( "Expressing read interest for TCP bytes" );
                 key.interestOpsOr( READ_INTEREST );
-                engine.wakeSelector();  // this guarantees that the key change will be effective immediately...
+                engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
             }
         }
         catch( Exception _e ) {
@@ -197,6 +338,53 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * <p>Starts a streaming read on this pipe: successive buffers of between 1 and the given {@code _maxBytes} bytes read from the TCP connection are delivered to the given
+     * {@code _handler}, in order, until the returned {@link ReadStream} is canceled, the remote side closes the connection, or a read fails.  Unlike a sequence of one-shot reads,
+     * the pipe reads everything available on each readable event and keeps its read interest armed between buffers (in inline I/O mode it is never disarmed at all), so
+     * high-volume streams don't pay a re-arm and selector wakeup for every buffer.</p>
+     * <p>Flow control is provided by the returned {@link ReadStream}: while it is paused, nothing more is read from the connection, so the TCP window eventually closes and the
+     * remote side is slowed.  The pipe also stops reading on its own whenever 16 buffers are awaiting delivery to the handler, resuming as the handler catches up.</p>
+     * <p>The {@code _handler} is <i>always</i> called in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}, never concurrently with itself.  Each
+     * buffer is acquired from the engine's {@link BufferPool}, and may be returned to it with {@link #release(ByteBuffer)}.  No other read operation may be initiated on this pipe
+     * while the stream is active.</p>
+     *
+     * @param _maxBytes The maximum number of bytes in each buffer delivered to the handler.  The value must be in the range [1..65536].
+     * @param _handler This handler is called with the outcome of each read.  If the outcome is ok, the info contains a buffer with the bytes read.  If not ok, the stream has
+     *                 ended, and there is an explanatory message and possibly the exception that caused the problem.
+     * @return The {@link ReadStream} representing the streaming read, which may be used to pause, resume, or cancel it.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}, or {@code _maxBytes} is out of range.
+     * @throws IllegalStateException if a read operation is already in progress.
+     */
+    @Override
+    public ReadStream stream( final int _maxBytes, final OnReadComplete _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( (_maxBytes < 1) || (_maxBytes > InFeed.MAX_READ_BYTES) ) throw new IllegalArgumentException( "_maxBytes is out of range [1..65536]: " + _maxBytes );
+
+        // the stream owns the read side of this pipe until it ends...
+        if( reading.getAndSet( true ) )
+            throw new IllegalStateException( "Read operation already in progress" );
+
+        // start the stream by expressing read interest...
+        var stream = new PipeReadStream( _maxBytes, _handler );
+        readStream = stream;
+        stream.armReadInterest();
+        return stream;
+    }
+
+
+    /**
+     * Returns {@code true} if a streaming read is active on this pipe.
+     *
+     * @return {@code true} if a streaming read is active on this pipe.
+     */
+    /* package-private */ boolean isStreaming() {
+        return readStream != null;
+    }
+
+
     /**
      * If a read operation is still in progress, marks it as complete (i.e., {@code readInProgress} set to false) and posts the given {@link Outcome} to the
      * {@code onReadCompleteHandler}.  If no read operation was in progress, this method does nothing.
@@ -210,6 +398,13 @@ public abstract class TCPPipe implements Feed {
         // or when a read "completes" just after a cancelRead...
         if( !reading.getAndSet( false ) ) return;
 
+        // if the read had a deadline, we don't need it any more...
+        var deadline = readDeadline;
+        if( deadline != null ) {
+            readDeadline = null;
+            deadline.cancel();
+        }
+
         // otherwise, send the completion...
         engine.execute( () -> onReadCompleteHandler.handle( _outcome ) );
     }
@@ -229,10 +424,29 @@ public abstract class TCPPipe implements Feed {
      * @param _onWriteCompleteHandler This handler is called with the outcome of the write operation, when the write operation completes, whether normally, terminated by an error,
      *                                or canceled.  If the outcome is ok, then the operation completed normally.  If not ok, then there is an explanatory message and possibly the
      *                                exception that caused the problem.
-     * @throws IllegalStateException if another write operation is already in progress.
+     * @throws IllegalStateException if another write operation is already in progress, or if queued writes (see {@link #queueWrite(ByteBuffer,OnWriteComplete)}) are in
+     * progress.
      * @throws IllegalArgumentException if no on write complete handler is specified.
      */
     public void write( final ByteBuffer _writeBuffer, final OnWriteComplete _onWriteCompleteHandler ) {
+        write( _writeBuffer, null, _onWriteCompleteHandler );
+    }
+
+
+    /**
+     * <p>Initiates an asynchronous (non-blocking) operation to write network data from the given write buffer, exactly as {@link #write(ByteBuffer,OnWriteComplete)} does,
+     * except that if the write has not completed when the given {@code _deadline} has elapsed, it completes with a not ok outcome (and the message "Write deadline expired").  A
+     * write that expires may have partially written the buffer; as with any write that does not complete normally, the buffer's position is reset to where it was.</p>
+     *
+     * @param _writeBuffer The write buffer to write network data from.  While the write operation is in progress, the write buffer must not be manipulated other than by this
+     *                     instance.
+     * @param _deadline The maximum time the write operation may take, or {@code null} for no deadline.
+     * @param _onWriteCompleteHandler This handler is called with the outcome of the write operation, when the write operation completes, whether normally, terminated by an error,
+     *                                canceled, or expired.
+     * @throws IllegalStateException if another write operation is already in progress, or if queued writes are in progress.
+     * @throws IllegalArgumentException if no on write complete handler is specified.
+     */
+    public void write( final ByteBuffer _writeBuffer, final Duration _deadline, final OnWriteComplete _onWriteCompleteHandler ) {
 
         // set our write buffer to null, so in the postWriteCompletion we can tell if the mark has been set...
         writeBuffer = null;
@@ -240,8 +454,12 @@ public abstract class TCPPipe implements Feed {
         // if we didn't get a write complete handler, then we really don't have any choice but to throw an exception...
         if( isNull( _onWriteCompleteHandler ) ) throw new IllegalArgumentException( "_onWriteCompleteHandler is null" );
 
-        // make sure we haven't already got a write operation in progress...
+        // make sure we haven't already got a write operation (or queued writes) in progress...
         if( writing.getAndSet( true ) ) throw new IllegalStateException( "Write operation already in progress" );
+        if( isFlushing() ) {
+            writing.set( false );
+            throw new IllegalStateException( "Queued writes are in progress" );
+        }
 
         // in the code below, the TCPPipeException exists only to make the code easier to read and understand...
         try {
@@ -255,6 +473,14 @@ public abstract class TCPPipe implements Feed {
             // squirrel away our write state...
             writeBuffer            = _writeBuffer;
             onWriteCompleteHandler = _onWriteCompleteHandler;
+            writeStartNanos        = System.nanoTime();
+
+            // if we have a deadline, set it before anything can complete this write; the generation check keeps a stale deadline from expiring a later write...
+            var generation = ++writeGeneration;
+            if( _deadline != null )
+                writeDeadline = engine.scheduleTimeout( _deadline, () -> {
+                    if( writeGeneration == generation ) postWriteCompletion( forge.notOk( "Write deadline expired" ) );
+                } );
 
             // initiate the actual write process...
             write();
@@ -265,12 +491,33 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * Writes the data remaining in the given write buffer to the network, blocking until the write completes or the given {@code _deadline} elapses.
+     *
+     * @param _writeBuffer The write buffer to write network data from.
+     * @param _deadline The maximum time the write operation may take, or {@code null} for no deadline.
+     * @return The outcome of this operation.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     * @throws IllegalStateException if another write operation is already in progress, or if queued writes are in progress.
+     */
+    public Outcome<?> write( final ByteBuffer _writeBuffer, final Duration _deadline ) {
+        Waiter<Outcome<?>> waiter = new Waiter<>();
+        write( _writeBuffer, _deadline, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
     /**
      * Called by the {@link NetworkingEngine} whenever write interest is indicated in the selection key, and the engine detects that the connection is writeable.  Note that this
      * method is <i>always</i> called in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}.
      */
     /* package-private */ void onWriteable() {
 
+        // if we're flushing queued writes, carry on with that...
+        if( isFlushing() ) {
+            flush();
+            return;
+        }
+
         // if there's no write in progress, we just log and ignore this call...
         if( !writing.get() ) {
             LOGGER.log( Level.WARNING, "TCPPipe::onWriteable() called when no write was in progress; ignoring" );
@@ -278,7 +525,7 @@ public abstract class TCPPipe implements Feed {
         }
 
         // handle the writeable event...
-        write();
+        if( transferFile != null ) transfer(); else write();
     }
 
 
@@ -292,19 +539,24 @@ public abstract class TCPPipe implements Feed {
 
             // write what data we can...
             var bytesWritten = channel.write( writeBuffer );  // this can throw an IOException...
-            LOGGER.finest( "Wrote " + bytesWritten + " bytes to " + this );
+            if( bytesWritten > 0 ) {
+                metrics.recordBytesWritten( bytesWritten );
+                lastActivityNanos = System.nanoTime();
+            }
+            if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Wrote " + bytesWritten + " bytes to " + this );
 
             // if there are no bytes remaining, then we're done...
             if( !writeBuffer.hasRemaining() ) {
 
                 // post our completion...
+                metrics.recordWrite( writeStartNanos );
                 postWriteCompletion( forge.ok() );
             }
 
             // otherwise, we need to express write interest...
             else {
                 key.interestOpsOr( WRITE_INTEREST );
-                engine.wakeSelector();  // this guarantees that the key change will be effective immediately...
+                engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
             }
         }
         catch( Exception _e ) {
@@ -313,6 +565,133 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * <p>Initiates an asynchronous (non-blocking) operation to transfer the given number of bytes from the given file, starting at the given position, to the TCP connection
+     * represented by this instance.  The bytes are transferred with {@link FileChannel#transferTo(long,long,java.nio.channels.WritableByteChannel)}, so on platforms that support
+     * it the kernel copies them directly from the file cache to the socket (e.g., with {@code sendfile}), and they never pass through the Java heap.  The
+     * {@code _onWriteCompleteHandler} is called when the transfer completes, whether that transfer completed normally, was terminated because of an error, or was canceled (with
+     * {@link #cancelWrite()}); it is always called in one of the threads from the associated {@link NetworkingEngine}'s {@link ScheduledExecutor}.</p>
+     * <p>A transfer is a write operation: no other write (or queued write) may be in progress when it is initiated, and none may be initiated until it completes.  The file
+     * channel's position is not changed, and the file channel is not closed.  If the file ends before all the bytes have been transferred, the transfer completes with a not ok
+     * outcome.</p>
+     *
+     * @param _file The {@link FileChannel} to transfer bytes from, which must be open for reading.
+     * @param _position The position in the file of the first byte to transfer, which must be non-negative.
+     * @param _count The number of bytes to transfer, which must be at least one.
+     * @param _onWriteCompleteHandler This handler is called with the outcome of the transfer, when the transfer completes, whether normally, terminated by an error, or canceled.
+     *                                If the outcome is ok, then all the bytes were written to the local TCP/IP queue.  If not ok, then there is an explanatory message and
+     *                                possibly the exception that caused the problem; some of the bytes may have been transferred.
+     * @throws IllegalStateException if another write operation is already in progress, or if queued writes are in progress.
+     * @throws IllegalArgumentException if no on write complete handler is specified.
+     */
+    public void transferFrom( final FileChannel _file, final long _position, final long _count, final OnWriteComplete _onWriteCompleteHandler ) {
+
+        // set our write buffer to null, so that postWriteCompletion won't try to reset it...
+        writeBuffer = null;
+
+        // if we didn't get a write complete handler, then we really don't have any choice but to throw an exception...
+        if( isNull( _onWriteCompleteHandler ) ) throw new IllegalArgumentException( "_onWriteCompleteHandler is null" );
+
+        // make sure we haven't already got a write operation (or queued writes) in progress...
+        if( writing.getAndSet( true ) ) throw new IllegalStateException( "Write operation already in progress" );
+        if( isFlushing() ) {
+            writing.set( false );
+            throw new IllegalStateException( "Queued writes are in progress" );
+        }
+
+        // squirrel away our handler, as we may need it asynchronously...
+        onWriteCompleteHandler = _onWriteCompleteHandler;
+
+        // sanity checks...
+        if( isNull( _file ) )
+            postWriteCompletion( forge.notOk( "_file is null" ) );
+        else if( _position < 0 )
+            postWriteCompletion( forge.notOk( "_position is " + _position + ", but must be >= 0" ) );
+        else if( _count < 1 )
+            postWriteCompletion( forge.notOk( "_count is " + _count + ", but must be >= 1" ) );
+
+        // if things look sane, then it's time to transfer some bytes...
+        else {
+
+            // set up for this transfer...
+            transferFile      = _file;
+            transferPosition  = _position;
+            transferRemaining = _count;
+            writeStartNanos   = System.nanoTime();
+            writeGeneration++;
+
+            // initiate the actual transfer process...
+            transfer();
+        }
+    }
+
+
+    /**
+     * Transfers the given number of bytes from the given file, starting at the given position, to the TCP connection represented by this instance, blocking until the transfer
+     * completes.  See {@link #transferFrom(FileChannel,long,long,OnWriteComplete)} for the details.
+     *
+     * @param _file The {@link FileChannel} to transfer bytes from, which must be open for reading.
+     * @param _position The position in the file of the first byte to transfer, which must be non-negative.
+     * @param _count The number of bytes to transfer, which must be at least one.
+     * @return The outcome of the transfer.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     * @throws IllegalStateException if another write operation is already in progress, or if queued writes are in progress.
+     */
+    public Outcome<?> transferFrom( final FileChannel _file, final long _position, final long _count ) {
+        Waiter<Outcome<?>> waiter = new Waiter<>();
+        transferFrom( _file, _position, _count, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
+    /**
+     * Implements the core of the transfer operation.  It is called once when the transfer is initiated, and again for each writable event detected by the engine.  Each call
+     * transfers as much as the socket will accept, then either completes the transfer or expresses write interest.  Note that this method may be called in the user's thread
+     * <i>or</i> in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}.
+     */
+    private void transfer() {
+
+        try {
+
+            // if the transfer was canceled, there's nothing to do...
+            var file = transferFile;
+            if( file == null ) return;
+
+            // transfer what we can; the kernel stops us when the socket's send buffer is full...
+            long bytesTransferred;
+            do {
+                bytesTransferred = file.transferTo( transferPosition, transferRemaining, channel );  // this can throw an IOException...
+                if( bytesTransferred > 0 ) {
+                    transferPosition  += bytesTransferred;
+                    transferRemaining -= bytesTransferred;
+                    metrics.recordBytesWritten( bytesTransferred );
+                    lastActivityNanos = System.nanoTime();
+                }
+            } while( (bytesTransferred > 0) && (transferRemaining > 0) );
+            if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Transferred to " + transferPosition + " with " + transferRemaining + " bytes remaining to " + this );
+
+            // if there are no bytes remaining, then we're done...
+            if( transferRemaining == 0 ) {
+                metrics.recordWrite( writeStartNanos );
+                postWriteCompletion( forge.ok() );
+            }
+
+            // if we've run out of file, we'll never finish...
+            else if( transferPosition >= file.size() ) {
+                postWriteCompletion( forge.notOk( "End of file at " + transferPosition + " with " + transferRemaining + " bytes remaining to transfer" ) );
+            }
+
+            // otherwise, we need to express write interest...
+            else {
+                key.interestOpsOr( WRITE_INTEREST );
+                engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
+            }
+        }
+        catch( Exception _e ) {
+            postWriteCompletion( forge.notOk( "Problem transferring to channel: " + _e.getMessage(), _e ) );
+        }
+    }
+
+
     /**
      * If a write operation is still in progress, marks it as complete (i.e., {@code writeInProgress} set to false) and posts the given {@link Outcome} to the
      * {@code onWriteCompleteHandler}.  If no write operation was in progress, this method does nothing.
@@ -326,6 +705,16 @@ public abstract class TCPPipe implements Feed {
         // or when a write "completes" just after a cancelWrite...
         if( !writing.getAndSet( false ) ) return;
 
+        // if this was a transfer, we're done with the file...
+        transferFile = null;
+
+        // if the write had a deadline, we don't need it any more...
+        var deadline = writeDeadline;
+        if( deadline != null ) {
+            writeDeadline = null;
+            deadline.cancel();
+        }
+
         // if we're sending a completion that's ok, clear the buffer, otherwise, reset position to the mark...
         if( writeBuffer != null ) {
             if(  _outcome.ok() )
@@ -339,11 +728,487 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * <p>Queues the given write buffer to be written to the TCP connection represented by this instance, and returns immediately with the outcome of queueing it.  Any number of
+     * queued writes may be pending at once (up to the maximum set by {@link #setMaxQueuedWrites(int)}); the pending buffers are written in the order they were queued, and as
+     * many of them as possible are written with each gathering write to the channel, so that protocols with many small frames need far fewer system calls.</p>
+     * <p>If the outcome returned is ok, the buffer was queued and the {@code _onWriteCompleteHandler} will be called (in one of the threads from the associated
+     * {@link NetworkingEngine}'s {@link ScheduledExecutor}) when the buffer has been completely written, or when the write fails.  Completion handlers are called in the order
+     * their buffers were queued.  If the outcome returned is not ok, the buffer was not queued and the handler will never be called.  In particular, when the write queue is
+     * full the outcome is not ok; this is the backpressure signal, and the caller should wait for some queued writes to complete before queueing more.</p>
+     * <p>Queued writes may not be mixed with {@link #write(ByteBuffer,OnWriteComplete)}: this method returns a not ok outcome while such a write is in progress, and that method
+     * throws an exception while queued writes are in progress.</p>
+     *
+     * @param _writeBuffer The write buffer to write network data from.  The data remaining in the buffer (i.e., the bytes between the position and the limit) will be written.
+     *                     Until the {@code _onWriteCompleteHandler} is called, the write buffer must not be manipulated other than by this instance - hands off the write buffer!
+     * @param _onWriteCompleteHandler This handler is called with the outcome of the write operation, when the buffer has been completely written or the write has failed.
+     * @return The outcome of queueing the write buffer.  If ok, the buffer has been queued.  If not ok, the buffer was not queued, and there is an explanatory message.
+     * @throws IllegalArgumentException if no on write complete handler is specified.
+     */
+    public Outcome<?> queueWrite( final ByteBuffer _writeBuffer, final OnWriteComplete _onWriteCompleteHandler ) {
+        return queueWrite( new ByteBuffer[] { _writeBuffer }, _onWriteCompleteHandler );
+    }
+
+
+    /**
+     * <p>Queues the given write buffers, as a unit, to be written to the TCP connection represented by this instance, and returns immediately with the outcome of queueing them.
+     * This behaves exactly like {@link #queueWrite(ByteBuffer,OnWriteComplete)}, except that either all the buffers are queued (contiguously, so that no other queued write can
+     * come between them) or none of them are, and the {@code _onWriteCompleteHandler} is called just once: when the last of the buffers has been completely written, or when the
+     * write fails.  This is intended for protocols that write a header and a body from separate buffers, such as {@link FramedPipe}.</p>
+     *
+     * @param _writeBuffers The write buffers to write network data from, in order.  Each must have data remaining.  Until the {@code _onWriteCompleteHandler} is called, the
+     *                      write buffers must not be manipulated other than by this instance.
+     * @param _onWriteCompleteHandler This handler is called with the outcome of the write operation, when the buffers have all been completely written or the write has failed.
+     * @return The outcome of queueing the write buffers.  If ok, the buffers have been queued.  If not ok, none of the buffers were queued, and there is an explanatory message.
+     * @throws IllegalArgumentException if no on write complete handler is specified.
+     */
+    public Outcome<?> queueWrite( final ByteBuffer[] _writeBuffers, final OnWriteComplete _onWriteCompleteHandler ) {
+
+        // if we didn't get a write complete handler, then we really don't have any choice but to throw an exception...
+        if( isNull( _onWriteCompleteHandler ) ) throw new IllegalArgumentException( "_onWriteCompleteHandler is null" );
+
+        // sanity checks...
+        if( isNull( (Object) _writeBuffers ) || (_writeBuffers.length == 0) ) return forge.notOk( "_writeBuffers is null or empty" );
+        for( ByteBuffer writeBuffer : _writeBuffers )
+            if( isNull( writeBuffer ) || (writeBuffer.remaining() == 0) ) return forge.notOk( "_writeBuffer is null or has no data to write" );
+
+        // queue them up, and if we're not already flushing, start doing so...
+        // note that the check for a write in progress must be made while holding the lock, as write() checks for flushing while holding it...
+        boolean startFlush;
+        synchronized( writeQueue ) {
+            if( writing.get() ) return forge.notOk( "Write operation already in progress" );
+            if( writeQueue.size() + _writeBuffers.length > maxQueuedWrites ) return forge.notOk( "Write queue is full" );
+            var now = System.nanoTime();
+            for( int i = 0; i < _writeBuffers.length; i++ ) {
+                var last = (i == _writeBuffers.length - 1);
+                writeQueue.addLast( new QueuedWrite( _writeBuffers[i], last ? _onWriteCompleteHandler : null, now ) );  // only the last buffer of a unit has a handler...
+            }
+            startFlush = !flushing;
+            flushing = true;
+        }
+        if( startFlush ) flush();
+        return forge.ok();
+    }
+
+
+    /**
+     * Sets the maximum number of buffers that may be in the write queue (see {@link #queueWrite(ByteBuffer,OnWriteComplete)}).  The default is 1,024.  Reducing the maximum does
+     * not affect buffers that are already queued.
+     *
+     * @param _maxQueuedWrites The maximum number of buffers that may be in the write queue, which must be at least one.
+     * @throws IllegalArgumentException if the given maximum is less than one.
+     */
+    public void setMaxQueuedWrites( final int _maxQueuedWrites ) {
+
+        if( _maxQueuedWrites < 1 ) throw new IllegalArgumentException( "_maxQueuedWrites must be at least one: " + _maxQueuedWrites );
+        synchronized( writeQueue ) {
+            maxQueuedWrites = _maxQueuedWrites;
+        }
+    }
+
+
+    /**
+     * Returns the number of buffers in the write queue that have not yet been completely written.
+     *
+     * @return The number of buffers in the write queue that have not yet been completely written.
+     */
+    public int getQueuedWriteCount() {
+        synchronized( writeQueue ) {
+            return writeQueue.size();
+        }
+    }
+
+
+    /**
+     * Returns {@code true} if the write queue is being flushed.
+     *
+     * @return {@code true} if the write queue is being flushed.
+     */
+    private boolean isFlushing() {
+        synchronized( writeQueue ) {
+            return flushing;
+        }
+    }
+
+
+    /**
+     * Writes as much of the write queue as the channel will accept, using gathering writes.  Completed buffers are removed from the queue and their completions posted.  If the
+     * channel won't accept all the data offered to a gathering write, write interest is expressed and this method is called again when the channel is writeable; otherwise it
+     * goes straight on to the next gathering write, if anything is left in the queue.  Only one thread at a time may be in this method, which is guaranteed by the
+     * {@code flushing} flag.  Note that this method may be called in the user's thread <i>or</i> in one of the threads from the
+     * {@link NetworkingEngine}'s {@link ScheduledExecutor} (or in an I/O loop thread, in inline I/O mode).
+     */
+    private void flush() {
+
+        Outcome<?> success = forge.ok();
+
+        try {
+            while( true ) {
+
+                // gather up the buffers to write...
+                int count = 0;
+                long offered = 0;
+                synchronized( writeQueue ) {
+                    for( QueuedWrite queuedWrite : writeQueue ) {
+                        if( count >= MAX_GATHERED_WRITES ) break;
+                        gathered[count++] = queuedWrite.buffer;
+                        offered += queuedWrite.buffer.remaining();
+                    }
+                }
+
+                // write what the channel will take (and then let go of the buffers, so we don't keep them from the garbage collector)...
+                long bytesWritten;
+                try {
+                    bytesWritten = channel.write( gathered, 0, count );  // this can throw an IOException...
+                }
+                finally {
+                    Arrays.fill( gathered, 0, count, null );
+                }
+                if( bytesWritten > 0 ) {
+                    metrics.recordBytesWritten( bytesWritten );
+                    lastActivityNanos = System.nanoTime();
+                }
+                if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Wrote " + bytesWritten + " queued bytes to " + this );
+
+                // remove any completely written buffers from the queue (queueing their completions while we still hold the lock, so that they stay in order even if
+                // another thread flushes as soon as we're done, and recording the metrics for each, as a unit of buffers is one write)...
+                synchronized( writeQueue ) {
+                    while( !writeQueue.isEmpty() && !writeQueue.peekFirst().buffer.hasRemaining() ) {
+                        var queuedWrite = writeQueue.removeFirst();
+                        if( queuedWrite.handler != null ) {
+                            metrics.recordWrite( queuedWrite.queuedNanos );
+                            completions.add( new Completion( queuedWrite.handler, success ) );
+                        }
+                    }
+                    if( writeQueue.isEmpty() ) {
+                        flushing = false;
+                        break;
+                    }
+                }
+
+                // if the channel wouldn't take everything we offered, then its send buffer is full, so we need to express write interest and wait until it's writeable
+                // again; otherwise we just carry on with what's left (what didn't fit in this gathering write, or was queued meanwhile)...
+                if( bytesWritten < offered ) {
+                    key.interestOpsOr( WRITE_INTEREST );
+                    engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
+                    break;
+                }
+            }
+        }
+        catch( Exception _e ) {
+
+            // the write failed, so everything still in the queue fails...
+            Outcome<?> failure = forge.notOk( "Problem writing to channel: " + _e.getMessage(), _e );
+            synchronized( writeQueue ) {
+                for( QueuedWrite queuedWrite : writeQueue )
+                    if( queuedWrite.handler != null ) completions.add( new Completion( queuedWrite.handler, failure ) );
+                writeQueue.clear();
+                flushing = false;
+            }
+        }
+
+        // deliver the completions...
+        deliverCompletions();
+    }
+
+
+    /**
+     * Starts a task (on the associated {@link NetworkingEngine}'s {@link ScheduledExecutor}) to deliver the queued write completions, unless there are none or one is already
+     * delivering them.  Only one task at a time delivers completions, so handlers are called one at a time, in the order their buffers were queued.
+     */
+    private void deliverCompletions() {
+        if( !completions.isEmpty() && deliveringCompletions.compareAndSet( false, true ) )
+            engine.execute( this::drainCompletions );
+    }
+
+
+    /**
+     * Delivers queued write completions to their handlers, in order, until there are no more.  Runs in one of the threads from the engine's executor.
+     */
+    private void drainCompletions() {
+
+        while( true ) {
+
+            // deliver everything we've got...
+            Completion completion;
+            while( (completion = completions.poll()) != null ) {
+                try {
+                    completion.handler.handle( completion.outcome );
+                }
+                catch( Exception _e ) {
+                    LOGGER.log( Level.WARNING, "Unhandled exception in write completion handler", _e );
+                }
+            }
+
+            // we're done, unless something was queued while we were finishing up...
+            deliveringCompletions.set( false );
+            if( completions.isEmpty() || deliveringCompletions.getAndSet( true ) ) return;
+        }
+    }
+
+
+    /**
+     * The {@link ReadStream} implementation for streaming reads on a {@link TCPPipe}.  Reading is done by {@link #onReadable()}, which is called by the engine on each readable
+     * event (only one at a time, as read interest is disarmed during the dispatch in normal mode, and inline I/O mode has just the one I/O loop thread).  Delivery to the handler
+     * is serialized through a queue, so buffers are delivered in order even though the engine's executor has many threads.
+     */
+    private final class PipeReadStream implements ReadStream {
+
+        private final int                                      maxBytes;      // the maximum number of bytes in each buffer...
+        private final OnReadComplete                           handler;       // the handler to deliver the buffers to...
+        private final AtomicBoolean                            active;        // true until the stream has ended...
+        private final AtomicBoolean                            paused;        // true while the stream is paused...
+        private final AtomicBoolean                            starved;       // true while reading is stopped because too many buffers are awaiting delivery...
+        private final AtomicBoolean                            inRead;        // true while a thread is reading from the channel...
+        private final AtomicBoolean                            delivering;    // true while a task is delivering buffers to the handler...
+        private final ConcurrentLinkedQueue<Outcome<ByteBuffer>> pending;     // the outcomes awaiting delivery...
+        private final AtomicInteger                            pendingCount;  // the number of outcomes awaiting delivery...
+
+
+        private PipeReadStream( final int _maxBytes, final OnReadComplete _handler ) {
+
+            maxBytes     = _maxBytes;
+            handler      = _handler;
+            active       = new AtomicBoolean( true );
+            paused       = new AtomicBoolean( false );
+            starved      = new AtomicBoolean( false );
+            inRead       = new AtomicBoolean( false );
+            delivering   = new AtomicBoolean( false );
+            pending      = new ConcurrentLinkedQueue<>();
+            pendingCount = new AtomicInteger( 0 );
+        }
+
+
+        /**
+         * Reads everything available from the channel (until it's drained, or the stream is paused, starved, or ended), then leaves read interest armed if reading should
+         * continue, or disarms it otherwise.
+         */
+        private void onReadable() {
+
+            // if another thread is already reading, it will take care of everything...
+            if( !inRead.compareAndSet( false, true ) ) return;
+
+            try {
+                // read until there's nothing more to read, or we're told to stop...
+                while( shouldRead() ) {
+
+                    // if too many buffers are awaiting delivery, stop reading until some have been delivered...
+                    if( pendingCount.get() >= MAX_PENDING_STREAM_BUFFERS ) {
+                        starved.set( true );
+                        if( (pendingCount.get() < MAX_PENDING_STREAM_BUFFERS) && starved.compareAndSet( true, false ) ) continue;
+                        break;
+                    }
+
+                    // read what we can...
+                    var buffer = engine.getBufferPool().acquire( maxBytes );
+                    var bytesRead = channel.read( buffer );  // this can throw an IOException...
+
+                    // if we got nothing, either the channel is drained or the remote side has closed the connection...
+                    if( bytesRead <= 0 ) {
+                        engine.getBufferPool().release( buffer );
+                        if( bytesRead < 0 ) end( forgeByteBuffer.notOk( END_OF_STREAM ) );
+                        break;
+                    }
+
+                    // deliver what we got...
+                    metrics.recordBytesRead( bytesRead );
+                    lastActivityNanos = System.nanoTime();
+                    metrics.recordRead();
+                    if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Streamed " + bytesRead + " bytes from " + TCPPipe.this );
+                    buffer.flip();
+                    post( forgeByteBuffer.ok( buffer ) );
+
+                    // if we didn't fill the buffer, the channel is (very probably) drained...
+                    if( buffer.limit() < maxBytes ) break;
+                }
+
+                // if we're not going to keep reading, disarm read interest...
+                if( !shouldRead() ) key.interestOpsAnd( ~READ_INTEREST );
+            }
+            catch( Exception _e ) {
+                end( forgeByteBuffer.notOk( "Problem reading from channel: " + _e.getMessage(), _e ) );
+            }
+            finally {
+                inRead.set( false );
+            }
+
+            // things may have changed while we were reading, so make sure we're armed if we should be...
+            if( shouldRead() ) armReadInterest();
+        }
+
+
+        /**
+         * Returns {@code true} if the stream should be reading from the channel.
+         *
+         * @return {@code true} if the stream should be reading from the channel.
+         */
+        private boolean shouldRead() {
+            return active.get() && !paused.get() && !starved.get();
+        }
+
+
+        /**
+         * Expresses read interest on our key, waking the selector if need be.
+         */
+        private void armReadInterest() {
+
+            try {
+                key.interestOpsOr( READ_INTEREST );
+                engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
+            }
+            catch( Exception _e ) {
+                end( forgeByteBuffer.notOk( "Problem expressing read interest: " + _e.getMessage(), _e ) );
+            }
+        }
+
+
+        /**
+         * Queues the given outcome for delivery to the handler, and makes sure a delivery task is running.
+         *
+         * @param _outcome The outcome to deliver.
+         */
+        private void post( final Outcome<ByteBuffer> _outcome ) {
+
+            pending.add( _outcome );
+            pendingCount.incrementAndGet();
+            if( !delivering.getAndSet( true ) ) engine.execute( this::deliver );
+        }
+
+
+        /**
+         * Delivers queued outcomes to the handler, in order, until there are no more.  Runs in one of the threads from the engine's executor.
+         */
+        private void deliver() {
+
+            while( true ) {
+
+                // deliver everything we've got...
+                Outcome<ByteBuffer> outcome;
+                while( (outcome = pending.poll()) != null ) {
+
+                    pendingCount.decrementAndGet();
+                    try {
+                        handler.handle( outcome );
+                    }
+                    catch( Exception _e ) {
+                        LOGGER.log( Level.WARNING, "Unhandled exception in read stream handler", _e );
+                    }
+
+                    // if reading stopped because too many buffers were pending, and now there's room, start reading again...
+                    if( (pendingCount.get() < MAX_PENDING_STREAM_BUFFERS) && starved.compareAndSet( true, false ) && shouldRead() ) armReadInterest();
+                }
+
+                // we're done, unless something was queued while we were finishing up...
+                delivering.set( false );
+                if( pending.isEmpty() || delivering.getAndSet( true ) ) return;
+            }
+        }
+
+
+        /**
+         * Ends the stream (if it's still active), posting the given outcome as the last one the handler will get, and frees the read side of the pipe for other reads.
+         *
+         * @param _outcome The final outcome for the stream.
+         */
+        private void end( final Outcome<ByteBuffer> _outcome ) {
+
+            if( !active.getAndSet( false ) ) return;
+            if( key.isValid() ) key.interestOpsAnd( ~READ_INTEREST );
+            readStream = null;
+            reading.set( false );
+            post( _outcome );
+        }
+
+
+        @Override
+        public void pause() {
+            paused.set( true );
+        }
+
+
+        @Override
+        public void resume() {
+            if( paused.getAndSet( false ) && shouldRead() ) armReadInterest();
+        }
+
+
+        @Override
+        public void cancel() {
+            end( forgeByteBuffer.notOk( "Read stream canceled" ) );
+        }
+
+
+        @Override
+        public boolean isPaused() {
+            return paused.get();
+        }
+
+
+        @Override
+        public boolean isActive() {
+            return active.get();
+        }
+    }
+
+
+    /**
+     * A buffer in the write queue, with its completion handler.
+     *
+     * @param buffer The buffer to write.
+     * @param handler The handler to call when the buffer has been written, or the write has failed; {@code null} for all but the last buffer of a unit.
+     * @param queuedNanos When the buffer was queued, from {@link System#nanoTime()}.
+     */
+    private record QueuedWrite( ByteBuffer buffer, OnWriteComplete handler, long queuedNanos ) {}
+
+
+    /**
+     * A queued write completion awaiting delivery.
+     *
+     * @param handler The handler to call.
+     * @param outcome The outcome of the write.
+     */
+    private record Completion( OnWriteComplete handler, Outcome<?> outcome ) {}
+
+
+    /**
+     * Returns the given read buffer (delivered by a read operation on this pipe) to the associated engine's {@link BufferPool}.  The caller must not use the buffer after
+     * calling this method.  Releasing {@code null} has no effect.
+     *
+     * @param _readBuffer The read buffer to release.
+     */
+    public void release( final ByteBuffer _readBuffer ) {
+        engine.getBufferPool().release( _readBuffer );
+    }
+
+
     /**
      * Cancels a read operation in progress.  If there is no read operation in progress, it has no effect.  Canceling a read operation does not affect future read operations.
      */
     public void cancelRead() {
-        postReadCompletion( forgeByteBuffer.notOk( "Read canceled" ) );
+        abortRead( forgeByteBuffer.notOk( "Read canceled" ) );
+    }
+
+
+    /**
+     * Ends the (one-shot) read operation in progress, if there is one, before it has completed: read interest is cleared (so the engine won't report readable events for a read
+     * that no longer exists), the read buffer is released back to the pool, and the given {@link Outcome} is posted to the {@code onReadCompleteHandler}.  Streaming reads are
+     * ended through their {@link ReadStream}, not this method.
+     *
+     * @param _outcome The {@link Outcome} to post.
+     */
+    private void abortRead( final Outcome<ByteBuffer> _outcome ) {
+
+        synchronized( readLock ) {
+
+            // if there's no one-shot read in progress (or it has just completed), there's nothing to abort...
+            if( (readStream != null) || !reading.get() ) return;
+
+            if( key.isValid() ) key.interestOpsAnd( ~READ_INTEREST );
+            var buffer = readBuffer;
+            readBuffer = null;
+            if( buffer != null ) engine.getBufferPool().release( buffer );
+            postReadCompletion( _outcome );
+        }
     }
 
 
@@ -355,6 +1220,101 @@ public abstract class TCPPipe implements Feed {
     }
 
 
+    /**
+     * <p>Sets the idle timeout for this pipe: if no bytes are read from or written to the connection for the given duration, the given {@code _handler} is called (in one of the
+     * threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}).  The idle timeout fires at most once; the handler may set it again if it wants to keep watching.
+     * Setting a new idle timeout replaces any previous one, and setting a {@code null} or zero timeout turns it off.</p>
+     * <p>The idle timeout is a single timeout on the engine's {@link TimingWheel}; reads and writes merely note the time, and the timeout (when it expires) re-arms itself for
+     * whatever remains of the idle period since the last activity.  Thus watching for idle connections costs almost nothing per read or write.</p>
+     *
+     * @param _timeout The idle timeout, or {@code null} (or zero) to turn it off.
+     * @param _handler The handler to call when the connection has been idle for the timeout, or {@code null} to simply close the pipe.
+     */
+    public synchronized void setIdleTimeout( final Duration _timeout, final OnIdleHandler _handler ) {
+
+        // get rid of any idle check we already had going...
+        idleGeneration++;
+        if( idleTimer != null ) idleTimer.cancel();
+        idleTimer = null;
+
+        // if we're turning it off, we're done...
+        if( (_timeout == null) || _timeout.isZero() || _timeout.isNegative() ) {
+            idleTimeout   = null;
+            onIdleHandler = null;
+            return;
+        }
+
+        // start watching for idleness from now...
+        idleTimeout       = _timeout;
+        onIdleHandler     = (_handler == null) ? TCPPipe::close : _handler;
+        lastActivityNanos = System.nanoTime();
+        var generation    = idleGeneration;
+        idleTimer         = engine.scheduleTimeout( _timeout, () -> checkIdle( generation ) );
+    }
+
+
+    /**
+     * Called when the idle timer expires.  If there's been activity since the timer was set, re-arms the timer for the rest of the idle period since that activity; otherwise
+     * the connection is idle, so the idle handler is called.
+     *
+     * @param _generation The idle generation when the timer was set; if it has changed since, the idle timeout was replaced, and this check does nothing.
+     */
+    private synchronized void checkIdle( final int _generation ) {
+
+        // if our idle timeout has been replaced or turned off, just leave...
+        if( (_generation != idleGeneration) || (idleTimeout == null) ) return;
+
+        // if there's been activity within the idle period, check again when the rest of the period has elapsed...
+        var remainingNanos = idleTimeout.toNanos() - (System.nanoTime() - lastActivityNanos);
+        if( remainingNanos > 0 ) {
+            idleTimer = engine.scheduleTimeout( Duration.ofNanos( remainingNanos ), () -> checkIdle( _generation ) );
+            return;
+        }
+
+        // we're idle; turn off the idle timeout and let the handler deal with it...
+        var handler   = onIdleHandler;
+        idleTimer     = null;
+        idleTimeout   = null;
+        onIdleHandler = null;
+        if( LOGGER.isLoggable( Level.FINE ) ) LOGGER.fine( "Idle timeout expired on " + this );
+        engine.execute( () -> handler.handle( this ) );
+    }
+
+
+    /**
+     * Returns the idle timeout for this pipe, or {@code null} if there is none.
+     *
+     * @return The idle timeout for this pipe, or {@code null} if there is none.
+     */
+    public synchronized Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+
+    /**
+     * <p>Returns a blocking {@link ByteChannel} view of this pipe, for thread-per-connection code.  Reads and writes on the returned channel are performed by this pipe's
+     * asynchronous operations, and the calling thread waits for their completion by parking (see {@link BlockingPipeChannel}), so a waiting thread holds no monitor and
+     * allocates nothing per operation.</p>
+     * <p>The returned channel owns this pipe's one-shot reads and writes: while it is in use, no other reads or writes should be initiated on this pipe.  Closing the channel
+     * closes this pipe.</p>
+     *
+     * @return A blocking {@link ByteChannel} view of this pipe.
+     */
+    public ByteChannel blockingChannel() {
+        return new BlockingPipeChannel( this );
+    }
+
+
+    /**
+     * Returns {@code true} if this pipe's channel is open.
+     *
+     * @return {@code true} if this pipe's channel is open.
+     */
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+
     /**
      * Attempts to set the given socket option to the given value.
      *
@@ -424,6 +1384,9 @@ public abstract class TCPPipe implements Feed {
      */
     public void close() {
 
+        // stop watching for idleness...
+        setIdleTimeout( null, null );
+
         // do the actual close...
         try {
             channel.close();
@@ -433,7 +1396,37 @@ public abstract class TCPPipe implements Feed {
         }
 
         // wake up the selector to make sure the close has immediate effect...
-        engine.wakeSelector();
+        engine.wakeSelector( key );
+
+        // let whoever is interested (e.g., the listener that accepted us) know that we're closed...
+        var hook = closeHook.getAndSet( null );
+        if( hook != null ) hook.run();
+    }
+
+
+    /**
+     * Sets the hook to be run when this pipe is closed.  The hook is run at most once, in the thread that first closes the pipe; if the pipe is already closed, it is run
+     * immediately.
+     *
+     * @param _hook The hook to run when this pipe is closed.
+     */
+    /* package-private */ void setCloseHook( final Runnable _hook ) {
+
+        closeHook.set( _hook );
+        if( !channel.isOpen() ) {
+            var hook = closeHook.getAndSet( null );
+            if( hook != null ) hook.run();
+        }
+    }
+
+
+    /**
+     * Returns the I/O metrics for this pipe: bytes and operations read and written, and the latencies of those operations.
+     *
+     * @return The I/O metrics for this pipe.
+     */
+    public IOMetrics getMetrics() {
+        return metrics;
     }
 
 
@@ -0,0 +1,316 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.Waiter;
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.networkingengine.interfaces.OnProbeCompleteHandler;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class probe TCP endpoints by attempting to connect to them, measuring how long the endpoint takes to respond (by accepting or refusing the connection).
+ * This is the engine-driven core of a mass TCP "pinger": each connect is registered with one of the {@link NetworkingEngine}'s selectors for {@code OP_CONNECT}, so no thread
+ * waits on (or polls) a connect in progress, and the completion is timestamped with {@link System#nanoTime()} when the selector wakes, so the round trip time is accurate to
+ * well under a millisecond regardless of how busy the engine's executor is.</p>
+ * <p>The number of probes in progress at once is bounded; probes beyond the bound wait in a queue, and their timeouts (and round trip times) start only when their connects
+ * are initiated.  Connected channels are closed with {@code SO_LINGER} set to zero (so the connection is reset rather than lingering in {@code TIME_WAIT}), which keeps a
+ * prober from exhausting ephemeral ports when probing at high rates.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class TCPProber {
+
+    private static final Logger LOGGER = getLogger();
+
+    private static final Outcome.Forge<ProbeResult> forgeProbeResult = new Outcome.Forge<>();
+    private static final Outcome.Forge<TCPProber>   forgeTCPProber   = new Outcome.Forge<>();
+
+    private final NetworkingEngine               engine;          // the engine whose selectors watch our connects...
+    private final int                            maxConcurrent;   // the maximum number of probes in progress at once...
+    private final AtomicInteger                  active;          // the number of probes in progress...
+    private final ConcurrentLinkedQueue<Probe>   waiting;         // probes waiting for one in progress to complete...
+
+    private final LongAdder                      started;         // probes whose connects were initiated...
+    private final LongAdder                      connected;       // probes whose connections were accepted...
+    private final LongAdder                      refused;         // probes whose connections were refused...
+    private final LongAdder                      timedOut;        // probes with no response before their timeout...
+    private final LongAdder                      failed;          // probes that completed not ok...
+
+
+    /**
+     * Attempts to create a new instance of this class that uses the given networking engine, with at most the given number of probes in progress at once.
+     *
+     * @param _engine The {@link NetworkingEngine} whose selectors will watch the connects.
+     * @param _maxConcurrent The maximum number of probes in progress at once; must be at least one.  Each probe in progress holds a socket (and an ephemeral port).
+     * @return The outcome of the attempt.  If ok, the info contains the new {@link TCPProber}.  If not ok, there is an explanatory message.
+     */
+    public static Outcome<TCPProber> getNewInstance( final NetworkingEngine _engine, final int _maxConcurrent ) {
+
+        if( isNull( _engine ) ) return forgeTCPProber.notOk( "_engine is null" );
+        if( _maxConcurrent < 1 ) return forgeTCPProber.notOk( "_maxConcurrent must be at least one: " + _maxConcurrent );
+        return forgeTCPProber.ok( new TCPProber( _engine, _maxConcurrent ) );
+    }
+
+
+    private TCPProber( final NetworkingEngine _engine, final int _maxConcurrent ) {
+
+        engine        = _engine;
+        maxConcurrent = _maxConcurrent;
+        active        = new AtomicInteger( 0 );
+        waiting       = new ConcurrentLinkedQueue<>();
+        started       = new LongAdder();
+        connected     = new LongAdder();
+        refused       = new LongAdder();
+        timedOut      = new LongAdder();
+        failed        = new LongAdder();
+    }
+
+
+    /**
+     * Probes the given TCP endpoint asynchronously.  The handler is called (always in one of the networking engine's executor threads) when the endpoint accepts or refuses the
+     * connection, when the timeout elapses without a response, or if the probe fails.  A response of either kind is an ok outcome with a {@link ProbeResult} whose
+     * {@code responded} is {@code true}; no response within the timeout is an ok outcome whose {@code responded} is {@code false}.  Any other problem (such as no route to the
+     * host) is a not ok outcome.
+     *
+     * @param _ip The IP address to probe.
+     * @param _port The TCP port to probe, in the range [1..65535].
+     * @param _timeout The maximum time to wait for a response, measured from the initiation of the connect.
+     * @param _handler The handler to call with the outcome.
+     * @throws IllegalArgumentException if the handler is {@code null}.
+     */
+    public void probe( final IPAddress _ip, final int _port, final Duration _timeout, final OnProbeCompleteHandler _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( isNull( _ip, _timeout ) ) {
+            engine.execute( () -> _handler.handle( forgeProbeResult.notOk( "_ip or _timeout is null" ) ) );
+            return;
+        }
+        if( (_port < 1) || (_port > 65535) ) {
+            engine.execute( () -> _handler.handle( forgeProbeResult.notOk( "_port is out of range [1..65535]: " + _port ) ) );
+            return;
+        }
+
+        // queue it up, and start whatever we can...
+        waiting.add( new Probe( _ip, _port, _timeout, _handler ) );
+        drain();
+    }
+
+
+    /**
+     * Probes the given TCP endpoint synchronously (blocking), exactly as {@link #probe(IPAddress,int,Duration,OnProbeCompleteHandler)} does.
+     *
+     * @param _ip The IP address to probe.
+     * @param _port The TCP port to probe.
+     * @param _timeout The maximum time to wait for a response.
+     * @return The outcome of the probe.
+     */
+    public Outcome<ProbeResult> probe( final IPAddress _ip, final int _port, final Duration _timeout ) {
+        var waiter = new Waiter<Outcome<ProbeResult>>();
+        probe( _ip, _port, _timeout, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
+    /**
+     * Returns a snapshot of this prober's statistics.
+     *
+     * @return A snapshot of this prober's statistics.
+     */
+    public Stats getStats() {
+        return new Stats( started.sum(), connected.sum(), refused.sum(), timedOut.sum(), failed.sum(), active.get(), waiting.size() );
+    }
+
+
+    /**
+     * A snapshot of the statistics for a {@link TCPProber}.
+     *
+     * @param started The number of probes whose connects were initiated.
+     * @param connected The number of probes whose connections were accepted.
+     * @param refused The number of probes whose connections were refused.
+     * @param timedOut The number of probes with no response before their timeout.
+     * @param failed The number of probes that completed not ok.
+     * @param active The number of probes in progress.
+     * @param queued The number of probes waiting to start.
+     */
+    public record Stats( long started, long connected, long refused, long timedOut, long failed, int active, int queued ) {}
+
+
+    /**
+     * The result of a probe that completed ok.
+     *
+     * @param ip The IP address probed.
+     * @param port The TCP port probed.
+     * @param responded {@code true} if the endpoint responded, by either accepting or refusing the connection.
+     * @param refused {@code true} if the endpoint refused the connection.
+     * @param rttNanos The time from initiating the connect until the response, in nanoseconds, or zero if there was no response.
+     */
+    public record ProbeResult( IPAddress ip, int port, boolean responded, boolean refused, long rttNanos ) {}
+
+
+    /**
+     * Starts waiting probes, for as long as there are any and we're below the bound on probes in progress.
+     */
+    private void drain() {
+
+        while( true ) {
+
+            // claim a slot, if there is one...
+            var count = active.get();
+            if( count >= maxConcurrent ) return;
+            if( !active.compareAndSet( count, count + 1 ) ) continue;
+
+            // start a probe in it, if there is one...
+            var probe = waiting.poll();
+            if( probe == null ) {
+                active.decrementAndGet();
+                if( waiting.isEmpty() ) return;   // a probe may have been queued after our poll, so we check again...
+                continue;
+            }
+            probe.start();
+        }
+    }
+
+
+    /**
+     * Instances of this class are single probes.  They are the attachment on the selection keys of their channels, which is how the {@link IOLoop} knows to call
+     * {@link #onConnectable(long)}.
+     */
+    /* package-private */ final class Probe {
+
+        private final IPAddress              ip;
+        private final int                    port;
+        private final Duration               timeout;
+        private final OnProbeCompleteHandler handler;
+        private final AtomicBoolean          done;         // set by whichever of completion or timeout happens first...
+
+        private SocketChannel                channel;
+        private volatile SelectionKey        key;
+        private long                         startNanos;   // when the connect was initiated...
+        private volatile TimingWheel.Timeout timer;
+
+
+        private Probe( final IPAddress _ip, final int _port, final Duration _timeout, final OnProbeCompleteHandler _handler ) {
+            ip      = _ip;
+            port    = _port;
+            timeout = _timeout;
+            handler = _handler;
+            done    = new AtomicBoolean( false );
+        }
+
+
+        /**
+         * Initiates this probe's connect, and registers its channel for {@code OP_CONNECT} if it didn't connect immediately.
+         */
+        private void start() {
+
+            started.increment();
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking( false );
+                channel.setOption( StandardSocketOptions.SO_LINGER, 0 );
+
+                // start the connect; the timer is set before registering, so it's there for whichever completion happens first...
+                startNanos = System.nanoTime();
+                if( channel.connect( new InetSocketAddress( ip.toInetAddress(), port ) ) ) {
+                    var nanos = System.nanoTime() - startNanos;
+                    engine.execute( () -> finish( forgeProbeResult.ok( new ProbeResult( ip, port, true, false, nanos ) ) ) );
+                    return;
+                }
+                timer = engine.scheduleTimeout( timeout, () -> engine.execute( this::onTimeout ) );
+                key = engine.register( channel, SelectionKey.OP_CONNECT, this );
+            }
+            catch( Exception _e ) {
+                engine.execute( () -> finish( forgeProbeResult.notOk( "Problem starting connect: " + _e.getMessage(), _e ) ) );
+            }
+        }
+
+
+        /**
+         * Called (in one of the engine's executor threads) when the selector found this probe's channel connectable, meaning the connect has completed one way or another.
+         *
+         * @param _selectedNanos The {@link System#nanoTime()} when the selector returned with this probe's key.
+         */
+        /* package-private */ void onConnectable( final long _selectedNanos ) {
+
+            var nanos = Math.max( 0, _selectedNanos - startNanos );
+            try {
+                channel.finishConnect();
+                finish( forgeProbeResult.ok( new ProbeResult( ip, port, true, false, nanos ) ) );
+            }
+            catch( SocketTimeoutException _e ) {
+                onTimeout();
+            }
+            catch( ConnectException _e ) {
+
+                // a refusal is a response, just like an acceptance; the network stack's own connect timeout is reported with the same exception, but it can only
+                // arrive once our (much shorter) timeout has expired, so anything that arrives that late is treated as a timeout...
+                if( nanos < timeout.toNanos() )
+                    finish( forgeProbeResult.ok( new ProbeResult( ip, port, true, true, nanos ) ) );
+                else
+                    onTimeout();
+            }
+            catch( IOException _e ) {
+                finish( forgeProbeResult.notOk( "Problem trying to finish connecting: " + _e.getMessage(), _e ) );
+            }
+        }
+
+
+        /**
+         * Called (in one of the engine's executor threads) when this probe's timeout has elapsed.
+         */
+        private void onTimeout() {
+            finish( forgeProbeResult.ok( new ProbeResult( ip, port, false, false, 0 ) ) );
+        }
+
+
+        /**
+         * Completes this probe with the given outcome, unless it has already been completed: closes its channel, updates the statistics, starts any waiting probe, and calls the
+         * handler.
+         *
+         * @param _outcome The outcome of this probe.
+         */
+        private void finish( final Outcome<ProbeResult> _outcome ) {
+
+            // make sure we only finish once...
+            if( !done.compareAndSet( false, true ) ) return;
+
+            // clean up...
+            if( timer != null ) timer.cancel();
+            if( channel != null ) {
+                try {
+                    channel.close();
+                }
+                catch( IOException _e ) {
+                    // naught to do...
+                }
+                if( key != null ) engine.wakeSelector( key );   // so the canceled key is flushed promptly...
+            }
+
+            // keep score...
+            if( _outcome.notOk() ) failed.increment();
+            else if( _outcome.info().refused ) refused.increment();
+            else if( _outcome.info().responded ) connected.increment();
+            else timedOut.increment();
+
+            // make room for the next probe, and tell our caller how it went...
+            active.decrementAndGet();
+            drain();
+            handler.handle( _outcome );
+        }
+    }
+}
@@ -0,0 +1,696 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.ScheduledExecutor;
+import com.dilatush.util.Waiter;
+import com.dilatush.util.feed.Feed;
+import com.dilatush.util.feed.InFeed;
+import com.dilatush.util.feed.OnReadComplete;
+import com.dilatush.util.feed.OnWriteComplete;
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.networkingengine.interfaces.OnConnectionCompletionHandler;
+
+import javax.net.ssl.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class provide TLS on a connected {@link TCPPipe} (either a {@link TCPInboundPipe} or a {@link TCPOutboundPipe}), using an {@link SSLEngine}.  The
+ * handshake and all the wrapping and unwrapping are done without blocking, driven by the pipe's asynchronous reads and writes, so a TLS connection costs no thread of its own.
+ * Once the handshake (see {@link #handshake(OnConnectionCompletionHandler)}) has completed, the plaintext is read and written through the {@link Feed} methods of this class,
+ * exactly as on a plain pipe.</p>
+ * <p>Encrypted records are written with the pipe's queued writes (see {@link TCPPipe#queueWrite(ByteBuffer[],OnWriteComplete)}), so a large write becomes a sequence of records
+ * sent with gathering writes; the network buffers for those records come from the engine's {@link BufferPool}, and are returned to it as soon as they're written.  Writes may be
+ * initiated while others are still in progress; they are sent in the order they were initiated.  Only one read may be in progress at a time.</p>
+ * <p>A client that knows the server's host name should say so (see {@link #getNewClientInstance(TCPPipe,SSLContext,String)}): the name is sent to the server (SNI), and the
+ * server's certificate is checked against it, just as an HTTPS client does.  Without a host name, the server's certificate is checked only for trust.</p>
+ * <p>Sessions are resumed when they can be: the client side's {@link SSLEngine} is created with the server's host name (or, without one, its IP address) and port, so successive
+ * connections to the same server through the same {@link SSLContext} resume the cached session rather than performing a full handshake.</p>
+ * <p>A write larger than one record is sent as several records, the last of them usually short; with Nagle's algorithm on, that last record waits for the peer's (possibly
+ * delayed) acknowledgement of the others.  Request-response protocols should therefore set {@code TCP_NODELAY} on the pipe (see {@link TCPPipe#setOption}) before creating this
+ * instance.</p>
+ * <p>This instance owns the pipe: once it has been created, no reads or writes should be initiated on the pipe directly.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class TLSPipe implements Feed {
+
+    private static final Logger                    LOGGER          = getLogger();
+
+    private static final Outcome.Forge<ByteBuffer> forgeByteBuffer = new Outcome.Forge<>();
+    private static final Outcome.Forge<?>          forge           = new Outcome.Forge<>();
+    private static final Outcome.Forge<TLSPipe>    forgeTLSPipe    = new Outcome.Forge<>();
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate( 0 );
+
+    private final TCPPipe          pipe;              // the pipe we're providing TLS on...
+    private final NetworkingEngine engine;            // the engine that pipe belongs to...
+    private final SSLEngine        sslEngine;         // the engine doing the actual TLS work...
+    private final Object           wrapLock;          // serializes wrapping and queueing, so records are sent in the order they were wrapped...
+    private final AtomicBoolean    reading;           // true while a read (or the handshake, which does the reading while it's in progress) is in progress...
+    private final AtomicBoolean    handshaking;       // true while the handshake is in progress...
+
+    private volatile boolean       handshaken;        // true once the handshake has completed successfully...
+
+    // the read state, touched only by the read (or handshake) in progress...
+    private ByteBuffer             netIn;             // encrypted bytes received but not yet unwrapped, in write mode (the position is the count of bytes)...
+    private ByteBuffer             appIn;             // plaintext bytes unwrapped but not yet delivered, in write mode (the position is the count of bytes)...
+    private boolean                inboundClosed;     // true once the remote side has closed the TLS session or the connection...
+    private int                    readMin;           // the minimum number of bytes for the read in progress...
+    private int                    readMax;           // the maximum number of bytes for the read in progress...
+    private OnReadComplete         onReadHandler;     // the handler for the read in progress...
+    private OnConnectionCompletionHandler onHandshakeHandler;   // the handler for the handshake in progress...
+
+
+    /**
+     * Creates a new instance of this class with the given pipe and {@link SSLEngine}.
+     *
+     * @param _pipe The connected {@link TCPPipe} to provide TLS on.
+     * @param _sslEngine The {@link SSLEngine}, configured for client or server mode.
+     */
+    private TLSPipe( final TCPPipe _pipe, final SSLEngine _sslEngine ) {
+
+        pipe        = _pipe;
+        engine      = _pipe.engine;
+        sslEngine   = _sslEngine;
+        wrapLock    = new Object();
+        reading     = new AtomicBoolean( false );
+        handshaking = new AtomicBoolean( false );
+
+        var session = sslEngine.getSession();
+        netIn = ByteBuffer.allocate( session.getPacketBufferSize() );
+        appIn = ByteBuffer.allocate( session.getApplicationBufferSize() );
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class, providing TLS on the given connected pipe with an {@link SSLEngine} from the given {@link SSLContext}, and returns the
+     * outcome.  The handshake is not started until {@link #handshake(OnConnectionCompletionHandler)} is called.
+     *
+     * @param _pipe The connected {@link TCPPipe} to provide TLS on.
+     * @param _context The {@link SSLContext} to get the {@link SSLEngine} from.  For session resumption, clients should use the same context for all their connections.
+     * @param _clientMode {@code true} if this side of the connection is the TLS client (normally the side that made the connection), {@code false} if it's the server.
+     * @return The outcome.  If ok, the info contains the new {@link TLSPipe}.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     */
+    public static Outcome<TLSPipe> getNewInstance( final TCPPipe _pipe, final SSLContext _context, final boolean _clientMode ) {
+        return getNewInstance( _pipe, _context, _clientMode, null );
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class, providing the client side of TLS on the given connected pipe with an {@link SSLEngine} from the given {@link SSLContext},
+     * and returns the outcome.  The given host name is sent to the server (with the server name indication extension), and the server's certificate must match it (the same
+     * endpoint identification that HTTPS clients do).  The handshake is not started until {@link #handshake(OnConnectionCompletionHandler)} is called.
+     *
+     * @param _pipe The connected {@link TCPPipe} to provide TLS on.
+     * @param _context The {@link SSLContext} to get the {@link SSLEngine} from.  For session resumption, clients should use the same context for all their connections.
+     * @param _hostName The host name of the server, as the client knows it (for instance, from a URL).  An IP address literal is allowed; it is checked against the server's
+     *                  certificate, but not sent to the server.
+     * @return The outcome.  If ok, the info contains the new {@link TLSPipe}.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     */
+    public static Outcome<TLSPipe> getNewClientInstance( final TCPPipe _pipe, final SSLContext _context, final String _hostName ) {
+
+        // sanity check...
+        if( isNull( _hostName ) ) return forgeTLSPipe.notOk( "_hostName is null" );
+
+        return getNewInstance( _pipe, _context, true, _hostName );
+    }
+
+
+    /**
+     * Attempts to create a new instance of this class, as described in {@link #getNewInstance(TCPPipe,SSLContext,boolean)} and
+     * {@link #getNewClientInstance(TCPPipe,SSLContext,String)}.
+     *
+     * @param _pipe The connected {@link TCPPipe} to provide TLS on.
+     * @param _context The {@link SSLContext} to get the {@link SSLEngine} from.
+     * @param _clientMode {@code true} if this side of the connection is the TLS client, {@code false} if it's the server.
+     * @param _hostName The host name of the server, or {@code null} if it isn't known (or this is the server).
+     * @return The outcome.  If ok, the info contains the new {@link TLSPipe}.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     */
+    private static Outcome<TLSPipe> getNewInstance( final TCPPipe _pipe, final SSLContext _context, final boolean _clientMode, final String _hostName ) {
+
+        // sanity checks...
+        if( isNull( _pipe, _context ) ) return forgeTLSPipe.notOk( "_pipe or _context is null" );
+        if( !_pipe.isOpen() ) return forgeTLSPipe.notOk( "_pipe is not open" );
+
+        try {
+            // servers need know nothing of the peer...
+            if( !_clientMode ) {
+                var sslEngine = _context.createSSLEngine();
+                sslEngine.setUseClientMode( false );
+                return forgeTLSPipe.ok( new TLSPipe( _pipe, sslEngine ) );
+            }
+
+            // clients identify the peer, so that sessions can be resumed...
+            var peerHost  = (_hostName != null) ? _hostName : _pipe.getRemoteIP().toString();
+            var sslEngine = _context.createSSLEngine( peerHost, _pipe.getRemotePort() );
+            sslEngine.setUseClientMode( true );
+
+            // with a host name, tell the server which one we want (unless it's an IP address, which SNI doesn't allow), and make sure that's who we got...
+            if( _hostName != null ) {
+                var parameters = sslEngine.getSSLParameters();
+                if( !IPAddress.fromString( _hostName ).ok() )
+                    parameters.setServerNames( List.of( new SNIHostName( _hostName ) ) );
+                parameters.setEndpointIdentificationAlgorithm( "HTTPS" );
+                sslEngine.setSSLParameters( parameters );
+            }
+            return forgeTLSPipe.ok( new TLSPipe( _pipe, sslEngine ) );
+        }
+        catch( Exception _e ) {
+            return forgeTLSPipe.notOk( "Problem creating SSLEngine: " + _e.getMessage(), _e );
+        }
+    }
+
+
+    /**
+     * Starts the TLS handshake, asynchronously (non-blocking).  The given handler is called (in one of the threads from the engine's {@link ScheduledExecutor}) when the handshake
+     * completes, whether normally or not.  No reads or writes may be done until the handshake has completed normally.
+     *
+     * @param _handler The handler to call with the outcome of the handshake.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}.
+     * @throws IllegalStateException if the handshake has already been started.
+     */
+    public void handshake( final OnConnectionCompletionHandler _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( handshaken || handshaking.getAndSet( true ) ) throw new IllegalStateException( "Handshake already started" );
+
+        // the handshake does the reading until it's done...
+        reading.set( true );
+        onHandshakeHandler = _handler;
+        try {
+            sslEngine.beginHandshake();
+            handshakeStep();
+        }
+        catch( Exception _e ) {
+            completeHandshake( forge.notOk( "Problem beginning handshake: " + _e.getMessage(), _e ) );
+        }
+    }
+
+
+    /**
+     * Performs the TLS handshake, blocking until it completes.
+     *
+     * @return The outcome of the handshake.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     * @throws IllegalStateException if the handshake has already been started.
+     */
+    public Outcome<?> handshake() {
+        Waiter<Outcome<?>> waiter = new Waiter<>();
+        handshake( waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
+    /**
+     * Advances the handshake as far as it can go without waiting for the network, then either arranges to be called again when the network has delivered more, or completes
+     * the handshake.
+     */
+    private void handshakeStep() {
+
+        try {
+            while( true ) {
+                switch( sslEngine.getHandshakeStatus() ) {
+
+                    case NEED_TASK -> {
+                        engine.execute( () -> {
+                            runDelegatedTasks();
+                            handshakeStep();
+                        } );
+                        return;
+                    }
+
+                    case NEED_WRAP -> {
+                        var wrapOutcome = wrapAndQueue( EMPTY, null );
+                        if( !wrapOutcome.ok() ) {
+                            completeHandshake( wrapOutcome );
+                            return;
+                        }
+                        if( sslEngine.isOutboundDone() ) {
+                            completeHandshake( forge.notOk( "TLS session closed during handshake" ) );
+                            return;
+                        }
+                    }
+
+                    case NEED_UNWRAP, NEED_UNWRAP_AGAIN -> {
+                        var result = unwrap();
+                        if( result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW ) {
+                            if( inboundClosed ) {
+                                completeHandshake( forge.notOk( "Connection closed during handshake" ) );
+                                return;
+                            }
+                            readNetwork( this::handshakeStep, this::completeHandshake );
+                            return;
+                        }
+                        if( result.getStatus() == SSLEngineResult.Status.CLOSED ) {
+                            if( sslEngine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP ) wrapAndQueue( EMPTY, null );   // sending our alert...
+                            completeHandshake( forge.notOk( "TLS session closed during handshake" ) );
+                            return;
+                        }
+                    }
+
+                    // NOT_HANDSHAKING or FINISHED...
+                    default -> {
+                        completeHandshake( forge.ok() );
+                        return;
+                    }
+                }
+            }
+        }
+        catch( Exception _e ) {
+            completeHandshake( forge.notOk( "Problem during handshake: " + _e.getMessage(), _e ) );
+        }
+    }
+
+
+    /**
+     * Completes the handshake with the given outcome, which is posted to the handshake handler.
+     *
+     * @param _outcome The outcome of the handshake.
+     */
+    private void completeHandshake( final Outcome<?> _outcome ) {
+
+        // if the handshake wasn't in progress, there's nothing to do...
+        if( !handshaking.getAndSet( false ) ) return;
+
+        // if we succeeded, reads and writes may begin...
+        if( _outcome.ok() ) {
+            handshaken = true;
+            if( LOGGER.isLoggable( Level.FINE ) ) LOGGER.fine( "TLS handshake complete on " + pipe + " with " + sslEngine.getSession().getProtocol() );
+        }
+        reading.set( false );
+        var handler = onHandshakeHandler;
+        engine.execute( () -> handler.handle( _outcome ) );
+    }
+
+
+    /**
+     * <p>Initiates an asynchronous (non-blocking) operation to read between the given {@code _minBytes} and {@code _maxBytes} bytes of plaintext.  The data is read into a buffer
+     * from the engine's {@link BufferPool}, which is the info in the {@link Outcome} if the outcome was ok; it may be returned to the pool with {@link #release(ByteBuffer)}.  The
+     * {@code _handler} is <i>always</i> called in one of the threads from the engine's {@link ScheduledExecutor}.  If the remote side closes the TLS session (or the connection)
+     * before the minimum number of bytes is available, the outcome is not ok with the message {@link TCPPipe#END_OF_STREAM}.</p>
+     *
+     * @param _minBytes The minimum number of bytes that must be read for this read operation to be considered complete.  The value must be in the range [1..{@code _maxBytes}].
+     * @param _maxBytes The maximum number of bytes that may be read in this read operation.  The value must be in the range [{@code _minBytes}..65536].
+     * @param _handler This handler is called with the outcome of the read operation, when the read operation completes, whether normally or not.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}.
+     * @throws IllegalStateException if a read operation (or the handshake) is already in progress.
+     */
+    @Override
+    public void read( final int _minBytes, final int _maxBytes, final OnReadComplete _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        if( reading.getAndSet( true ) ) throw new IllegalStateException( "Read operation already in progress" );
+        onReadHandler = _handler;
+        if( (_minBytes < 1) || (_minBytes > _maxBytes) || (_maxBytes > InFeed.MAX_READ_BYTES) )
+            postReadCompletion( forgeByteBuffer.notOk( "_minBytes and _maxBytes must satisfy 1 <= _minBytes <= _maxBytes <= 65536: " + _minBytes + ", " + _maxBytes ) );
+        else if( !handshaken )
+            postReadCompletion( forgeByteBuffer.notOk( "TLS handshake has not completed" ) );
+
+        // if things look sane, then it's time to read some bytes...
+        else {
+            readMin = _minBytes;
+            readMax = _maxBytes;
+            readStep();
+        }
+    }
+
+
+    /**
+     * Advances the read in progress as far as it can go without waiting for the network: unwraps whatever encrypted bytes we have, and delivers the plaintext if there's enough
+     * of it.  Otherwise, arranges to be called again when the network has delivered more.
+     */
+    private void readStep() {
+
+        try {
+            while( true ) {
+
+                // if we have enough plaintext, deliver it...
+                if( appIn.position() >= readMin ) {
+                    deliver();
+                    return;
+                }
+
+                // if the remote side has closed, deliver what we have (or the end of the stream)...
+                if( inboundClosed ) {
+                    if( appIn.position() > 0 )
+                        deliver();
+                    else
+                        postReadCompletion( forgeByteBuffer.notOk( TCPPipe.END_OF_STREAM ) );
+                    return;
+                }
+
+                // unwrap whatever we can...
+                var result = unwrap();
+                switch( result.getStatus() ) {
+                    case BUFFER_UNDERFLOW -> {
+                        readNetwork( this::readStep, (outcome) -> postReadCompletion( forgeByteBuffer.notOk( outcome ) ) );
+                        return;
+                    }
+                    case CLOSED -> inboundClosed = true;
+                    default -> {}
+                }
+
+                // handle any post-handshake messages (such as session tickets and key updates)...
+                switch( sslEngine.getHandshakeStatus() ) {
+                    case NEED_TASK -> runDelegatedTasks();
+                    case NEED_WRAP -> {
+                        var wrapOutcome = wrapAndQueue( EMPTY, null );
+                        if( !wrapOutcome.ok() ) {
+                            postReadCompletion( forgeByteBuffer.notOk( wrapOutcome ) );
+                            return;
+                        }
+                    }
+                    default -> {}
+                }
+            }
+        }
+        catch( Exception _e ) {
+            postReadCompletion( forgeByteBuffer.notOk( "Problem reading TLS: " + _e.getMessage(), _e ) );
+        }
+    }
+
+
+    /**
+     * Delivers up to the maximum number of bytes for the read in progress from the unwrapped plaintext, in a buffer from the engine's {@link BufferPool}.
+     */
+    private void deliver() {
+
+        var count = Math.min( appIn.position(), readMax );
+        var buffer = engine.getBufferPool().acquire( count );
+        appIn.flip();
+        buffer.put( appIn.slice( 0, count ) ).flip();
+        appIn.position( count );
+        appIn.compact();
+        postReadCompletion( forgeByteBuffer.ok( buffer ) );
+    }
+
+
+    /**
+     * Marks the read in progress as complete, and posts the given outcome to its handler.
+     *
+     * @param _outcome The outcome of the read.
+     */
+    private void postReadCompletion( final Outcome<ByteBuffer> _outcome ) {
+
+        var handler = onReadHandler;
+        reading.set( false );
+        engine.execute( () -> handler.handle( _outcome ) );
+    }
+
+
+    /**
+     * Unwraps as much of the encrypted bytes we've received as we can into our plaintext buffer, growing the buffers as the {@link SSLEngine} requires.
+     *
+     * @return The result of the unwrap.
+     * @throws SSLException if the {@link SSLEngine} has a problem.
+     */
+    private SSLEngineResult unwrap() throws SSLException {
+
+        while( true ) {
+
+            // make sure there's room for a whole record of plaintext...
+            var appSize = sslEngine.getSession().getApplicationBufferSize();
+            if( appIn.remaining() < appSize ) appIn = grow( appIn, appIn.position() + appSize );
+
+            // unwrap...
+            netIn.flip();
+            SSLEngineResult result;
+            try {
+                result = sslEngine.unwrap( netIn, appIn );
+            }
+            finally {
+                netIn.compact();
+            }
+
+            // if we need a bigger buffer for the encrypted bytes, get one and tell our caller to read more...
+            if( result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW ) {
+                var netSize = sslEngine.getSession().getPacketBufferSize();
+                if( netIn.capacity() < netSize ) netIn = grow( netIn, netSize );
+                return result;
+            }
+
+            // if the plaintext buffer was too small after all (the session's sizes changed), grow it and try again...
+            if( result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW ) {
+                appIn = grow( appIn, appIn.capacity() + sslEngine.getSession().getApplicationBufferSize() );
+                continue;
+            }
+
+            return result;
+        }
+    }
+
+
+    /**
+     * Reads more encrypted bytes from the network, appending them to those we've already received, then runs the given continuation.  If the remote side has closed the
+     * connection, notes that (and runs the continuation); if the read fails otherwise, calls the given failure handler instead.
+     *
+     * @param _continuation The continuation to run once we have more bytes (or the connection has been closed).
+     * @param _onFailure The handler for a failed read.
+     */
+    private void readNetwork( final Runnable _continuation, final OnConnectionCompletionHandler _onFailure ) {
+
+        pipe.read( 1, InFeed.MAX_READ_BYTES, (outcome) -> {
+
+            // if the connection was closed, the TLS session is over...
+            if( !outcome.ok() ) {
+                if( TCPPipe.END_OF_STREAM.equals( outcome.msg() ) ) {
+                    inboundClosed = true;
+                    try {
+                        sslEngine.closeInbound();
+                    }
+                    catch( SSLException _e ) {
+                        LOGGER.log( Level.FINE, "Connection closed without TLS close_notify: " + pipe );
+                    }
+                    _continuation.run();
+                }
+                else
+                    _onFailure.handle( outcome );
+                return;
+            }
+
+            // append what we got to what we had...
+            var buffer = outcome.info();
+            if( netIn.remaining() < buffer.remaining() ) netIn = grow( netIn, netIn.position() + buffer.remaining() );
+            netIn.put( buffer );
+            pipe.release( buffer );
+            _continuation.run();
+        } );
+    }
+
+
+    /**
+     * <p>Initiates an asynchronous (non-blocking) operation to write the plaintext remaining in the given buffer.  The plaintext is encrypted right away (so the buffer may be
+     * reused as soon as this method returns, and its position is at its limit), and the encrypted records are queued for writing.  The {@code _handler} is called (in one of the
+     * threads from the engine's {@link ScheduledExecutor}) when all the records have been written to the network, or the write fails.</p>
+     * <p>A write whose records exceed the pipe's maximum number of queued writes (see {@link TCPPipe#setMaxQueuedWrites(int)}) fails; each record carries up to 16,384 bytes
+     * of plaintext.</p>
+     *
+     * @param _writeBuffer The buffer containing the plaintext to write.
+     * @param _handler This handler is called with the outcome of the write operation, when the write operation completes, whether normally or not.
+     * @throws IllegalArgumentException if the {@code _handler} is {@code null}.
+     */
+    @Override
+    public void write( final ByteBuffer _writeBuffer, final OnWriteComplete _handler ) {
+
+        // sanity checks...
+        if( isNull( _handler ) ) throw new IllegalArgumentException( "_handler is null" );
+        Outcome<?> outcome;
+        if( isNull( _writeBuffer ) || !_writeBuffer.hasRemaining() )
+            outcome = forge.notOk( "_writeBuffer is null or has no data to write" );
+        else if( !handshaken )
+            outcome = forge.notOk( "TLS handshake has not completed" );
+
+        // if things look sane, wrap it and send it...
+        else {
+            try {
+                outcome = wrapAndQueue( _writeBuffer, _handler );
+                if( outcome.ok() ) return;   // the handler will be called when the write completes...
+            }
+            catch( Exception _e ) {
+                outcome = forge.notOk( "Problem writing TLS: " + _e.getMessage(), _e );
+            }
+        }
+
+        // if we get here, the write failed before it started...
+        var failure = outcome;
+        engine.execute( () -> _handler.handle( failure ) );
+    }
+
+
+    /**
+     * Wraps all the plaintext remaining in the given buffer (or, if it's empty, whatever handshake or closure messages the {@link SSLEngine} has for us) into records, and queues
+     * them for writing on the pipe, releasing their buffers when they've been written.  The wrapping and queueing are atomic with respect to other calls, so records are always
+     * sent in the order they were wrapped.
+     *
+     * @param _plaintext The buffer containing the plaintext to wrap.
+     * @param _handler The handler to call (in one of the threads from the engine's {@link ScheduledExecutor}) when the records have been written, or {@code null} if none.
+     * @return The outcome of queueing the records.  If ok, the handler (if any) will be called.  If not ok, it won't be.
+     * @throws SSLException if the {@link SSLEngine} has a problem.
+     */
+    private Outcome<?> wrapAndQueue( final ByteBuffer _plaintext, final OnWriteComplete _handler ) throws SSLException {
+
+        synchronized( wrapLock ) {
+
+            // wrap everything we have into records...
+            var pool = engine.getBufferPool();
+            var records = new ArrayList<ByteBuffer>();
+            do {
+                var netOut = pool.acquire( sslEngine.getSession().getPacketBufferSize() );
+                SSLEngineResult result;
+                try {
+                    result = sslEngine.wrap( _plaintext, netOut );
+                }
+                catch( SSLException _e ) {
+                    pool.release( netOut );
+                    records.forEach( pool::release );
+                    throw _e;
+                }
+                netOut.flip();
+                if( netOut.hasRemaining() ) records.add( netOut ); else pool.release( netOut );
+                if( sslEngine.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK ) runDelegatedTasks();
+                if( result.getStatus() == SSLEngineResult.Status.CLOSED ) break;
+            } while( _plaintext.hasRemaining() );
+
+            // if there was nothing to send, we're done...
+            if( records.isEmpty() ) {
+                if( _handler != null ) engine.execute( () -> _handler.handle( forge.ok() ) );
+                return forge.ok();
+            }
+
+            // queue the records for writing...
+            var outcome = pipe.queueWrite( records.toArray( new ByteBuffer[0] ), (writeOutcome) -> {
+                records.forEach( pool::release );
+                if( _handler != null ) _handler.handle( writeOutcome );
+            } );
+            if( !outcome.ok() ) records.forEach( pool::release );
+            return outcome;
+        }
+    }
+
+
+    /**
+     * Runs any tasks the {@link SSLEngine} has delegated to us, in the calling thread.
+     */
+    private void runDelegatedTasks() {
+
+        Runnable task;
+        while( (task = sslEngine.getDelegatedTask()) != null ) task.run();
+    }
+
+
+    /**
+     * Returns a buffer with at least the given capacity containing the bytes in the given buffer (which is in write mode), and in write mode itself.
+     *
+     * @param _buffer The buffer to grow.
+     * @param _capacity The minimum capacity required.
+     * @return The grown buffer.
+     */
+    private static ByteBuffer grow( final ByteBuffer _buffer, final int _capacity ) {
+
+        if( _buffer.capacity() >= _capacity ) return _buffer;
+        var grown = ByteBuffer.allocate( _capacity );
+        _buffer.flip();
+        grown.put( _buffer );
+        return grown;
+    }
+
+
+    /**
+     * Returns the given read buffer to the engine's {@link BufferPool}.
+     *
+     * @param _readBuffer The read buffer to release.
+     */
+    public void release( final ByteBuffer _readBuffer ) {
+        pipe.release( _readBuffer );
+    }
+
+
+    /**
+     * Returns {@code true} if the TLS handshake has completed successfully.
+     *
+     * @return {@code true} if the TLS handshake has completed successfully.
+     */
+    public boolean isHandshaken() {
+        return handshaken;
+    }
+
+
+    /**
+     * Returns the {@link SSLSession} for this connection, which (once the handshake has completed) describes the negotiated protocol and cipher suite, and the peer.
+     *
+     * @return The {@link SSLSession} for this connection.
+     */
+    public SSLSession getSession() {
+        return sslEngine.getSession();
+    }
+
+
+    /**
+     * Returns the {@link SSLEngine} for this connection, which may be configured (for instance, with the enabled protocols or cipher suites) before the handshake.
+     *
+     * @return The {@link SSLEngine} for this connection.
+     */
+    public SSLEngine getSSLEngine() {
+        return sslEngine;
+    }
+
+
+    /**
+     * Returns the {@link TCPPipe} this instance provides TLS on.
+     *
+     * @return The {@link TCPPipe} this instance provides TLS on.
+     */
+    public TCPPipe getPipe() {
+        return pipe;
+    }
+
+
+    /**
+     * Return {@code true} if a read operation (or the handshake) is in progress.
+     *
+     * @return {@code true} if a read operation is in progress.
+     */
+    @Override
+    public boolean isReading() {
+        return reading.get();
+    }
+
+
+    /**
+     * Closes the TLS session (sending a close_notify to the remote side, if the handshake has completed), then closes the pipe.
+     */
+    @Override
+    public void close() {
+
+        try {
+            sslEngine.closeOutbound();
+            if( handshaken ) {
+                var outcome = wrapAndQueue( EMPTY, (writeOutcome) -> pipe.close() );
+                if( outcome.ok() ) return;
+            }
+        }
+        catch( Exception _e ) {
+            LOGGER.log( Level.FINE, "Problem sending TLS close_notify: " + _e.getMessage(), _e );
+        }
+        pipe.close();
+    }
+
+
+    /**
+     * Returns a string representing this instance.
+     *
+     * @return a string representing this instance.
+     */
+    @Override
+    public String toString() {
+        return "TLSPipe on " + pipe;
+    }
+}
@@ -0,0 +1,249 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.ScheduledExecutor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.dilatush.util.General.getLogger;
+import static com.dilatush.util.General.isNull;
+
+/**
+ * <p>Instances of this class implement a hashed timing wheel: a cheap way to manage very large numbers of timeouts (such as read and write deadlines, and idle timeouts, for tens
+ * of thousands of connections), nearly all of which are canceled before they expire.  The wheel is a ring of buckets, each representing one tick of time; a timeout is placed in
+ * the bucket for the tick in which it expires (modulo the size of the ring), and on each tick the wheel expires the due timeouts in the current bucket.  A single periodic task on
+ * a {@link ScheduledExecutor} drives the wheel, no matter how many timeouts are pending.</p>
+ * <p>Scheduling a timeout just enqueues it (the ticking thread moves it into its bucket), and canceling a timeout is a single compare-and-set; canceled timeouts are discarded
+ * when the wheel next visits their bucket.  The price of this efficiency is resolution: a timeout expires on the first tick at or after its deadline, so it may expire up to one
+ * tick late (and somewhat more if the executor is busy).</p>
+ * <p>The tasks of expired timeouts are run in the ticking thread (one of the executor's threads), so they must be short and must not block; typically they just post a
+ * completion to the executor.</p>
+ */
+@SuppressWarnings( "unused" )
+public final class TimingWheel {
+
+    private static final Logger LOGGER = getLogger();
+
+    private final ScheduledExecutor                  executor;      // the executor that drives this wheel...
+    private final long                               tickNanos;     // the duration of a tick, in nanoseconds...
+    private final int                                mask;          // the mask for converting a tick number to a bucket index...
+    private final ArrayList<Timeout>[]               buckets;       // the buckets, touched only by the ticking thread...
+    private final ConcurrentLinkedQueue<Timeout>     additions;     // newly scheduled timeouts, awaiting placement in their buckets...
+    private final long                               startNanos;    // when this wheel was created; tick zero...
+    private final AtomicInteger                      pending;       // the number of timeouts scheduled but not yet expired or canceled...
+
+    private volatile ScheduledFuture<?>              ticker;        // the periodic task that drives this wheel, or null if it's not running...
+    private long                                     tick;          // the next tick to be processed; touched only by the ticking thread...
+
+
+    /**
+     * Creates a new instance of this class, driven by the given executor, with the given tick duration and number of buckets.  The wheel does not start ticking until
+     * {@link #start()} is called.
+     *
+     * @param _executor The {@link ScheduledExecutor} that drives this wheel, and in whose threads the tasks of expired timeouts are run.
+     * @param _tick The duration of one tick, which is the resolution of this wheel; it must be at least one millisecond.
+     * @param _buckets The number of buckets in this wheel, which must be a power of two in the range [16..65536].  A wheel covers {@code _tick * _buckets} of time in one
+     *                 revolution; timeouts further out than that are simply passed over (at a small cost) until they are due.
+     * @throws IllegalArgumentException if any argument is invalid.
+     */
+    @SuppressWarnings( { "unchecked", "rawtypes" } )
+    public TimingWheel( final ScheduledExecutor _executor, final Duration _tick, final int _buckets ) {
+
+        // sanity checks...
+        if( isNull( _executor, _tick ) ) throw new IllegalArgumentException( "_executor or _tick is null" );
+        if( _tick.toMillis() < 1 ) throw new IllegalArgumentException( "_tick must be at least one millisecond: " + _tick );
+        if( (_buckets < 16) || (_buckets > 65536) || (Integer.bitCount( _buckets ) != 1) )
+            throw new IllegalArgumentException( "_buckets must be a power of two in the range [16..65536]: " + _buckets );
+
+        executor   = _executor;
+        tickNanos  = _tick.toNanos();
+        mask       = _buckets - 1;
+        buckets    = new ArrayList[_buckets];
+        for( int i = 0; i < _buckets; i++ ) buckets[i] = new ArrayList<>();
+        additions  = new ConcurrentLinkedQueue<>();
+        startNanos = System.nanoTime();
+        pending    = new AtomicInteger( 0 );
+    }
+
+
+    /**
+     * Starts this wheel ticking.  Calling this method on a wheel that is already ticking has no effect.
+     */
+    public synchronized void start() {
+        if( ticker != null ) return;
+        ticker = executor.scheduleAtFixedRate( this::onTick, tickNanos, tickNanos, TimeUnit.NANOSECONDS );
+    }
+
+
+    /**
+     * Stops this wheel ticking.  Pending timeouts remain pending, but will not expire unless the wheel is started again.
+     */
+    public synchronized void stop() {
+        if( ticker == null ) return;
+        ticker.cancel( false );
+        ticker = null;
+    }
+
+
+    /**
+     * Schedules the given task to be run when the given delay has elapsed, unless the returned {@link Timeout} is canceled first.
+     *
+     * @param _delay The delay until the task is to be run.  Delays of zero or less expire on the next tick.
+     * @param _task The task to run upon expiry, which must be short and must not block.
+     * @return The {@link Timeout}, which may be used to cancel it.
+     * @throws IllegalArgumentException if either argument is {@code null}.
+     */
+    public Timeout schedule( final Duration _delay, final Runnable _task ) {
+
+        // sanity check...
+        if( isNull( _delay, _task ) ) throw new IllegalArgumentException( "_delay or _task is null" );
+
+        // figure out which tick this timeout expires on, rounding up...
+        var deadlineNanos = System.nanoTime() - startNanos + Math.max( 0, _delay.toNanos() );
+        var deadlineTick = (deadlineNanos + tickNanos - 1) / tickNanos;
+
+        // queue it for placement by the ticking thread...
+        var timeout = new Timeout( deadlineTick, _task );
+        pending.incrementAndGet();
+        additions.add( timeout );
+        return timeout;
+    }
+
+
+    /**
+     * Returns the number of timeouts that have been scheduled, but have not yet expired or been canceled.
+     *
+     * @return The number of pending timeouts.
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+
+    /**
+     * Returns the duration of one tick of this wheel.
+     *
+     * @return The duration of one tick of this wheel.
+     */
+    public Duration getTick() {
+        return Duration.ofNanos( tickNanos );
+    }
+
+
+    /**
+     * Processes all the ticks that are due: places newly scheduled timeouts in their buckets, then expires the due timeouts in each due tick's bucket.  This is run periodically
+     * by the executor, and never concurrently with itself.
+     */
+    private void onTick() {
+
+        try {
+            // process every tick that's due (more than one if the executor was slow getting to us)...
+            var nowTick = (System.nanoTime() - startNanos) / tickNanos;
+            while( tick <= nowTick ) {
+
+                // place any new timeouts in their buckets; any that are already due go in the current bucket...
+                Timeout added;
+                while( (added = additions.poll()) != null ) {
+                    if( added.state.get() != Timeout.PENDING ) continue;
+                    buckets[(int) (Math.max( tick, added.deadlineTick ) & mask)].add( added );
+                }
+
+                // expire whatever is due in this tick's bucket, dropping anything canceled, and keeping the rest...
+                var bucket = buckets[(int) (tick & mask)];
+                int kept = 0;
+                for( int i = 0; i < bucket.size(); i++ ) {
+                    var timeout = bucket.get( i );
+                    if( timeout.state.get() != Timeout.PENDING ) continue;
+                    if( timeout.deadlineTick <= tick ) {
+                        timeout.expire();
+                        continue;
+                    }
+                    bucket.set( kept++, timeout );
+                }
+                for( int i = bucket.size() - 1; i >= kept; i-- ) bucket.remove( i );
+
+                tick++;
+            }
+        }
+        catch( Exception _e ) {
+            LOGGER.log( Level.SEVERE, "Unhandled exception in timing wheel tick", _e );
+        }
+    }
+
+
+    /**
+     * Instances of this class represent a single timeout scheduled on a {@link TimingWheel}.
+     */
+    public final class Timeout {
+
+        private static final int PENDING   = 0;
+        private static final int CANCELED  = 1;
+        private static final int EXPIRED   = 2;
+
+        private final long          deadlineTick;  // the tick on which this timeout expires...
+        private final Runnable      task;          // the task to run upon expiry...
+        private final AtomicInteger state;         // PENDING, CANCELED, or EXPIRED...
+
+
+        private Timeout( final long _deadlineTick, final Runnable _task ) {
+            deadlineTick = _deadlineTick;
+            task         = _task;
+            state        = new AtomicInteger( PENDING );
+        }
+
+
+        /**
+         * Cancels this timeout, if it hasn't already expired or been canceled.
+         *
+         * @return {@code true} if this call canceled the timeout, in which case its task will never be run.
+         */
+        public boolean cancel() {
+
+            if( !state.compareAndSet( PENDING, CANCELED ) ) return false;
+            pending.decrementAndGet();
+            return true;
+        }
+
+
+        /**
+         * Returns {@code true} if this timeout has expired (meaning its task has been, or is being, run).
+         *
+         * @return {@code true} if this timeout has expired.
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+
+        /**
+         * Returns {@code true} if this timeout has been canceled.
+         *
+         * @return {@code true} if this timeout has been canceled.
+         */
+        public boolean isCanceled() {
+            return state.get() == CANCELED;
+        }
+
+
+        /**
+         * Expires this timeout, running its task, unless it has been canceled.
+         */
+        private void expire() {
+
+            if( !state.compareAndSet( PENDING, EXPIRED ) ) return;
+            pending.decrementAndGet();
+            try {
+                task.run();
+            }
+            catch( Exception _e ) {
+                LOGGER.log( Level.WARNING, "Unhandled exception in timeout task", _e );
+            }
+        }
+    }
+}
@@ -10,6 +10,9 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -37,11 +40,18 @@ import static com.dilatush.util.General.isNull;
     protected final DatagramChannel  channel;
     protected final int              maxDatagramBytes;
     protected final OnErrorHandler   onErrorHandler;
-    protected final AtomicBoolean    sendInProgress;
+    protected final AtomicBoolean    sendInProgress;      // true while a send operation is in progress (or queued)...
     protected final SelectionKey     key;
+    protected final IOMetrics        metrics;
 
-    protected OnSendCompleteHandler onSendCompleteHandler;
-    protected OutboundDatagram      outboundDatagram;
+    protected OnSendCompleteHandler  onSendCompleteHandler;
+    protected List<OutboundDatagram> outboundDatagrams;   // the datagrams being sent by the send operation in progress, or null if none has been started...
+    protected int                    outboundIndex;       // the index of the next datagram to send in outboundDatagrams...
+    protected long                   sendStartNanos;      // when the send operation in progress was initiated...
+
+    private final ArrayDeque<QueuedSend>            sendQueue;              // send operations waiting for the one in progress; guarded by itself...
+    private final ConcurrentLinkedQueue<Completion> completions;            // send completions awaiting delivery, in the order the sends were initiated...
+    private final AtomicBoolean                     deliveringCompletions;  // true while a task is delivering send completions...
 
     /**
      * <p>Creates a new instance of this class that will be associated with the given networking engine, and will use the given {@link DatagramChannel}, which must be bound to
@@ -67,13 +77,17 @@ import static com.dilatush.util.General.isNull;
             throw new IllegalArgumentException( "_maxDatagramBytes is out of range (1..65535): " + _maxDatagramBytes );
 
         // some setup...
-        sendInProgress   = new AtomicBoolean( false );
+        sendInProgress        = new AtomicBoolean( false );
+        sendQueue             = new ArrayDeque<>();
+        completions           = new ConcurrentLinkedQueue<>();
+        deliveringCompletions = new AtomicBoolean( false );
 
         // squirrel it all away...
         engine           = _engine;
         channel          = _channel;
         maxDatagramBytes = _maxDatagramBytes;
         onErrorHandler   = (_onErrorHandler == null) ? this::defaultOnErrorHandler : _onErrorHandler;
+        metrics          = new IOMetrics( _engine.getIOMetrics() );
         key              = _engine.register( channel, NO_INTEREST, this );
     }
 
@@ -82,47 +96,84 @@ import static com.dilatush.util.General.isNull;
 
 
     /**
-     * <p>Initiates an asynchronous (non-blocking) operation to send a datagram from the UDP port represented by this instance, from the given {@link OutboundDatagram}.  The
+     * <p>Initiates an asynchronous (non-blocking) operation to send a datagram from the UDP port represented by this instance, from the given {@link OutboundDatagram}.  If
+     * another send operation is in progress, this one is queued behind it; send operations are carried out one at a time, in the order they were initiated.  The
      * {@code _onSendCompleteHandler} is called when the write operation completes, whether that operation completed normally or was terminated because of an error.
-     * Note that the {@code _onSendCompleteHandler} will always be called in one of the threads from the associated {@link NetworkingEngine}'s {@link ScheduledExecutor}, never in
-     * the thread that calls this method.</p>
+     * Completion handlers are called one at a time, in the order their send operations were initiated.  Note that the {@code _onSendCompleteHandler} will always be called in
+     * one of the threads from the associated {@link NetworkingEngine}'s {@link ScheduledExecutor}, never in the thread that calls this method.</p>
      *
      * @param _datagram The {@link OutboundDatagram} to send.
      * @param _onSendCompleteHandler The handler to call upon the completion of sending the datagram.
-     * @throws IllegalStateException if no on send complete handler is specified, or if a send operation is in progress.
+     * @throws IllegalStateException if no on send complete handler is specified.
      */
     public void send( final OutboundDatagram _datagram, final OnSendCompleteHandler _onSendCompleteHandler ) throws IllegalStateException {
 
         // if we didn't get a send complete handler, then we really don't have any choice but to throw an exception...
         if( isNull( _onSendCompleteHandler ) ) throw new IllegalStateException( "_onSendCompleteHandler is null" );
 
-        // make sure we haven't already got a send operation in progress...
-        if( sendInProgress.getAndSet( true ) ) throw new IllegalStateException( "Send operation already in progress" );
-
         // sanity checks...
         if( isNull( _datagram ) ) {
-            postSendCompletion( forge.notOk( "_datagram is null" ) );
+            complete( _onSendCompleteHandler, forge.notOk( "_datagram is null" ) );
             return;
         }
 
-        // squirrel away our initial state...
-        outboundDatagram       = _datagram;
-        onSendCompleteHandler  = _onSendCompleteHandler;
-
-        // initiate the actual write process...
-        send();
+        // queue it up, and send it (and anything queued behind it) if no send is in progress...
+        enqueue( new QueuedSend( List.of( _datagram ), _onSendCompleteHandler, System.nanoTime() ) );
    }
 
 
     /**
-     * <p>Attempts a synchronous (blocking) operation to send a datagram from the UDP port represented by this instance, from the given {@link OutboundDatagram}.</p>
+     * <p>Initiates an asynchronous (non-blocking) operation to send all the given {@link OutboundDatagram}s, in order, from the UDP port represented by this instance.  The
+     * datagrams are sent back-to-back for as long as the channel will accept them, and write interest is expressed only when the channel's send buffer is full - so a burst of
+     * datagrams costs one send operation rather than one per datagram.  The {@code _onSendCompleteHandler} is called once, when all the datagrams have been sent or when an error
+     * terminates the operation; in the latter case the message says how many of the datagrams were sent.  Note that the {@code _onSendCompleteHandler} will always be called in
+     * one of the threads from the associated {@link NetworkingEngine}'s {@link ScheduledExecutor}, never in the thread that calls this method.  As with
+     * {@link #send(OutboundDatagram,OnSendCompleteHandler)}, this operation is queued behind any send operation in progress.</p>
+     *
+     * @param _datagrams The {@link OutboundDatagram}s to send.  The list is copied, so the caller may reuse it once this method returns.
+     * @param _onSendCompleteHandler The handler to call upon the completion of sending the datagrams.
+     * @throws IllegalStateException if no on send complete handler is specified.
+     */
+    public void send( final List<OutboundDatagram> _datagrams, final OnSendCompleteHandler _onSendCompleteHandler ) throws IllegalStateException {
+
+        // if we didn't get a send complete handler, then we really don't have any choice but to throw an exception...
+        if( isNull( _onSendCompleteHandler ) ) throw new IllegalStateException( "_onSendCompleteHandler is null" );
+
+        // sanity checks...
+        if( isNull( _datagrams ) || _datagrams.isEmpty() || _datagrams.contains( null ) ) {
+            complete( _onSendCompleteHandler, forge.notOk( "_datagrams is null, empty, or contains a null" ) );
+            return;
+        }
+
+        // queue it up, and send it (and anything queued behind it) if no send is in progress...
+        enqueue( new QueuedSend( List.copyOf( _datagrams ), _onSendCompleteHandler, System.nanoTime() ) );
+    }
+
+
+    /**
+     * <p>Attempts a synchronous (blocking) operation to send all the given {@link OutboundDatagram}s, in order, from the UDP port represented by this instance.  If another send
+     * operation is in progress, this one waits its turn.</p>
+     *
+     * @param _datagrams The {@link OutboundDatagram}s to send.
+     * @return The outcome of the attempt.  If ok, all the datagrams were successfully sent.  If not ok, then there is an explanatory message and possibly the exception that
+     * caused the problem.
+     */
+    public Outcome<?> send( final List<OutboundDatagram> _datagrams ) {
+        Waiter<Outcome<?>> waiter = new Waiter<>();
+        send( _datagrams, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
+    /**
+     * <p>Attempts a synchronous (blocking) operation to send a datagram from the UDP port represented by this instance, from the given {@link OutboundDatagram}.  If another send
+     * operation is in progress, this one waits its turn.</p>
      *
      * @param _datagram The {@link OutboundDatagram} to send.
      * @return The outcome of the attempt.  If ok, the datagram was successfully sent.  If not ok, then there is an explanatory message and possibly the exception that caused
      * the problem.
-     * @throws IllegalStateException if a send operation is in progress.
      */
-    public Outcome<?> send( final OutboundDatagram _datagram ) throws IllegalStateException {
+    public Outcome<?> send( final OutboundDatagram _datagram ) {
         Waiter<Outcome<?>> waiter = new Waiter<>();
         send( _datagram, waiter::complete );
         return waiter.waitForCompletion();
@@ -142,54 +193,162 @@ import static com.dilatush.util.General.isNull;
         }
 
         // handle the writeable event...
-        send();
+        sendQueued();
     }
 
 
     /**
-     * Implements the core of the send operation.  It is called once when the write is initiated, and again for each writable event detected by the engine.  Note that this method
-     * may be called in the user's thread <i>or</i> in one of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}.
+     * Adds the given send operation to the send queue, and if no send operation is in progress, sends everything in the queue.
+     *
+     * @param _send The send operation to queue.
      */
-    private void send() {
-
-        try {
+    private void enqueue( final QueuedSend _send ) {
 
-            // write out the datagram...
-            var socketAddress = new InetSocketAddress( outboundDatagram.getIpAddress().toInetAddress(), outboundDatagram.getPort() );
-            var bytes = channel.send( outboundDatagram.getData(), socketAddress );
+        synchronized( sendQueue ) {
+            sendQueue.addLast( _send );
+            if( sendInProgress.getAndSet( true ) ) return;
+        }
+        sendQueued();
+    }
 
-            // if we wrote any bytes, then we're done...
-            if( bytes > 0 ) {
 
-                // clear the write buffer for use by our caller, accumulate the bytes written, and post our completion...
-                postSendCompletion( forge.ok() );
-                LOGGER.finest( "Sent " + bytes + " bytes to " + outboundDatagram.getIpAddress() + " port " + outboundDatagram.getPort() );
+    /**
+     * Carries out queued send operations, one after another, until the queue is empty or the channel won't accept any more datagrams (in which case write interest has been
+     * expressed, and this is called again when the channel is writeable).  Only one thread at a time may be in this method, which is guaranteed by {@code sendInProgress}.
+     */
+    private void sendQueued() {
+
+        while( true ) {
+
+            // if we're between send operations, start the next one (or if there are none, we're done)...
+            if( outboundDatagrams == null ) {
+                QueuedSend next;
+                synchronized( sendQueue ) {
+                    next = sendQueue.pollFirst();
+                    if( next == null ) {
+                        sendInProgress.set( false );
+                        return;
+                    }
+                }
+                onSendCompleteHandler = next.handler;
+                outboundDatagrams     = next.datagrams;
+                outboundIndex         = 0;
+                sendStartNanos        = next.queuedNanos;
             }
 
-            // otherwise, we need to express write interest...
-            else {
-                key.interestOpsOr( WRITE_INTEREST );
-                engine.wakeSelector();  // this guarantees that the key change will be effective immediately...
+            // send what we can; if the channel is full, we'll be back when it's writeable...
+            if( !send() ) return;
+        }
+    }
+
+
+    /**
+     * Implements the core of the send operation in progress.  It is called once when the operation is started, and again for each writable event detected by the engine while
+     * it is blocked.  Each call sends as many of the remaining datagrams as the channel will accept.  Note that this method may be called in the user's thread <i>or</i> in one
+     * of the threads from the {@link NetworkingEngine}'s {@link ScheduledExecutor}.
+     *
+     * @return {@code true} if the send operation completed (normally or not), or {@code false} if it is waiting for the channel to be writeable.
+     */
+    private boolean send() {
+
+        try {
+
+            // write out datagrams until we've sent them all, or the channel won't take any more...
+            while( outboundIndex < outboundDatagrams.size() ) {
+
+                // write out the next datagram...
+                var outboundDatagram = outboundDatagrams.get( outboundIndex );
+                var socketAddress = new InetSocketAddress( outboundDatagram.getIpAddress().toInetAddress(), outboundDatagram.getPort() );
+                var bytes = channel.send( outboundDatagram.getData(), socketAddress );
+
+                // if we didn't write any bytes, we need to express write interest and wait until we're writeable...
+                if( bytes == 0 ) {
+                    key.interestOpsOr( WRITE_INTEREST );
+                    engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
+                    return false;
+                }
+
+                // on to the next one...
+                metrics.recordBytesWritten( bytes );
+                metrics.recordWrite( sendStartNanos );
+                if( LOGGER.isLoggable( Level.FINEST ) )
+                    LOGGER.finest( "Sent " + bytes + " bytes to " + outboundDatagram.getIpAddress() + " port " + outboundDatagram.getPort() );
+                outboundIndex++;
             }
+
+            // if we get here, we've sent everything...
+            postSendCompletion( forge.ok() );
         }
         catch( Exception _e ) {
-            postSendCompletion( forge.notOk( "Problem sending to channel: " + _e.getMessage(), _e ) );
+            var sent = (outboundDatagrams.size() > 1) ? " (" + outboundIndex + " of " + outboundDatagrams.size() + " datagrams sent)" : "";
+            postSendCompletion( forge.notOk( "Problem sending to channel: " + _e.getMessage() + sent, _e ) );
         }
+        return true;
     }
 
 
     /**
-     * If a write operation is still in progress, marks it as complete (i.e., {@code writeInProgress} set to false) and posts the given {@link Outcome} to the
-     * {@code onWriteCompleteHandler}.  If no write operation was in progress, this method does nothing.
+     * Ends the send operation in progress, and posts the given {@link Outcome} to its {@code onSendCompleteHandler}.  The next queued send operation (if any) is started by
+     * {@link #sendQueued()}.
      *
      * @param _outcome The {@link Outcome} to post.
      */
     private void postSendCompletion( final Outcome<?> _outcome ) {
 
-        // if there was a send in progress, send the completion...
-       if( sendInProgress.getAndSet( false ) ) {
-           engine.execute( () -> onSendCompleteHandler.handle( _outcome ) );
-       }
+        var handler = onSendCompleteHandler;
+        onSendCompleteHandler = null;
+        outboundDatagrams = null;
+        complete( handler, _outcome );
+    }
+
+
+    /**
+     * Posts the given {@link Outcome} to the given handler, after the completions already posted.
+     *
+     * @param _handler The handler to post to.
+     * @param _outcome The {@link Outcome} to post.
+     */
+    private void complete( final OnSendCompleteHandler _handler, final Outcome<?> _outcome ) {
+        completions.add( new Completion( _handler, _outcome ) );
+        if( deliveringCompletions.compareAndSet( false, true ) )
+            engine.execute( this::drainCompletions );
+    }
+
+
+    /**
+     * Delivers posted send completions to their handlers, in order, until there are no more.  Runs in one of the threads from the engine's executor, and only one task at a
+     * time does so.
+     */
+    private void drainCompletions() {
+
+        while( true ) {
+
+            // deliver everything we've got...
+            Completion completion;
+            while( (completion = completions.poll()) != null ) {
+                try {
+                    completion.handler.handle( completion.outcome );
+                }
+                catch( Exception _e ) {
+                    LOGGER.log( Level.WARNING, "Unhandled exception in send completion handler", _e );
+                }
+            }
+
+            // we're done, unless something was posted while we were finishing up...
+            deliveringCompletions.set( false );
+            if( completions.isEmpty() || deliveringCompletions.getAndSet( true ) ) return;
+        }
+    }
+
+
+    /**
+     * Returns the I/O metrics for this instance: bytes and datagrams received and sent, the latency of sends (from initiation to completion) and, for {@link UDPClient}s, the
+     * latency of receives.
+     *
+     * @return The I/O metrics for this instance.
+     */
+    public IOMetrics getMetrics() {
+        return metrics;
     }
 
 
@@ -203,7 +362,7 @@ import static com.dilatush.util.General.isNull;
         }
 
         // wake up the selector to make sure the close has immediate effect...
-        engine.wakeSelector();
+        engine.wakeSelector( key );
     }
 
 
@@ -216,4 +375,23 @@ import static com.dilatush.util.General.isNull;
     private void defaultOnErrorHandler( final String _message, final Exception _e ) {
         LOGGER.log( Level.WARNING, _message, _e );
     }
+
+
+    /**
+     * A send operation waiting in the send queue.
+     *
+     * @param datagrams The datagrams to send, in order.
+     * @param handler The handler to call upon the completion of the send operation.
+     * @param queuedNanos The {@link System#nanoTime()} when the send operation was initiated.
+     */
+    private record QueuedSend( List<OutboundDatagram> datagrams, OnSendCompleteHandler handler, long queuedNanos ) {}
+
+
+    /**
+     * A send completion awaiting delivery to its handler.
+     *
+     * @param handler The handler to deliver the outcome to.
+     * @param outcome The outcome of the send operation.
+     */
+    private record Completion( OnSendCompleteHandler handler, Outcome<?> outcome ) {}
 }
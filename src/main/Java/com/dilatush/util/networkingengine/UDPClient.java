@@ -10,8 +10,8 @@ import com.dilatush.util.networkingengine.interfaces.OnReceiveDatagramHandler;
 
 import java.net.InetSocketAddress;
 import java.net.StandardProtocolFamily;
-import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
+import java.time.Duration;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -35,6 +35,10 @@ public class UDPClient extends UDPBase {
     protected final AtomicBoolean receiveInProgress;
 
     protected OnReceiveDatagramHandler onReceiveDatagramHandler;
+    protected long                     receiveStartNanos;   // when the receive operation in progress was initiated...
+
+    private volatile TimingWheel.Timeout receiveDeadline;    // the deadline for the receive operation in progress, or null if it has none...
+    private volatile long                receiveGeneration;  // incremented as each receive is initiated, so a stale deadline can't expire a later receive...
 
 
     /**
@@ -187,6 +191,20 @@ public class UDPClient extends UDPBase {
      * @throws IllegalStateException if no handler is supplied, or if a receive operation is already in progress.
      */
     public void receive( final OnReceiveDatagramHandler _onReceiveDatagramHandler ) throws IllegalStateException {
+        receive( null, _onReceiveDatagramHandler );
+    }
+
+
+    /**
+     * Initiate receiving a datagram from the remote server asynchronously (non-blocking), exactly as {@link #receive(OnReceiveDatagramHandler)} does, except that if no datagram
+     * has been received when the given {@code _deadline} has elapsed, the handler is called with a not ok outcome (and the message "Receive deadline expired").  The deadline is
+     * kept on the engine's {@link TimingWheel}, so it costs almost nothing when a datagram arrives in time; its resolution is the wheel's tick.
+     *
+     * @param _deadline The maximum time to wait for a datagram, or {@code null} to wait indefinitely.
+     * @param _onReceiveDatagramHandler The handler to call when a datagram is received, or the deadline expires.
+     * @throws IllegalStateException if no handler is supplied, or if a receive operation is already in progress.
+     */
+    public void receive( final Duration _deadline, final OnReceiveDatagramHandler _onReceiveDatagramHandler ) throws IllegalStateException {
 
         // if we don't get a handler, we really have no alternative to an exception...
         if( isNull( _onReceiveDatagramHandler ) ) throw new IllegalStateException( "_onReceiveDatagramHandler is null" );
@@ -196,6 +214,14 @@ public class UDPClient extends UDPBase {
 
         // save our handler...
         onReceiveDatagramHandler = _onReceiveDatagramHandler;
+        receiveStartNanos        = System.nanoTime();
+
+        // if we have a deadline, set it before anything can complete this receive; the generation check keeps a stale deadline from expiring a later receive...
+        var generation = ++receiveGeneration;
+        if( _deadline != null )
+            receiveDeadline = engine.scheduleTimeout( _deadline, () -> {
+                if( receiveGeneration == generation ) postReceiveOutcome( forgeInboundDatagram.notOk( "Receive deadline expired" ) );
+            } );
 
         // do the actual work of receiving a datagram...
         receiveImpl();
@@ -216,6 +242,21 @@ public class UDPClient extends UDPBase {
     }
 
 
+    /**
+     * Attempt to receive a datagram synchronously (blocking), waiting no longer than the given {@code _deadline}.
+     *
+     * @param _deadline The maximum time to wait for a datagram.
+     * @return The result of this operation.  If ok, then the info contains the received datagram.  If not ok, there is an explanatory message (which is "Receive deadline expired"
+     * if no datagram was received in time) and possibly the exception that caused the problem.
+     * @throws IllegalStateException if a receive operation is already in progress.
+     */
+    public Outcome<InboundDatagram> receive( final Duration _deadline ) throws IllegalStateException {
+        var waiter = new Waiter<Outcome<InboundDatagram>>();
+        receive( _deadline, waiter::complete );
+        return waiter.waitForCompletion();
+    }
+
+
     /**
      * Called by the associated network engine when read interest is expressed, and the channel is readable.
      */
@@ -230,9 +271,12 @@ public class UDPClient extends UDPBase {
      */
     private void receiveImpl() {
 
+        // if there's no receive in progress (it may have expired), leave any datagram in the channel for the next receive...
+        if( !receiveInProgress.get() ) return;
+
         try {
             // get a read buffer with one extra byte, so we can tell if the datagram was truncated...
-            var readBuffer = ByteBuffer.allocate( maxDatagramBytes + 1 );
+            var readBuffer = engine.getBufferPool().acquire( maxDatagramBytes + 1 );
 
             // read our datagram, returning the socket address of the sender...
             var socket = (InetSocketAddress) channel.receive( readBuffer );
@@ -240,23 +284,27 @@ public class UDPClient extends UDPBase {
             // if we get a non-null for the socket address, we got a datagram...
             if( socket != null ) {
 
+                metrics.recordBytesRead( readBuffer.position() );
+                metrics.recordRead( receiveStartNanos );
+
                 // handle the case of the datagram being truncated...
-                var truncated = ( readBuffer.limit() == readBuffer.capacity() );
-                if( truncated ) readBuffer.limit( readBuffer.limit() - 1 );   // getting rid of the extra truncation-detection byte...
+                var truncated = !readBuffer.hasRemaining();
+                if( truncated ) readBuffer.position( readBuffer.position() - 1 );   // getting rid of the extra truncation-detection byte...
 
                 // make our datagram...
                 readBuffer.flip();
-                var datagram = new InboundDatagram( readBuffer, socket, truncated );
+                var datagram = new InboundDatagram( readBuffer, socket, truncated, engine.getBufferPool() );
 
                 // post our ok completion...
                 postReceiveOutcome( forgeInboundDatagram.ok( datagram ) );
             }
 
-            // otherwise, we need to express read interest...
+            // otherwise, we need to express read interest (and we don't need the buffer)...
             else {
+                engine.getBufferPool().release( readBuffer );
                 LOGGER.finest( "Expressing read interest for UDP datagram" );
                 key.interestOpsOr( READ_INTEREST );
-                engine.wakeSelector();  // this guarantees that the key change will be effective immediately...
+                engine.wakeSelector( key );  // this guarantees that the key change will be effective immediately...
             }
         }
         catch( Exception _e ) {
@@ -276,6 +324,13 @@ public class UDPClient extends UDPBase {
         // if there was no read in progress, just return...
         if( !receiveInProgress.getAndSet( false ) ) return;
 
+        // if the receive had a deadline, we don't need it any more...
+        var deadline = receiveDeadline;
+        if( deadline != null ) {
+            receiveDeadline = null;
+            deadline.cancel();
+        }
+
         // otherwise, send the completion...
         engine.execute( () -> onReceiveDatagramHandler.handle( _outcome ) );
     }
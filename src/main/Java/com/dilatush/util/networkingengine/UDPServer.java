@@ -4,6 +4,7 @@ import com.dilatush.util.General;
 import com.dilatush.util.Outcome;
 import com.dilatush.util.ip.IPAddress;
 import com.dilatush.util.ip.IPv4Address;
+import com.dilatush.util.networkingengine.interfaces.OnDatagramBatchReceiptHandler;
 import com.dilatush.util.networkingengine.interfaces.OnDatagramReceiptHandler;
 import com.dilatush.util.networkingengine.interfaces.OnErrorHandler;
 import com.dilatush.util.networkingengine.interfaces.SourceFilter;
@@ -14,25 +15,38 @@ import java.net.StandardProtocolFamily;
 import java.nio.ByteBuffer;
 import java.nio.channels.DatagramChannel;
 import java.nio.channels.SelectionKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static com.dilatush.util.General.getLogger;
 import static com.dilatush.util.General.isNull;
 
 /**
- * Instances of this class (or its subclasses) implement servers using the UDP protocol.  In particular, they listen for inbound UDP datagrams from any remote source, calling a
- * specified handler when each datagram is received, and they permit sending datagrams to any remote destinations.
+ * <p>Instances of this class (or its subclasses) implement servers using the UDP protocol.  In particular, they listen for inbound UDP datagrams from any remote source, calling a
+ * specified handler when each datagram is received, and they permit sending datagrams to any remote destinations.</p>
+ * <p>A server may instead be created in batch mode, in which case each readable event drains all the datagrams available on the channel (up to a configurable limit), and
+ * delivers them in a single call to an {@link OnDatagramBatchReceiptHandler}.  This amortizes the cost of the selector wakeup and the executor hand-off across many datagrams,
+ * which matters for servers that receive bursts of many small datagrams.</p>
  */
 @SuppressWarnings( "unused" )
 public class UDPServer extends UDPBase {
 
+    /**
+     * The maximum number of datagrams that a batch mode server may receive on each readable event.
+     */
+    public static final int MAX_BATCH_SIZE = 4096;
+
     private static final Outcome.Forge<UDPServer> forgeUDPServer = new Outcome.Forge<>();
 
     private static final Logger LOGGER = getLogger();
 
 
-    protected final OnDatagramReceiptHandler onReceiptHandler;
-    protected final SourceFilter sourceFilter;
+    protected final OnDatagramReceiptHandler      onReceiptHandler;        // the handler for each received datagram, or null if in batch mode...
+    protected final OnDatagramBatchReceiptHandler onBatchReceiptHandler;   // the handler for each batch of received datagrams, or null if not in batch mode...
+    protected final int                           maxBatchSize;            // the maximum number of datagrams received on each readable event...
+    protected final SourceFilter                  sourceFilter;
 
 
     /**
@@ -59,6 +73,51 @@ public class UDPServer extends UDPBase {
     public static Outcome<UDPServer> getNewInstance( final NetworkingEngine _engine, final IPAddress _bindToIP, final int _bindToPort,
                                                      final OnDatagramReceiptHandler _onReceiptHandler, final int _maxDatagramBytes, final OnErrorHandler _onErrorHandler,
                                                      final SourceFilter _sourceFilter ) {
+        return getNewInstance( _bindToIP, _bindToPort,
+                (channel) -> new UDPServer( _engine, channel, _onReceiptHandler, _maxDatagramBytes, _onErrorHandler, _sourceFilter ) );
+    }
+
+
+    /**
+     * Attempts to create a new batch mode instance of {@link UDPServer}, registered to the given networking engine, bound to the network interface with the given IP address and
+     * the given UDP port, using the given handler upon the receipt of each batch of datagrams that are accepted by the (optional) source filter, and (optionally) the given
+     * handler upon an error.  On each readable event, the server receives datagrams until the channel has no more, or until it has received the given maximum batch size, then
+     * calls the handler once with all the datagrams accepted by the source filter.  The datagrams received may be any size at all, but any bytes greater than the given max
+     * datagram bytes will be discarded, and the received datagram marked as truncated.
+     *
+     * @param _engine The {@link NetworkingEngine} instance to register this UDP server with.
+     * @param _bindToIP The local IP address to bind this UDP server to.  The IP address may be either IPv4 or IPv6 for a particular local network interface, or it may be the
+     *                  wildcard address for all local network interfaces.
+     * @param _bindToPort The local UDP port to bind this UDP server to.
+     * @param _onBatchReceiptHandler The handler to be called when a batch of datagrams is received.  Each datagram is just as described for the single datagram handler, and the
+     *                               datagrams are in the order received.
+     * @param _maxDatagramBytes The maximum number of bytes to receive in a datagram (bytes more than this are truncated).  The valid range is [1..65535].
+     * @param _maxBatchSize The maximum number of datagrams to receive on each readable event.  The valid range is [1..4096].
+     * @param _onErrorHandler The optional (it may be {@code null} to use the default error handler) handler to be called if an error occurs while accepting a datagram.  A
+     *                        message describing the problem, and possibly an exception causing the problem, are both passed to the handler.  The default error handler logs the
+     *                        error (with any exception), but otherwise does nothing.
+     * @param _sourceFilter The {@link SourceFilter} to use for filtering incoming UDP datagrams, or {@code null} to use the default source filter (accepts all).
+     * @return The outcome of the attempt.  If ok, the info contains the new {@link UDPServer} instance, configured and registered.  If not ok, it contains an explanatory
+     * message and possibly an exception that caused the problem.
+     */
+    public static Outcome<UDPServer> getNewInstance( final NetworkingEngine _engine, final IPAddress _bindToIP, final int _bindToPort,
+                                                     final OnDatagramBatchReceiptHandler _onBatchReceiptHandler, final int _maxDatagramBytes, final int _maxBatchSize,
+                                                     final OnErrorHandler _onErrorHandler, final SourceFilter _sourceFilter ) {
+        return getNewInstance( _bindToIP, _bindToPort,
+                (channel) -> new UDPServer( _engine, channel, _onBatchReceiptHandler, _maxDatagramBytes, _maxBatchSize, _onErrorHandler, _sourceFilter ) );
+    }
+
+
+    /**
+     * Attempts to open a datagram channel bound to the given IP address and UDP port, then to create a new instance of {@link UDPServer} on that channel with the given maker.
+     *
+     * @param _bindToIP The local IP address to bind the channel to.
+     * @param _bindToPort The local UDP port to bind the channel to.
+     * @param _maker Creates the new {@link UDPServer} on the bound channel.
+     * @return The outcome of the attempt.  If ok, the info contains the new {@link UDPServer} instance, configured and registered.  If not ok, it contains an explanatory
+     * message and possibly an exception that caused the problem.
+     */
+    private static Outcome<UDPServer> getNewInstance( final IPAddress _bindToIP, final int _bindToPort, final ServerMaker _maker ) {
 
         try {
             // sanity checks...
@@ -73,7 +132,7 @@ public class UDPServer extends UDPBase {
             channel.bind( socketAddress );
 
             // time to actually create the UDP server...
-            return forgeUDPServer.ok( new UDPServer( _engine, channel, _onReceiptHandler, _maxDatagramBytes, _onErrorHandler, _sourceFilter ) );
+            return forgeUDPServer.ok( _maker.make( channel ) );
         }
         catch( IOException _e ) {
             return forgeUDPServer.notOk( "I/O problem: " + _e.getMessage(), _e );
@@ -109,19 +168,53 @@ public class UDPServer extends UDPBase {
      */
     protected UDPServer( final NetworkingEngine _engine, final DatagramChannel _channel, final OnDatagramReceiptHandler _onReceiptHandler,
                          final int _maxDatagramBytes, final OnErrorHandler _onErrorHandler, final SourceFilter _sourceFilter ) throws IOException {
+        this( _engine, _channel, _onReceiptHandler, null, _maxDatagramBytes, 1, _onErrorHandler, _sourceFilter );
+    }
+
+
+    /**
+     * <p>Creates a new batch mode instance of this class, just as for the single datagram constructor, except that on each readable event up to the given maximum batch size
+     * of datagrams are received, and those accepted by the source filter are delivered in one call to the given batch receipt handler.</p>
+     *<p>Note that this constructor should not be invoked directly.  Instead, get a new instance of this class through one of the factory methods in this class.</p>
+     *
+     * @param _engine The {@link NetworkingEngine} to associate the new instance with.
+     * @param _channel The {@link DatagramChannel} for this instance to use.  The channel must be bound and unconnected.
+     * @param _onBatchReceiptHandler The handler to call when a batch of datagrams is received.
+     * @param _maxDatagramBytes The maximum number of bytes to receive in a datagram (bytes more than this are truncated).
+     * @param _maxBatchSize The maximum number of datagrams to receive on each readable event, in the range [1..4096].
+     * @param _onErrorHandler The handler to call when an error occurs.
+     * @param _sourceFilter The {@link SourceFilter} to use for filtering incoming UDP datagrams, or {@code null} to use the default source filter (accepts all).
+     * @throws IOException on any I/O error.
+     */
+    protected UDPServer( final NetworkingEngine _engine, final DatagramChannel _channel, final OnDatagramBatchReceiptHandler _onBatchReceiptHandler,
+                         final int _maxDatagramBytes, final int _maxBatchSize, final OnErrorHandler _onErrorHandler, final SourceFilter _sourceFilter ) throws IOException {
+        this( _engine, _channel, null, _onBatchReceiptHandler, _maxDatagramBytes, _maxBatchSize, _onErrorHandler, _sourceFilter );
+    }
+
+
+    /**
+     * The common constructor for single datagram and batch mode instances; exactly one of the two handlers must be supplied.
+     */
+    private UDPServer( final NetworkingEngine _engine, final DatagramChannel _channel, final OnDatagramReceiptHandler _onReceiptHandler,
+                       final OnDatagramBatchReceiptHandler _onBatchReceiptHandler, final int _maxDatagramBytes, final int _maxBatchSize,
+                       final OnErrorHandler _onErrorHandler, final SourceFilter _sourceFilter ) throws IOException {
         super( _engine, _channel, _maxDatagramBytes, _onErrorHandler );
 
         // sanity checks...
-        if( isNull( _onReceiptHandler ) )
+        if( isNull( _onReceiptHandler ) && isNull( _onBatchReceiptHandler ) )
             throw new IllegalArgumentException( "_onReceiptHandler is null" );
+        if( (_maxBatchSize < 1) || (_maxBatchSize > MAX_BATCH_SIZE) )
+            throw new IllegalArgumentException( "_maxBatchSize is out of range [1..4096]: " + _maxBatchSize );
         if( _channel.isConnected() )
             throw new IllegalArgumentException( "_channel is connected; UDP servers may not be connected" );
         if( _channel.getLocalAddress() == null )
             throw new IllegalArgumentException( "_channel is not bound; UDP servers must be bound" );
 
         // squirrel it all away...
-        onReceiptHandler = _onReceiptHandler;
-        sourceFilter     = (_sourceFilter != null) ? _sourceFilter : (ip, port) -> true;
+        onReceiptHandler      = _onReceiptHandler;
+        onBatchReceiptHandler = _onBatchReceiptHandler;
+        maxBatchSize          = _maxBatchSize;
+        sourceFilter          = (_sourceFilter != null) ? _sourceFilter : (ip, port) -> true;
 
         // turn read interest, as we always want to read received datagrams...
         key.interestOpsOr( READ_INTEREST );
@@ -130,9 +223,15 @@ public class UDPServer extends UDPBase {
 
     /* package-private */ void onReadable() {
 
+        // if we're in batch mode, handle it separately...
+        if( onBatchReceiptHandler != null ) {
+            onReadableBatch();
+            return;
+        }
+
         try {
             // get a read buffer with one extra byte, so we can tell if the datagram was truncated...
-            var readBuffer = ByteBuffer.allocate( maxDatagramBytes + 1 );
+            var readBuffer = engine.getBufferPool().acquire( maxDatagramBytes + 1 );
 
             // read our datagram, returning the socket address of the sender...
             var socket = (InetSocketAddress) channel.receive( readBuffer );
@@ -140,21 +239,32 @@ public class UDPServer extends UDPBase {
             // if we get a non-null for the socket address, we got a datagram...
             if( socket != null ) {
 
+                metrics.recordBytesRead( readBuffer.position() );
+                metrics.recordRead();
+
                 // if this datagram is accepted by the source filter, call our on receipt handler...
                 if( sourceFilter.accept( IPAddress.fromInetAddress( socket.getAddress() ), socket.getPort() ) ) {
 
                     // handle the case of the datagram being truncated...
-                    var truncated = ( readBuffer.position() == readBuffer.capacity() );
-                    if( truncated ) readBuffer.limit( readBuffer.limit() - 1 );   // getting rid of the extra truncation-detection byte...
+                    var truncated = !readBuffer.hasRemaining();
+                    if( truncated ) readBuffer.position( readBuffer.position() - 1 );   // getting rid of the extra truncation-detection byte...
 
                     // make our datagram...
                     readBuffer.flip();
-                    var datagram = new InboundDatagram( readBuffer, socket, truncated );
+                    var datagram = new InboundDatagram( readBuffer, socket, truncated, engine.getBufferPool() );
 
                     // call the on receipt handler in another thread...
                     engine.execute( () -> onReceiptHandler.get( datagram ) );
                 }
+
+                // otherwise, we're discarding the datagram, so return its buffer to the pool...
+                else
+                    engine.getBufferPool().release( readBuffer );
             }
+
+            // if we didn't get a datagram, we don't need the buffer...
+            else
+                engine.getBufferPool().release( readBuffer );
         }
         catch( Exception _e ) {
             engine.execute( () -> onErrorHandler.handle( "Problem in onReadable: " + General.toString( _e ), _e ) );
@@ -163,7 +273,72 @@ public class UDPServer extends UDPBase {
 
             // re-enable read interest on our selection key...
             key.interestOpsOr( SelectionKey.OP_READ );
-            engine.wakeSelector();
+            engine.wakeSelector( key );
         }
     }
+
+
+    /**
+     * Handles a readable event in batch mode: receives datagrams until the channel has no more or we have a full batch, then delivers those accepted by the source filter to
+     * the batch receipt handler in a single call.
+     */
+    private void onReadableBatch() {
+
+        List<InboundDatagram> batch = new ArrayList<>();
+        try {
+            // receive datagrams until we've got all that are available, or a full batch...
+            for( int i = 0; i < maxBatchSize; i++ ) {
+
+                // get a read buffer with one extra byte, so we can tell if the datagram was truncated...
+                var readBuffer = engine.getBufferPool().acquire( maxDatagramBytes + 1 );
+
+                // read our datagram, returning the socket address of the sender; if we get null, there are no more datagrams to read...
+                var socket = (InetSocketAddress) channel.receive( readBuffer );
+                if( socket == null ) {
+                    engine.getBufferPool().release( readBuffer );
+                    break;
+                }
+                metrics.recordBytesRead( readBuffer.position() );
+                metrics.recordRead();
+
+                // if this datagram isn't accepted by the source filter, return its buffer to the pool and move along...
+                if( !sourceFilter.accept( IPAddress.fromInetAddress( socket.getAddress() ), socket.getPort() ) ) {
+                    engine.getBufferPool().release( readBuffer );
+                    continue;
+                }
+
+                // handle the case of the datagram being truncated...
+                var truncated = !readBuffer.hasRemaining();
+                if( truncated ) readBuffer.position( readBuffer.position() - 1 );   // getting rid of the extra truncation-detection byte...
+
+                // add the datagram to our batch...
+                readBuffer.flip();
+                batch.add( new InboundDatagram( readBuffer, socket, truncated, engine.getBufferPool() ) );
+            }
+        }
+        catch( Exception _e ) {
+            engine.execute( () -> onErrorHandler.handle( "Problem in onReadable: " + General.toString( _e ), _e ) );
+        }
+        finally {
+
+            // deliver whatever we got (even if we had an error part way through), in another thread...
+            if( !batch.isEmpty() ) {
+                if( LOGGER.isLoggable( Level.FINEST ) ) LOGGER.finest( "Received batch of " + batch.size() + " datagrams" );
+                engine.execute( () -> onBatchReceiptHandler.get( batch ) );
+            }
+
+            // re-enable read interest on our selection key...
+            key.interestOpsOr( SelectionKey.OP_READ );
+            engine.wakeSelector( key );
+        }
+    }
+
+
+    /**
+     * Implemented by the lambdas the factory methods use to make a new {@link UDPServer} on a bound channel.
+     */
+    @FunctionalInterface
+    private interface ServerMaker {
+        UDPServer make( final DatagramChannel _channel ) throws IOException;
+    }
 }
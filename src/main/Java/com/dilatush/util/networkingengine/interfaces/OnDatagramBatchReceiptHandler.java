@@ -0,0 +1,19 @@
+package com.dilatush.util.networkingengine.interfaces;
+
+import com.dilatush.util.networkingengine.InboundDatagram;
+
+import java.util.List;
+
+/**
+ * Implemented by handlers for a batch of received datagrams.
+ */
+@FunctionalInterface
+public interface OnDatagramBatchReceiptHandler {
+
+    /**
+     * Handle the given datagrams, which are in the order they were received.
+     *
+     * @param _datagrams The datagrams to be handled; there is always at least one.
+     */
+    void get( final List<InboundDatagram> _datagrams );
+}
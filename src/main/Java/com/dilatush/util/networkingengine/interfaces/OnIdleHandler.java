@@ -0,0 +1,17 @@
+package com.dilatush.util.networkingengine.interfaces;
+
+import com.dilatush.util.networkingengine.TCPPipe;
+
+/**
+ * Implemented by handlers of TCP connections that have been idle (with no bytes read or written) for longer than their idle timeout.
+ */
+@FunctionalInterface
+public interface OnIdleHandler {
+
+    /**
+     * Handle the given idle TCP connection.
+     *
+     * @param _pipe The {@link TCPPipe} representing the idle TCP connection.
+     */
+    void handle( final TCPPipe _pipe );
+}
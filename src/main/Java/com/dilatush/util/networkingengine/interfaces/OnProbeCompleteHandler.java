@@ -0,0 +1,19 @@
+package com.dilatush.util.networkingengine.interfaces;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.networkingengine.TCPProber;
+
+/**
+ * Implemented by handlers for the completion of a TCP connection probe.
+ */
+@FunctionalInterface
+public interface OnProbeCompleteHandler {
+
+    /**
+     * Handle the given outcome of a TCP connection probe.
+     *
+     * @param _outcome The outcome of the probe.  If ok, the info contains the {@link TCPProber.ProbeResult}, which says whether the endpoint responded (by accepting or refusing
+     *                 the connection) and how long it took.  If not ok, there is an explanatory message and possibly the exception that caused the problem.
+     */
+    void handle( final Outcome<TCPProber.ProbeResult> _outcome );
+}
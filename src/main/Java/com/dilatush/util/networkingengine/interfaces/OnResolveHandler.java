@@ -0,0 +1,19 @@
+package com.dilatush.util.networkingengine.interfaces;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.ip.IPHost;
+
+/**
+ * Implemented by handlers for the completion of resolving a hostname.
+ */
+@FunctionalInterface
+public interface OnResolveHandler {
+
+    /**
+     * Handle the given outcome of resolving a hostname.
+     *
+     * @param _outcome The outcome of resolving a hostname.  If ok, the info contains the {@link IPHost} with the hostname and its IP addresses.  If not ok, there is an
+     *                 explanatory message and possibly the exception that caused the problem.
+     */
+    void handle( final Outcome<IPHost> _outcome );
+}
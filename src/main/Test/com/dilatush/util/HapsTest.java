@@ -0,0 +1,308 @@
+package com.dilatush.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HapsTest {
+
+    private enum Hap { READING, ALERT, SLOW, FENCE }
+
+
+    @Test
+    void testRingDispatch() throws InterruptedException {
+
+        var haps = new Haps<>( 64, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.BLOCK, Hap.READING );
+
+        // many posting threads, far more Haps than fit in the ring at once...
+        var producers = 8;
+        var count = 10_000;
+        var received = new AtomicInteger();
+        var sum = new AtomicInteger();
+        var done = new CountDownLatch( 1 );
+        haps.subscribe( Hap.READING, ( data ) -> {
+            received.incrementAndGet();
+            sum.addAndGet( (Integer) data );
+        } );
+        haps.subscribe( Hap.ALERT, done::countDown );
+        var threads = new ArrayList<Thread>();
+        for( int p = 0; p < producers; p++ ) {
+            var thread = new Thread( () -> {
+                for( int i = 0; i < count; i++ )
+                    haps.post( Hap.READING, 1 );
+            } );
+            threads.add( thread );
+            thread.start();
+        }
+        for( Thread thread : threads )
+            thread.join();
+        haps.post( Hap.ALERT );
+
+        assertTrue( done.await( 10, TimeUnit.SECONDS ) );
+        assertEquals( producers * count, received.get() );
+        assertEquals( producers * count, sum.get() );
+        assertEquals( 0, haps.getDroppedCount() );
+    }
+
+
+    @Test
+    void testOverflowPolicies() throws InterruptedException {
+
+        // with the dispatcher stuck in a slow listener, a full ring drops the newest...
+        var newest = new Haps<>( 16, null, MPSCRing.WaitStrategy.YIELD, Haps.OverflowPolicy.DROP_NEWEST, Hap.READING );
+        var received = new AtomicInteger();
+        newest.subscribe( Hap.READING, received::incrementAndGet );
+        var release = blockDispatcher( newest );
+        for( int i = 0; i < 20; i++ )
+            newest.post( Hap.READING, i );
+        assertEquals( 4, newest.getDroppedCount() );
+        release.countDown();
+        assertTrue( awaitCount( received, 16 ) );
+
+        // and drop the oldest, keeping the latest data...
+        var oldest = new Haps<>( 16, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.DROP_OLDEST, Hap.READING );
+        var last = new AtomicInteger( -1 );
+        var first = new AtomicInteger( -1 );
+        oldest.subscribe( Hap.READING, ( data ) -> {
+            first.compareAndSet( -1, (Integer) data );
+            last.set( (Integer) data );
+        } );
+        var release2 = blockDispatcher( oldest );
+        for( int i = 0; i < 20; i++ )
+            oldest.post( Hap.READING, i );
+        assertEquals( 4, oldest.getDroppedCount() );
+        release2.countDown();
+        var deadline = System.currentTimeMillis() + 5000;
+        while( (last.get() != 19) && (System.currentTimeMillis() < deadline) ) Thread.sleep( 5 );
+        assertEquals( 19, last.get() );
+        assertEquals( 4, first.get() );
+
+        // and run it in the caller...
+        var caller = new Haps<>( 16, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.CALLER_RUNS, Hap.READING );
+        var callerRuns = new AtomicInteger();
+        var poster = Thread.currentThread();
+        caller.subscribe( Hap.READING, () -> { if( Thread.currentThread() == poster ) callerRuns.incrementAndGet(); } );
+        var release3 = blockDispatcher( caller );
+        for( int i = 0; i < 20; i++ )
+            caller.post( Hap.READING, i );
+        assertEquals( 4, callerRuns.get() );
+        assertEquals( 0, caller.getDroppedCount() );
+        release3.countDown();
+    }
+
+
+    @Test
+    void testLanes() throws InterruptedException {
+
+        assertThrows( IllegalArgumentException.class, () -> new Haps<>( 16, null, null, null, ( hap ) -> -1, Hap.READING ) );
+
+        // the slow Hap in a lane of its own...
+        var haps = new Haps<>( 64, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.BLOCK, ( hap ) -> (hap == Hap.SLOW) ? 1 : 0, Hap.READING );
+        assertEquals( 2, haps.getLaneCount() );
+        var done = new CountDownLatch( 1 );
+        var inOrder = new AtomicInteger();
+        haps.subscribe( Hap.READING, ( data ) -> inOrder.compareAndSet( (Integer) data, (Integer) data + 1 ) );
+        haps.subscribe( Hap.ALERT, done::countDown );
+
+        // while the slow listener holds up its lane, the other lane keeps dispatching, in order...
+        var release = blockDispatcher( haps );
+        for( int i = 0; i < 1000; i++ )
+            haps.post( Hap.READING, i );
+        haps.post( Hap.ALERT );
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+        assertEquals( 1000, inOrder.get() );
+        release.countDown();
+
+        // without a lane function, there's just one lane...
+        assertEquals( 1, new Haps<>( 16, null, Hap.READING ).getLaneCount() );
+    }
+
+
+    @Test
+    void testBatches() throws InterruptedException {
+
+        var haps = new Haps<>( 64, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.BLOCK, Hap.READING );
+        var done = new CountDownLatch( 1 );
+        var batches = new ArrayList<List<Object>>();
+        var singles = new ArrayList<Object>();
+        haps.subscribeBatch( Hap.READING, ( run ) -> batches.add( new ArrayList<>( run ) ) );
+        haps.subscribe( Hap.READING, singles::add );
+        haps.subscribe( Hap.ALERT, done::countDown );
+        assertThrows( IllegalArgumentException.class, () -> haps.postAll( Hap.READING, null ) );
+
+        // while the dispatcher is held up, queue single Haps and batches; another Hap type breaks the run...
+        var release = blockDispatcher( haps );
+        haps.post( Hap.READING, 1 );
+        haps.postAll( Hap.READING, List.of( 2, 3, 4 ) );
+        haps.postAll( Hap.READING, List.of() );
+        haps.post( Hap.READING, 5 );
+        haps.post( Hap.SLOW );
+        haps.postAll( Hap.READING, List.of( 6, 7 ) );
+        haps.post( Hap.ALERT );
+        release.countDown();
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+
+        // batch listeners get each run in one call, and the others get every Hap, in order...
+        assertEquals( List.of( List.of( 1, 2, 3, 4, 5 ), List.of( 6, 7 ) ), batches );
+        assertEquals( List.of( 1, 2, 3, 4, 5, 6, 7 ), singles );
+    }
+
+
+    @Test
+    void testInstrumentation() throws InterruptedException {
+
+        var haps = new Haps<>( 64, null, MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.BLOCK, Hap.READING );
+        assertNull( haps.getMetrics() );
+        assertThrows( IllegalArgumentException.class, () -> haps.enableInstrumentation( Duration.ZERO ) );
+        haps.enableInstrumentation( Duration.ofMillis( 20 ) );
+
+        var done = new CountDownLatch( 1 );
+        var slow = (Runnable) () -> {
+            try { Thread.sleep( 50 ); } catch( InterruptedException _e ) { /* naught to do */ }
+        };
+        haps.subscribe( Hap.SLOW, slow );
+        haps.subscribe( Hap.READING, ( data ) -> {} );
+        haps.subscribe( Hap.ALERT, done::countDown );
+
+        for( int i = 0; i < 10; i++ )
+            haps.post( Hap.READING, i );
+        haps.post( Hap.SLOW );
+        haps.postAll( Hap.READING, List.of( 10, 11 ) );
+        haps.post( Hap.ALERT );
+        assertTrue( done.await( 5, TimeUnit.SECONDS ) );
+
+        // every post is counted (a batch by its Haps), and every queue entry's wait is recorded...
+        var metrics = haps.getMetrics();
+        assertEquals( 12, metrics.getPosts( Hap.READING ) );
+        assertEquals( 1, metrics.getPosts( Hap.SLOW ) );
+        assertEquals( 12, (long) metrics.getPostCounts().get( Hap.READING ) );
+        assertTrue( metrics.getPostRates().get( Hap.ALERT ) > 0 );
+        assertEquals( 13, metrics.getQueueWait().getCount() );
+        assertTrue( metrics.getHighWaterMark() >= 1 );
+
+        // the slow listener was timed, and caught...
+        assertEquals( 1, metrics.getSlowListenerCalls() );
+        var timing = metrics.getListenerTimings().stream().filter( (t) -> t.listener() == slow ).findFirst().orElseThrow();
+        assertEquals( Hap.SLOW, timing.hap() );
+        assertEquals( 1, timing.times().getCount() );
+        assertTrue( timing.times().getMeanNanos() >= 40_000_000L );
+        assertEquals( 3, metrics.getListenerTimings().size() );
+
+        haps.disableInstrumentation();
+        assertNull( haps.getMetrics() );
+    }
+
+
+    @Test
+    void testDeliveryPolicies() throws InterruptedException {
+
+        var haps = new Haps<>( 16, new ScheduledExecutor( 1, true ), MPSCRing.WaitStrategy.PARK, Haps.OverflowPolicy.DROP_NEWEST, Hap.READING );
+        assertThrows( IllegalArgumentException.class, () -> Haps.DeliveryPolicy.throttle( 0 ) );
+        assertThrows( IllegalStateException.class, () -> new Haps<>( 16, Hap.READING ).setDeliveryPolicy( Hap.READING, Haps.DeliveryPolicy.debounce( Duration.ofMillis( 1 ) ) ) );
+
+        // while the dispatcher is held up, a burst of coalesced posts takes one queue entry, and only the newest is delivered...
+        haps.setDeliveryPolicy( Hap.READING, Haps.DeliveryPolicy.coalesce() );
+        var readings = new CopyOnWriteArrayList<Object>();
+        var readingTimes = new CopyOnWriteArrayList<Long>();
+        var alerts = new CopyOnWriteArrayList<Object>();
+        var alertTimes = new CopyOnWriteArrayList<Long>();
+        haps.subscribe( Hap.READING, ( data ) -> { readingTimes.add( System.nanoTime() ); readings.add( data ); } );
+        haps.subscribe( Hap.ALERT, ( data ) -> { alertTimes.add( System.nanoTime() ); alerts.add( data ); } );
+        haps.subscribe( Hap.FENCE, ( data ) -> ((CountDownLatch) data).countDown() );
+        var release = blockDispatcher( haps );
+        for( int i = 0; i < 100; i++ )
+            haps.post( Hap.READING, i );
+        assertEquals( 0, haps.getDroppedCount() );
+        release.countDown();
+        fence( haps );
+        assertEquals( List.of( 99 ), readings );
+
+        // throttled posts are delivered no faster than the rate (each delivery follows its predecessor by at least the interval), and the latest is delivered last...
+        haps.setDeliveryPolicy( Hap.ALERT, Haps.DeliveryPolicy.throttle( 20 ) );
+        var start = System.nanoTime();
+        for( int i = 0; i < 300; i++ ) {
+            haps.post( Hap.ALERT, i );
+            Thread.sleep( 1 );
+        }
+        assertTrue( await( () -> !alerts.isEmpty() && alerts.get( alerts.size() - 1 ).equals( 299 ) ) );
+        var span = alertTimes.get( alertTimes.size() - 1 ) - start;
+        assertTrue( (alerts.size() - 1) * 50_000_000L <= span, "deliveries: " + alerts.size() + " in " + span + " ns" );
+
+        // debounced posts are delivered once, no sooner than the quiet period after the last post...
+        readings.clear();
+        readingTimes.clear();
+        haps.setDeliveryPolicy( Hap.READING, Haps.DeliveryPolicy.debounce( Duration.ofMillis( 200 ) ) );
+        for( int i = 0; i < 9; i++ )
+            haps.post( Hap.READING, i );
+        var lastPost = System.nanoTime();
+        haps.post( Hap.READING, 9 );
+        assertTrue( await( () -> !readings.isEmpty() ) );
+        fence( haps );
+        assertEquals( List.of( 9 ), readings );
+        assertTrue( readingTimes.get( 0 ) - lastPost >= 200_000_000L );
+
+        // and with no policy, every post is delivered again...
+        readings.clear();
+        haps.setDeliveryPolicy( Hap.READING, null );
+        haps.post( Hap.READING, 1 );
+        haps.post( Hap.READING, 2 );
+        fence( haps );
+        assertEquals( List.of( 1, 2 ), readings );
+    }
+
+
+    /**
+     * Subscribes a listener to {@link Hap#SLOW} that blocks until released, posts a SLOW Hap, and waits until the dispatcher (of SLOW's lane) is blocked in it.  Later SLOW
+     * Haps pass straight through, once released.  The subscription is ordered before the post (both go through the same lane), so no wait is needed for it.
+     *
+     * @param _haps The {@link Haps} instance whose dispatcher is to be blocked.
+     * @return The latch that releases the dispatcher.
+     */
+    private static CountDownLatch blockDispatcher( final Haps<Hap> _haps ) throws InterruptedException {
+
+        var release = new CountDownLatch( 1 );
+        var blocked = new CountDownLatch( 1 );
+        _haps.subscribe( Hap.SLOW, () -> {
+            blocked.countDown();
+            try { release.await(); } catch( InterruptedException _e ) { /* naught to do */ }
+        } );
+        _haps.post( Hap.SLOW );
+        assertTrue( blocked.await( 5, TimeUnit.SECONDS ), "Dispatcher was not blocked" );
+        return release;
+    }
+
+
+    /**
+     * Posts a {@link Hap#FENCE} Hap carrying a latch, and waits until it is delivered; by then every Hap posted (or released) before it has been delivered.  The FENCE
+     * listener, counting down the latch, must already be subscribed.
+     *
+     * @param _haps The {@link Haps} instance to fence.
+     */
+    private static void fence( final Haps<Hap> _haps ) throws InterruptedException {
+
+        var fenced = new CountDownLatch( 1 );
+        _haps.post( Hap.FENCE, fenced );
+        assertTrue( fenced.await( 5, TimeUnit.SECONDS ), "Fence was not delivered" );
+    }
+
+
+    private static boolean await( final BooleanSupplier _condition ) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 5000;
+        while( !_condition.getAsBoolean() && (System.currentTimeMillis() < deadline) ) Thread.sleep( 5 );
+        return _condition.getAsBoolean();
+    }
+
+
+    private static boolean awaitCount( final AtomicInteger _count, final int _expected ) throws InterruptedException {
+        return await( () -> _count.get() >= _expected ) && (_count.get() == _expected);
+    }
+}
@@ -0,0 +1,37 @@
+package com.dilatush.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void testBuckets() {
+        var histogram = new LatencyHistogram();
+        histogram.record( 0 );
+        histogram.record( 1 );
+        histogram.record( 1000 );
+        histogram.record( 1023 );
+        histogram.record( Long.MAX_VALUE );
+        var counts = histogram.getBucketCounts();
+        assertEquals( 2, counts[0] );
+        assertEquals( 2, counts[9] );
+        assertEquals( 1, counts[LatencyHistogram.BUCKETS - 1] );
+        assertEquals( 5, histogram.getCount() );
+    }
+
+    @Test
+    void testPercentiles() {
+        var histogram = new LatencyHistogram();
+        assertEquals( 0, histogram.getPercentileNanos( 50 ) );
+        for( int i = 0; i < 99; i++ ) histogram.record( 100 );
+        histogram.record( 1_000_000 );
+        assertEquals( 127, histogram.getPercentileNanos( 50 ) );
+        assertEquals( 127, histogram.getPercentileNanos( 99 ) );
+        assertEquals( (1L << 20) - 1, histogram.getPercentileNanos( 100 ) );
+        assertEquals( (99 * 100 + 1_000_000) / 100, histogram.getMeanNanos() );
+        histogram.reset();
+        assertEquals( 0, histogram.getCount() );
+    }
+}
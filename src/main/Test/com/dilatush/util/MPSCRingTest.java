@@ -0,0 +1,71 @@
+package com.dilatush.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MPSCRingTest {
+
+    @Test
+    void testBasics() {
+
+        var ring = new MPSCRing<Integer>( 5, MPSCRing.WaitStrategy.SPIN );
+        assertEquals( 8, ring.capacity() );
+        assertNull( ring.poll() );
+
+        // fill it, wrapping around a few times...
+        for( int lap = 0; lap < 3; lap++ ) {
+            for( int i = 0; i < 8; i++ )
+                assertTrue( ring.offer( i ) );
+            assertFalse( ring.offer( 99 ) );
+            assertEquals( 8, ring.size() );
+            for( int i = 0; i < 8; i++ )
+                assertEquals( (Integer) i, ring.poll() );
+            assertNull( ring.poll() );
+        }
+    }
+
+
+    @Test
+    void testProducers() throws InterruptedException {
+        testProducers( MPSCRing.WaitStrategy.PARK, 8, 50_000 );
+        testProducers( MPSCRing.WaitStrategy.YIELD, 8, 50_000 );
+        testProducers( MPSCRing.WaitStrategy.SPIN, 2, 2_000 );  // spinning threads crawl on machines with few cores...
+    }
+
+
+    private void testProducers( final MPSCRing.WaitStrategy _strategy, final int _producers, final int _count ) throws InterruptedException {
+
+        // several producers, each putting an increasing sequence of values into a small ring...
+        var ring = new MPSCRing<long[]>( 64, _strategy );
+        var producers = _producers;
+        var count = _count;
+        var threads = new ArrayList<Thread>();
+        for( int p = 0; p < producers; p++ ) {
+            var producer = p;
+            var thread = new Thread( () -> {
+                try {
+                    for( int i = 0; i < count; i++ )
+                        ring.put( new long[] { producer, i } );
+                }
+                catch( InterruptedException _e ) {
+                    // naught to do...
+                }
+            } );
+            threads.add( thread );
+            thread.start();
+        }
+
+        // every value arrives exactly once, and in order for each producer...
+        var next = new long[producers];
+        for( int i = 0; i < producers * count; i++ ) {
+            var element = ring.take();
+            assertEquals( next[(int) element[0]]++, element[1], _strategy.toString() );
+        }
+        for( Thread thread : threads )
+            thread.join();
+        assertNull( ring.poll() );
+    }
+}
@@ -0,0 +1,72 @@
+package com.dilatush.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PingSchedulerTest {
+
+    @Test
+    void testAggregation() throws InterruptedException {
+
+        // a fake probe that completes its first 8 pings (every fourth lost, round trip times cycling through 10, 20, and 30 ms), then never completes again...
+        var pings = new AtomicInteger();
+        PingScheduler.Probe probe = ( address, callback ) -> {
+            var n = pings.getAndIncrement();
+            if( n < 8 )
+                callback.accept( new Outcome<>( true, null, null, new Pinger.PingResult( (n % 4) != 3, 0.01 * (1 + (n % 3)) ) ) );
+        };
+        var scheduler = new PingScheduler( new ScheduledExecutor( 1, true ), probe, 8 );
+        scheduler.setJitter( 0 );
+        assertThrows( IllegalArgumentException.class, () -> scheduler.setJitter( 0.6 ) );
+        assertTrue( scheduler.add( "127.0.0.1", Duration.ofMillis( 5 ) ).ok() );
+        assertFalse( scheduler.add( "127.0.0.1", Duration.ZERO ).ok() );
+        assertNull( scheduler.getStats( "127.0.0.2" ) );
+
+        // wait for the window to fill...
+        var deadline = System.currentTimeMillis() + 5000;
+        while( (pings.get() < 9) && (System.currentTimeMillis() < deadline) ) Thread.sleep( 5 );
+
+        var stats = scheduler.getStats( "127.0.0.1" );
+        assertEquals( 8, stats.sent() );
+        assertEquals( 6, stats.received() );
+        assertEquals( 0.25, stats.loss(), 1e-9 );
+        assertEquals( 0.01, stats.minSeconds(), 1e-9 );
+        assertEquals( 0.02, stats.meanSeconds(), 1e-9 );
+        assertEquals( 0.03, stats.maxSeconds(), 1e-9 );
+        assertNotNull( stats.lastPing() );
+        assertEquals( 1, scheduler.getAllStats().size() );
+
+        // removed targets aren't pinged any more...
+        assertTrue( scheduler.remove( "127.0.0.1" ) );
+        assertFalse( scheduler.remove( "127.0.0.1" ) );
+        var count = pings.get();
+        Thread.sleep( 100 );
+        assertEquals( count, pings.get() );
+        assertNull( scheduler.getStats( "127.0.0.1" ) );
+        assertTrue( scheduler.getAllStats().isEmpty() );
+    }
+
+
+    @Test
+    void testSkipsWhileInProgress() throws InterruptedException {
+
+        // a probe that never completes...
+        var pings = new AtomicInteger();
+        PingScheduler.Probe probe = ( address, callback ) -> pings.incrementAndGet();
+        var scheduler = new PingScheduler( new ScheduledExecutor( 1, true ), probe, 8 );
+        scheduler.add( "127.0.0.1", Duration.ofMillis( 5 ) );
+        Thread.sleep( 200 );
+
+        var stats = scheduler.getStats( "127.0.0.1" );
+        assertEquals( 1, pings.get() );
+        assertTrue( stats.skipped() > 5 );
+        assertEquals( 0, stats.sent() );
+        assertEquals( 0, stats.loss() );
+        assertNull( stats.lastPing() );
+        scheduler.close();
+    }
+}
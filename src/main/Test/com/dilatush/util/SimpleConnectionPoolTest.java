@@ -0,0 +1,305 @@
+package com.dilatush.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimpleConnectionPoolTest {
+
+    @Test
+    void testBorrowAndRelease() throws Exception {
+
+        var driver = StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 1, 2 );
+
+        // the same thread gets the same connection back...
+        var first = pool.getConnection();
+        first.close();
+        first.close();  // closing twice does nothing...
+        var second = pool.getConnection();
+        assertSame( first, second );
+        assertEquals( 1, driver.connects.get() );
+
+        // up to the limit of extant connections, then a timeout...
+        var third = pool.getConnection();
+        assertTrue( second != third );
+        var timedOut = pool.getConnection( Duration.ofMillis( 50 ) );
+        assertFalse( timedOut.ok() );
+        assertTrue( timedOut.msg().startsWith( "Timed out" ), timedOut.msg() );
+
+        // releasing more than we cache discards the extra...
+        second.close();
+        third.close();
+        assertEquals( 1, driver.closes.get() );
+
+        var stats = pool.getStats();
+        assertEquals( 3, stats.borrows() );
+        assertEquals( 1, stats.affinityHits() );
+        assertEquals( 2, stats.creates() );
+        assertEquals( 1, stats.discards() );
+        assertEquals( 1, stats.waits() );
+        assertEquals( 1, stats.timeouts() );
+        assertEquals( 1, stats.extant() );
+        assertEquals( 1, stats.idle() );
+
+        // connection failures are reported...
+        var failing = new SimpleConnectionPool( "jdbc:stub:x", null, "pw", "user", 1, 1 );
+        driver.down = true;
+        var failed = failing.getConnection( Duration.ofMillis( 50 ) );
+        assertFalse( failed.ok() );
+        assertEquals( 0, failing.getStats().extant() );
+        failing.close();
+        pool.close();
+    }
+
+
+    @Test
+    void testConcurrency() throws Exception {
+
+        var driver = StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 4, 4 );
+
+        // many threads borrowing from a small pool, all of them waiting sometimes...
+        var threads = 16;
+        var loops = 2000;
+        var inUse = new AtomicInteger();
+        var maxInUse = new AtomicInteger();
+        var failures = new AtomicInteger();
+        var done = new CountDownLatch( threads );
+        var workers = new ArrayList<Thread>();
+        for( int t = 0; t < threads; t++ ) {
+            var worker = new Thread( () -> {
+                try {
+                    for( int i = 0; i < loops; i++ ) {
+                        var outcome = pool.getConnection( Duration.ofSeconds( 10 ) );
+                        if( !outcome.ok() ) { failures.incrementAndGet(); continue; }
+                        Connection connection = outcome.info();
+                        try {
+                            maxInUse.accumulateAndGet( inUse.incrementAndGet(), Integer::max );
+                            if( (i & 7) == 0 ) Thread.yield();
+                            inUse.decrementAndGet();
+                        }
+                        finally {
+                            connection.close();
+                        }
+                    }
+                }
+                catch( Exception _e ) {
+                    failures.incrementAndGet();
+                }
+                done.countDown();
+            } );
+            workers.add( worker );
+            worker.start();
+        }
+        done.await();
+
+        assertEquals( 0, failures.get() );
+        assertTrue( maxInUse.get() <= 4 );
+        assertEquals( 4, driver.connects.get() );
+        var stats = pool.getStats();
+        assertEquals( (long) threads * loops, stats.borrows() );
+        assertEquals( 4, stats.extant() );
+        assertEquals( 4, stats.idle() );
+        assertEquals( 0, stats.waiting() );
+        assertTrue( stats.maxBorrowNanos() >= stats.meanBorrowNanos() );
+        pool.close();
+    }
+
+
+    @Test
+    void testWaitLatency() throws Exception {
+
+        StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 2, 2 );
+
+        // many more threads than connections, each holding its connection briefly; a waiter must be woken by the next release, not find it later...
+        var threads = 8;
+        var loops = 2000;
+        var slow = new AtomicInteger();
+        var failures = new AtomicInteger();
+        var done = new CountDownLatch( threads );
+        for( int t = 0; t < threads; t++ ) {
+            new Thread( () -> {
+                try {
+                    for( int i = 0; i < loops; i++ ) {
+                        var start = System.nanoTime();
+                        var outcome = pool.getConnection( Duration.ofSeconds( 10 ) );
+                        if( !outcome.ok() ) { failures.incrementAndGet(); continue; }
+                        if( (System.nanoTime() - start) > 50_000_000L ) slow.incrementAndGet();
+                        Connection connection = outcome.info();
+                        try {
+                            LockSupport.parkNanos( 100_000 );
+                        }
+                        finally {
+                            connection.close();
+                        }
+                    }
+                }
+                catch( Exception _e ) {
+                    failures.incrementAndGet();
+                }
+                done.countDown();
+            } ).start();
+        }
+        done.await();
+
+        assertEquals( 0, failures.get() );
+        var stats = pool.getStats();
+        assertEquals( (long) threads * loops, stats.borrows() );
+        assertTrue( stats.waits() > 0 );
+        assertTrue( slow.get() <= (threads * loops) / 1000, "borrows over 50ms: " + slow.get() );
+        assertTrue( stats.maxBorrowNanos() < 1_000_000_000L, "longest borrow: " + (stats.maxBorrowNanos() / 1000000) + "ms" );
+        pool.close();
+    }
+
+
+    @Test
+    void testStatementCache() throws Exception {
+
+        var driver = StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 1, 1 );
+        pool.setStatementCacheSize( 2 );
+
+        // the same SQL, borrow after borrow, is prepared only once...
+        for( int i = 0; i < 5; i++ ) {
+            try( var connection = pool.getConnection(); var statement = connection.prepareStatement( "SELECT 1" ) ) {
+                assertSame( connection, statement.getConnection() );
+            }
+        }
+        assertEquals( 1, driver.prepares.get() );
+
+        var connection = (PooledConnection) pool.getConnection();
+
+        // different options, or the same SQL while the cached one is in use, need new statements...
+        var first = connection.prepareStatement( "SELECT 1" );
+        var second = connection.prepareStatement( "SELECT 1" );
+        var third = connection.prepareStatement( "SELECT 1", java.sql.Statement.RETURN_GENERATED_KEYS );
+        assertEquals( 3, driver.prepares.get() );
+
+        // closed wrappers can't be used, and the cache keeps one idle statement per key, at most two in all...
+        first.close();
+        assertTrue( first.isClosed() );
+        assertThrows( java.sql.SQLException.class, () -> first.setInt( 1, 1 ) );
+        second.close();
+        third.close();
+        assertEquals( 2, connection.getCachedStatementCount() );
+        connection.prepareStatement( "SELECT 2" ).close();
+        assertEquals( 2, connection.getCachedStatementCount() );
+
+        // least recently used was evicted...
+        connection.prepareStatement( "SELECT 1" ).close();
+        assertEquals( 5, driver.prepares.get() );
+
+        var stats = pool.getStats();
+        assertEquals( 5, stats.statementHits() );
+        assertEquals( 5, stats.statementMisses() );
+
+        // null key arrays (and null names) go straight to the driver or are keyed as they are, cached or not...
+        connection.prepareStatement( "SELECT 3", (int[]) null ).close();
+        connection.prepareStatement( "SELECT 3", (String[]) null ).close();
+        connection.prepareStatement( "SELECT 3", new String[] { "id", null } ).close();
+        connection.prepareStatement( "SELECT 3", new String[] { "id", null } ).close();
+        assertEquals( 8, driver.prepares.get() );
+        var uncached = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 1, 1 );
+        try( var plain = uncached.getConnection() ) {
+            plain.prepareStatement( "SELECT 3", (int[]) null ).close();
+            plain.prepareStatement( "SELECT 3", (String[]) null ).close();
+        }
+        assertEquals( 10, driver.prepares.get() );
+        uncached.close();
+
+        // really closing the connection empties the cache...
+        connection.reallyClose();
+        assertEquals( 0, connection.getCachedStatementCount() );
+        pool.close();
+    }
+
+
+    @Test
+    void testWarmUpAndCircuit() throws Exception {
+
+        var driver = StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 4, 4 );
+        pool.setValidationInterval( Duration.ofMillis( 100 ) );
+        assertThrows( IllegalArgumentException.class, () -> pool.setMinIdle( 5 ) );
+
+        // the minimum idle connections are created in the background, then validated...
+        pool.setMinIdle( 2 );
+        assertTrue( await( () -> (pool.getStats().idle() == 2) && (pool.getStats().validations() >= 2) ) );
+        assertEquals( 2, driver.connects.get() );
+
+        // when the database goes down, the idle connections fail validation, and the circuit opens...
+        driver.down = true;
+        assertTrue( await( pool::isCircuitOpen ) );
+        assertTrue( await( () -> pool.getStats().extant() == 0 ) );
+        var start = System.nanoTime();
+        var failed = pool.getConnection( Duration.ofSeconds( 5 ) );
+        assertFalse( failed.ok() );
+        assertTrue( (System.nanoTime() - start) < 1_000_000_000L );
+        assertTrue( pool.getStats().validationFailures() >= 2 );
+
+        // when it comes back, the pool warms up again by itself...
+        driver.down = false;
+        assertTrue( await( () -> !pool.isCircuitOpen() && (pool.getStats().idle() == 2) ) );
+        assertTrue( pool.getConnection( Duration.ofSeconds( 1 ) ).ok() );
+
+        // connections that outlive the maximum lifetime are replaced...
+        var connects = driver.connects.get();
+        pool.setMaxLifetime( Duration.ofMillis( 200 ) );
+        assertTrue( await( () -> (pool.getStats().expirations() >= 2) && (driver.connects.get() >= connects + 2) ) );
+        pool.close();
+    }
+
+
+    @Test
+    void testClose() throws Exception {
+
+        // closing closes the idle connections, and fails later borrows; connections in use are closed when released...
+        var driver = StubDriver.get();
+        var pool = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 2, 2 );
+        var idle = pool.getConnection();
+        var inUse = pool.getConnection();
+        idle.close();
+        pool.close();
+        pool.close();
+        assertTrue( pool.isClosed() );
+        assertEquals( 1, driver.closes.get() );
+        assertEquals( 0, pool.getStats().idle() );
+        assertThrows( java.sql.SQLException.class, pool::getConnection );
+        inUse.close();
+        assertEquals( 2, driver.closes.get() );
+        assertEquals( 0, pool.getStats().extant() );
+
+        // a thread waiting for a connection when the pool is closed fails too...
+        var busy = new SimpleConnectionPool( StubDriver.URL, null, "pw", "user", 1, 1 );
+        var held = busy.getConnection();
+        var waited = new java.util.concurrent.CompletableFuture<Outcome<Connection>>();
+        new Thread( () -> {
+            try { waited.complete( busy.getConnection( Duration.ofSeconds( 10 ) ) ); } catch( InterruptedException _e ) { waited.completeExceptionally( _e ); }
+        } ).start();
+        assertTrue( await( () -> busy.getStats().waiting() == 1 ) );
+        busy.close();
+        assertFalse( waited.get( 5, java.util.concurrent.TimeUnit.SECONDS ).ok() );
+        assertEquals( 0, busy.getStats().waiting() );
+        held.close();
+        assertEquals( 0, busy.getStats().extant() );
+    }
+
+
+    private static boolean await( final java.util.function.BooleanSupplier _condition ) throws InterruptedException {
+        var deadline = System.currentTimeMillis() + 10000;
+        while( System.currentTimeMillis() < deadline ) {
+            if( _condition.getAsBoolean() ) return true;
+            Thread.sleep( 10 );
+        }
+        return false;
+    }
+}
@@ -0,0 +1,146 @@
+package com.dilatush.util;
+
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A JDBC driver for tests, accepting URLs starting with "jdbc:stub:".  Its connections do nothing, except keep track of whether they've been closed and how many statements
+ * they've prepared.  A connection is valid until it is closed or the driver is made to fail.
+ */
+public class StubDriver implements Driver {
+
+    public static final String URL = "jdbc:stub:test";
+
+    private static final StubDriver INSTANCE = new StubDriver();
+
+    static {
+        try {
+            DriverManager.registerDriver( INSTANCE );
+        }
+        catch( SQLException _e ) {
+            throw new IllegalStateException( _e );
+        }
+    }
+
+    /* package-private */ final AtomicInteger connects  = new AtomicInteger();
+    /* package-private */ final AtomicInteger closes    = new AtomicInteger();
+    /* package-private */ final AtomicInteger prepares  = new AtomicInteger();
+    /* package-private */ volatile boolean    down;                           // when true, connects fail and existing connections are invalid...
+
+
+    /**
+     * Returns the registered instance of this driver, with its counters reset.
+     *
+     * @return The registered instance.
+     */
+    public static StubDriver get() {
+        INSTANCE.connects.set( 0 );
+        INSTANCE.closes.set( 0 );
+        INSTANCE.prepares.set( 0 );
+        INSTANCE.down = false;
+        return INSTANCE;
+    }
+
+
+    @Override
+    public Connection connect( final String _url, final Properties _info ) throws SQLException {
+
+        if( !acceptsURL( _url ) ) return null;
+        if( down ) throw new SQLException( "Database is down" );
+        connects.incrementAndGet();
+
+        var closed = new boolean[1];
+        return (Connection) Proxy.newProxyInstance( Connection.class.getClassLoader(), new Class<?>[] { Connection.class }, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "close":
+                    if( !closed[0] ) closes.incrementAndGet();
+                    closed[0] = true;
+                    return null;
+                case "isClosed":
+                    return closed[0];
+                case "isValid":
+                    return !closed[0] && !down;
+                case "prepareStatement":
+                    prepares.incrementAndGet();
+                    return statement();
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubConnection";
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+    }
+
+
+    private static PreparedStatement statement() {
+        var closed = new boolean[1];
+        return (PreparedStatement) Proxy.newProxyInstance( PreparedStatement.class.getClassLoader(), new Class<?>[] { PreparedStatement.class }, ( proxy, method, args ) -> {
+            switch( method.getName() ) {
+                case "close":
+                    closed[0] = true;
+                    return null;
+                case "isClosed":
+                    return closed[0];
+                case "hashCode":
+                    return System.identityHashCode( proxy );
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "StubStatement";
+                default:
+                    return defaultValue( method.getReturnType() );
+            }
+        } );
+    }
+
+
+    private static Object defaultValue( final Class<?> _type ) {
+        if( _type == boolean.class ) return false;
+        if( _type == int.class ) return 0;
+        if( _type == long.class ) return 0L;
+        return null;
+    }
+
+
+    @Override
+    public boolean acceptsURL( final String _url ) {
+        return (_url != null) && _url.startsWith( "jdbc:stub:" );
+    }
+
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo( final String _url, final Properties _info ) {
+        return new DriverPropertyInfo[0];
+    }
+
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger( "com.dilatush.util" );
+    }
+}
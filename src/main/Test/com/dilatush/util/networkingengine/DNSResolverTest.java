@@ -0,0 +1,147 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.Waiter;
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.ip.IPHost;
+import com.dilatush.util.ip.IPv4Address;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DNSResolverTest {
+
+    @Test
+    void testResolve() {
+
+        var engine = NetworkingEngine.getInstance( "Test" ).info();
+        var stub = DNSStubServer.start( engine, 5653 ).info();
+        var v4 = IPAddress.fromString( "10.1.2.3" ).info();
+        var v6 = IPAddress.fromString( "fd00::1" ).info();
+        stub.add( "host.example.com", 300, v6, v4 );
+        var resolver = DNSResolver.getNewInstance( engine, IPv4Address.LOOPBACK, 5653, 100 ).info();
+
+        // both addresses, IPv4 first, and the hostname normalized...
+        var outcome = resolver.resolve( "Host.Example.COM." );
+        assertTrue( outcome.ok(), outcome.msg() );
+        assertEquals( "host.example.com", outcome.info().hostname );
+        assertEquals( List.of( v4, v6 ), outcome.info().ipAddresses );
+        assertEquals( 2, stub.getQueryCount() );
+
+        // the second time comes from the cache...
+        assertEquals( outcome.info(), resolver.resolve( "host.example.com" ).info() );
+        assertEquals( 2, stub.getQueryCount() );
+
+        // unknown hosts aren't found (and that's cached too), and literals need no query...
+        var unknown = resolver.resolve( "nowhere.example.com" );
+        assertFalse( unknown.ok() );
+        assertTrue( unknown.msg().startsWith( "No such host" ), unknown.msg() );
+        assertFalse( resolver.resolve( "nowhere.example.com" ).ok() );
+        assertTrue( resolver.resolve( "10.9.8.7" ).ok() );
+        assertFalse( resolver.resolve( "fd00::2" ).ok() );
+        assertFalse( resolver.resolve( "bad..name" ).ok() );
+        assertEquals( 4, stub.getQueryCount() );
+
+        var stats = resolver.getStats();
+        assertEquals( 2, stats.hits() );
+        assertEquals( 2, stats.misses() );
+        assertEquals( 2, stats.cacheSize() );
+
+        resolver.close();
+        stub.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testRetryAndCoalesce() {
+
+        var engine = NetworkingEngine.getInstance( "Test" ).info();
+        var stub = DNSStubServer.start( engine, 5654 ).info();
+        stub.add( "slow.example.com", 300, IPAddress.fromString( "10.1.2.4" ).info() );
+        var resolver = DNSResolver.getNewInstance( engine, IPv4Address.LOOPBACK, 5654, 100 ).info();
+        resolver.setQueryTimeout( Duration.ofMillis( 200 ) );
+
+        // the first attempts of both queries are ignored; two concurrent resolutions share the retried queries...
+        stub.ignore( 2 );
+        var first = new Waiter<Outcome<IPHost>>();
+        var second = new Waiter<Outcome<IPHost>>();
+        resolver.resolve( "slow.example.com", first::complete );
+        resolver.resolve( "slow.example.com", second::complete );
+        assertTrue( first.waitForCompletion().ok() );
+        assertTrue( second.waitForCompletion().ok() );
+        assertEquals( 4, stub.getQueryCount() );
+        assertEquals( 2, resolver.getStats().retries() );
+
+        // with the server ignoring everything, we give up after the maximum attempts...
+        resolver.setMaxAttempts( 2 );
+        stub.ignore( 100 );
+        var lost = resolver.resolve( "lost.example.com" );
+        assertFalse( lost.ok() );
+        assertTrue( lost.msg().startsWith( "No answer" ), lost.msg() );
+        assertEquals( 2, resolver.getStats().timeouts() );
+
+        resolver.close();
+        stub.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testExpiry() throws InterruptedException {
+
+        var engine = NetworkingEngine.getInstance( "Test" ).info();
+        var stub = DNSStubServer.start( engine, 5659 ).info();
+        stub.add( "brief.example.com", 1, IPAddress.fromString( "10.1.2.5" ).info() );
+        var resolver = DNSResolver.getNewInstance( engine, IPv4Address.LOOPBACK, 5659, 100 ).info();
+        assertThrows( IllegalArgumentException.class, () -> resolver.setNegativeTTL( Duration.ZERO ) );
+        resolver.setNegativeTTL( Duration.ofMillis( 300 ) );
+
+        // answers are cached until their TTL has elapsed, then queried again...
+        assertTrue( resolver.resolve( "brief.example.com" ).ok() );
+        assertTrue( resolver.resolve( "brief.example.com" ).ok() );
+        assertEquals( 2, stub.getQueryCount() );
+        Thread.sleep( 1200 );
+        assertTrue( resolver.resolve( "brief.example.com" ).ok() );
+        assertEquals( 4, stub.getQueryCount() );
+
+        // and negative answers until the negative TTL has elapsed; by then, the host may exist...
+        assertFalse( resolver.resolve( "later.example.com" ).ok() );
+        stub.add( "later.example.com", 300, IPAddress.fromString( "10.1.2.6" ).info() );
+        assertFalse( resolver.resolve( "later.example.com" ).ok() );
+        assertEquals( 6, stub.getQueryCount() );
+        Thread.sleep( 500 );
+        assertTrue( resolver.resolve( "later.example.com" ).ok() );
+        assertEquals( 8, stub.getQueryCount() );
+
+        resolver.close();
+        stub.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testCacheBound() {
+
+        var engine = NetworkingEngine.getInstance( "Test" ).info();
+        var stub = DNSStubServer.start( engine, 5655 ).info();
+        var resolver = DNSResolver.getNewInstance( engine, IPv4Address.LOOPBACK, 5655, 2 ).info();
+        for( int i = 0; i < 3; i++ ) {
+            stub.add( "h" + i + ".example.com", 300, IPAddress.fromString( "10.0.0." + (i + 1) ).info() );
+            assertTrue( resolver.resolve( "h" + i + ".example.com" ).ok() );
+        }
+        assertEquals( 2, resolver.getStats().cacheSize() );
+
+        // the least recently used was evicted, so it needs new queries...
+        var queries = stub.getQueryCount();
+        assertTrue( resolver.resolve( "h0.example.com" ).ok() );
+        assertEquals( queries + 2, stub.getQueryCount() );
+
+        resolver.close();
+        stub.close();
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,129 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.Outcome;
+import com.dilatush.util.ip.IPAddress;
+import com.dilatush.util.ip.IPv4Address;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A minimal authoritative DNS server for tests, running on a {@link UDPServer} on the loopback interface.  It answers {@code A} and {@code AAAA} queries for the hosts added to
+ * it (with compressed answer names pointing at the question), answers NXDOMAIN for any other host, and can be told to ignore queries so that timeouts and retries can be tested.
+ */
+public final class DNSStubServer {
+
+    private record Host( List<IPAddress> addresses, int ttl ) {}
+
+    private final UDPServer               server;
+    private final Map<String,Host>        hosts     = new ConcurrentHashMap<>();
+    private final AtomicInteger           queries   = new AtomicInteger();
+    private final AtomicInteger           toIgnore  = new AtomicInteger();
+
+
+    /**
+     * Starts a new stub server on the given engine, listening on the given loopback port.
+     *
+     * @param _engine The engine to run the server on.
+     * @param _port The UDP port to listen on.
+     * @return The outcome of the attempt.
+     */
+    public static Outcome<DNSStubServer> start( final NetworkingEngine _engine, final int _port ) {
+        var stub = new DNSStubServer( _engine, _port );
+        return (stub.server != null) ? new Outcome.Forge<DNSStubServer>().ok( stub ) : new Outcome.Forge<DNSStubServer>().notOk( "Could not start UDP server" );
+    }
+
+
+    private DNSStubServer( final NetworkingEngine _engine, final int _port ) {
+        var serverOutcome = UDPServer.getNewInstance( _engine, IPv4Address.LOOPBACK, _port, this::onQuery, 512, null, null );
+        server = serverOutcome.ok() ? serverOutcome.info() : null;
+    }
+
+
+    /**
+     * Adds (or replaces) a host with the given addresses, answered with the given TTL.
+     *
+     * @param _hostname The (lower case) hostname.
+     * @param _ttl The TTL, in seconds.
+     * @param _addresses The host's addresses.
+     */
+    public void add( final String _hostname, final int _ttl, final IPAddress... _addresses ) {
+        hosts.put( _hostname, new Host( List.of( _addresses ), _ttl ) );
+    }
+
+
+    /**
+     * Makes the server ignore the next given number of queries.
+     *
+     * @param _count The number of queries to ignore.
+     */
+    public void ignore( final int _count ) {
+        toIgnore.set( _count );
+    }
+
+
+    /**
+     * Returns the number of queries received so far, including any that were ignored.
+     *
+     * @return The number of queries received.
+     */
+    public int getQueryCount() {
+        return queries.get();
+    }
+
+
+    /**
+     * Closes the server.
+     */
+    public void close() {
+        server.close();
+    }
+
+
+    private void onQuery( final InboundDatagram _datagram ) {
+
+        queries.incrementAndGet();
+        if( toIgnore.getAndUpdate( n -> Math.max( 0, n - 1 ) ) > 0 ) return;
+
+        var query = _datagram.getData();
+
+        // decode the question (we only handle uncompressed, single questions, which is all a query has)...
+        var pos = 12;
+        var name = new StringBuilder();
+        int length;
+        while( (length = query.get( pos++ ) & 0xFF) != 0 ) {
+            if( name.length() > 0 ) name.append( '.' );
+            for( int i = 0; i < length; i++ ) name.append( (char) query.get( pos++ ) );
+        }
+        var type = query.getShort( pos ) & 0xFFFF;
+        var questionEnd = pos + 4;
+
+        // find our answers...
+        var host = hosts.get( name.toString() );
+        var answers = (host == null) ? List.<IPAddress>of()
+                : host.addresses.stream().filter( a -> (type == 1) == (a instanceof IPv4Address) ).toList();
+
+        // build our response: the query's header and question, then our answers...
+        var response = ByteBuffer.allocate( 512 );
+        response.put( query.duplicate().limit( questionEnd ).position( 0 ) );
+        response.putShort( 2, (short) (0x8180 | ((host == null) ? 3 : 0)) );   // response, recursion desired and available, NXDOMAIN if unknown...
+        response.putShort( 6, (short) answers.size() );
+        for( var answer : answers ) {
+            response.putShort( (short) 0xC00C );       // the name is the question's...
+            response.putShort( (short) type );
+            response.putShort( (short) 1 );
+            response.putInt( host.ttl );
+            var bytes = answer.getAddress();
+            response.putShort( (short) bytes.length );
+            response.put( bytes );
+        }
+        response.flip();
+
+        synchronized( this ) {
+            server.send( new OutboundDatagram( response, _datagram ) );
+        }
+    }
+}
@@ -5,12 +5,21 @@ import com.dilatush.util.ip.IPv4Address;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -277,6 +286,109 @@ class NetworkingEngineTest {
     }
 
 
+    @Test
+    void testBatchUDP() throws IllegalStateException, InterruptedException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a batch mode UDP server that checks the order of what it receives...
+        var received = new AtomicInteger( 0 );
+        var outOfOrder = new AtomicInteger( 0 );
+        var serverOutcome = UDPServer.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, (datagrams) -> {
+            for( InboundDatagram datagram : datagrams ) {
+                if( datagram.getData().getInt() != received.incrementAndGet() ) outOfOrder.incrementAndGet();
+                datagram.release();
+            }
+        }, 200, 64, null, null );
+        assertTrue( serverOutcome.ok(), "Problem creating UDPServer: " + serverOutcome.msg() );
+        var server = serverOutcome.info();
+
+        // get a UDP client...
+        var clientOutcome = UDPClient.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, 200 );
+        assertTrue( clientOutcome.ok(), "Problem creating UDP client: " + clientOutcome.msg() );
+        var client = clientOutcome.info();
+
+        // send 200 serialized datagrams in a single send operation...
+        var datagrams = new ArrayList<OutboundDatagram>();
+        for( int i = 1; i <= 200; i++ ) {
+            var wb = ByteBuffer.allocate( 40 );
+            wb.putInt( i );
+            wb.flip();
+            datagrams.add( new OutboundDatagram( wb, IPv4Address.LOOPBACK, 5555 ) );
+        }
+        var sendOutcome = client.send( datagrams );
+        assertTrue( sendOutcome.ok(), "Problem sending: " + sendOutcome.msg() );
+
+        // wait for them all to arrive...
+        for( int i = 0; (i < 20) && (received.get() < 200); i++ ) sleep( 50 );
+        assertEquals( 200, received.get(), "Did not receive all the datagrams" );
+        assertEquals( 0, outOfOrder.get(), "Datagrams received out of order" );
+
+        // shut it all down...
+        client.close();
+        server.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testQueuedUDPSends() throws IllegalStateException, InterruptedException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a UDP server that checks the order of what it receives...
+        var received = new AtomicInteger( 0 );
+        var outOfOrder = new AtomicInteger( 0 );
+        var serverOutcome = UDPServer.getNewInstance( engine, IPv4Address.LOOPBACK, 5557, (datagrams) -> {
+            for( InboundDatagram datagram : datagrams ) {
+                if( datagram.getData().getInt() != received.incrementAndGet() ) outOfOrder.incrementAndGet();
+                datagram.release();
+            }
+        }, 200, 64, null, null );
+        assertTrue( serverOutcome.ok(), "Problem creating UDPServer: " + serverOutcome.msg() );
+        var server = serverOutcome.info();
+
+        // get a UDP client...
+        var clientOutcome = UDPClient.getNewInstance( engine, IPv4Address.LOOPBACK, 5557, 200 );
+        assertTrue( clientOutcome.ok(), "Problem creating UDP client: " + clientOutcome.msg() );
+        var client = clientOutcome.info();
+
+        // start 200 send operations without waiting for any of them; they're queued, and complete in order...
+        var completed = new AtomicInteger( 0 );
+        var completedOutOfOrder = new AtomicInteger( 0 );
+        var failed = new AtomicInteger( 0 );
+        for( int i = 1; i <= 200; i++ ) {
+            var wb = ByteBuffer.allocate( 40 );
+            wb.putInt( i );
+            wb.flip();
+            var n = i;
+            client.send( new OutboundDatagram( wb, IPv4Address.LOOPBACK, 5557 ), (outcome) -> {
+                if( outcome.notOk() ) failed.incrementAndGet();
+                if( completed.incrementAndGet() != n ) completedOutOfOrder.incrementAndGet();
+            } );
+        }
+
+        // wait for them all to complete and arrive...
+        for( int i = 0; (i < 100) && ((completed.get() < 200) || (received.get() < 200)); i++ ) sleep( 50 );
+        assertEquals( 200, completed.get(), "Not all the sends completed" );
+        assertEquals( 0, failed.get(), "Sends failed" );
+        assertEquals( 0, completedOutOfOrder.get(), "Sends completed out of order" );
+        assertEquals( 200, received.get(), "Did not receive all the datagrams" );
+        assertEquals( 0, outOfOrder.get(), "Datagrams received out of order" );
+
+        // shut it all down...
+        client.close();
+        server.close();
+        engine.shutdown();
+    }
+
+
     private static class FastUDPRead extends Thread {
 
         private final UDPClient client;
@@ -375,7 +487,9 @@ class NetworkingEngineTest {
             while( !interrupted() ) {
                 try {
                     LOGGER.info( "Reading TCP echo" );
-                    var rb = inboundPipe.read( 100 ).info();
+                    var readOutcome = inboundPipe.read( 100 );
+                    if( !readOutcome.ok() ) break;   // the connection was closed...
+                    var rb = readOutcome.info();
                     LOGGER.info( "Writing TCP echo" );
                     inboundPipe.write( rb );
                 }
@@ -387,6 +501,313 @@ class NetworkingEngineTest {
     }
 
 
+    @Test
+    void testDeadlines() throws InterruptedException {
+
+        // get an engine with pooled buffers, so we can see that they're all released...
+        var config = new NetworkingEngine.Config();
+        config.name = "Test";
+        config.bufferPool = new SizeClassedBufferPool( false );
+        var engineOutcome = NetworkingEngine.getInstance( config );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener that just hands us its inbound pipes...
+        var accepted = new LinkedBlockingQueue<TCPInboundPipe>();
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, accepted::add );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get an outbound pipe and connect it...
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+        assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+        assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+        var inbound = accepted.poll( 5, TimeUnit.SECONDS );
+        assertNotNull( inbound, "No connection accepted" );
+
+        // nothing has been sent, so a read with a deadline should expire...
+        var start = System.nanoTime();
+        var readOutcome = pipe.read( 1, 100, Duration.ofMillis( 100 ) );
+        assertFalse( readOutcome.ok(), "Read should have expired" );
+        assertEquals( "Read deadline expired", readOutcome.msg() );
+        assertTrue( System.nanoTime() - start >= 100_000_000L, "Read expired too early" );
+        assertEquals( 0, engine.getBufferPool().getStats().outstanding(), "Expired read's buffer was not released" );
+
+        // but a read with a deadline that gets its data in time should complete normally...
+        var wb = ByteBuffer.allocate( 4 );
+        wb.putInt( 8383 );
+        wb.flip();
+        assertTrue( inbound.write( wb ).ok(), "Problem writing" );
+        readOutcome = pipe.read( 4, 100, Duration.ofSeconds( 5 ) );
+        assertTrue( readOutcome.ok(), "Problem reading: " + readOutcome.msg() );
+        assertEquals( 8383, readOutcome.info().getInt() );
+        assertEquals( 0, engine.getTimingWheel().getPendingCount(), "Completed read's deadline was not canceled" );
+        pipe.release( readOutcome.info() );
+        assertEquals( 0, engine.getBufferPool().getStats().outstanding(), "Completed read's buffer was not released" );
+
+        // an idle connection should be noticed...
+        var idle = new Semaphore( 0 );
+        pipe.setIdleTimeout( Duration.ofMillis( 100 ), (idlePipe) -> idle.release() );
+        assertTrue( idle.tryAcquire( 5, TimeUnit.SECONDS ), "Idle timeout did not expire" );
+        assertNull( pipe.getIdleTimeout() );
+
+        // shut it all down...
+        inbound.close();
+        pipe.close();
+        listener.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testTransferFrom() throws InterruptedException, IOException {
+
+        // make a file to transfer...
+        var path = Files.createTempFile( "transfer", ".bin" );
+        var data = new byte[300000];
+        new Random( 4321 ).nextBytes( data );
+        Files.write( path, data );
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener that just hands us its inbound pipes...
+        var accepted = new LinkedBlockingQueue<TCPInboundPipe>();
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, accepted::add );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get an outbound pipe and connect it...
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+        assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+        assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+        var inbound = accepted.poll( 5, TimeUnit.SECONDS );
+        assertNotNull( inbound, "No connection accepted" );
+
+        // transfer all but the first 1000 bytes of the file...
+        var transferred = new LinkedBlockingQueue<Outcome<?>>();
+        try( var file = FileChannel.open( path, StandardOpenOption.READ ) ) {
+            pipe.transferFrom( file, 1000, data.length - 1000, transferred::add );
+
+            // read it all on the other side, and make sure it's right...
+            var received = ByteBuffer.allocate( data.length - 1000 );
+            while( received.hasRemaining() ) {
+                var readOutcome = inbound.read( 1, 65536, Duration.ofSeconds( 5 ) );
+                assertTrue( readOutcome.ok(), "Problem reading: " + readOutcome.msg() );
+                received.put( readOutcome.info() );
+            }
+            assertArrayEquals( Arrays.copyOfRange( data, 1000, data.length ), received.array() );
+            var transferOutcome = transferred.poll( 5, TimeUnit.SECONDS );
+            assertNotNull( transferOutcome, "Transfer did not complete" );
+            assertTrue( transferOutcome.ok(), "Problem transferring: " + transferOutcome.msg() );
+            assertEquals( data.length - 1000, pipe.getMetrics().getBytesWritten() );
+
+            // a transfer past the end of the file can't complete...
+            var eofOutcome = pipe.transferFrom( file, data.length - 10, 100 );
+            assertFalse( eofOutcome.ok(), "Transfer past end of file should fail" );
+        }
+
+        // shut it all down...
+        inbound.close();
+        pipe.close();
+        listener.close();
+        engine.shutdown();
+        Files.delete( path );
+    }
+
+
+    @Test
+    void testBlockingChannel() throws InterruptedException, IOException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener whose connections each get a thread that echoes through a blocking channel, until the end of the stream...
+        var ended = new Semaphore( 0 );
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, (inbound) -> new Thread( () -> {
+            try( var channel = inbound.blockingChannel() ) {
+                var buffer = ByteBuffer.allocate( 1000 );
+                while( channel.read( buffer ) >= 0 ) {
+                    buffer.flip();
+                    channel.write( buffer );
+                    buffer.clear();
+                }
+                ended.release();
+            }
+            catch( IOException _e ) {
+                LOGGER.log( Level.WARNING, "Problem echoing: " + _e.getMessage(), _e );
+            }
+        } ).start() );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get an outbound pipe and connect it...
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+        assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+        assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+
+        // write some data through a blocking channel, and make sure the echo is right...
+        var channel = pipe.blockingChannel();
+        var data = new byte[100000];
+        new Random( 1234 ).nextBytes( data );
+        var wb = ByteBuffer.wrap( data );
+        var received = ByteBuffer.allocate( data.length );
+        var writer = new Thread( () -> {
+            try {
+                assertEquals( data.length, channel.write( wb ) );
+            }
+            catch( IOException _e ) {
+                fail( "Problem writing: " + _e.getMessage() );
+            }
+        } );
+        writer.start();
+        while( received.hasRemaining() ) assertTrue( channel.read( received ) > 0 );
+        writer.join();
+        assertFalse( wb.hasRemaining() );
+        assertArrayEquals( data, received.array() );
+
+        // closing our side should end the echoing thread's stream...
+        channel.close();
+        assertFalse( channel.isOpen() );
+        assertTrue( ended.tryAcquire( 5, TimeUnit.SECONDS ), "Echo did not see the end of the stream" );
+
+        // shut it all down...
+        listener.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testConnectionLimit() throws InterruptedException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener that just collects its connections, and limit it to two at a time...
+        var inbounds = new LinkedBlockingQueue<TCPInboundPipe>();
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, inbounds::add );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+        listener.setMaxConnections( 2 );
+
+        // connect three clients; all three connect (the third waits in the backlog), but only two should be accepted...
+        var outbounds = new ArrayList<TCPOutboundPipe>();
+        for( int i = 0; i < 3; i++ ) {
+            var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+            assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+            var connectOutcome = pipeOutcome.info().connect( IPv4Address.LOOPBACK, 5555 );
+            assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+            outbounds.add( pipeOutcome.info() );
+        }
+        var first = inbounds.poll( 5, TimeUnit.SECONDS );
+        assertNotNull( first, "First connection not accepted" );
+        assertNotNull( inbounds.poll( 5, TimeUnit.SECONDS ), "Second connection not accepted" );
+        assertNull( inbounds.poll( 500, TimeUnit.MILLISECONDS ), "Third connection accepted despite the limit" );
+        assertTrue( listener.isPaused() );
+        assertEquals( 2, listener.getOpenConnections() );
+
+        // closing an accepted connection should resume accepting...
+        first.close();
+        assertNotNull( inbounds.poll( 5, TimeUnit.SECONDS ), "Third connection not accepted after a close" );
+        var stats = listener.getStats();
+        assertEquals( 3, stats.accepted() );
+        assertEquals( 2, stats.openConnections() );
+        assertTrue( stats.pauses() >= 1 );
+
+        // shut it all down...
+        outbounds.forEach( TCPPipe::close );
+        inbounds.forEach( TCPPipe::close );
+        listener.close();
+        engine.shutdown();
+    }
+
+
+    @Test
+    void testFramedPipe() throws InterruptedException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener whose pipes echo frames...
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, NetworkingEngineTest::onAcceptFramedEcho );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get an outbound pipe and connect it...
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+        assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+        assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+        pipe.setMaxQueuedWrites( 4096 );
+
+        // start receiving frames...
+        var framed = new FramedPipe( pipe );
+        var frames = new LinkedBlockingQueue<ByteBuffer>();
+        framed.receive( (outcome) -> { if( outcome.ok() ) frames.add( outcome.info() ); } );
+
+        // send an empty frame, and one that's bigger than the maximum read size, and make sure they come back intact...
+        assertTrue( framed.send( ByteBuffer.allocate( 0 ) ).ok(), "Problem sending empty frame" );
+        var big = ByteBuffer.allocate( 200000 );
+        for( int i = 0; i < big.capacity(); i++ ) big.put( (byte) i );
+        big.flip();
+        assertTrue( framed.send( big ).ok(), "Problem sending big frame" );
+        var frame = frames.poll( 2, TimeUnit.SECONDS );
+        assertNotNull( frame, "Empty frame not received" );
+        assertEquals( 0, frame.remaining(), "Empty frame is not empty" );
+        frame = frames.poll( 2, TimeUnit.SECONDS );
+        assertNotNull( frame, "Big frame not received" );
+        assertEquals( big.rewind(), frame, "Big frame does not match" );
+
+        // now blast a bunch of small frames through, and see how fast they go...
+        var start = System.nanoTime();
+        for( int i = 0; i < 1000; i++ ) {
+            var wb = ByteBuffer.allocate( 4 ).putInt( 0, i );
+            assertTrue( framed.send( wb, (outcome) -> {} ).ok(), "Problem queueing frame " + i );
+        }
+        for( int i = 0; i < 1000; i++ ) {
+            frame = frames.poll( 2, TimeUnit.SECONDS );
+            assertNotNull( frame, "Frame " + i + " not received" );
+            assertEquals( i, frame.getInt(), "Frame received out of order" );
+        }
+        LOGGER.info( "Framed echo rate: " + (1000L * 1_000_000_000L / (System.nanoTime() - start)) + " frames/second" );
+
+        // make sure the metrics saw it all...
+        assertEquals( 1002, pipe.getMetrics().getWrites(), "Wrong number of writes in metrics" );
+        assertTrue( pipe.getMetrics().getBytesRead() > 200000, "Too few bytes read in metrics" );
+        assertTrue( engine.getIOMetrics().getBytesWritten() >= 2 * pipe.getMetrics().getBytesWritten(), "Engine metrics missing the echo's writes" );
+        assertTrue( engine.getStats().loopIterations() > 0, "No loop iterations in stats" );
+        LOGGER.info( "Pipe metrics: " + pipe.getMetrics() );
+
+        // shut it all down...
+        framed.close();
+        listener.close();
+        engine.shutdown();
+    }
+
+    private static void onAcceptFramedEcho( final TCPInboundPipe _pipe ) {
+        _pipe.setMaxQueuedWrites( 4096 );
+        var framed = new FramedPipe( _pipe );
+        framed.receive( (outcome) -> {
+            if( outcome.ok() ) framed.send( outcome.info(), (writeOutcome) -> {} );
+        } );
+    }
+
+
     @Test
     void testWriteWaiting() throws InterruptedException {
 
@@ -441,6 +862,53 @@ class NetworkingEngineTest {
         engine.shutdown();
     }
 
+    @Test
+    void testQueuedWrites() throws InterruptedException {
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener...
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, NetworkingEngineTest::onAcceptSlowReceiver );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get an outbound pipe and connect it...
+        var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+        assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+        var pipe = pipeOutcome.info();
+        var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+        assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+        pipe.setMaxQueuedWrites( 100 );
+
+        // queue up 1000 ints, 0-999, backing off whenever the queue is full...
+        var completions = new Semaphore( 0 );
+        var failures = new AtomicInteger( 0 );
+        for( int i = 0; i < 1000; i++ ) {
+            var wb = ByteBuffer.allocate( 4 );
+            wb.putInt( i );
+            wb.flip();
+            Outcome<?> queueOutcome;
+            while( (queueOutcome = pipe.queueWrite( wb, (outcome) -> { if( outcome.notOk() ) failures.incrementAndGet(); completions.release(); } )).notOk() ) {
+                assertEquals( "Write queue is full", queueOutcome.msg() );
+                sleep( 1 );
+            }
+        }
+
+        // wait for all the writes to complete, and for all data to be read...
+        completions.acquire( 1000 );
+        assertEquals( 0, failures.get(), "Some queued writes failed" );
+        slowReceiverSemaphore.acquire();
+
+        // shut it all down...
+        slowReceiver.inboundPipe.close();
+        pipe.close();
+        listener.close();
+        engine.shutdown();
+    }
+
     private static SlowReceiver slowReceiver;
     private static final Semaphore slowReceiverSemaphore = new Semaphore( 0 );
 
@@ -557,6 +1025,51 @@ class NetworkingEngineTest {
         engine.shutdown();
     }
 
+    @Test
+    void testMultipleLoopTCP() {
+
+        // get an engine with four I/O loops...
+        var config = new NetworkingEngine.Config();
+        config.name = "Test";
+        config.ioLoops = 4;
+        config.loopAssignment = NetworkingEngine.LoopAssignment.LEAST_LOADED;
+        var engineOutcome = NetworkingEngine.getInstance( config );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+        assertEquals( 4, engine.getIOLoopCount() );
+
+        // start up a listener...
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, 5555, NetworkingEngineTest::onAcceptMultipleTCP );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // get some outbound pipes, connect them, and make sure each one echoes correctly...
+        Set<TCPOutboundPipe> pipes = new HashSet<>();
+        for( int i = 0; i < NUM_PIPES; i++ ) {
+            var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+            assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+            var pipe = pipeOutcome.info();
+            var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, 5555 );
+            assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+            pipes.add( pipe );
+
+            var wb = ByteBuffer.allocate( 4 );
+            wb.putInt( i );
+            wb.flip();
+            var writeOutcome = pipe.write( wb );
+            assertTrue( writeOutcome.ok(), "Problem writing: " + writeOutcome.msg() );
+            var readOutcome = pipe.read( 4, 4 );
+            assertTrue( readOutcome.ok(), "Problem reading: " + readOutcome.msg() );
+            assertEquals( i, readOutcome.info().getInt(), "Data read does not match data transmitted" );
+        }
+
+        // shut it all down...
+        multipleEcho.forEach( _echo -> _echo.inboundPipe.close() );
+        pipes.forEach( TCPPipe::close );
+        listener.close();
+        engine.shutdown();
+    }
+
     private static final int NUM_PIPES = 10;
     private static final AtomicInteger READ_COUNTER = new AtomicInteger( NUM_PIPES );
 
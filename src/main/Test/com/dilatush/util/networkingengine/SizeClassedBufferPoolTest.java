@@ -0,0 +1,52 @@
+package com.dilatush.util.networkingengine;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SizeClassedBufferPoolTest {
+
+    @Test
+    void testSizeClasses() {
+        var pool = new SizeClassedBufferPool( false );
+        var b = pool.acquire( 1 );
+        assertEquals( 256, b.capacity() );
+        assertEquals( 1, b.limit() );
+        b = pool.acquire( 257 );
+        assertEquals( 512, b.capacity() );
+        assertEquals( 257, b.limit() );
+        b = pool.acquire( 65536 );
+        assertEquals( 65536, b.capacity() );
+        b = pool.acquire( 65537 );
+        assertEquals( 65537, b.capacity() );
+    }
+
+    @Test
+    void testReuse() {
+        var pool = new SizeClassedBufferPool( true );
+        var b = pool.acquire( 1000 );
+        assertTrue( b.isDirect() );
+        pool.release( b );
+        var c = pool.acquire( 900 );
+        assertSame( b, c );
+        assertEquals( 0, c.position() );
+        assertEquals( 900, c.limit() );
+        var stats = pool.getStats();
+        assertEquals( 1, stats.hits() );
+        assertEquals( 1, stats.misses() );
+        assertEquals( 1, stats.outstanding() );
+    }
+
+    @Test
+    void testDiscard() {
+        var pool = new SizeClassedBufferPool( false, 1, 0 );
+        var b1 = pool.acquire( 300 );
+        var b2 = pool.acquire( 300 );
+        pool.release( b1 );
+        pool.release( b2 );
+        pool.release( ByteBuffer.allocate( 100 ) );
+        assertEquals( 2, pool.getStats().discarded() );
+    }
+}
@@ -0,0 +1,69 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.TCPPinger;
+import com.dilatush.util.ip.IPv4Address;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TCPProberTest {
+
+    @Test
+    void testProbes() throws IOException, InterruptedException {
+
+        var engine = NetworkingEngine.getInstance( "Test" ).info();
+        var prober = TCPProber.getNewInstance( engine, 32 ).info();
+
+        // a listening port (we never accept; the backlog completes the handshakes) and a closed one...
+        try( var server = ServerSocketChannel.open() ) {
+            server.bind( new InetSocketAddress( IPv4Address.LOOPBACK.toInetAddress(), 5656 ), 1024 );
+
+            var open = prober.probe( IPv4Address.LOOPBACK, 5656, Duration.ofSeconds( 2 ) );
+            assertTrue( open.ok(), open.msg() );
+            assertTrue( open.info().responded() );
+            assertFalse( open.info().refused() );
+            assertTrue( open.info().rttNanos() > 0 );
+
+            var closed = prober.probe( IPv4Address.LOOPBACK, 5657, Duration.ofSeconds( 2 ) );
+            assertTrue( closed.ok(), closed.msg() );
+            assertTrue( closed.info().responded() );
+            assertTrue( closed.info().refused() );
+
+            // lots of probes, far more than may be in progress at once...
+            var count = 1000;
+            var responded = new AtomicInteger();
+            var latch = new CountDownLatch( count );
+            for( int i = 0; i < count; i++ ) {
+                prober.probe( IPv4Address.LOOPBACK, 5656 + (i & 1), Duration.ofSeconds( 5 ), ( outcome ) -> {
+                    if( outcome.ok() && outcome.info().responded() ) responded.incrementAndGet();
+                    latch.countDown();
+                } );
+                assertTrue( prober.getStats().active() <= 32 );
+            }
+            assertTrue( latch.await( 30, TimeUnit.SECONDS ) );
+            assertEquals( count, responded.get() );
+
+            var stats = prober.getStats();
+            assertEquals( count + 2, stats.started() );
+            assertEquals( (count / 2) + 1, stats.refused() );
+            assertEquals( 0, stats.active() );
+            assertEquals( 0, stats.queued() );
+
+            // and the same through the pinger...
+            var pinger = new TCPPinger( engine, 16 );
+            var ping = pinger.pingSync( "127.0.0.1", 5656 );
+            assertTrue( ping.ok(), ping.msg() );
+            assertTrue( ping.info().success() );
+        }
+
+        engine.shutdown();
+    }
+}
@@ -0,0 +1,174 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.ip.IPv4Address;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.*;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyStore;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TLSPipeTest {
+
+    private static final char[] PASSWORD = "password".toCharArray();
+
+
+    @Test
+    void testEcho() throws Exception {
+
+        // make a self-signed certificate, and contexts for both sides that use it...
+        var keystore = selfSigned();
+        var serverContext = serverContext( keystore );
+        var clientContext = clientContext( keystore );
+
+        // get an engine...
+        var engineOutcome = NetworkingEngine.getInstance( "Test" );
+        assertTrue( engineOutcome.ok(), "Problem creating NetworkingEngine: " + engineOutcome.msg() );
+        var engine = engineOutcome.info();
+
+        // start up a listener whose connections handshake, note the server name the client asked for, then echo...
+        var port = freePort();
+        var serverNames = new LinkedBlockingQueue<List<SNIServerName>>();
+        var listenerOutcome = TCPListener.getNewInstance( engine, IPv4Address.LOOPBACK, port, (inbound) -> {
+            var tlsOutcome = TLSPipe.getNewInstance( inbound, serverContext, false );
+            assertTrue( tlsOutcome.ok(), "Problem creating server TLSPipe: " + tlsOutcome.msg() );
+            var tls = tlsOutcome.info();
+            tls.handshake( (handshakeOutcome) -> {
+                if( !handshakeOutcome.ok() ) {
+                    tls.close();
+                    return;
+                }
+                serverNames.add( ((ExtendedSSLSession) tls.getSession()).getRequestedServerNames() );
+                echo( tls );
+            } );
+        } );
+        assertTrue( listenerOutcome.ok(), "Problem creating TCPListener: " + listenerOutcome.msg() );
+        var listener = listenerOutcome.info();
+
+        // connect twice with the same context, so that the second connection can resume the first's session...
+        var sessionCreated = new long[2];
+        for( int connection = 0; connection < 2; connection++ ) {
+
+            var pipeOutcome = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK );
+            assertTrue( pipeOutcome.ok(), "Problem creating TCPOutboundPipe: " + pipeOutcome.msg() );
+            var pipe = pipeOutcome.info();
+            var connectOutcome = pipe.connect( IPv4Address.LOOPBACK, port );
+            assertTrue( connectOutcome.ok(), "Problem with connect: " + connectOutcome.msg() );
+            var tlsOutcome = TLSPipe.getNewClientInstance( pipe, clientContext, "localhost" );
+            assertTrue( tlsOutcome.ok(), "Problem creating client TLSPipe: " + tlsOutcome.msg() );
+            var tls = tlsOutcome.info();
+            var handshakeOutcome = tls.handshake();
+            assertTrue( handshakeOutcome.ok(), "Problem with handshake: " + handshakeOutcome.msg() );
+            assertTrue( tls.isHandshaken() );
+            assertEquals( List.of( new SNIHostName( "localhost" ) ), serverNames.poll( 5, TimeUnit.SECONDS ) );
+
+            // send a lot of data (more than one record, and more than one read) and make sure it's echoed correctly...
+            var data = new byte[200000];
+            new Random( connection ).nextBytes( data );
+            var writes = new LinkedBlockingQueue<Boolean>();
+            tls.write( ByteBuffer.wrap( data ), (writeOutcome) -> writes.add( writeOutcome.ok() ) );
+            var received = ByteBuffer.allocate( data.length );
+            while( received.hasRemaining() ) {
+                var readOutcome = tls.read( 1, Math.min( 65536, received.remaining() ) );
+                assertTrue( readOutcome.ok(), "Problem reading: " + readOutcome.msg() );
+                received.put( readOutcome.info() );
+                tls.release( readOutcome.info() );
+            }
+            assertEquals( Boolean.TRUE, writes.poll( 5, TimeUnit.SECONDS ), "Write did not complete" );
+            assertArrayEquals( data, received.array() );
+
+            sessionCreated[connection] = tls.getSession().getCreationTime();
+            tls.close();
+        }
+
+        // the second connection resumed the first's session, rather than making a new one...
+        assertEquals( sessionCreated[0], sessionCreated[1], "Session was not resumed" );
+
+        // a server whose certificate doesn't match the host name is refused, though the certificate itself is trusted...
+        var pipe = TCPOutboundPipe.getNewInstance( engine, IPv4Address.LOOPBACK ).info();
+        assertTrue( pipe.connect( IPv4Address.LOOPBACK, port ).ok() );
+        var wrongOutcome = TLSPipe.getNewClientInstance( pipe, clientContext, "elsewhere.example" );
+        assertTrue( wrongOutcome.ok(), "Problem creating client TLSPipe: " + wrongOutcome.msg() );
+        assertFalse( wrongOutcome.info().handshake().ok(), "Handshake succeeded with the wrong host name" );
+        wrongOutcome.info().close();
+        assertFalse( TLSPipe.getNewClientInstance( pipe, clientContext, null ).ok() );
+
+        // shut it all down...
+        listener.close();
+        engine.shutdown();
+        Files.delete( keystore );
+    }
+
+
+    // echoes everything read from the given TLS pipe back to it, until the read fails...
+    private static void echo( final TLSPipe _tls ) {
+        _tls.read( 1, 65536, (readOutcome) -> {
+            if( !readOutcome.ok() ) {
+                _tls.close();
+                return;
+            }
+            var buffer = readOutcome.info();
+            _tls.write( buffer, (writeOutcome) -> {
+                _tls.release( buffer );
+                if( writeOutcome.ok() ) echo( _tls );
+            } );
+        } );
+    }
+
+
+    // makes a keystore with a self-signed certificate, using the JDK's keytool...
+    private static Path selfSigned() throws IOException, InterruptedException {
+        var keystore = Files.createTempFile( "tls", ".p12" );
+        Files.delete( keystore );
+        var keytool = Path.of( System.getProperty( "java.home" ), "bin", "keytool" ).toString();
+        var process = new ProcessBuilder( keytool, "-genkeypair", "-alias", "test", "-keyalg", "EC", "-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-validity", "1",
+                "-storetype", "PKCS12", "-keystore", keystore.toString(), "-storepass", new String( PASSWORD ) ).inheritIO().start();
+        assertEquals( 0, process.waitFor(), "keytool failed" );
+        return keystore;
+    }
+
+
+    // returns a loopback TCP port that nothing is listening on (at least, at the moment)...
+    private static int freePort() throws IOException {
+        try( var socket = new ServerSocket( 0, 1, InetAddress.getLoopbackAddress() ) ) {
+            return socket.getLocalPort();
+        }
+    }
+
+
+    private static SSLContext serverContext( final Path _keystore ) throws Exception {
+        var kmf = KeyManagerFactory.getInstance( KeyManagerFactory.getDefaultAlgorithm() );
+        kmf.init( load( _keystore ), PASSWORD );
+        var context = SSLContext.getInstance( "TLS" );
+        context.init( kmf.getKeyManagers(), null, null );
+        return context;
+    }
+
+
+    private static SSLContext clientContext( final Path _keystore ) throws Exception {
+        var tmf = TrustManagerFactory.getInstance( TrustManagerFactory.getDefaultAlgorithm() );
+        tmf.init( load( _keystore ) );
+        var context = SSLContext.getInstance( "TLS" );
+        context.init( null, tmf.getTrustManagers(), null );
+        return context;
+    }
+
+
+    private static KeyStore load( final Path _keystore ) throws Exception {
+        var store = KeyStore.getInstance( "PKCS12" );
+        try( var in = Files.newInputStream( _keystore ) ) {
+            store.load( in, PASSWORD );
+        }
+        return store;
+    }
+}
@@ -0,0 +1,48 @@
+package com.dilatush.util.networkingengine;
+
+import com.dilatush.util.ScheduledExecutor;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    void testExpiry() throws InterruptedException {
+        var wheel = new TimingWheel( new ScheduledExecutor( 1, true ), Duration.ofMillis( 5 ), 16 );
+        wheel.start();
+        var latch = new CountDownLatch( 2 );
+        var start = System.nanoTime();
+        var near = wheel.schedule( Duration.ofMillis( 20 ), latch::countDown );
+        var far = wheel.schedule( Duration.ofMillis( 200 ), latch::countDown );   // more than one revolution of the wheel...
+        assertTrue( latch.await( 5, TimeUnit.SECONDS ) );
+        assertTrue( System.nanoTime() - start >= 200_000_000L );
+        assertTrue( near.isExpired() );
+        assertTrue( far.isExpired() );
+        assertFalse( far.cancel() );
+        assertEquals( 0, wheel.getPendingCount() );
+        wheel.stop();
+    }
+
+    @Test
+    void testCancel() throws InterruptedException {
+        var wheel = new TimingWheel( new ScheduledExecutor( 1, true ), Duration.ofMillis( 5 ), 16 );
+        wheel.start();
+        var runs = new AtomicInteger();
+        var timeouts = new TimingWheel.Timeout[1000];
+        for( int i = 0; i < timeouts.length; i++ ) timeouts[i] = wheel.schedule( Duration.ofMillis( 50 ), runs::incrementAndGet );
+        for( int i = 0; i < timeouts.length; i += 2 ) assertTrue( timeouts[i].cancel() );
+        assertEquals( 500, wheel.getPendingCount() );
+        Thread.sleep( 300 );
+        assertEquals( 500, runs.get() );
+        assertTrue( timeouts[0].isCanceled() );
+        assertTrue( timeouts[1].isExpired() );
+        assertEquals( 0, wheel.getPendingCount() );
+        wheel.stop();
+    }
+}